@@ -0,0 +1,23 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/*In-process generator backed by a single AtomicLong
+Produces the familiar ORD1001, ORD1002, ... sequence without overflowing an int*/
+class AtomicOrderIdGenerator implements OrderIdGenerator {
+    private final String prefix;
+    private final AtomicLong counter;
+
+    public AtomicOrderIdGenerator(String prefix, long lastIssued) {
+        this.prefix = prefix;
+        this.counter = new AtomicLong(lastIssued);
+    }
+
+    @Override
+    public String nextId() {
+        return prefix + counter.incrementAndGet();
+    }
+
+    // Moves the sequence forward so that no ID at or below the given value is issued again
+    public void advanceTo(long lastIssued) {
+        counter.accumulateAndGet(lastIssued, Math::max);
+    }
+}
@@ -0,0 +1,1453 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntConsumer;
+
+/* This module contains the microbenchmarks for the ordering core.
+   Each scenario runs a warm-up phase followed by a timed measurement phase and prints its results.
+   Run with: java Benchmarks [scenario...]   (no arguments runs every scenario)
+   Contended scenarios start all worker threads together and report aggregate operations per second.
+   Allocation is profiled per operation from the thread's allocated-bytes counter, and each scenario
+   reports the collections it caused, so results can be reproduced with a plain JDK on any Linux box.
+   The "core" scenario covers the ordering hot paths and is parameterized by system properties
+   (comma-separated lists): bench.orders, bench.pizzas, bench.toppings, bench.threads.
+   The "promotions" scenario evaluates bench.promotions active promotions per order; "bestDeal" searches them.
+   The "settlement" scenario compares per-order and batched captures (settlement.captures).
+   The "payments" scenario drives payments.count asynchronous payments through simulated providers.
+   The "loyalty" scenario has 1-64 terminals updating one customer's points (loyalty.ops per thread).
+   The "history" scenario measures heap held per customer for history.customers x history.orders past orders.
+   The "reorder" scenario times repeating a past order of 1-100 pizzas against rebuilding it pizza by pizza.
+   The "inventory" scenario has 1-64 threads reserving and releasing pizzas with the same popular topping.
+   The "menuReload" scenario takes orders on 4 threads while the menu file is reloaded every reload.millis ms.
+   The "templates" scenario measures bytes allocated per templates.orders orders of predefined, customized and built pizzas.
+   The "signatures" scenario compares topping lists with topping bitsets for signatures.pizzas pizzas: memory, equality, grouping.
+   The "money" scenario checks that randomized orders reconcile to the cent, then times re-pricing and formatting.
+   The "checkout" scenario is a correctness check: an order rejected after its payment was approved must leave
+   nothing charged, stored or earned. A failed check exits with status 1 once every selected scenario has run.
+   The same core paths are also JMH benchmarks in benchmarks/ (a Maven module; see its pom.xml), whose run with the
+   GC profiler is the reference in benchmark-baseline.txt. */
+
+public class Benchmarks {
+    private static final long WARMUP_MILLIS = 500;
+    private static final long MEASURE_MILLIS = 1000;
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8, 16, 32, 64};
+    static volatile long blackhole; // Consumes results so the JIT cannot drop the measured work
+    private static int failedChecks; // Correctness checks that failed; any makes the run exit with status 1
+
+    public static void main(String[] args) throws Exception {
+        Set<String> selected = new HashSet<>(Arrays.asList(args));
+        printEnvironment();
+        if (selected.isEmpty() || selected.contains("core")) {
+            benchmarkCore(intList("bench.orders", "1000,100000"), intList("bench.pizzas", "1,5,20"),
+                intList("bench.toppings", "0,3,6"), intList("bench.threads", "1,4,16"));
+        }
+        if (selected.isEmpty() || selected.contains("orderIds")) {
+            benchmarkOrderIds();
+        }
+        if (selected.isEmpty() || selected.contains("orderTotals")) {
+            benchmarkOrderTotals();
+        }
+        if (selected.isEmpty() || selected.contains("notifications")) {
+            benchmarkNotifications();
+        }
+        if (selected.isEmpty() || selected.contains("logging")) {
+            benchmarkLogging();
+        }
+        if (selected.isEmpty() || selected.contains("payments")) {
+            benchmarkPayments(Integer.getInteger("payments.count", 20_000));
+        }
+        if (selected.isEmpty() || selected.contains("settlement")) {
+            benchmarkSettlement(Integer.getInteger("settlement.captures", 20_000));
+        }
+        if (selected.isEmpty() || selected.contains("promotions")) {
+            benchmarkPromotions(intList("bench.promotions", "100,1000,10000"));
+        }
+        if (selected.isEmpty() || selected.contains("bestDeal")) {
+            benchmarkBestDeal(intList("bench.promotions", "100,1000,10000"));
+        }
+        if (selected.isEmpty() || selected.contains("loyalty")) {
+            benchmarkLoyalty(Integer.getInteger("loyalty.ops", 200_000));
+        }
+        if (selected.isEmpty() || selected.contains("history")) {
+            benchmarkHistory(Integer.getInteger("history.customers", 1000), Integer.getInteger("history.orders", 50));
+        }
+        if (selected.isEmpty() || selected.contains("reorder")) {
+            benchmarkReorder(intList("reorder.pizzas", "1,10,100"));
+        }
+        if (selected.isEmpty() || selected.contains("inventory")) {
+            benchmarkInventory();
+        }
+        if (selected.isEmpty() || selected.contains("menuReload")) {
+            benchmarkMenuReload(Long.getLong("reload.millis", 10));
+        }
+        if (selected.isEmpty() || selected.contains("signatures")) {
+            benchmarkSignatures(Integer.getInteger("signatures.pizzas", 100_000));
+        }
+        if (selected.isEmpty() || selected.contains("templates")) {
+            benchmarkTemplates(Integer.getInteger("templates.orders", 1_000_000));
+        }
+        if (selected.isEmpty() || selected.contains("money")) {
+            benchmarkMoney(Integer.getInteger("money.orders", 2_000_000));
+        }
+        if (selected.isEmpty() || selected.contains("checkout")) {
+            checkRejectAfterPayment();
+        }
+        if (failedChecks > 0) {
+            System.out.println("\n" + failedChecks + " correctness check(s) FAILED");
+            System.exit(1);
+        }
+    }
+
+    // Records the outcome of a correctness check; a failure makes the run exit with status 1
+    private static void check(boolean passed, String description) {
+        System.out.println((passed ? "PASS " : "FAIL ") + description);
+        if (!passed) {
+            failedChecks++;
+        }
+    }
+
+    /*The ordering hot paths: pizza pricing, order totals, order lookup by ID (what PizzaOr_sys.findOrder
+    delegates to), status updates and loyalty tier lookup, each with time and bytes allocated per operation*/
+    private static void benchmarkCore(int[] orderCounts, int[] pizzaCounts, int[] toppingCounts, int[] threadCounts)
+            throws InterruptedException {
+        long[] gcBefore = gcTotals();
+        System.out.println("\n=== Pizza.calculateTotalCents ===");
+        System.out.printf("%-8s | %-12s | %-12s | %-12s | %-12s%n", "Toppings", "Cached ns", "Cached B", "Repriced ns", "Repriced B");
+        for (int toppings : toppingCounts) {
+            Pizza pizza = samplePizzas(1, toppings)[0];
+            Crust crust = pizza.getCrust();
+            Runnable cached = () -> blackhole += pizza.calculateTotalCents();
+            Runnable repriced = () -> {
+                pizza.setCrust(crust); // Invalidates the cached price
+                blackhole += pizza.calculateTotalCents();
+            };
+            System.out.printf("%-8d | %-12.1f | %-12.1f | %-12.1f | %-12.1f%n", toppings,
+                nanosPerOp(cached), bytesPerOp(cached, 100_000), nanosPerOp(repriced), bytesPerOp(repriced, 100_000));
+        }
+
+        System.out.println("\n=== Order totals: build, deliver and discount one order ===");
+        System.out.printf("%-8s | %-8s | %-12s | %-12s%n", "Pizzas", "Toppings", "ns/order", "B/order");
+        Customer customer = new Customer("BENCH", "Bench", "Colombo", "0770000000", "bench@example.com");
+        Promotion promotion = new Promotion("BENCH", "Bench", 10.0, LocalDate.now(), LocalDate.now());
+        for (int pizzaCount : pizzaCounts) {
+            for (int toppings : toppingCounts) {
+                Pizza[] pizzas = samplePizzas(pizzaCount, toppings);
+                Runnable build = () -> {
+                    Order order = new Order("BENCH", customer, "PICKUP", 0);
+                    for (Pizza pizza : pizzas) {
+                        order.addPizza(pizza);
+                    }
+                    order.setDeliveryType("DELIVERY", Money.ofRupees(200));
+                    order.applyPromotion(promotion);
+                    blackhole += order.getTotalCents();
+                };
+                System.out.printf("%-8d | %-8d | %-12.1f | %-12.1f%n", pizzaCount, toppings,
+                    nanosPerOp(build), bytesPerOp(build, 20_000));
+            }
+        }
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Customers print their notifications
+        StringBuilder lookups = new StringBuilder();
+        StringBuilder updates = new StringBuilder();
+        for (int orderCount : orderCounts) {
+            OrderRepository repository = new OrderRepository();
+            Order[] orders = new Order[orderCount];
+            String[] ids = new String[orderCount];
+            Customer[] customers = new Customer[64];
+            for (int i = 0; i < customers.length; i++) {
+                customers[i] = new Customer("BENCH" + i, "Bench", "Colombo", "0770000000", "bench@example.com");
+            }
+            for (int i = 0; i < orderCount; i++) {
+                orders[i] = new Order("ORD" + (1000 + i), customers[i % customers.length], "PICKUP", 0);
+                ids[i] = orders[i].getOrderId();
+                repository.save(orders[i]);
+            }
+            Runnable find = () -> blackhole += repository.findById(ids[ThreadLocalRandom.current().nextInt(orderCount)]).getTotalCents();
+            OrderStatus[] statuses = {OrderStatus.PREPARING, OrderStatus.IN_OVEN, OrderStatus.READY_FOR_DELIVERY, OrderStatus.OUT_FOR_DELIVERY};
+            Runnable update = () -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                orders[random.nextInt(orderCount)].getTracker().updateStatus(statuses[random.nextInt(statuses.length)]);
+            };
+            lookups.append(String.format("%-8d | %-12.1f | %-12.1f |", orderCount, nanosPerOp(find), bytesPerOp(find, 100_000)));
+            updates.append(String.format("%-8d | %-12.1f | %-12.1f |", orderCount, nanosPerOp(update), bytesPerOp(update, 100_000)));
+            for (int threads : threadCounts) {
+                lookups.append(String.format(" %-12.0f", throughput(threads, find)));
+                updates.append(String.format(" %-12.0f", throughput(threads, update)));
+            }
+            lookups.append(System.lineSeparator());
+            updates.append(System.lineSeparator());
+            NotificationDispatcher.shared().awaitIdle(60_000);
+        }
+        System.setOut(console);
+        String threadHeader = "";
+        for (int threads : threadCounts) {
+            threadHeader += String.format(" %-12s", threads + "T ops/s");
+        }
+        System.out.println("\n=== Order lookup by ID (OrderRepository.findById) ===");
+        System.out.printf("%-8s | %-12s | %-12s |%s%n", "Orders", "ns/op", "B/op", threadHeader);
+        System.out.print(lookups);
+        System.out.println("\n=== OrderTracker.updateStatus (store reindex + journal + queued notification) ===");
+        System.out.printf("%-8s | %-12s | %-12s |%s%n", "Orders", "ns/op", "B/op", threadHeader);
+        System.out.print(updates);
+
+        System.out.println("\n=== Customer.LoyaltyTier.getTierFromPoints ===");
+        int[] points = new int[1024];
+        Random random = new Random(42);
+        for (int i = 0; i < points.length; i++) {
+            points[i] = random.nextInt(2000);
+        }
+        int[] cursor = new int[1];
+        Runnable tier = () -> blackhole += Customer.LoyaltyTier.getTierFromPoints(points[cursor[0]++ & 1023]).ordinal();
+        System.out.printf("%.1f ns/op, %.1f B/op%n", nanosPerOp(tier), bytesPerOp(tier, 100_000));
+
+        long[] gcAfter = gcTotals();
+        System.out.printf("%nGC during core scenario: %d collections, %d ms%n", gcAfter[0] - gcBefore[0], gcAfter[1] - gcBefore[1]);
+    }
+
+    /*Status notification output from 1 and 32 threads: printing each line to a PrintStream over a file
+    (how Customer.update used System.out) versus recording an event in the asynchronous EventLog*/
+    private static void benchmarkLogging() throws Exception {
+        System.out.println("\n=== Notification output to a file (ops/s) ===");
+        System.out.printf("%-8s | %-15s | %-15s | %-12s%n", "Threads", "PrintStream", "EventLog", "EventLog B/op");
+        java.nio.file.Path printed = java.nio.file.Files.createTempFile("bench-print", ".log");
+        java.nio.file.Path logged = java.nio.file.Files.createTempFile("bench-events", ".log");
+        PrintStream stream = new PrintStream(new java.io.FileOutputStream(printed.toFile()), true);
+        EventLog log = new EventLog(logged, 65536);
+        String[] orderIds = new String[1024];
+        for (int i = 0; i < orderIds.length; i++) {
+            orderIds[i] = "ORD" + (1000 + i);
+        }
+        Runnable print = () -> stream.println("Notification for Order "
+            + orderIds[ThreadLocalRandom.current().nextInt(1024)] + ": " + OrderStatus.IN_OVEN.getLabel());
+        Runnable event = () -> log.log(EventLog.Type.NOTIFICATION,
+            orderIds[ThreadLocalRandom.current().nextInt(1024)], "BENCH", 0, OrderStatus.IN_OVEN.getLabel());
+        for (int threads : new int[] {1, 32}) {
+            double printing = throughput(threads, print);
+            double logging = throughput(threads, event);
+            log.flush(60_000); // Measure each thread count from an empty buffer
+            System.out.printf("%-8d | %-15.0f | %-15.0f | %-12.1f%n", threads, printing, logging,
+                threads == 1 ? bytesPerOp(event, 100_000) : Double.NaN);
+        }
+        stream.close();
+        log.close();
+        java.nio.file.Files.delete(printed);
+        java.nio.file.Files.delete(logged);
+    }
+
+    /*Payments through a PaymentProcessor against a simulated gateway (20 ms latency, 200 ms timeout, 3 attempts):
+    a healthy provider, transient errors, lost responses and an outage. One payment in ten is submitted twice,
+    as a client retry would; the gateway must still charge each order at most once*/
+    private static void benchmarkPayments(int count) {
+        System.out.println("\n=== Asynchronous payments (" + count + " orders, pool 256) ===");
+        System.out.printf("%-12s | %-10s | %-9s | %-9s | %-8s | %-8s | %-8s | %-8s | %-10s%n", "Provider", "Payments/s",
+            "Approved", "Declined", "Failed", "Retries", "Timeouts", "Breaker", "Overcharged");
+        String[] names = {"healthy", "errors-5%", "lost-2%", "outage"};
+        double[][] rates = {{0, 0.02, 0}, {0.05, 0.02, 0}, {0, 0.02, 0.02}, {1, 0, 0}}; // failure, decline, no response
+        for (int i = 0; i < names.length; i++) {
+            SimulatedPaymentGateway gateway = new SimulatedPaymentGateway(names[i], 20, 5, rates[i][0], rates[i][1], rates[i][2]);
+            PaymentProcessor processor = new PaymentProcessor(gateway, 256, 200, 3, 10, 50, 1000);
+            List<java.util.concurrent.CompletableFuture<PaymentResult>> results = new ArrayList<>(count);
+            long start = System.nanoTime();
+            for (int order = 0; order < count; order++) {
+                results.add(processor.charge("ORD" + order, 250_000, "4111111111111111"));
+                if (order % 10 == 0) {
+                    processor.charge("ORD" + order, 250_000, "4111111111111111"); // Duplicate submission
+                }
+            }
+            java.util.concurrent.CompletableFuture.allOf(results.toArray(new java.util.concurrent.CompletableFuture<?>[0])).join();
+            double seconds = (System.nanoTime() - start) / 1e9;
+            long approved = 0;
+            long declined = 0;
+            for (java.util.concurrent.CompletableFuture<PaymentResult> result : results) {
+                PaymentResult outcome = result.join();
+                approved += outcome.isApproved() ? 1 : 0;
+                declined += outcome.getOutcome() == PaymentResult.Outcome.DECLINED ? 1 : 0;
+            }
+            System.out.printf("%-12s | %-10.0f | %-9d | %-9d | %-8d | %-8d | %-8d | %-8d | %-10d%n", names[i], count / seconds,
+                approved, declined, count - approved - declined, processor.getRetries(), processor.getTimeouts(),
+                processor.getBreakerOpenings(), gateway.getCharges() - approved);
+        }
+    }
+
+    /*Settling card captures one gateway round trip per order versus in batches of 10-500, against a simulated
+    provider with 20 ms latency and a pool of 64 connections: time until every capture is settled, round trips made,
+    and whether the captured amount matches the order totals*/
+    private static void benchmarkSettlement(int captures) {
+        System.out.println("\n=== Card settlement (" + captures + " captures) ===");
+        System.out.printf("%-12s | %-12s | %-14s | %-11s | %-10s%n", "Mode", "Settled ms", "Captures/s", "Round trips", "Reconciled");
+        Customer customer = new Customer("BENCH", "Bench", "Colombo", "0770000000", "bench@example.com");
+        Pizza pizza = samplePizzas(1, 3)[0];
+        Order[] orders = new Order[captures];
+        long expectedCents = 0;
+        for (int i = 0; i < captures; i++) {
+            orders[i] = new Order("ORD" + (1000 + i), customer, "PICKUP", 0);
+            orders[i].addPizza(pizza);
+            expectedCents += orders[i].getTotalCents();
+        }
+        PaymentStrategy card = new CreditCardPayment("4111111111111111");
+        int[] batchSizes = {1, 10, 100, 500};
+        for (int batchSize : batchSizes) {
+            SimulatedPaymentGateway gateway = new SimulatedPaymentGateway("card", 20, 5, 0, 0, 0);
+            PaymentProcessor processor = new PaymentProcessor(gateway, 64, 2000, 3, 10, 1000, 1000);
+            SettlementService settlement = new SettlementService(batchSize == 1 ? SettlementService.Mode.IMMEDIATE
+                : SettlementService.Mode.BATCH, batchSize, 0, processor, processor);
+            long start = System.nanoTime();
+            for (int i = 0; i < captures; i++) {
+                settlement.capture(orders[i], card, PaymentResult.approved("card-ORD" + (1000 + i)));
+            }
+            settlement.flushAll().join();
+            while (gateway.getCapturedTransactions() < captures) {
+                Thread.onSpinWait(); // Batches sent as they filled up may still be in flight
+            }
+            double millis = (System.nanoTime() - start) / 1e6;
+            System.out.printf("%-12s | %-12.1f | %-14.0f | %-11d | %-10s%n",
+                batchSize == 1 ? "per-order" : "batch " + batchSize, millis, captures / (millis / 1000),
+                gateway.getCaptureRequests(), gateway.getCapturedCents() == expectedCents);
+        }
+    }
+
+    /*Many terminals awarding points to the same customer at once: the previous synchronized balance with a values()
+    tier scan versus the lock-free ledger with its cached tier, and the ledger's hold-then-redeem path used by
+    orders paying with points. Every thread does a fixed number of operations so the final balances can be checked*/
+    private static void benchmarkLoyalty(int perThread) throws InterruptedException {
+        System.out.println("\n=== Loyalty accrual on one customer (" + perThread + " ops per thread, ops/s) ===");
+        System.out.printf("%-8s | %-15s | %-15s | %-15s | %-8s%n", "Threads", "Synchronized", "Ledger", "Hold+redeem", "Correct");
+        int[] threadCounts = {1, 1, 4, 16, 64}; // The first round is a warm-up
+        for (int round = 0; round < threadCounts.length; round++) {
+            int threads = threadCounts[round];
+            long expected = (long) threads * perThread;
+            SynchronizedLoyaltyAccount legacy = new SynchronizedLoyaltyAccount();
+            double legacyRate = runOps(threads, perThread, (thread, i) -> {
+                legacy.addLoyaltyPoints(1);
+                blackhole += legacy.getTier().ordinal();
+            });
+            LoyaltyLedger ledger = new Customer("BENCH", "Bench", "Colombo", "0770000000", "bench@example.com").getLoyaltyLedger();
+            double ledgerRate = runOps(threads, perThread, (thread, i) -> {
+                ledger.accrue(null, 1);
+                blackhole += ledger.getTier().ordinal();
+            });
+            String[][] orderIds = new String[threads][1024];
+            for (int t = 0; t < threads; t++) {
+                for (int i = 0; i < 1024; i++) {
+                    orderIds[t][i] = "ORD" + t + "-" + i;
+                }
+            }
+            LoyaltyLedger redeeming = new Customer("BENCH", "Bench", "Colombo", "0770000000", "bench@example.com").getLoyaltyLedger();
+            redeeming.adjust((int) expected);
+            double redeemRate = runOps(threads, perThread, (thread, i) -> {
+                String orderId = orderIds[thread][i & 1023];
+                if (redeeming.hold(orderId, 1)) {
+                    redeeming.capture(orderId);
+                }
+            });
+            boolean correct = legacy.getLoyaltyPoints() == expected && ledger.getBalance() == expected
+                && ledger.getTier() == Customer.LoyaltyTier.getTierFromPoints((int) expected)
+                && redeeming.getBalance() == 0 && redeeming.getHeld() == 0;
+            if (round > 0) {
+                System.out.printf("%-8d | %-15.0f | %-15.0f | %-15.0f | %-8s%n", threads, legacyRate, ledgerRate, redeemRate, correct);
+            }
+        }
+    }
+
+    /*Heap retained by customers' order histories once their orders have left the order store (archived): every
+    Order kept in a list, as Customer did before, versus OrderHistory summaries plus its recent-order cache.
+    Also times reading a whole history through 20-order pages and fetching the newest order*/
+    private static void benchmarkHistory(int customerCount, int ordersPerCustomer) {
+        System.out.println("\n=== Order history heap (" + customerCount + " customers x " + ordersPerCustomer + " orders, 3 pizzas each) ===");
+        System.out.printf("%-22s | %-14s | %-14s%n", "History", "Heap MB", "Bytes/customer");
+        long baseline = usedHeapAfterGc();
+        List<List<Order>> legacy = new ArrayList<>(customerCount);
+        for (int c = 0; c < customerCount; c++) {
+            Customer customer = new Customer("C" + c, "Bench", "Colombo", "0770000000", "bench@example.com");
+            List<Order> history = new ArrayList<>();
+            for (int o = 0; o < ordersPerCustomer; o++) {
+                history.add(sampleOrder("ORD" + c + "-" + o, customer));
+            }
+            legacy.add(history);
+        }
+        long legacyBytes = usedHeapAfterGc() - baseline;
+        blackhole += legacy.size();
+        legacy = null;
+        baseline = usedHeapAfterGc();
+        List<Customer> customers = new ArrayList<>(customerCount);
+        for (int c = 0; c < customerCount; c++) {
+            Customer customer = new Customer("C" + c, "Bench", "Colombo", "0770000000", "bench@example.com");
+            for (int o = 0; o < ordersPerCustomer; o++) {
+                customer.addOrder(sampleOrder("ORD" + c + "-" + o, customer));
+            }
+            customers.add(customer);
+        }
+        long summaryBytes = usedHeapAfterGc() - baseline;
+        System.out.printf("%-22s | %-14.1f | %-14d%n", "List<Order>", legacyBytes / 1e6, legacyBytes / customerCount);
+        System.out.printf("%-22s | %-14.1f | %-14d%n", "OrderHistory summaries", summaryBytes / 1e6, summaryBytes / customerCount);
+        OrderHistory history = customers.get(0).getOrderHistory();
+        double pageAll = nanosPerOp(() -> {
+            int cursor = OrderHistory.FIRST_PAGE;
+            do {
+                OrderHistory.Page page = history.page(cursor, 20);
+                blackhole += page.getSummaries().size();
+                cursor = page.getNextCursor();
+            } while (cursor >= 0);
+        });
+        double newest = nanosPerOp(() -> blackhole += history.mostRecent().getPizzas().size());
+        System.out.printf("Paging a whole history: %.0f ns, newest order: %.1f ns%n", pageAll, newest);
+    }
+
+    /*Repeating a delivery order with 3 toppings per pizza: rebuilding every pizza the way the console flow does
+    (new pizza, each topping, then add it to the order, repricing the order each time) versus OrderSession.reorder,
+    which copies the pizzas, checks availability and prices the order once. Each run opens a new session*/
+    private static void benchmarkReorder(int[] pizzaCounts) throws InterruptedException {
+        System.out.println("\n=== Reorder a past order (us per order) ===");
+        System.out.printf("%-8s | %-15s | %-15s | %-15s%n", "Pizzas", "Manual rebuild", "Reorder", "Same total");
+        Map<String, Customer> customers = new HashMap<>();
+        Customer customer = new Customer("BENCH", "Bench", "Colombo", "0770000000", "bench@example.com");
+        customers.put(customer.getCustID(), customer);
+        OrderIntakeEngine engine = new OrderIntakeEngine(customers, new ArrayList<>(), new HashMap<>(), new OrderRepository());
+        for (int count : pizzaCounts) {
+            Order past = new Order("PAST", customer, "DELIVERY", Money.ofRupees(200));
+            for (Pizza pizza : samplePizzas(count, 3)) {
+                past.addPizza(pizza);
+            }
+            long[] totals = new long[2];
+            double manual = nanosPerOp(() -> {
+                OrderSession session = engine.openSession("BENCH");
+                for (Pizza pizza : past.getPizzas()) {
+                    Pizza rebuilt = new Pizza(pizza.getName(), pizza.getCrust(), pizza.getSauce(), pizza.getBasePriceCents());
+                    for (Topping topping : pizza.getToppings()) {
+                        rebuilt.addTopping(topping);
+                    }
+                    session.addPizza(rebuilt);
+                }
+                session.setDeliveryZone(1);
+                totals[0] = session.getOrder().getTotalCents();
+            });
+            double reorder = nanosPerOp(() -> {
+                OrderSession session = engine.openSession("BENCH");
+                session.reorder(past);
+                totals[1] = session.getOrder().getTotalCents();
+            });
+            System.out.printf("%-8d | %-15.2f | %-15.2f | %-15s%n", count, manual / 1000, reorder / 1000, totals[0] == totals[1]);
+        }
+        engine.shutdown();
+    }
+
+    /*Reserving and releasing the ingredients of a Ham pizza (crust, sauce, 2 toppings) from 1-64 threads at once,
+    all contending for the same Ham counter: Inventory's compare-and-set counters versus one lock around a map of
+    stock levels, the usual first implementation. A second table spreads the threads over 6 different pizzas*/
+    private static void benchmarkInventory() throws InterruptedException {
+        MenuCatalog menu = sampleMenu();
+        Pizza[] pizzas = samplePizzas(menu, 6, 2);
+        Inventory inventory = new Inventory();
+        LockedInventory locked = new LockedInventory();
+        for (MenuCatalog.Category category : MenuCatalog.Category.values()) {
+            List<? extends Customization> options = category == MenuCatalog.Category.CRUST ? menu.crusts()
+                : category == MenuCatalog.Category.SAUCE ? menu.sauces() : menu.toppings();
+            for (Customization option : options) {
+                inventory.setStock(option, 1_000_000_000L);
+                locked.stock.put(option.getId(), 1_000_000_000L);
+            }
+        }
+        for (boolean spread : new boolean[] {false, true}) {
+            System.out.println("\n=== Inventory reserve + release, " + (spread ? "6 different pizzas" : "one popular pizza") + " (ops/s) ===");
+            System.out.printf("%-8s | %-14s | %-14s%n", "Threads", "Global lock", "CAS counters");
+            for (int threads : THREAD_COUNTS) {
+                Runnable lockedOp = () -> {
+                    Pizza pizza = pizzas[spread ? ThreadLocalRandom.current().nextInt(pizzas.length) : 0];
+                    if (locked.reserve(pizza)) {
+                        locked.release(pizza);
+                    }
+                };
+                Runnable casOp = () -> {
+                    Pizza pizza = pizzas[spread ? ThreadLocalRandom.current().nextInt(pizzas.length) : 0];
+                    if (inventory.reserve(pizza)) {
+                        inventory.release(pizza);
+                    }
+                };
+                System.out.printf("%-8d | %-14.0f | %-14.0f%n", threads, throughput(threads, lockedOp), throughput(threads, casOp));
+            }
+        }
+    }
+
+    // Stock levels in a map behind one lock, for comparison with Inventory
+    private static class LockedInventory {
+        final Map<Integer, Long> stock = new HashMap<>();
+
+        synchronized boolean reserve(Pizza pizza) {
+            int[] toppings = pizza.getToppingIds();
+            if (stock.get(pizza.getCrustId()) < 1 || stock.get(pizza.getSauceId()) < 1) {
+                return false;
+            }
+            for (int id : toppings) {
+                if (stock.get(id) < 1) {
+                    return false;
+                }
+            }
+            stock.merge(pizza.getCrustId(), -1L, Long::sum);
+            stock.merge(pizza.getSauceId(), -1L, Long::sum);
+            for (int id : toppings) {
+                stock.merge(id, -1L, Long::sum);
+            }
+            return true;
+        }
+
+        synchronized void release(Pizza pizza) {
+            stock.merge(pizza.getCrustId(), 1L, Long::sum);
+            stock.merge(pizza.getSauceId(), 1L, Long::sum);
+            for (int id : pizza.getToppingIds()) {
+                stock.merge(id, 1L, Long::sum);
+            }
+        }
+    }
+
+    /*Order intake on 4 threads (5 pizzas of 3 toppings each, priced as Order does) with and without a thread
+    reloading the menu file every reloadMillis ms, alternating every topping between LKR 100 and LKR 200.
+    Reports intake throughput and latency, and counts orders whose total matches neither menu, i.e. orders
+    priced partly on one version and partly on the next (should be 0)*/
+    private static void benchmarkMenuReload(long reloadMillis) throws Exception {
+        System.out.println("\n=== Order intake during menu reloads (4 threads, reload every " + reloadMillis + " ms) ===");
+        System.out.printf("%-16s | %-12s | %-10s | %-10s | %-10s | %-8s | %-12s%n",
+            "Reloads", "Orders/s", "p50 us", "p99.9 us", "Max us", "Menus", "Mixed menus");
+        MenuCatalog installed = MenuCatalog.shared();
+        Path file = Files.createTempFile("menu", ".txt");
+        try {
+            writeBenchMenu(file, 100);
+            MenuCatalog.install(MenuCatalog.load(file, null));
+            MenuCatalog menu = MenuCatalog.shared();
+            Pizza[] pizzas = samplePizzas(menu, 5, 3);
+            long base = 0;
+            for (Pizza pizza : pizzas) {
+                base += pizza.getBasePriceCents();
+            }
+            long cheap = base + Money.ofRupees(100) * 15;
+            long dear = base + Money.ofRupees(200) * 15;
+            for (boolean reloading : new boolean[] {false, true}) {
+                LatencyHistogram latency = new LatencyHistogram();
+                LongAdder mixed = new LongAdder();
+                Customer customer = new Customer("BENCH", "Bench", "Colombo", "0770000000", "bench@example.com");
+                Runnable intake = () -> {
+                    long start = System.nanoTime();
+                    Order order = new Order("BENCH", customer, "PICKUP", 0);
+                    for (Pizza pizza : pizzas) {
+                        order.addPizza(new Pizza(pizza));
+                    }
+                    long total = order.getSubtotalCents();
+                    latency.record(System.nanoTime() - start);
+                    if (total != cheap && total != dear) {
+                        mixed.increment();
+                    }
+                };
+                AtomicBoolean running = new AtomicBoolean(true);
+                long[] reloads = new long[1];
+                Thread reloader = new Thread(() -> {
+                    while (running.get() && reloading) {
+                        try {
+                            Thread.sleep(reloadMillis);
+                            writeBenchMenu(file, reloads[0] % 2 == 0 ? 200 : 100);
+                            MenuCatalog.install(MenuCatalog.load(file, MenuCatalog.shared()));
+                            reloads[0]++;
+                        } catch (InterruptedException | IOException e) {
+                            return;
+                        }
+                    }
+                });
+                reloader.start();
+                double ordersPerSecond = throughput(4, intake);
+                running.set(false);
+                reloader.join();
+                System.out.printf("%-16s | %-12.0f | %-10.1f | %-10.1f | %-10.1f | %-8d | %-12d%n",
+                    reloading ? "every " + reloadMillis + " ms" : "none", ordersPerSecond,
+                    latency.valueAt(0.5) / 1e3, latency.valueAt(0.999) / 1e3, latency.getMax() / 1e3, reloads[0] + 1, mixed.sum());
+            }
+        } finally {
+            MenuCatalog.install(installed);
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // The sample menu's options as a menu file, every topping at the given price in LKR
+    private static void writeBenchMenu(Path file, int toppingRupees) throws IOException {
+        StringBuilder menu = new StringBuilder("CRUST|Thin Italian|0|thin\nSAUCE|Tomato|0\n");
+        for (Topping topping : sampleMenu().toppings()) {
+            menu.append("TOPPING|").append(topping.getName()).append('|').append(toppingRupees).append('\n');
+        }
+        Path written = Files.write(file.resolveSibling(file.getFileName() + ".tmp"), menu.toString().getBytes(StandardCharsets.UTF_8));
+        Files.move(written, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /*Custom pizzas of 0-6 toppings picked in random order from a 3-crust, 3-sauce, 12-topping menu, held as
+    topping lists (ListPizza, the layout Pizza had before) versus topping bitsets: bytes allocated to build each pizza
+    (what it retains, as building makes no garbage beyond a rare extra-portion array), then one pass over
+    all pizzas comparing each with its neighbour, grouping them by recipe and counting topping popularity.
+    A list comparison has to sort both lists, as the same toppings picked in another order make the same pizza*/
+    private static void benchmarkSignatures(int count) {
+        MenuCatalog.Builder builder = new MenuCatalog.Builder();
+        for (int i = 0; i < 3; i++) {
+            builder.crust("Crust " + i, Money.ofRupees(50 * i), "thin");
+            builder.sauce("Sauce " + i, Money.ofRupees(30 * i));
+        }
+        for (int i = 0; i < 12; i++) {
+            builder.topping("Topping " + i, Money.ofRupees(100 + 10 * i));
+        }
+        MenuCatalog menu = builder.build();
+        Random random = new Random(42);
+        int[][] recipes = new int[count][];
+        for (int i = 0; i < count; i++) {
+            int[] recipe = new int[2 + random.nextInt(7)];
+            recipe[0] = random.nextInt(3);
+            recipe[1] = random.nextInt(3);
+            for (int t = 2; t < recipe.length; t++) {
+                recipe[t] = random.nextInt(12);
+            }
+            recipes[i] = recipe;
+        }
+
+        System.out.println("\n=== Pizza signatures (" + count + " pizzas, 0-6 toppings) ===");
+        List<ListPizza> listPizzas = new ArrayList<>(count);
+        List<Pizza> pizzas = new ArrayList<>(count);
+        long allocated = allocatedBytes();
+        for (int[] recipe : recipes) {
+            ListPizza pizza = new ListPizza("Custom", menu.crusts().get(recipe[0]), menu.sauces().get(recipe[1]), Money.ofRupees(1000));
+            for (int t = 2; t < recipe.length; t++) {
+                pizza.toppings.add(menu.toppings().get(recipe[t]));
+            }
+            listPizzas.add(pizza);
+        }
+        long listBytes = allocatedBytes() - allocated;
+        allocated = allocatedBytes();
+        for (int[] recipe : recipes) {
+            Pizza pizza = new Pizza("Custom", menu.crusts().get(recipe[0]), menu.sauces().get(recipe[1]), Money.ofRupees(1000));
+            for (int t = 2; t < recipe.length; t++) {
+                pizza.addTopping(menu.toppings().get(recipe[t]));
+            }
+            pizzas.add(pizza);
+        }
+        long maskBytes = allocatedBytes() - allocated;
+
+        int[] listResults = new int[3];
+        int[] maskResults = new int[3];
+        double listEquals = nanosPerOp(() -> {
+            int same = 0;
+            for (int i = 1; i < count; i++) {
+                if (listPizzas.get(i).sameRecipe(listPizzas.get(i - 1))) {
+                    same++;
+                }
+            }
+            listResults[0] = same;
+        });
+        double maskEquals = nanosPerOp(() -> {
+            int same = 0;
+            for (int i = 1; i < count; i++) {
+                if (pizzas.get(i).sameRecipe(pizzas.get(i - 1))) {
+                    same++;
+                }
+            }
+            maskResults[0] = same;
+        });
+        double listGroup = nanosPerOp(() -> {
+            Map<List<Object>, Integer> groups = new HashMap<>();
+            for (ListPizza pizza : listPizzas) {
+                groups.merge(pizza.recipeKey(), 1, Integer::sum);
+            }
+            listResults[1] = groups.size();
+        });
+        double maskGroup = nanosPerOp(() -> maskResults[1] = PizzaSignature.group(pizzas).size());
+        Topping popular = menu.toppings().get(0);
+        double listPopularity = nanosPerOp(() -> {
+            Map<Topping, Integer> counts = new HashMap<>();
+            for (ListPizza pizza : listPizzas) {
+                for (Topping topping : new HashSet<>(pizza.toppings)) {
+                    counts.merge(topping, 1, Integer::sum);
+                }
+            }
+            listResults[2] = counts.getOrDefault(popular, 0);
+        });
+        double maskPopularity = nanosPerOp(() -> maskResults[2] = PizzaSignature.toppingPopularity(pizzas)[popular.getId()]);
+
+        System.out.printf("%-22s | %-14s | %-14s | %-10s%n", "Operation", "Topping lists", "Bitsets", "Same result");
+        System.out.printf("%-22s | %-14d | %-14d | %-10s%n", "Bytes/pizza", listBytes / count, maskBytes / count, "-");
+        System.out.printf("%-22s | %-14.2f | %-14.2f | %-10s%n", "Equality pass (ms)", listEquals / 1e6, maskEquals / 1e6, listResults[0] == maskResults[0]);
+        System.out.printf("%-22s | %-14.2f | %-14.2f | %-10s%n", "Grouping pass (ms)", listGroup / 1e6, maskGroup / 1e6, listResults[1] == maskResults[1]);
+        System.out.printf("%-22s | %-14.2f | %-14.2f | %-10s%n", "Popularity pass (ms)", listPopularity / 1e6, maskPopularity / 1e6, listResults[2] == maskResults[2]);
+        System.out.println("Distinct recipes: " + maskResults[1]);
+    }
+
+    /*Allocation rate of taking orders, each with two plain predefined pizzas, one predefined pizza with an extra
+    topping and one pizza built with 3 toppings. Before: a new PizzaBuilder per pizza, checking availability as each
+    topping is added. After: one reused builder checking once, and predefined lines referencing shared templates.
+    The order itself (its pizza list, tracker and state) is allocated on both sides; the last row is that share alone*/
+    private static void benchmarkTemplates(int orderCount) {
+        MenuCatalog installed = MenuCatalog.shared();
+        MenuCatalog menu = sampleMenu();
+        MenuCatalog.install(menu);
+        Crust crust = menu.crusts().get(0);
+        Sauce sauce = menu.sauces().get(0);
+        List<Topping> toppings = menu.toppings();
+        Pizza cheese = new Pizza("Cheese Blast", crust, sauce, Money.ofRupees(1200)).freeze();
+        Pizza pepperoni = new Pizza("Pepperoni Supreme", crust, sauce, Money.ofRupees(1500)).freeze();
+        Customer customer = new Customer("BENCH", "Bench", "Colombo", "0770000000", "bench@example.com");
+        PizzaBuilder reused = new PizzaBuilder("Custom");
+        long[] totals = new long[3];
+
+        IntConsumer empty = i -> totals[2] += new Order("B", customer, "PICKUP", 0).getSubtotalCents();
+        IntConsumer before = i -> {
+            Order order = new Order("B", customer, "PICKUP", 0);
+            order.addPizza(cheese);
+            order.addPizza(pepperoni);
+            Pizza extra = new Pizza(pepperoni);
+            extra.addTopping(toppings.get(i % toppings.size()));
+            order.addPizza(extra);
+            PerToppingBuilder builder = new PerToppingBuilder("Custom", crust, sauce);
+            for (int t = 0; t < 3; t++) {
+                builder.addTopping(toppings.get((i + t) % toppings.size()).getId());
+            }
+            order.addPizza(builder.build());
+            totals[0] += order.getSubtotalCents();
+        };
+        IntConsumer after = i -> {
+            Order order = new Order("B", customer, "PICKUP", 0);
+            order.addPizza(cheese);
+            order.addPizza(pepperoni);
+            Pizza extra = new Pizza(pepperoni);
+            extra.addTopping(toppings.get(i % toppings.size()));
+            order.addPizza(extra);
+            reused.reset("Custom").setCrust(crust).setSauce(sauce);
+            for (int t = 0; t < 3; t++) {
+                reused.addTopping(toppings.get((i + t) % toppings.size()));
+            }
+            order.addPizza(reused.build());
+            totals[1] += order.getSubtotalCents();
+        };
+
+        System.out.println("\n=== Predefined templates and builder reuse (" + orderCount + " orders, 4 pizzas each) ===");
+        System.out.printf("%-28s | %-16s | %-14s | %-12s%n", "Path", "MB per 1M orders", "Bytes/order", "ns/order");
+        String[] names = {"Before (builder per pizza)", "After (templates, reused)", "Empty order, for reference"};
+        IntConsumer[] paths = {before, after, empty};
+        for (int p = 0; p < paths.length; p++) {
+            IntConsumer path = paths[p];
+            for (int i = 0; i < orderCount / 10; i++) { // warm-up
+                path.accept(i);
+            }
+            totals[p] = 0;
+            long start = System.nanoTime();
+            long bytes = allocatedBytes();
+            for (int i = 0; i < orderCount; i++) {
+                path.accept(i);
+            }
+            bytes = allocatedBytes() - bytes;
+            long nanos = System.nanoTime() - start;
+            System.out.printf("%-28s | %-16.1f | %-14d | %-12.1f%n", names[p],
+                    bytes * (1_000_000.0 / orderCount) / (1 << 20), bytes / orderCount, nanos / (double) orderCount);
+        }
+        System.out.println("Same totals: " + (totals[0] == totals[1]));
+        MenuCatalog.install(installed);
+    }
+
+    // PizzaBuilder as it was before builders were reusable: a builder per pizza, each topping checked as it is added
+    private static class PerToppingBuilder {
+        private final String name;
+        private final int crustId;
+        private final int sauceId;
+        private int[] toppingIds = new int[4];
+        private int toppingCount;
+
+        PerToppingBuilder(String name, Crust crust, Sauce sauce) {
+            this.name = name;
+            this.crustId = crust.getId();
+            this.sauceId = sauce.getId();
+        }
+
+        void addTopping(int toppingId) {
+            if (toppingCount == toppingIds.length) {
+                toppingIds = Arrays.copyOf(toppingIds, toppingCount * 2);
+            }
+            toppingIds[toppingCount++] = toppingId;
+        }
+
+        Pizza build() {
+            Pizza pizza = new Pizza(name, crustId, sauceId, Money.ofRupees(1000));
+            for (int i = 0; i < toppingCount; i++) {
+                pizza.addTopping(toppingIds[i]);
+            }
+            return pizza;
+        }
+    }
+
+    // A pizza laid out as Pizza was before topping bitsets: option references and a list of toppings
+    private static class ListPizza {
+        private static final Comparator<Topping> BY_ID = Comparator.comparingInt(Topping::getId);
+        final String name;
+        final Crust crust;
+        final Sauce sauce;
+        final long basePriceCents;
+        final List<Topping> toppings = new ArrayList<>();
+        boolean isCustom = true;
+        long cachedTotalCents;
+        volatile long cachedPriceVersion = -1;
+
+        ListPizza(String name, Crust crust, Sauce sauce, long basePriceCents) {
+            this.name = name;
+            this.crust = crust;
+            this.sauce = sauce;
+            this.basePriceCents = basePriceCents;
+        }
+
+        boolean sameRecipe(ListPizza other) {
+            if (crust != other.crust || sauce != other.sauce || toppings.size() != other.toppings.size()) {
+                return false;
+            }
+            List<Topping> mine = new ArrayList<>(toppings);
+            List<Topping> theirs = new ArrayList<>(other.toppings);
+            mine.sort(BY_ID);
+            theirs.sort(BY_ID);
+            return mine.equals(theirs);
+        }
+
+        List<Object> recipeKey() {
+            List<Object> key = new ArrayList<>(toppings.size() + 2);
+            key.add(crust);
+            key.add(sauce);
+            List<Topping> sorted = new ArrayList<>(toppings);
+            sorted.sort(BY_ID);
+            key.addAll(sorted);
+            return key;
+        }
+    }
+
+    private static final MenuCatalog HISTORY_MENU = sampleMenu();
+
+    private static Order sampleOrder(String orderId, Customer customer) {
+        Order order = new Order(orderId, customer, "PICKUP", 0);
+        for (Pizza pizza : samplePizzas(HISTORY_MENU, 3, 2)) {
+            order.addPizza(pizza);
+        }
+        return order;
+    }
+
+    static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    // Runs perThread operations on each of the given number of threads and returns aggregate operations per second
+    private static double runOps(int threads, int perThread, IndexedOperation operation) throws InterruptedException {
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int thread = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    operation.run(thread, i);
+                }
+            });
+            workers[t].start();
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        return (long) threads * perThread / ((System.nanoTime() - begin) / 1e9);
+    }
+
+    private interface IndexedOperation {
+        void run(int thread, int index);
+    }
+
+    // Contended throughput of order ID generation across 1-64 threads
+    private static void benchmarkOrderIds() throws InterruptedException {
+        System.out.println("\n=== Order ID generation (ops/s) ===");
+        System.out.printf("%-8s | %-15s | %-15s | %-15s%n", "Threads", "Synchronized", "Atomic", "Snowflake");
+        for (int threads : THREAD_COUNTS) {
+            SynchronizedIdGenerator legacy = new SynchronizedIdGenerator();
+            AtomicOrderIdGenerator atomic = new AtomicOrderIdGenerator("ORD", 1000);
+            SnowflakeOrderIdGenerator snowflake = new SnowflakeOrderIdGenerator("ORD", 1);
+            System.out.printf("%-8d | %-15.0f | %-15.0f | %-15.0f%n", threads,
+                throughput(threads, legacy::nextId),
+                throughput(threads, atomic::nextId),
+                throughput(threads, snowflake::nextId));
+        }
+    }
+
+    /*Evaluating every active promotion against a 4-pizza delivery order for a Gold customer: the compiled rule engine
+    versus checking each promotion the old way (LocalDate.now() per validity check, then the percentage); checks the
+    engine's indexed search against trying every promotion, before and after an edit*/
+    private static void benchmarkPromotions(int[] promotionCounts) {
+        System.out.println("\n=== Promotion evaluation per order ===");
+        System.out.printf("%-10s | %-14s | %-14s | %-10s | %-12s%n", "Promotions", "Per-check ns", "Engine ns", "Engine B/op", "Discount");
+        Customer customer = new Customer("BENCH", "Bench", "Colombo", "0770000000", "bench@example.com");
+        customer.setLoyaltyPoints(600);
+        Order order = new Order("BENCH", customer, "DELIVERY", Money.ofRupees(200));
+        for (Pizza pizza : samplePizzas(4, 2)) {
+            order.addPizza(pizza);
+        }
+        long amount = order.getSubtotalCents() + order.getDeliveryChargeCents();
+        List<Boolean> agreements = new ArrayList<>();
+        for (int count : promotionCounts) {
+            List<Promotion> promotions = samplePromotions(count, 42);
+            PromotionEngine engine = new PromotionEngine(promotions);
+            double perCheck = nanosPerOp(() -> {
+                long best = 0;
+                for (Promotion promotion : promotions) {
+                    LocalDate now = LocalDate.now();
+                    if (promotion.isActive() && !now.isBefore(promotion.getStartDate()) && !now.isAfter(promotion.getEndDate())) {
+                        best = Math.max(best, promotion.discountOn(amount));
+                    }
+                }
+                blackhole += best;
+            });
+            Runnable evaluate = () -> blackhole += engine.bestDiscount(order, null, amount);
+            double compiled = nanosPerOp(evaluate);
+            System.out.printf("%-10d | %-14.0f | %-14.0f | %-10.1f | %-12s%n", count, perCheck, compiled,
+                bytesPerOp(evaluate, 10_000), Money.format(engine.bestDiscount(order, null, amount)));
+            agreements.add(engine.bestDiscount(order, null, amount) == bruteForceDiscount(promotions, order, amount));
+            List<Promotion> applied = engine.appliedTo(order, null, amount);
+            long winning = applied.isEmpty() ? 0 : applied.get(0).discountOn(amount);
+            for (Promotion promotion : promotions) {
+                if (!promotion.isStackable() && promotion.discountOn(amount) >= winning) {
+                    promotion.setActive(false); // Edits must reach the index
+                }
+            }
+            agreements.add(engine.bestDiscount(order, null, amount) == bruteForceDiscount(promotions, order, amount));
+        }
+        for (int i = 0; i < agreements.size(); i++) {
+            check(agreements.get(i), promotionCounts[i / 2] + " promotions" + (i % 2 == 0 ? "" : ", winners deactivated")
+                + ": indexed discount matches evaluating every promotion");
+        }
+    }
+
+    // The discount bestDiscount should give with no promotion entered: every auto-apply promotion tried in turn
+    private static long bruteForceDiscount(List<Promotion> promotions, Order order, long amount) {
+        PromotionContext context = new PromotionContext();
+        context.load(order, amount);
+        long best = 0;
+        long stacked = 0;
+        for (Promotion promotion : promotions) {
+            if (!promotion.isAutoApply()) {
+                continue;
+            }
+            long discount = promotion.compiled().discount(context);
+            if (promotion.isStackable()) {
+                stacked += discount;
+            } else {
+                best = Math.max(best, discount);
+            }
+        }
+        return Math.min(amount, best + stacked);
+    }
+
+    /*Best-deal search over every valid promotion plus the loyalty tier discount, for 256 varied orders:
+    latency percentiles of the indexed search versus trying every promotion, checked to agree on every order*/
+    private static void benchmarkBestDeal(int[] promotionCounts) {
+        System.out.println("\n=== Best-deal search per order (us) ===");
+        System.out.printf("%-10s | %-12s | %-10s | %-10s | %-10s | %-10s | %-8s%n",
+            "Promotions", "Brute force", "Index p50", "Index p99", "Index max", "Index B/op", "Agree");
+        Random random = new Random(7);
+        Pizza[] menu = samplePizzas(16, 0);
+        Pizza[] loaded = samplePizzas(16, 4);
+        Order[] orders = new Order[256];
+        long[] amounts = new long[orders.length];
+        for (int i = 0; i < orders.length; i++) {
+            Customer customer = new Customer("BENCH" + i, "Bench", "Colombo", "0770000000", "bench@example.com");
+            customer.setLoyaltyPoints(random.nextInt(1500));
+            boolean delivery = random.nextBoolean();
+            orders[i] = new Order("BENCH" + i, customer, delivery ? "DELIVERY" : "PICKUP", delivery ? Money.ofRupees(200) : 0);
+            for (int p = 1 + random.nextInt(8); p > 0; p--) {
+                orders[i].addPizza((random.nextBoolean() ? menu : loaded)[random.nextInt(16)]);
+            }
+            amounts[i] = orders[i].getSubtotalCents() + orders[i].getDeliveryChargeCents();
+        }
+        for (int count : promotionCounts) {
+            List<Promotion> promotions = samplePromotions(count, 42);
+            PromotionEngine engine = new PromotionEngine(promotions);
+            boolean agree = true;
+            for (int i = 0; i < orders.length; i++) {
+                agree &= engine.bestDeal(orders[i], amounts[i]) == bruteForceBestDeal(promotions, orders[i], amounts[i]);
+            }
+            int[] cursor = {0};
+            double brute = nanosPerOp(() -> {
+                int i = cursor[0]++ & 255;
+                blackhole += bruteForceBestDeal(promotions, orders[i], amounts[i]);
+            });
+            Runnable search = () -> {
+                int i = cursor[0]++ & 255;
+                blackhole += engine.bestDeal(orders[i], amounts[i]);
+            };
+            nanosPerOp(search); // Warm up
+            LatencyHistogram latency = new LatencyHistogram();
+            for (int n = 0; n < 100_000; n++) {
+                long start = System.nanoTime();
+                search.run();
+                latency.record(System.nanoTime() - start);
+            }
+            System.out.printf("%-10d | %-12.1f | %-10.1f | %-10.1f | %-10.1f | %-10.1f | %-8s%n", count, brute / 1000,
+                latency.valueAt(0.5) / 1000.0, latency.valueAt(0.99) / 1000.0, latency.getMax() / 1000.0,
+                bytesPerOp(search, 10_000), agree);
+        }
+    }
+
+    // The best deal worked out the slow way: every promotion tried, with the tier discount as one more candidate
+    private static long bruteForceBestDeal(List<Promotion> promotions, Order order, long amount) {
+        PromotionContext context = new PromotionContext();
+        context.load(order, amount);
+        long best = Money.percentOf(amount,
+            Customer.LoyaltyTier.getTierFromPoints(order.getCustomer().getLoyaltyPoints()).getDiscountPercentage() * 100L);
+        long stacked = 0;
+        for (Promotion promotion : promotions) {
+            long discount = promotion.compiled().discount(context);
+            if (promotion.isStackable()) {
+                stacked += discount;
+            } else {
+                best = Math.max(best, discount);
+            }
+        }
+        return Math.min(amount, best + stacked);
+    }
+
+    /*Auto-apply promotions with a realistic mix: percentages of 1-30% behind topping, delivery and tier conditions,
+    BOGO deals, stackable extras, and about a fifth expired or not yet started*/
+    static List<Promotion> samplePromotions(int count, long seed) {
+        Random random = new Random(seed);
+        LocalDate today = LocalDate.now();
+        Customer.LoyaltyTier[] tiers = Customer.LoyaltyTier.values();
+        List<Promotion> promotions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            LocalDate start = today.plusDays(random.nextInt(10) == 0 ? 3 : -random.nextInt(30));
+            LocalDate end = today.plusDays(random.nextInt(10) == 0 ? -1 : random.nextInt(60));
+            Promotion promotion = random.nextInt(20) == 0
+                ? Promotion.bogo("BOGO" + i, "Bench BOGO " + i, start, end)
+                : new Promotion("PCT" + i, "Bench " + i, 1 + random.nextInt(30), start, end);
+            if (random.nextInt(3) == 0) {
+                promotion.setMinToppings(1 + random.nextInt(12));
+            }
+            if (random.nextInt(3) == 0) {
+                promotion.setMinAmountCents(Money.ofRupees(500L * (1 + random.nextInt(20))));
+            }
+            if (random.nextInt(4) == 0) {
+                promotion.setDeliveryType(random.nextBoolean() ? "DELIVERY" : "PICKUP");
+            }
+            if (random.nextInt(4) == 0) {
+                promotion.setMinTier(tiers[random.nextInt(tiers.length)]);
+            }
+            promotion.setStackable(random.nextInt(10) == 0);
+            promotion.setAutoApply(true);
+            promotions.add(promotion);
+        }
+        return promotions;
+    }
+
+    // Building a large order: incremental totals versus re-walking every pizza and topping on each change
+    private static void benchmarkOrderTotals() {
+        System.out.println("\n=== Order totals while building an order (us per order) ===");
+        System.out.printf("%-8s | %-15s | %-15s%n", "Pizzas", "Full recompute", "Incremental");
+        Customer customer = new Customer("BENCH", "Bench", "Colombo", "0770000000", "bench@example.com");
+        Promotion promotion = new Promotion("BENCH", "Bench", 10.0, LocalDate.now(), LocalDate.now());
+        for (int pizzaCount : new int[] {10, 100, 500}) {
+            Pizza[] pizzas = samplePizzas(pizzaCount, 5);
+            double legacy = nanosPerOp(() -> legacyBuildOrder(pizzas, promotion));
+            double incremental = nanosPerOp(() -> {
+                Order order = new Order("BENCH", customer, "PICKUP", 0);
+                for (Pizza pizza : pizzas) {
+                    order.addPizza(pizza);
+                }
+                order.setDeliveryType("DELIVERY", Money.ofRupees(200));
+                order.applyPromotion(promotion);
+                blackhole += order.getTotalCents() + order.getSubtotalCents();
+            });
+            System.out.printf("%-8d | %-15.1f | %-15.1f%n", pizzaCount, legacy / 1000, incremental / 1000);
+        }
+    }
+
+    /*Fixed-point pricing: reconciles randomized orders to the cent against a BigDecimal reference,
+    checks that re-pricing allocates nothing per line item, and compares the cached formatter with String.format*/
+    private static void benchmarkMoney(int orderCount) {
+        System.out.println("\n=== Money: reconciliation of " + orderCount + " randomized orders ===");
+        Random random = new Random(42);
+        Customer customer = new Customer("BENCH", "Bench", "Colombo", "0770000000", "bench@example.com");
+        Crust crust = Crust.create("Crust", 0, "thin");
+        Sauce sauce = Sauce.create("Sauce", 0);
+        Topping[] toppings = new Topping[16];
+        for (int i = 0; i < toppings.length; i++) {
+            toppings[i] = Topping.create("Topping " + i, 1 + random.nextInt(50000)); // Arbitrary cent prices
+        }
+        long mismatches = 0;
+        String firstMismatch = null;
+        for (int n = 0; n < orderCount; n++) {
+            Order order = new Order("BENCH", customer, "PICKUP", 0);
+            BigDecimal expected = BigDecimal.ZERO;
+            int pizzaCount = 1 + random.nextInt(8);
+            for (int p = 0; p < pizzaCount; p++) {
+                Pizza pizza = new Pizza("P", crust, sauce, 50000 + random.nextInt(300000));
+                BigDecimal pizzaPrice = BigDecimal.valueOf(pizza.getBasePriceCents(), 2);
+                int toppingCount = random.nextInt(5);
+                for (int t = 0; t < toppingCount; t++) {
+                    Topping topping = toppings[random.nextInt(toppings.length)];
+                    pizza.addTopping(topping);
+                    pizzaPrice = pizzaPrice.add(BigDecimal.valueOf(topping.getPriceCents(), 2));
+                }
+                order.addPizza(pizza);
+                expected = expected.add(pizzaPrice);
+            }
+            long delivery = Money.ofRupees(random.nextInt(4) * 300);
+            order.setDeliveryType(delivery == 0 ? "PICKUP" : "DELIVERY", delivery);
+            expected = expected.add(BigDecimal.valueOf(delivery, 2));
+            if (random.nextBoolean()) {
+                double percentage = random.nextInt(5001) / 100.0; // 0.00% - 50.00%
+                order.applyPromotion(new Promotion("P", "P", percentage, LocalDate.now(), LocalDate.now()));
+                BigDecimal discount = expected.multiply(BigDecimal.valueOf(percentage))
+                    .divide(BigDecimal.valueOf(100)).setScale(2, RoundingMode.HALF_UP);
+                expected = expected.subtract(discount);
+            }
+            long total = order.getTotalCents();
+            if (total != expected.movePointRight(2).longValueExact()
+                    || total != order.getSubtotalCents() + order.getDeliveryChargeCents() - order.getDiscountCents()) {
+                if (mismatches++ == 0) {
+                    firstMismatch = "order " + n + ": total " + Money.format(total) + ", expected " + expected.toPlainString()
+                        + " (subtotal " + Money.format(order.getSubtotalCents()) + ", delivery "
+                        + Money.format(order.getDeliveryChargeCents()) + ", discount " + Money.format(order.getDiscountCents()) + ")";
+                }
+            }
+        }
+        check(mismatches == 0, orderCount + " randomized orders reconcile to the cent with exact decimal arithmetic"
+            + (mismatches == 0 ? "" : "; " + mismatches + " do not, first " + firstMismatch));
+
+        MenuCatalog menu = sampleMenu();
+        Pizza[] pizzas = samplePizzas(menu, 100, 5);
+        Topping repriced = menu.toppings().get(0);
+        MenuCatalog[] versions = {menu, menu.withPrice(repriced, menu.priceCents(repriced) + 1)};
+        int[] next = new int[1];
+        Runnable reprice = () -> {
+            MenuCatalog version = versions[next[0]++ & 1]; // Alternating menu versions invalidates every cached pizza price
+            long sum = 0;
+            for (Pizza pizza : pizzas) {
+                sum += pizza.calculateTotalCents(version);
+            }
+            blackhole += sum;
+        };
+        double repricing = nanosPerOp(reprice);
+        System.out.printf("Re-pricing 100 pizzas: %.2f us, %.1f bytes allocated per run%n",
+            repricing / 1000, bytesPerOp(reprice, 100_000));
+
+        long[] amounts = new long[1024];
+        for (int i = 0; i < amounts.length; i++) {
+            amounts[i] = i % 2 == 0 ? Money.ofRupees(random.nextInt(5000)) : random.nextInt(10_000_000);
+        }
+        int[] cursor = new int[1];
+        double stringFormat = nanosPerOp(() -> {
+            long cents = amounts[cursor[0]++ & 1023];
+            blackhole += String.format("%.2f", cents / 100.0).length();
+        });
+        double moneyFormat = nanosPerOp(() -> {
+            long cents = amounts[cursor[0]++ & 1023];
+            blackhole += Money.format(cents).length();
+        });
+        System.out.printf("Formatting: String.format %.1f ns, Money.format %.1f ns%n", stringFormat, moneyFormat);
+        boolean formatsAgree = true;
+        for (long cents : amounts) {
+            formatsAgree &= Money.format(cents).equals(BigDecimal.valueOf(cents, 2).toPlainString());
+        }
+        check(formatsAgree, "Money.format matches the exact decimal amount");
+    }
+
+    /*An order that a check rejects after its payment was approved (card and cash, sync and async checkout):
+    the capture is voided, the order is not stored, and redeemed and earned loyalty points are back where they were*/
+    private static void checkRejectAfterPayment() throws Exception {
+        System.out.println("\n=== Checkout: rejection after an approved payment ===");
+        MenuCatalog menu = sampleMenu();
+        MenuCatalog.install(menu);
+        Pizza margherita = new Pizza("Margherita", menu.crusts().get(0), menu.sauces().get(0), Money.ofRupees(1500)).freeze();
+        Map<String, Customer> customers = new HashMap<>();
+        Customer customer = new Customer("CHECK", "Check", "Colombo", "0770000000", "check@example.com");
+        customer.getLoyaltyLedger().adjust(500);
+        customers.put(customer.getCustID(), customer);
+        OrderRepository orders = new OrderRepository();
+        OrderIntakeEngine engine = new OrderIntakeEngine(customers, Collections.singletonList(margherita), new HashMap<>(), orders);
+        engine.addValidator(new OrderValidator() {
+            @Override
+            public boolean validate(Order order) {
+                return false; // Rejects every paid order
+            }
+        });
+        PaymentStrategy[] payments = {new CashPayment("ON_PICKUP"), new CreditCardPayment("4111111111111111")};
+        for (PaymentStrategy payment : payments) {
+            for (boolean async : new boolean[] {false, true}) {
+                String name = payment.getClass().getSimpleName() + (async ? " async" : "");
+                OrderSession session = engine.openSession(customer.getCustID());
+                session.addPredefinedPizza(0);
+                session.redeemPoints(200);
+                boolean placed = async ? session.checkoutAsync(payment).get() : session.checkout(payment);
+                session.cancel();
+                Order order = session.getOrder();
+                check(!placed && order.getLastPaymentResult() != null && order.getLastPaymentResult().isApproved(),
+                    name + ": approved payment, order rejected");
+                check(!order.isPaid() && orders.findById(order.getOrderId()) == null, name + ": order neither paid nor stored");
+                check(!SettlementService.shared().recordCashCollected(order.getOrderId(), 0) && !SettlementService.shared().voidCapture(order, payment),
+                    name + ": nothing left to capture");
+                check(customer.getLoyaltyPoints() == 500 && customer.getLoyaltyLedger().getHeld() == 0, name + ": loyalty points unchanged");
+            }
+        }
+    }
+
+    // Mean bytes allocated per call on the calling thread, measured over the given number of calls after warm-up
+    static double bytesPerOp(Runnable operation, int calls) {
+        for (int i = 0; i < calls; i++) {
+            operation.run();
+        }
+        long before = allocatedBytes();
+        for (int i = 0; i < calls; i++) {
+            operation.run();
+        }
+        return (allocatedBytes() - before) / (double) calls;
+    }
+
+    /*Status updates against a deliberately slow observer (1 ms per notification):
+    time the updating thread spends on 2000 status changes, inline versus through the dispatcher*/
+    private static void benchmarkNotifications() throws InterruptedException {
+        System.out.println("\n=== Status notifications with a 1 ms observer (2000 updates over 50 orders) ===");
+        OrderObserver slow = new SlowObserver();
+        String[] statuses = {"PREPARING", "IN_OVEN", "READY_FOR_DELIVERY", "OUT_FOR_DELIVERY", "DELIVERED"};
+        long start = System.nanoTime();
+        for (int i = 0; i < 2000; i++) {
+            slow.update(statuses[i % statuses.length], "ORD" + (i % 50));
+        }
+        System.out.printf("Synchronous: updater blocked for %.1f ms%n", (System.nanoTime() - start) / 1e6);
+        for (NotificationDispatcher.BackpressurePolicy policy : NotificationDispatcher.BackpressurePolicy.values()) {
+            NotificationDispatcher dispatcher = new NotificationDispatcher(256, 32, policy, 2);
+            start = System.nanoTime();
+            for (int i = 0; i < 2000; i++) {
+                dispatcher.publish(slow, statuses[i % statuses.length], "ORD" + (i % 50));
+            }
+            double updaterMillis = (System.nanoTime() - start) / 1e6;
+            dispatcher.awaitIdle(60_000);
+            System.out.printf("%n%s: updater blocked for %.1f ms%n", policy, updaterMillis);
+            System.out.print(dispatcher.metricsReport());
+        }
+    }
+
+    // Collection count and accumulated collection time (ms) over all garbage collectors
+    static long[] gcTotals() {
+        long[] totals = new long[2];
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            totals[0] += Math.max(0, gc.getCollectionCount());
+            totals[1] += Math.max(0, gc.getCollectionTime());
+        }
+        return totals;
+    }
+
+    // Records the JVM and machine a run was made on, so results files are comparable
+    private static void printEnvironment() {
+        Runtime runtime = Runtime.getRuntime();
+        System.out.printf("# %s %s (%s), %s %s, %d cpus, max heap %d MB, GC: %s%n",
+            System.getProperty("java.vm.name"), System.getProperty("java.version"), System.getProperty("java.vendor"),
+            System.getProperty("os.name"), System.getProperty("os.arch"), runtime.availableProcessors(),
+            runtime.maxMemory() >> 20, gcNames());
+        System.out.printf("# warm-up %d ms, measurement %d ms per data point%n", WARMUP_MILLIS, MEASURE_MILLIS);
+    }
+
+    private static String gcNames() {
+        StringJoiner names = new StringJoiner(", ");
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            names.add(gc.getName());
+        }
+        return names.toString();
+    }
+
+    // Reads a comma-separated list of ints from a system property
+    static int[] intList(String property, String defaults) {
+        String[] parts = System.getProperty(property, defaults).split(",");
+        int[] values = new int[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Integer.parseInt(parts[i].trim());
+        }
+        return values;
+    }
+
+    // Bytes allocated so far by the current thread (HotSpot-specific)
+    static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+    }
+
+    // The pre-incremental pricing path: every change re-walks all pizzas and toppings, and the summary sums them again
+    private static void legacyBuildOrder(Pizza[] pizzas, Promotion promotion) {
+        long total = 0;
+        for (int added = 1; added <= pizzas.length; added++) {
+            total = legacyTotal(pizzas, added, 0, null);
+        }
+        total = legacyTotal(pizzas, pizzas.length, Money.ofRupees(200), null); // setDeliveryType
+        total = legacyTotal(pizzas, pizzas.length, Money.ofRupees(200), promotion); // applyPromotion
+        blackhole += total + legacyTotal(pizzas, pizzas.length, 0, null); // displayOrderSummary subtotal
+    }
+
+    private static long legacyTotal(Pizza[] pizzas, int count, long deliveryCharge, Promotion promotion) {
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            Pizza p = pizzas[i];
+            long pizzaTotal = p.getBasePriceCents() + p.getCrust().getPriceCents() + p.getSauce().getPriceCents();
+            for (Topping t : p.getToppings()) {
+                pizzaTotal += t.getPriceCents();
+            }
+            total += pizzaTotal;
+        }
+        total += deliveryCharge;
+        return promotion != null && promotion.isValid() ? total - promotion.discountOn(total) : total;
+    }
+
+    // Builds distinct pizzas with the given number of toppings each, from the options of a fresh sample menu
+    static Pizza[] samplePizzas(int count, int toppingsPerPizza) {
+        return samplePizzas(sampleMenu(), count, toppingsPerPizza);
+    }
+
+    // The console's default menu options
+    static MenuCatalog sampleMenu() {
+        MenuCatalog.Builder menu = new MenuCatalog.Builder();
+        menu.crust("Thin Italian", 0, "thin");
+        menu.sauce("Tomato", 0);
+        menu.topping("Pepperoni", Money.ofRupees(200));
+        menu.topping("Mushrooms", Money.ofRupees(150));
+        menu.topping("Extra Cheese", Money.ofRupees(180));
+        menu.topping("Bell Peppers", Money.ofRupees(120));
+        menu.topping("Ham", Money.ofRupees(200));
+        menu.topping("Pineapple", Money.ofRupees(150));
+        return menu.build();
+    }
+
+    static Pizza[] samplePizzas(MenuCatalog menu, int count, int toppingsPerPizza) {
+        Crust crust = menu.crusts().get(0);
+        Sauce sauce = menu.sauces().get(0);
+        List<Topping> toppings = menu.toppings();
+        Pizza[] pizzas = new Pizza[count];
+        for (int i = 0; i < count; i++) {
+            pizzas[i] = new Pizza("Pizza " + i, crust, sauce, Money.ofRupees(1000 + i));
+            for (int t = 0; t < toppingsPerPizza; t++) {
+                pizzas[i].addTopping(toppings.get((i + t) % toppings.size()));
+            }
+        }
+        return pizzas;
+    }
+
+    // Runs the operation repeatedly on the calling thread and returns the mean nanoseconds per call
+    static double nanosPerOp(Runnable operation) {
+        long deadline = System.nanoTime() + WARMUP_MILLIS * 1_000_000;
+        while (System.nanoTime() < deadline) {
+            operation.run();
+        }
+        long ops = 0;
+        long start = System.nanoTime();
+        deadline = start + MEASURE_MILLIS * 1_000_000;
+        long now;
+        do {
+            operation.run();
+            ops++;
+            now = System.nanoTime();
+        } while (now < deadline);
+        return (now - start) / (double) ops;
+    }
+
+    // Runs the operation on the given number of threads and returns aggregate operations per second
+    static double throughput(int threads, Runnable operation) throws InterruptedException {
+        runFor(threads, WARMUP_MILLIS, operation);
+        long start = System.nanoTime();
+        long ops = runFor(threads, MEASURE_MILLIS, operation);
+        return ops / ((System.nanoTime() - start) / 1e9);
+    }
+
+    private static long runFor(int threads, long millis, Runnable operation) throws InterruptedException {
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        long[] counts = new long[threads];
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            final int index = i;
+            workers[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                long n = 0;
+                while (running.get()) {
+                    operation.run();
+                    n++;
+                }
+                counts[index] = n;
+            });
+            workers[i].start();
+        }
+        start.countDown();
+        Thread.sleep(millis);
+        running.set(false);
+        long total = 0;
+        for (int i = 0; i < threads; i++) {
+            workers[i].join();
+            total += counts[i];
+        }
+        return total;
+    }
+
+    // Stand-in for an SMS/e-mail gateway that takes 1 ms per notification
+    private static class SlowObserver implements OrderObserver {
+        @Override
+        public void update(String status, String orderId) {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // Loyalty points as Customer kept them before the ledger: a monitor-guarded int and a tier scan over values()
+    private static class SynchronizedLoyaltyAccount {
+        private int loyaltyPoints;
+
+        synchronized void addLoyaltyPoints(int points) {
+            loyaltyPoints += points;
+        }
+
+        synchronized int getLoyaltyPoints() {
+            return loyaltyPoints;
+        }
+
+        Customer.LoyaltyTier getTier() {
+            int points = getLoyaltyPoints();
+            Customer.LoyaltyTier current = Customer.LoyaltyTier.BRONZE;
+            for (Customer.LoyaltyTier tier : Customer.LoyaltyTier.values()) {
+                if (points >= tier.getMinPoints()) {
+                    current = tier;
+                }
+            }
+            return current;
+        }
+    }
+
+    // The pre-generator approach (a shared counter) made thread-safe with a monitor, for comparison
+    private static class SynchronizedIdGenerator implements OrderIdGenerator {
+        private int counter = 1000;
+
+        @Override
+        public synchronized String nextId() {
+            return "ORD" + (++counter);
+        }
+    }
+}
@@ -0,0 +1,7 @@
+/*Terminal order state for orders cancelled before delivery*/
+class CancelledState implements OrderState {
+    // Cancelled state is terminal, can't move forward
+    public void next(Order order) { /* Cannot proceed from cancelled */ }
+    public void prev(Order order) { /* Cannot go back from cancelled */ }
+    public String getStatus() { return "CANCELLED"; }
+}
@@ -1,7 +1,9 @@
+import java.util.concurrent.CompletableFuture;
+
 /* This class implements the PaymentStrategy interface for cash payments.
    Supports both cash on delivery and cash on pickup payment options.
    Manages payment type tracking and confirmation.
-   Provides appropriate payment instructions based on delivery method. */
+   Records the payment instruction based on delivery method; ConsoleView shows it to the user. */
 class CashPayment implements PaymentStrategy {
     private String paymentType; // "ON_DELIVERY" or "ON_PICKUP"
     // Constructor to set the payment type
@@ -9,10 +11,13 @@ class CashPayment implements PaymentStrategy {
         this.paymentType = paymentType;
     }
 
+    public String getPaymentType() { return paymentType; }
+
     @Override
-    public void pay(double amount) {
-        // Print out the payment instruction based on the payment type
-        System.out.println("Cash payment of LKR " + String.format("%.2f", amount) + 
-            " to be collected " + (paymentType.equals("ON_DELIVERY") ? "upon delivery" : "at pickup"));
+    public CompletableFuture<PaymentResult> pay(String orderId, String paymentKey, long amountCents) {
+        // Cash is collected later, so the payment is accepted at once; record the instruction based on the payment type
+        EventLog.shared().log(EventLog.Type.PAYMENT, orderId, null, amountCents,
+            paymentType.equals("ON_DELIVERY") ? "Cash on delivery" : "Cash at pickup");
+        return CompletableFuture.completedFuture(PaymentResult.approved("CASH-" + orderId));
     }
 }
\ No newline at end of file
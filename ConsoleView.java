@@ -0,0 +1,155 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/* This class is the console presentation layer of the system.
+   Renders orders, pizzas, tracking, feedback, customers and payment confirmations for the
+   menu-driven terminal, so the domain classes never write to System.out themselves and can be
+   used concurrently by headless clients without serializing on the console stream.
+   Also provides the observer that shows status notifications for orders placed at this terminal. */
+final class ConsoleView {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm:ss");
+    private static final DateTimeFormatter ETA_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+    private static final DateTimeFormatter FEEDBACK_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm");
+
+    // Prints status notifications for the orders it is attached to
+    static final OrderObserver NOTIFICATIONS = (status, orderId) ->
+        System.out.println("Notification for Order " + orderId + ": " + status);
+
+    private ConsoleView() { }
+
+    // Displays detailed order summary including pizzas, charges, and loyalty points
+    public static void orderSummary(Order order) {
+        boolean delivery = order.getDeliveryType().equals("DELIVERY");
+        System.out.println("\n================ ORDER SUMMARY ================");
+        System.out.println("Order ID: " + order.getOrderId());
+        System.out.println("Customer: " + order.getCustomer().getName());
+        System.out.println("Delivery Type: " + order.getDeliveryType());
+        if (delivery) {
+            System.out.println("Delivery Charge: LKR " + Money.format(order.getDeliveryChargeCents()));
+        }
+
+        System.out.println("\n-------------- PIZZAS ORDERED --------------");
+        for (Pizza pizza : order.getPizzas()) {
+            pizzaDetails(pizza, order.getMenu());
+        }
+
+        System.out.println("\n----------------- CHARGES -----------------");
+        System.out.println("Subtotal: LKR " + Money.format(order.getSubtotalCents()));
+        if (delivery) {
+            System.out.println("Delivery Fee: LKR " + Money.format(order.getDeliveryChargeCents()));
+        }
+        if (order.getDiscountCents() > 0) {
+            for (String description : order.getDiscountDescriptions()) {
+                System.out.println("\nPromotion Applied: " + description);
+            }
+            System.out.println("Discount Amount: -LKR " + Money.format(order.getDiscountCents()));
+        }
+
+        System.out.println("\nTotal Amount: LKR " + Money.format(order.getTotalCents()));
+        System.out.println("Status: " + order.getStatus());
+
+        if (order.isPaid()) {
+            System.out.println("\n-------------- LOYALTY POINTS --------------");
+            int pointsEarned = (int)(Money.wholeRupees(order.getTotalCents()) / 100);
+            System.out.println("Points Earned: " + pointsEarned);
+            System.out.println("Total Points: " + order.getCustomer().getLoyaltyPoints());
+        }
+        System.out.println("============================================");
+    }
+
+    // Displays the pizza's complete information, priced on the given menu version; predefined pizzas get a simplified view
+    public static void pizzaDetails(Pizza pizza, MenuCatalog menu) {
+        if (pizza.isCustom()) {
+            System.out.println("\n=== Custom Pizza: " + pizza.getName() + " ===");
+            if (pizza.getTemplate() != null) {
+                System.out.println("Based on: " + pizza.getTemplate().getName());
+            }
+            System.out.println(pizza.getCrust().getDescription(menu.priceCents(pizza.getCrustId())));
+            System.out.println(pizza.getSauce().getDescription(menu.priceCents(pizza.getSauceId())));
+            System.out.println("Toppings:");
+            for (Topping t : pizza.getToppings()) {
+                System.out.println("- " + t.getDescription(menu.priceCents(t)));
+            }
+            System.out.println("Price: LKR " + Money.format(pizza.calculateTotalCents(menu)));
+            System.out.println("============================");
+        } else {
+            System.out.println("\n=== " + pizza.getName() + " ===");
+            System.out.println("Price: LKR " + Money.format(pizza.calculateTotalCents(menu)));
+            System.out.println("==================");
+        }
+    }
+
+    // Payment confirmation followed by the updated order summary
+    public static void paymentConfirmation(Order order) {
+        PaymentStrategy strategy = order.getPaymentStrategy();
+        String amount = Money.format(order.getTotalCents());
+        if (strategy instanceof CreditCardPayment) {
+            System.out.println("Paid LKR " + amount + " using Credit Card: " + ((CreditCardPayment) strategy).getCardNumber());
+        } else if (strategy instanceof PayPalPayment) {
+            System.out.println("Paid LKR " + amount + " using PayPal account: " + ((PayPalPayment) strategy).getEmail());
+        } else if (strategy instanceof CashPayment) {
+            boolean onDelivery = ((CashPayment) strategy).getPaymentType().equals("ON_DELIVERY");
+            System.out.println("Cash payment of LKR " + amount + " to be collected " + (onDelivery ? "upon delivery" : "at pickup"));
+        }
+        System.out.println("\nPayment successful! Here's your updated order summary:");
+        orderSummary(order);
+    }
+
+    // Displays the tracking information: current status, ETA and every status update with its time
+    public static void tracking(Order order) {
+        OrderTracker tracker = order.getTracker();
+        System.out.println("\nOrder Tracking - Order ID: " + order.getOrderId());
+        System.out.println("Current Status: " + order.getStatus());
+        if (tracker.getEstimatedDeliveryTime() != null) {
+            System.out.println("Estimated Delivery: " + tracker.getEstimatedDeliveryTime().format(ETA_FORMAT));
+        }
+        System.out.println("\nStatus Updates:");
+        long[] times = tracker.getUpdateTimes();
+        byte[] codes = tracker.getUpdateCodes();
+        ZoneId zone = ZoneId.systemDefault();
+        for (int i = 0; i < times.length; i++) {
+            String timestamp = LocalDateTime.ofInstant(Instant.ofEpochMilli(times[i]), zone).format(TIME_FORMAT);
+            System.out.println(timestamp + " - " + OrderStatus.fromCode(codes[i]).getLabel());
+        }
+    }
+
+    // Displays feedback in detailed format with full comment
+    public static void feedback(Feedback feedback) {
+        System.out.println("Order ID: " + feedback.getOrderId());
+        System.out.println("Rating: " + "*".repeat(feedback.getRating()) + " (" + feedback.getRating() + "/5)");
+        System.out.println("Comment: " + feedback.getComment());
+        System.out.println("Submitted: " + feedback.getFeedbackTime());
+    }
+
+    // Displays feedback as one table row; truncates long comments
+    public static void feedbackRow(Feedback feedback) {
+        String comment = feedback.getComment();
+        System.out.printf("%-10s | %-7s | %-20s | %-20s%n",
+            feedback.getOrderId(),
+            "*".repeat(feedback.getRating()),
+            comment.length() > 20 ? comment.substring(0, 17) + "..." : comment,
+            feedback.getFeedbackTime().format(FEEDBACK_FORMAT));
+    }
+
+    // Displays all customer information
+    public static void customerDetails(Customer customer) {
+        System.out.println("Customer ID: " + customer.getCustID());
+        System.out.println("Name: " + customer.getName());
+        System.out.println("Address: " + customer.getAddress());
+        System.out.println("Phone: " + customer.getPhone());
+        System.out.println("Email: " + customer.getEmail());
+        System.out.println("Loyalty Points: " + customer.getLoyaltyPoints());
+        OrderHistory history = customer.getOrderHistory();
+        OrderHistory.Page recent = history.page(OrderHistory.FIRST_PAGE, 5);
+        System.out.println("Orders Placed: " + history.size());
+        for (OrderSummary summary : recent.getSummaries()) {
+            System.out.println("  " + summary.getOrderId() + " | " + summary.getOrderTime().format(FEEDBACK_FORMAT)
+                + " | " + summary.getPizzaCount() + " pizza(s) | " + summary.getDeliveryType() + " | LKR " + Money.format(summary.getTotalCents()));
+        }
+        if (recent.hasMore()) {
+            System.out.println("  ... and " + (history.size() - recent.getSummaries().size()) + " earlier orders");
+        }
+    }
+}
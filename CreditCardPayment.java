@@ -1,7 +1,9 @@
+import java.util.concurrent.CompletableFuture;
+
 /* This class implements the PaymentStrategy interface for credit card payments.
-   Handles credit card payment processing and validation.
+   Charges the card asynchronously through the shared card PaymentProcessor.
    Provides secure handling of credit card information.
-   Formats payment confirmation messages for customer notification. */
+   Records each payment as an event; ConsoleView formats the confirmation message. */
 class CreditCardPayment implements PaymentStrategy {
     private String cardNumber;  // Stores the credit card number
 
@@ -9,9 +11,13 @@ class CreditCardPayment implements PaymentStrategy {
         this.cardNumber = cardNumber;
     }
 
+    public String getCardNumber() { return cardNumber; }
+
     @Override
-    public void pay(double amount) {
-        // Print out the payment confirmation with the credit card number
-        System.out.println("Paid LKR " + String.format("%.2f", amount) + " using Credit Card: " + cardNumber);
+    public CompletableFuture<PaymentResult> pay(String orderId, String paymentKey, long amountCents) {
+        // Charge through the card processor and record the outcome; the card number is never written to the event log
+        return PaymentProcessor.creditCard().charge(paymentKey, amountCents, cardNumber).whenComplete((result, error) ->
+            EventLog.shared().log(EventLog.Type.PAYMENT, orderId, null, amountCents,
+                result != null && result.isApproved() ? "Credit Card approved" : "Credit Card not approved"));
     }
 } 
\ No newline at end of file
@@ -3,20 +3,25 @@
    Manages crust-specific attributes like thickness (thin, regular, thick).
    Provides formatted description output for order display and receipt generation. */
 class Crust extends Customization {
-    private String thickness; // thin, regular, thick
+    private final String thickness; // thin, regular, thick
     /*Constructor creates a new crust option with specified properties
     * Automatically sets category to "CRUST"*/
-    public Crust(String name, double price, String thickness) {
-        super(name, price, "CRUST");
+    private Crust(String name, long priceCents, String thickness) {
+        super(name, priceCents, "CRUST");
         this.thickness = thickness;
     }
 
+    // Creates a crust option and registers it, giving it its customization ID
+    static Crust create(String name, long priceCents, String thickness) {
+        return register(new Crust(name, priceCents, thickness));
+    }
+
     public String getThickness() { return thickness; }
 
     /*Provides a formatted description of the crust option
     * Including name, thickness, and additional cost in LKR*/
     @Override
-    public String getDescription() {
-        return "Crust: " + getName() + " (" + thickness + ") (+LKR " + String.format("%.2f", getPrice()) + ")";
+    public String getDescription(long priceCents) {
+        return "Crust: " + getName() + " (" + thickness + ") (+LKR " + Money.format(priceCents) + ")";
     }
 } 
\ No newline at end of file
@@ -1,20 +1,24 @@
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 /* This class represents a Customer entity in the system. 
-   Manages customer information, order history, and loyalty points program.
+   Manages customer information, order history (as OrderHistory summaries), and loyalty points program.
    Implements the Observer pattern to receive order status updates.
-   Supports custom pizza saving functionality for repeat orders.
-   Tracks customer's loyalty points and provides methods for points redemption. */
+   Supports custom pizza saving functionality for repeat orders; saved pizzas are indexed by name.
+   Tracks customer's loyalty points in a LoyaltyLedger and provides methods for points redemption.
+   Several order-intake sessions may place orders for the same customer at once: the ledger updates
+   points without locking, and the order history guards itself. */
 class Customer implements OrderObserver {
     private String customerId;
     private String name;
     private String address;
     private String phone;
     private String email;
-    private int loyaltyPoints;
-    private List<Order> orderHistory;
-    private List<Pizza> savedCustomPizzas;
+    private final LoyaltyLedger loyalty;
+    private final OrderHistory orderHistory;
+    private final Map<String, Pizza> savedCustomPizzas; // By name, in the order they were saved; guarded by itself
 
     enum LoyaltyTier {
         BRONZE(0, "Bronze", 0),
@@ -26,6 +30,8 @@ class Customer implements OrderObserver {
         private final String name;
         private final int discountPercentage;
 
+        private static final LoyaltyTier[] TIERS = values(); // values() copies the array on every call
+
         LoyaltyTier(int minPoints, String name, int discountPercentage) {
             this.minPoints = minPoints;
             this.name = name;
@@ -36,14 +42,22 @@ class Customer implements OrderObserver {
         public String getName() { return name; }
         public int getDiscountPercentage() { return discountPercentage; }
 
+        // Whether a balance falls in this tier, i.e. no threshold has been crossed
+        public boolean covers(int points) {
+            return points >= minPoints && (ordinal() + 1 == TIERS.length || points < TIERS[ordinal() + 1].minPoints);
+        }
+        // The tier after this one, or null for the highest
+        public LoyaltyTier next() {
+            return ordinal() + 1 < TIERS.length ? TIERS[ordinal() + 1] : null;
+        }
+
         public static LoyaltyTier getTierFromPoints(int points) {
-            LoyaltyTier currentTier = BRONZE;
-            for (LoyaltyTier tier : values()) {
-                if (points >= tier.getMinPoints()) {
-                    currentTier = tier;
+            for (int i = TIERS.length - 1; i > 0; i--) {
+                if (points >= TIERS[i].minPoints) {
+                    return TIERS[i];
                 }
             }
-            return currentTier;
+            return TIERS[0];
         }
     }
 
@@ -53,37 +67,55 @@ class Customer implements OrderObserver {
         this.address = address;
         this.phone = phone;
         this.email = email;
-        this.loyaltyPoints = 0;  // Initialize loyalty points to zero for new customers
-        this.orderHistory = new ArrayList<>();  // Initialize empty order history
-        this.savedCustomPizzas = new ArrayList<>();  // Initialize empty saved pizzas list
+        this.loyalty = new LoyaltyLedger(this);  // New customers start with no loyalty points
+        this.orderHistory = new OrderHistory();  // Initialize empty order history
+        this.savedCustomPizzas = new LinkedHashMap<>();  // Initialize empty saved pizzas index
     }
 
     public void addLoyaltyPoints(int points) { // this function adds loyalty points to customer account
-        this.loyaltyPoints += points;
+        loyalty.accrue(null, points);
     }
 
-    public void addOrder(Order order) { // this function adds an order to customer's history
-        orderHistory.add(order);
-        // Add loyalty points based on order total (1 point per 100 currency units)
-        addLoyaltyPoints((int)(order.getTotalAmount() / 100));
+    // Adds an order to customer's history; points are awarded once, when its payment is approved
+    public void addOrder(Order order) {
+        orderHistory.record(order);
     }
 
-    public boolean canRedeemPoints(int points) { // this function checks if customer has enough points
-        return loyaltyPoints >= points;
+    public boolean canRedeemPoints(int points) { // this function checks if customer has enough points not held by other orders
+        return loyalty.getAvailable() >= points;
     }
     // Deducts points from customer's account if sufficient balance exists
     public void redeemPoints(int points) {
-        if (canRedeemPoints(points)) {
-            loyaltyPoints -= points;
-        }
+        loyalty.redeem(null, points);
     }
-    // Adds a custom pizzas to customer's saved pizzas list
+    // Adds a custom pizza to customer's saved pizzas; replaces an earlier one saved under the same name
     public void saveCustomPizza(Pizza pizza) {
-        savedCustomPizzas.add(pizza);
+        synchronized (savedCustomPizzas) {
+            savedCustomPizzas.put(pizza.getName(), pizza);
+        }
+    }
+    // Returns the saved pizza with the given name, or null if there is none
+    public Pizza findSavedPizza(String name) {
+        synchronized (savedCustomPizzas) {
+            return savedCustomPizzas.get(name);
+        }
+    }
+    // Returns the saved pizza made the same way as this one (see PizzaSignature), or null if there is none
+    public Pizza findSavedRecipe(Pizza pizza) {
+        synchronized (savedCustomPizzas) {
+            for (Pizza saved : savedCustomPizzas.values()) {
+                if (saved.sameRecipe(pizza)) {
+                    return saved;
+                }
+            }
+            return null;
+        }
     }
     // Returns list of customer's saved pizza
     public List<Pizza> getSavedPizzas() {
-        return savedCustomPizzas;
+        synchronized (savedCustomPizzas) {
+            return new ArrayList<>(savedCustomPizzas.values());
+        }
     }
 
     // Getters and Setters
@@ -97,24 +129,20 @@ class Customer implements OrderObserver {
     public void setPhone(String phone) { this.phone = phone; }
     public String getEmail() { return email; }
     public void setEmail(String email) { this.email = email; }
-    public int getLoyaltyPoints() { return loyaltyPoints; }
-    public void setLoyaltyPoints(int points) { this.loyaltyPoints = points; }
-    public List<Order> getOrderHistory() { return orderHistory; }
-
-    // Displays all customer information in a formatted output
-    public void showDetails() {
-        System.out.println("Customer ID: " + customerId);
-        System.out.println("Name: " + name);
-        System.out.println("Address: " + address);
-        System.out.println("Phone: " + phone);
-        System.out.println("Email: " + email);
-        System.out.println("Loyalty Points: " + loyaltyPoints);
-    }
+    public int getLoyaltyPoints() { return loyalty.getBalance(); }
+    public void setLoyaltyPoints(int points) { loyalty.adjust(points); }
+    public LoyaltyTier getTier() { return loyalty.getTier(); }
+    public LoyaltyLedger getLoyaltyLedger() { return loyalty; }
+    // Sets the balance from an unversioned journal record during recovery, without journaling it again
+    void restoreLoyaltyPoints(int points) { loyalty.restoreBalance(points); }
+    // Re-attaches a recovered order to the history without awarding points again
+    void restoreOrder(Order order) { orderHistory.record(order); }
+    public OrderHistory getOrderHistory() { return orderHistory; }
 
     // Implementation of OrderObserver interface method
-    // Receives and displays order status updates
+    // Receives order status updates and records them as notification events
     @Override
     public void update(String status, String orderId) {
-        System.out.println("Notification for Order " + orderId + ": " + status);
+        EventLog.shared().log(EventLog.Type.NOTIFICATION, orderId, customerId, 0, status);
     }
 } 
\ No newline at end of file
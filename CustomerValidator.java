@@ -0,0 +1,16 @@
+/*Concrete validator in the order validation chain (see OrderValidator)
+Rejects orders that have no customer attached*/
+class CustomerValidator extends OrderValidator {
+    @Override
+    public boolean validate(Order order) {
+        // Check if customer information is present
+        if (order.getCustomer() == null) {
+            EventLog.shared().log(EventLog.Type.REJECTED, order.getOrderId(), null, 0, "customer information missing");
+            if (OrderMetrics.ENABLED) {
+                OrderMetrics.validatorRejected(this);
+            }
+            return false;
+        }
+        return nextValidator != null ? nextValidator.validate(order) : true;
+    }
+}
@@ -1,28 +1,126 @@
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+
 /* This abstract class serves as the base for all pizza customization options.
    Provides common attributes and methods for crusts, sauces, and toppings.
    Implements price management and availability tracking for customization options.
+   Prices are held in cents (see Money). An option is immutable: its price and availability come from the installed MenuCatalog
+   snapshot, and the price it was created with only applies when no installed menu prices it. It is also unavailable while
+   the Inventory has none of it in stock.
+   Every option gets a dense integer ID from register, the factory step each subclass's create method ends with;
+   pizzas hold these IDs and resolve them with byId, which reads the registry without locking. Options are created
+   once per menu item (see MenuCatalog).
+   The registry holds options weakly: catalogs keep the options they list, and getId, which hands the ID out to a
+   pizza, the Inventory or the journal, marks the option in use so the registry keeps it for good. An option no live
+   catalog references and nothing was ever given the ID of is collected, and its ID is reused by a later option,
+   so reloading a menu whose items come and go does not grow the registry.
    Uses the Template Method pattern for consistent customization handling across different types. */
 abstract class Customization {
-    protected String name;
-    protected double price;
-    protected boolean isAvailable;
-    protected String category;
+    private static final ReferenceQueue<Customization> released = new ReferenceQueue<>(); // Slots of collected options
+    private static volatile Slot[] registry = new Slot[64]; // Indexed by ID; grown by copying
+    private static volatile int registered; // IDs below this have been assigned; written after the registry slot
+    private static int[] free = new int[16]; // IDs of collected options, reused first; guarded by the class lock
+    private static int freeCount;
+    private int id = -1; // Set by register
+    private boolean inUse; // The ID was handed out; the registry keeps the option strongly. Read without locking: use is idempotent
+    protected final String name;
+    private final long listPriceCents;
+    protected final String category;
+
+    // Registry entry: weak until the option's ID is handed out
+    private static final class Slot extends WeakReference<Customization> {
+        final int id;
+        Customization held; // Set once the option is in use
+
+        Slot(Customization option, int id) {
+            super(option, released);
+            this.id = id;
+        }
+    }
 
-    public Customization(String name, double price, String category) {
+    protected Customization(String name, long priceCents, String category) {
         this.name = name; // Name of the customization option
-        this.price = price;  // Price of this customization
-        this.isAvailable = true; // Flag indicating if this option is currently available
+        this.listPriceCents = priceCents;  // Price of this customization in cents, unless a menu prices it
         this.category = category; // Category of the customization (e.g: "topping", "crust", "sauce")
     }
 
+    // Gives a newly constructed option its ID, reusing one of a collected option if there is one; returns the option
+    static synchronized <T extends Customization> T register(T created) {
+        Customization option = created;
+        if (option.id >= 0) {
+            throw new IllegalStateException(option.name + " is already registered");
+        }
+        for (Reference<? extends Customization> collected; (collected = released.poll()) != null; ) {
+            if (freeCount == free.length) {
+                free = Arrays.copyOf(free, freeCount * 2);
+            }
+            free[freeCount++] = ((Slot) collected).id;
+        }
+        Slot[] options = registry;
+        int id;
+        if (freeCount > 0) {
+            id = free[--freeCount];
+        } else {
+            id = registered;
+            if (id == options.length) {
+                options = Arrays.copyOf(options, id * 2);
+            }
+        }
+        option.id = id;
+        options[id] = new Slot(option, id);
+        registry = options; // Publishes the slot, also when the array was not grown
+        if (id == registered) {
+            registered = id + 1;
+        }
+        return created;
+    }
+
+    // Keeps the option registered for good, as its ID is now held outside the catalogs
+    private static synchronized void use(Customization option) {
+        if (!option.inUse) {
+            registry[option.id].held = option;
+            option.inUse = true;
+        }
+    }
+
+    // The option with the given ID
+    static Customization byId(int id) {
+        Customization option = id < 0 || id >= registered ? null : registry[id].get();
+        if (option == null) {
+            throw new IllegalArgumentException("Unknown customization ID " + id);
+        }
+        return option;
+    }
+
+    // The ID, handed out: the option stays registered under it for good
+    public int getId() {
+        if (!inUse) {
+            use(this);
+        }
+        return id;
+    }
+
+    // The ID, for a catalog indexing its own arrays or a lookup; unlike getId it does not keep the option registered
+    int index() { return id; }
+
+    // Whether the ID was handed out (see getId)
+    boolean isInUse() { return inUse; }
+
     public String getName() { return name; }
-    public double getPrice() { return price; }
-    public boolean isAvailable() { return isAvailable; } // New customizations are available by default
+    public long getListPriceCents() { return listPriceCents; }
+    // Price on the installed menu
+    public long getPriceCents() { return MenuCatalog.shared().priceCents(this); }
+    // Whether the installed menu offers it and the Inventory has a portion left
+    public boolean isAvailable() { return MenuCatalog.shared().isAvailable(id) && Inventory.shared().inStock(id); }
     public String getCategory() { return category; }
-    // Setters for mutable properties (availability and price)
-    public void setAvailable(boolean available) { isAvailable = available; }
-    public void setPrice(double price) { this.price = price; }
 
-    // Abstract method to be implemented by subclasses
-    public abstract String getDescription();
-} 
\ No newline at end of file
+    // Description priced from the installed menu
+    public String getDescription() {
+        return getDescription(getPriceCents());
+    }
+
+    // Abstract method to be implemented by subclasses; priceCents is the price to show
+    public abstract String getDescription(long priceCents);
+}
@@ -0,0 +1,9 @@
+/*Final order state once the order reached the customer (or was collected)*/
+class DeliveredState implements OrderState {
+    // Delivered state is the final state, can't move forward
+    public void next(Order order) { /* Final state */ }
+    public void prev(Order order) {
+        order.setState(new OutForDeliveryState());
+    }
+    public String getStatus() { return "DELIVERED"; }
+}
@@ -0,0 +1,251 @@
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/* This class is the asynchronous structured event log of the domain model.
+   Domain classes record events (payments, paid orders, notifications, feedback) as typed fields into
+   a pre-allocated ring buffer instead of printing them. Producers claim a slot with one atomic
+   increment and fill it in place, so logging never takes a lock or allocates on the calling thread.
+   A single background writer drains published slots in batches, formats them as key=value lines and
+   writes them to the log file (pizza.log.file, default logs/events.log; "off" discards events).
+   When the buffer is full, producers wait for the writer rather than lose events.
+   Infrastructure warnings (journal, kitchen, notifications, settlement, metrics, menu reloads) are
+   recorded here as WARNING events. Problems of the log itself cannot be, so the latest one is kept
+   for the presentation layer to show (getProblem). */
+class EventLog {
+    // The kinds of events the domain model records
+    enum Type {
+        PAYMENT,       // detail = payment method, value = amount in cents
+        ORDER_PAID,    // value = order total in cents, detail = payment strategy
+        NOTIFICATION,  // detail = new status
+        FEEDBACK,      // value = rating
+        MENU_RELOADED, // value = new menu version, detail = menu file
+        STOCK,         // An option sold out or came back: value = portions left, detail = option name
+        REJECTED,      // An order failed validation: detail = reason
+        WARNING        // An infrastructure component degraded or failed: detail = what happened
+    }
+
+    private static final int MAX_BATCH = 1024;
+    private static final DateTimeFormatter SECOND_FORMAT =
+        DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss").withZone(ZoneId.systemDefault());
+    private static volatile EventLog shared;
+
+    // One reusable ring-buffer entry; published marks the sequence the fields were written for
+    private static final class Slot {
+        volatile long published = -1;
+        Type type;
+        long timeMillis;
+        String orderId;
+        String customerId;
+        long value;
+        String detail;
+    }
+
+    private final boolean enabled;
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong(); // Next sequence to hand to a producer
+    private volatile long consumed; // Every sequence below this has been written and its slot is free
+    private final Writer out;
+    private final Thread writer;
+    private volatile boolean running;
+    private volatile String problem; // Latest failure of the log itself, or null
+
+    // Creates a log writing to the given file, or a disabled log when file is null; capacity is rounded up to a power of two
+    public EventLog(Path file, int capacity) throws IOException {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.enabled = file != null;
+        this.slots = new Slot[enabled ? size : 0];
+        this.mask = size - 1;
+        for (int i = 0; i < slots.length; i++) {
+            slots[i] = new Slot();
+        }
+        if (!enabled) {
+            this.out = null;
+            this.writer = null;
+            return;
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        this.out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(file,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND), StandardCharsets.UTF_8), 1 << 16);
+        this.running = true;
+        this.writer = new Thread(this::writeLoop, "event-log");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /*The log used by the domain classes; configured by pizza.log.file and pizza.log.capacity
+    the first time it is needed*/
+    public static EventLog shared() {
+        EventLog log = shared;
+        if (log == null) {
+            synchronized (EventLog.class) {
+                log = shared;
+                if (log == null) {
+                    String file = System.getProperty("pizza.log.file", "logs/events.log");
+                    try {
+                        log = new EventLog(file.equals("off") ? null : Paths.get(file), Integer.getInteger("pizza.log.capacity", 65536));
+                    } catch (IOException e) {
+                        try {
+                            log = new EventLog(null, 0);
+                        } catch (IOException impossible) {
+                            throw new UncheckedIOException(impossible);
+                        }
+                        log.problem = "event log unavailable, events will be discarded (" + e.getMessage() + ")";
+                    }
+                    shared = log;
+                }
+            }
+        }
+        return log;
+    }
+
+    // Records one event; never blocks unless the buffer is full
+    public void log(Type type, String orderId, String customerId, long value, String detail) {
+        if (!enabled) {
+            return;
+        }
+        long sequence = claimed.getAndIncrement();
+        while (sequence - consumed >= slots.length) {
+            Thread.yield(); // Buffer full: let the writer free this slot
+        }
+        Slot slot = slots[(int) (sequence & mask)];
+        slot.type = type;
+        slot.timeMillis = System.currentTimeMillis();
+        slot.orderId = orderId;
+        slot.customerId = customerId;
+        slot.value = value;
+        slot.detail = detail;
+        slot.published = sequence; // Volatile write publishes the fields above to the writer
+    }
+
+    // Records an infrastructure warning that is not about a particular order
+    public void warning(String detail) {
+        log(Type.WARNING, null, null, 0, detail);
+    }
+
+    // The latest failure of the log itself (unavailable file, failed write or close), or null
+    public String getProblem() {
+        return problem;
+    }
+
+    // Waits until every event logged so far has been written to the file; returns false on timeout
+    public boolean flush(long timeoutMillis) {
+        if (!enabled) {
+            return true;
+        }
+        long target = claimed.get();
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (consumed < target) {
+            if (System.currentTimeMillis() > deadline || !running) {
+                return false;
+            }
+            LockSupport.parkNanos(100_000);
+        }
+        synchronized (out) {
+            try {
+                out.flush();
+            } catch (IOException e) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Writes out everything logged so far and stops the writer
+    public void close() {
+        if (!enabled || !running) {
+            return;
+        }
+        flush(10_000);
+        running = false;
+        try {
+            writer.join(1000);
+            synchronized (out) {
+                out.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            problem = "could not close event log (" + e.getMessage() + ")";
+        }
+    }
+
+    // Drains published slots in order, a batch at a time; parks briefly when there is nothing to write
+    private void writeLoop() {
+        StringBuilder line = new StringBuilder(256);
+        long cachedSecond = -1;
+        String secondText = "";
+        while (running) {
+            long sequence = consumed;
+            int written = 0;
+            try {
+                synchronized (out) {
+                    while (written < MAX_BATCH) {
+                        Slot slot = slots[(int) (sequence & mask)];
+                        if (slot.published != sequence) {
+                            break;
+                        }
+                        long second = slot.timeMillis / 1000;
+                        if (second != cachedSecond) {
+                            cachedSecond = second;
+                            secondText = SECOND_FORMAT.format(Instant.ofEpochSecond(second));
+                        }
+                        line.setLength(0);
+                        format(line, slot, secondText);
+                        slot.orderId = null; // Let the strings go before the slot is reused
+                        slot.customerId = null;
+                        slot.detail = null;
+                        out.append(line);
+                        sequence++;
+                        written++;
+                        consumed = sequence; // Frees the slot for producers
+                    }
+                    if (written == 0) {
+                        out.flush();
+                    }
+                }
+            } catch (IOException e) {
+                problem = "event log write failed (" + e.getMessage() + ")";
+            }
+            if (written == 0) {
+                LockSupport.parkNanos(1_000_000);
+            }
+        }
+    }
+
+    private static void format(StringBuilder line, Slot slot, String secondText) {
+        long millis = slot.timeMillis % 1000;
+        line.append(secondText).append('.');
+        if (millis < 100) {
+            line.append('0');
+        }
+        if (millis < 10) {
+            line.append('0');
+        }
+        line.append(millis).append(' ').append(slot.type.name());
+        if (slot.orderId != null) {
+            line.append(" order=").append(slot.orderId);
+        }
+        if (slot.customerId != null) {
+            line.append(" customer=").append(slot.customerId);
+        }
+        if (slot.type == Type.PAYMENT || slot.type == Type.ORDER_PAID) {
+            line.append(" amount=").append(Money.format(slot.value));
+        } else if (slot.type == Type.FEEDBACK) {
+            line.append(" rating=").append(slot.value);
+        }
+        if (slot.detail != null) {
+            line.append(" detail=\"").append(slot.detail).append('"');
+        }
+        line.append('\n');
+    }
+}
@@ -0,0 +1,321 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/* This class tracks the stock of crusts, sauces and toppings, in portions, by customization ID.
+   Adding a pizza to an order reserves one portion of its crust and sauce and one per topping portion,
+   all or nothing (see Order.addPizza); cancelling the order gives them back. Delivered orders keep them.
+   An option is available only while it has stock, so it drops off the menu when its last portion is
+   reserved and comes back when stock is returned or restocked, with a STOCK event logged each time.
+   Each counter is updated with a compare-and-set loop, so orders reserving the same topping never take a
+   lock. Counters sit 128 bytes apart in chunks that are allocated once and never moved, so threads
+   reserving different options do not contend on a cache line and tracking a new option never copies the
+   counters under concurrent updates.
+   Options that were never given a stock are untracked: always in stock, and reserving them costs nothing.
+   Every change is journaled (OrderJournal.recordStock) with the portions it left and a per-option version;
+   each counter packs both into one long, so a change and its version are one compare-and-set, and replay keeps
+   the newest version however concurrent reservations' records were ordered. The level the option was last
+   stocked with is journaled too: on restart, an option whose line in the stock file is unchanged carries on
+   from the journaled count, and one whose line was edited is restocked to the new level (see restore). */
+class Inventory {
+    private static final long UNTRACKED = -1; // Never a packed counter, as portions never fill their 32 bits
+    static final long MAX_PORTIONS = Integer.MAX_VALUE;
+    private static final int CHUNK_BITS = 6; // 64 options per chunk
+    private static final int STRIDE = 16; // Longs per counter: one counter per 128 bytes; the next long holds the stocked level
+    private static final int MAX_CHUNKS = 1024; // Customization IDs up to 65535
+
+    private static volatile Inventory shared = new Inventory(); // Tracks nothing until the system installs its stock
+
+    private final AtomicReferenceArray<AtomicLongArray> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+    private volatile boolean tracking; // False until a stock is set, so untracked menus skip reservation entirely
+
+    // An option's stock as of one change: what a journal record carries; immutable
+    static final class Level {
+        final Customization option;
+        final long portions;
+        final int version;
+        final long stocked; // The level it was last stocked with, by the stock file or setStock
+
+        Level(Customization option, long portions, int version, long stocked) {
+            this.option = option;
+            this.portions = portions;
+            this.version = version;
+            this.stocked = stocked;
+        }
+    }
+
+    // The inventory the system works from
+    public static Inventory shared() {
+        return shared;
+    }
+
+    public static void install(Inventory inventory) {
+        shared = inventory;
+    }
+
+    /*Reads stock levels for the options of the given menu. One option per line:
+        CRUST|<name>|<portions>   (likewise SAUCE and TOPPING)
+    Options not listed stay untracked. Blank lines and lines starting with # are ignored.
+    Throws IOException, naming the line, if the file cannot be read, parsed or names an option not on the menu*/
+    public static Inventory load(Path file, MenuCatalog menu) throws IOException {
+        Inventory inventory = new Inventory();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\|");
+                Customization option;
+                long portions;
+                try {
+                    option = menu.find(MenuCatalog.Category.valueOf(fields[0].trim().toUpperCase()), fields[1].trim());
+                    portions = Long.parseLong(fields[2].trim());
+                } catch (RuntimeException e) {
+                    throw new IOException(file + " line " + number + ": cannot read \"" + line + "\"");
+                }
+                if (option == null || portions < 0 || portions > MAX_PORTIONS) {
+                    throw new IOException(file + " line " + number + ": no such option, or stock out of range: \"" + line + "\"");
+                }
+                inventory.setStock(option, portions);
+            }
+        }
+        return inventory;
+    }
+
+    // Sets the portions in stock of an option, tracking it from now on
+    public void setStock(Customization option, long portions) {
+        if (portions > MAX_PORTIONS) {
+            throw new IllegalArgumentException("Cannot stock more than " + MAX_PORTIONS + " portions of " + option.getName());
+        }
+        int id = option.getId();
+        AtomicLongArray chunk = trackedChunk(id);
+        int slot = slot(id);
+        long stocked = Math.max(0, portions);
+        chunk.set(slot + 1, stocked);
+        while (true) {
+            long counter = chunk.get(slot);
+            long next = counter == UNTRACKED ? pack(stocked, 0) : pack(stocked, version(counter) + 1);
+            if (chunk.compareAndSet(slot, counter, next)) {
+                tracking = true;
+                changed(id, counter == UNTRACKED ? UNTRACKED : portions(counter), next, stocked);
+                return;
+            }
+        }
+    }
+
+    // Adds delivered portions to a tracked option's stock; returns false if the option is untracked
+    public boolean restock(Customization option, long portions) {
+        return add(option.getId(), portions);
+    }
+
+    // Portions of the option left, or -1 if it is untracked
+    public long getStock(Customization option) {
+        AtomicLongArray chunk = chunkFor(option.index());
+        long counter = chunk == null ? UNTRACKED : chunk.get(slot(option.index()));
+        return counter == UNTRACKED ? UNTRACKED : portions(counter);
+    }
+
+    // Whether at least one portion of the option with this customization ID is left
+    public boolean inStock(int id) {
+        AtomicLongArray chunk = chunkFor(id);
+        if (chunk == null) {
+            return true;
+        }
+        long counter = chunk.get(slot(id));
+        return counter == UNTRACKED || portions(counter) != 0;
+    }
+
+    /*Reserves the crust, sauce and every topping portion of a pizza, all or nothing
+    Returns false, reserving nothing, if any of them is out of stock*/
+    public boolean reserve(Pizza pizza) {
+        if (!tracking) {
+            return true;
+        }
+        if (!take(pizza.getCrustId())) {
+            return false;
+        }
+        if (!take(pizza.getSauceId())) {
+            add(pizza.getCrustId(), 1);
+            return false;
+        }
+        int[] toppings = pizza.getToppingIds();
+        for (int i = 0; i < toppings.length; i++) {
+            if (!take(toppings[i])) {
+                for (int j = 0; j < i; j++) {
+                    add(toppings[j], 1);
+                }
+                add(pizza.getSauceId(), 1);
+                add(pizza.getCrustId(), 1);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Gives back what reserve(pizza) took
+    public void release(Pizza pizza) {
+        if (!tracking) {
+            return;
+        }
+        add(pizza.getCrustId(), 1);
+        add(pizza.getSauceId(), 1);
+        for (int id : pizza.getToppingIds()) {
+            add(id, 1);
+        }
+    }
+
+    // Takes one portion; false if there is none left
+    private boolean take(int id) {
+        AtomicLongArray chunk = chunkFor(id);
+        if (chunk == null) {
+            return true;
+        }
+        int slot = slot(id);
+        while (true) {
+            long counter = chunk.get(slot);
+            if (counter == UNTRACKED) {
+                return true;
+            }
+            long stock = portions(counter);
+            if (stock == 0) {
+                return false;
+            }
+            long next = pack(stock - 1, version(counter) + 1);
+            if (chunk.compareAndSet(slot, counter, next)) {
+                changed(id, stock, next, chunk.get(slot + 1));
+                return true;
+            }
+        }
+    }
+
+    // Returns portions to a tracked option; false if it is untracked
+    private boolean add(int id, long portions) {
+        AtomicLongArray chunk = chunkFor(id);
+        if (chunk == null) {
+            return false;
+        }
+        int slot = slot(id);
+        while (true) {
+            long counter = chunk.get(slot);
+            if (counter == UNTRACKED) {
+                return false;
+            }
+            long stock = portions(counter);
+            long next = pack(Math.min(MAX_PORTIONS, stock + portions), version(counter) + 1);
+            if (chunk.compareAndSet(slot, counter, next)) {
+                changed(id, stock, next, chunk.get(slot + 1));
+                return true;
+            }
+        }
+    }
+
+    // ---- Recovery ----
+
+    /*Brings a tracked option to its journaled count, as of the version journaled with it. If the level it was stocked
+    with differs from the journaled one, the stock file was edited since: the option keeps the file's level,
+    journaled as a newer version. Options the stock file no longer lists stay untracked*/
+    void restore(Level level) {
+        int id = level.option.index();
+        AtomicLongArray chunk = chunkFor(id);
+        int slot = slot(id);
+        if (chunk == null || chunk.get(slot) == UNTRACKED) {
+            return;
+        }
+        long before = portions(chunk.get(slot));
+        long stocked = chunk.get(slot + 1);
+        if (stocked == level.stocked) {
+            chunk.set(slot, pack(Math.min(MAX_PORTIONS, level.portions), level.version));
+        } else {
+            chunk.set(slot, pack(stocked, level.version + 1));
+            OrderJournal.current().recordStock(id, stocked, level.version + 1, stocked);
+        }
+        stockChanged(id, before, portions(chunk.get(slot)));
+    }
+
+    // Every tracked option's stock, as journaled
+    List<Level> levels() {
+        List<Level> levels = new ArrayList<>();
+        for (int c = 0; c < MAX_CHUNKS; c++) {
+            AtomicLongArray chunk = chunks.get(c);
+            if (chunk == null) {
+                continue;
+            }
+            for (int i = 0; i < 1 << CHUNK_BITS; i++) {
+                long counter = chunk.get(i * STRIDE);
+                if (counter != UNTRACKED) {
+                    Customization option = Customization.byId((c << CHUNK_BITS) + i);
+                    levels.add(new Level(option, portions(counter), version(counter), chunk.get(i * STRIDE + 1)));
+                }
+            }
+        }
+        return levels;
+    }
+
+    // ---- Counters ----
+
+    // Portions (low 32 bits) and the version of the change that left them (high 32 bits, wrapping), in one long
+    private static long pack(long portions, int version) {
+        return ((long) version << 32) | portions;
+    }
+
+    static long portions(long counter) {
+        return counter & 0xFFFFFFFFL;
+    }
+
+    static int version(long counter) {
+        return (int) (counter >>> 32);
+    }
+
+    // Whether version a is newer than b; versions wrap, and records of one option are never 2^31 versions apart
+    static boolean newer(int a, int b) {
+        return a - b > 0;
+    }
+
+    private AtomicLongArray trackedChunk(int id) {
+        if (id >>> CHUNK_BITS >= MAX_CHUNKS) {
+            throw new IllegalArgumentException("Cannot track stock of customization ID " + id);
+        }
+        AtomicLongArray chunk = chunks.get(id >>> CHUNK_BITS);
+        if (chunk == null) {
+            AtomicLongArray created = new AtomicLongArray(STRIDE << CHUNK_BITS);
+            for (int i = 0; i < created.length(); i += STRIDE) {
+                created.set(i, UNTRACKED);
+            }
+            chunks.compareAndSet(id >>> CHUNK_BITS, null, created);
+            chunk = chunks.get(id >>> CHUNK_BITS);
+        }
+        return chunk;
+    }
+
+    private AtomicLongArray chunkFor(int id) {
+        int index = id >>> CHUNK_BITS;
+        return index < MAX_CHUNKS ? chunks.get(index) : null;
+    }
+
+    private static int slot(int id) {
+        return (id & ((1 << CHUNK_BITS) - 1)) * STRIDE;
+    }
+
+    // Journals a change and logs the option selling out or coming back into stock
+    private static void changed(int id, long before, long counter, long stocked) {
+        OrderJournal.current().recordStock(id, portions(counter), version(counter), stocked);
+        stockChanged(id, before, portions(counter));
+    }
+
+    // Logs an option selling out or coming back into stock
+    private static void stockChanged(int id, long before, long after) {
+        if ((before == 0) != (after == 0)) {
+            EventLog.shared().log(EventLog.Type.STOCK, null, null, after, Customization.byId(id).getName());
+        }
+    }
+}
@@ -0,0 +1,452 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/* This class schedules kitchen production for paid orders and drives them through the OrderState machine.
+   Prep stations and ovens are finite resources. Paid orders wait in a priority queue ordered by
+   promised deadline (pulled forward for higher loyalty tiers), with delivery orders ahead of pickups
+   on ties. A free prep station takes the most urgent order, and its prepared pizzas are staged by
+   crust type so each oven cycle bakes pizzas sharing a crust together. A part-filled batch is held back
+   for a short while when prep is still running, so more pizzas with the same crust can join it.
+   Orders advance automatically: Placed -> Preparing when prep starts, IN_OVEN with the first batch,
+   Out for Delivery (or Delivered, for pickups) once every pizza is baked, and Delivered after the drive.
+   All scheduling runs on one thread, either against the wall clock (live mode) or on a virtual clock
+   that jumps from event to event (simulation mode), so a whole day of load replays in seconds.
+   Reports throughput, queue and oven waits, lead times, late orders and resource utilization. */
+class KitchenScheduler {
+    private static final long MINUTE = 60_000L;
+    private static final long DELIVERY_PROMISE = 45 * MINUTE; // Promised time from payment to the door
+    private static final long PICKUP_PROMISE = 25 * MINUTE; // Promised time from payment to the counter
+    private static final long TIER_ALLOWANCE = 3 * MINUTE; // Priority boost per loyalty tier above Bronze
+
+    private final int prepStations;
+    private final int ovens;
+    private final int ovenCapacity; // Pizzas per oven cycle
+    private final long prepMillisPerPizza;
+    private final long bakeMillis; // Cycle time for thin and regular crusts; thick crusts take a quarter longer
+    private final long deliveryMillis;
+    private final long batchHoldMillis; // Longest a part-filled oven batch waits for more pizzas with its crust
+    private final Clock clock;
+
+    // Scheduling state; only touched on the scheduling thread
+    private final PriorityQueue<KitchenTicket> waiting = new PriorityQueue<>(KitchenTicket.URGENCY);
+    private final Map<String, ArrayDeque<KitchenTicket>> staged = new HashMap<>(); // Crust -> one entry per prepared pizza
+    private final Set<String> thickCrusts = new HashSet<>(); // Crusts that take the longer bake cycle
+    private int freePrepStations;
+    private int freeOvens;
+    private long wakeAt = Long.MAX_VALUE; // Time of the pending hold-expiry dispatch, if any
+
+    // Metrics; only touched on the scheduling thread
+    private long firstArrival = -1;
+    private long lastCompletion;
+    private long ordersCompleted;
+    private long ordersSkipped; // Cancelled or completed elsewhere before the kitchen got to them
+    private long lateOrders;
+    private long pizzasBaked;
+    private long ovenCycles;
+    private long prepBusyMillis;
+    private long ovenBusyMillis;
+    private final Samples queueWait = new Samples(); // Payment -> prep start
+    private final Samples ovenWait = new Samples(); // Prep done -> first pizza in the oven
+    private final Samples leadTime = new Samples(); // Payment -> ready
+
+    public KitchenScheduler(int prepStations, int ovens, int ovenCapacity, long prepMillisPerPizza,
+                            long bakeMillis, long deliveryMillis, long batchHoldMillis, boolean simulated) {
+        this.prepStations = prepStations;
+        this.ovens = ovens;
+        this.ovenCapacity = ovenCapacity;
+        this.prepMillisPerPizza = prepMillisPerPizza;
+        this.bakeMillis = bakeMillis;
+        this.deliveryMillis = deliveryMillis;
+        this.batchHoldMillis = batchHoldMillis;
+        this.freePrepStations = prepStations;
+        this.freeOvens = ovens;
+        this.clock = simulated ? new SimulatedClock() : new LiveClock();
+    }
+
+    /*The live scheduler configured by the pizza.kitchen.* system properties
+    (prepStations, ovens, ovenCapacity, prepSeconds, bakeSeconds, deliveryMinutes, batchHoldSeconds)*/
+    public static KitchenScheduler fromProperties() {
+        return new KitchenScheduler(
+            Integer.getInteger("pizza.kitchen.prepStations", 4),
+            Integer.getInteger("pizza.kitchen.ovens", 3),
+            Integer.getInteger("pizza.kitchen.ovenCapacity", 8),
+            Long.getLong("pizza.kitchen.prepSeconds", 60) * 1000,
+            Long.getLong("pizza.kitchen.bakeSeconds", 420) * 1000,
+            Long.getLong("pizza.kitchen.deliveryMinutes", 25) * MINUTE,
+            Long.getLong("pizza.kitchen.batchHoldSeconds", 90) * 1000,
+            false);
+    }
+
+    // Queues a paid order for production; in simulation mode it arrives at its order time
+    public void submit(Order order) {
+        if (!order.isPaid() || order.getPizzas().isEmpty()) {
+            return;
+        }
+        submit(KitchenTicket.forOrder(order, clock.isSimulated() ? KitchenTicket.epochMillis(order) : clock.now()));
+    }
+
+    /*Puts a recovered order back at the stage it had reached: orders waiting or in prep are prepared (again),
+    orders in the oven are baked again without prep, and ready orders and orders on the road get a fresh drive.
+    Unpaid and completed orders are ignored*/
+    public void resume(Order order) {
+        if (!order.isPaid() || order.getPizzas().isEmpty()) {
+            return;
+        }
+        switch (OrderStatus.fromLabel(order.getStatus())) {
+            case PAYMENT_RECEIVED:
+            case PLACED:
+            case PREPARING:
+                submit(order);
+                break;
+            case IN_OVEN: {
+                KitchenTicket ticket = KitchenTicket.forOrder(order, clock.now());
+                ticket.inOven = true; // Already reported IN_OVEN; arrive() stages it for baking
+                submit(ticket);
+                break;
+            }
+            case READY_FOR_DELIVERY:
+            case OUT_FOR_DELIVERY:
+                clock.schedule(clock.now(), () -> sendOut(order, clock.now() + deliveryMillis));
+                break;
+            default:
+                break;
+        }
+    }
+
+    // Queues a production ticket; used directly by the simulator for synthetic load
+    public void submit(KitchenTicket ticket) {
+        ticket.deadline = ticket.arrival + (ticket.delivery ? DELIVERY_PROMISE : PICKUP_PROMISE);
+        ticket.urgency = ticket.deadline - ticket.tier.ordinal() * TIER_ALLOWANCE;
+        clock.schedule(ticket.arrival, () -> arrive(ticket));
+    }
+
+    // Simulation mode: processes every queued event on the virtual clock; returns the simulated span in millis
+    public long runSimulation() {
+        if (!clock.isSimulated()) {
+            throw new IllegalStateException("runSimulation() needs a simulated scheduler");
+        }
+        ((SimulatedClock) clock).run();
+        return firstArrival < 0 ? 0 : lastCompletion - firstArrival;
+    }
+
+    // Stops the live scheduling thread; orders still in the kitchen stay in their current state
+    public void shutdown() {
+        clock.shutdown();
+    }
+
+    // ---- Event handlers (scheduling thread only) ----
+
+    private void arrive(KitchenTicket ticket) {
+        if (firstArrival < 0) {
+            firstArrival = ticket.arrival;
+        }
+        if (ticket.inOven) {
+            stage(ticket); // Resumed mid-bake: skips prep
+        } else {
+            waiting.add(ticket);
+        }
+        dispatch();
+    }
+
+    // Hands waiting work to every free prep station and oven
+    private void dispatch() {
+        while (freePrepStations > 0 && !waiting.isEmpty()) {
+            startPrep(waiting.poll());
+        }
+        while (freeOvens > 0 && !staged.isEmpty() && startBake()) {
+            // Keep filling ovens while some crust group is ready to bake
+        }
+    }
+
+    private void startPrep(KitchenTicket ticket) {
+        if (ticket.isAbandoned()) {
+            ordersSkipped++;
+            return;
+        }
+        long now = clock.now();
+        long prepTime = prepMillisPerPizza * ticket.crusts.length;
+        freePrepStations--;
+        prepBusyMillis += prepTime;
+        queueWait.add(now - ticket.arrival);
+        Order order = ticket.order;
+        if (order != null && order.getState() instanceof PlacedState) {
+            order.nextState(); // Placed -> Preparing
+        }
+        clock.schedule(now + prepTime, () -> prepDone(ticket));
+    }
+
+    private void prepDone(KitchenTicket ticket) {
+        freePrepStations++;
+        stage(ticket);
+        dispatch();
+    }
+
+    // Queues the ticket's pizzas for the oven, grouped by crust
+    private void stage(KitchenTicket ticket) {
+        ticket.preparedAt = clock.now();
+        for (int i = 0; i < ticket.crusts.length; i++) {
+            staged.computeIfAbsent(ticket.crusts[i], c -> new ArrayDeque<>()).add(ticket);
+            if (ticket.thick[i]) {
+                thickCrusts.add(ticket.crusts[i]);
+            }
+        }
+    }
+
+    /*Fills one oven with the most urgent crust group that is ready to bake: a full batch, a group whose
+    hold has expired, or any group once no prep is running. Returns false (and arranges a later dispatch)
+    if every group is still being held*/
+    private boolean startBake() {
+        long now = clock.now();
+        boolean prepRunning = freePrepStations < prepStations;
+        String crust = null;
+        long mostUrgent = Long.MAX_VALUE;
+        long nextExpiry = Long.MAX_VALUE;
+        for (Map.Entry<String, ArrayDeque<KitchenTicket>> group : staged.entrySet()) {
+            KitchenTicket oldest = group.getValue().peek();
+            long holdExpiry = oldest.preparedAt + batchHoldMillis;
+            if (group.getValue().size() < ovenCapacity && prepRunning && holdExpiry > now) {
+                nextExpiry = Math.min(nextExpiry, holdExpiry);
+            } else if (oldest.urgency < mostUrgent) {
+                mostUrgent = oldest.urgency;
+                crust = group.getKey();
+            }
+        }
+        if (crust == null) {
+            if (nextExpiry < wakeAt) {
+                wakeAt = nextExpiry;
+                clock.schedule(nextExpiry, () -> {
+                    wakeAt = Long.MAX_VALUE;
+                    dispatch();
+                });
+            }
+            return false;
+        }
+        ArrayDeque<KitchenTicket> group = staged.get(crust);
+        List<KitchenTicket> batch = new ArrayList<>(ovenCapacity);
+        while (batch.size() < ovenCapacity && !group.isEmpty()) {
+            batch.add(group.poll());
+        }
+        if (group.isEmpty()) {
+            staged.remove(crust);
+        }
+
+        long cycle = thickCrusts.contains(crust) ? bakeMillis + bakeMillis / 4 : bakeMillis;
+        freeOvens--;
+        ovenCycles++;
+        ovenBusyMillis += cycle;
+        for (KitchenTicket ticket : batch) {
+            if (!ticket.inOven) {
+                ticket.inOven = true;
+                ovenWait.add(now - ticket.preparedAt);
+                if (ticket.order != null && !ticket.isAbandoned()) {
+                    ticket.order.getTracker().updateStatus(OrderStatus.IN_OVEN);
+                }
+            }
+        }
+        clock.schedule(now + cycle, () -> bakeDone(batch));
+        return true;
+    }
+
+    private void bakeDone(List<KitchenTicket> batch) {
+        freeOvens++;
+        pizzasBaked += batch.size();
+        for (KitchenTicket ticket : batch) {
+            if (--ticket.pizzasRemaining == 0) {
+                ready(ticket);
+            }
+        }
+        dispatch();
+    }
+
+    private void ready(KitchenTicket ticket) {
+        long now = clock.now();
+        leadTime.add(now - ticket.arrival);
+        ordersCompleted++;
+        lastCompletion = Math.max(lastCompletion, now);
+        long handover = ticket.delivery ? now + deliveryMillis : now;
+        if (handover > ticket.deadline) {
+            lateOrders++;
+        }
+        Order order = ticket.order;
+        if (order == null || ticket.isAbandoned()) {
+            return;
+        }
+        if (!ticket.delivery) {
+            order.setState(new DeliveredState()); // Collected at the counter
+            return;
+        }
+        order.getTracker().updateStatus(OrderStatus.READY_FOR_DELIVERY);
+        sendOut(order, handover);
+    }
+
+    // Sends a ready order out (pickups are collected at once), delivering it at handover
+    private void sendOut(Order order, long handover) {
+        if (!"DELIVERY".equals(order.getDeliveryType())) {
+            if (!(order.getState() instanceof DeliveredState)) {
+                order.setState(new DeliveredState());
+            }
+            return;
+        }
+        if (order.getState() instanceof PreparingState) {
+            order.nextState(); // Preparing -> Out for Delivery
+        }
+        clock.schedule(handover, () -> {
+            if (order.getState() instanceof OutForDeliveryState) {
+                order.nextState(); // Out for Delivery -> Delivered
+            }
+        });
+    }
+
+    // ---- Reporting ----
+
+    // Throughput, waits and utilization so far; safe to call from any thread
+    public String report() {
+        return clock.call(this::buildReport);
+    }
+
+    private String buildReport() {
+        long span = Math.max(1, (firstArrival < 0 ? 0 : Math.max(lastCompletion, clock.now()) - firstArrival));
+        double hours = span / (double) (60 * MINUTE);
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Kitchen: %d prep stations, %d ovens x %d pizzas%n", prepStations, ovens, ovenCapacity));
+        report.append(String.format("Orders completed   : %d (%d late, %d skipped, %d queued)%n",
+            ordersCompleted, lateOrders, ordersSkipped, waiting.size()));
+        report.append(String.format("Throughput         : %.1f orders/h, %.1f pizzas/h%n",
+            ordersCompleted / hours, pizzasBaked / hours));
+        report.append(String.format("Oven cycles        : %d (%.1f pizzas per cycle)%n",
+            ovenCycles, ovenCycles == 0 ? 0.0 : pizzasBaked / (double) ovenCycles));
+        report.append(String.format("Utilization        : prep %.0f%%, ovens %.0f%%%n",
+            100.0 * prepBusyMillis / ((double) prepStations * span), 100.0 * ovenBusyMillis / ((double) ovens * span)));
+        report.append(String.format("%-18s | %-8s | %-8s | %-8s | %-8s%n", "Minutes", "Mean", "p50", "p95", "Max"));
+        appendWaits(report, "Queue wait", queueWait);
+        appendWaits(report, "Oven wait", ovenWait);
+        appendWaits(report, "Lead time", leadTime);
+        return report.toString();
+    }
+
+    private static void appendWaits(StringBuilder report, String name, Samples samples) {
+        report.append(String.format("%-18s | %-8.1f | %-8.1f | %-8.1f | %-8.1f%n", name,
+            samples.mean() / MINUTE, samples.percentile(50) / (double) MINUTE,
+            samples.percentile(95) / (double) MINUTE, samples.percentile(100) / (double) MINUTE));
+    }
+
+    // Growable list of millisecond samples; sorted only when a report asks for percentiles
+    private static class Samples {
+        private long[] values = new long[64];
+        private int count;
+        private long sum;
+
+        void add(long value) {
+            if (count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            values[count++] = value;
+            sum += value;
+        }
+
+        double mean() {
+            return count == 0 ? 0 : sum / (double) count;
+        }
+
+        long percentile(int p) {
+            if (count == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(values, count);
+            Arrays.sort(sorted);
+            return sorted[Math.max(0, (int) Math.ceil(p / 100.0 * count) - 1)];
+        }
+    }
+
+    // ---- Clocks ----
+
+    private interface Clock {
+        long now();
+        void schedule(long atMillis, Runnable action); // Runs the action on the scheduling thread at the given time
+        <T> T call(Callable<T> task); // Runs a task on the scheduling thread and waits for its result
+        boolean isSimulated();
+        void shutdown();
+    }
+
+    // Wall-clock time on a single daemon scheduling thread
+    private static class LiveClock implements Clock {
+        private final ScheduledExecutorService thread = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread t = new Thread(task, "kitchen-scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+
+        public long now() { return System.currentTimeMillis(); }
+
+        public void schedule(long atMillis, Runnable action) {
+            Runnable guarded = () -> {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    EventLog.shared().warning("kitchen scheduler error: " + e.getMessage());
+                }
+            };
+            thread.schedule(guarded, Math.max(0, atMillis - now()), TimeUnit.MILLISECONDS);
+        }
+
+        public <T> T call(Callable<T> task) {
+            try {
+                return thread.submit(task).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+
+        public boolean isSimulated() { return false; }
+        public void shutdown() { thread.shutdownNow(); }
+    }
+
+    // A simulated event; events at the same time run in the order they were scheduled
+    private static class Event {
+        final long time;
+        final long sequence;
+        final Runnable action;
+
+        Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+    }
+
+    // Virtual time that jumps straight to the next event
+    private static class SimulatedClock implements Clock {
+        private final PriorityQueue<Event> events = new PriorityQueue<>(
+            Comparator.<Event>comparingLong(e -> e.time).thenComparingLong(e -> e.sequence));
+        private long sequence;
+        private long now;
+
+        public long now() { return now; }
+
+        public void schedule(long atMillis, Runnable action) {
+            events.add(new Event(Math.max(atMillis, now), sequence++, action));
+        }
+
+        void run() {
+            while (!events.isEmpty()) {
+                Event event = events.poll();
+                now = event.time;
+                event.action.run();
+            }
+        }
+
+        public <T> T call(Callable<T> task) {
+            try {
+                return task.call();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        public boolean isSimulated() { return true; }
+        public void shutdown() { events.clear(); }
+    }
+}
@@ -0,0 +1,61 @@
+import java.util.*;
+
+/*One order's production job: its pizzas' crusts, service type, loyalty tier and timings
+Synthetic tickets (no Order) are used by the kitchen simulation*/
+class KitchenTicket {
+    // Most urgent first; delivery before pickup, then earlier payment, on equal urgency
+    static final Comparator<KitchenTicket> URGENCY = Comparator.<KitchenTicket>comparingLong(t -> t.urgency)
+        .thenComparing(t -> !t.delivery)
+        .thenComparingLong(t -> t.arrival);
+
+    final String orderId;
+    final Order order; // Null for synthetic load
+    final String[] crusts; // Crust of each pizza
+    final boolean[] thick; // Whether each pizza's crust is thick (longer bake cycle)
+    final boolean delivery;
+    final Customer.LoyaltyTier tier;
+    final long arrival; // Epoch millis the order was paid
+    long deadline; // Promised ready/delivered time
+    long urgency; // Deadline pulled forward by loyalty tier
+    long preparedAt;
+    boolean inOven;
+    int pizzasRemaining;
+
+    KitchenTicket(String orderId, Order order, String[] crusts, boolean[] thick, boolean delivery,
+                  Customer.LoyaltyTier tier, long arrival) {
+        this.orderId = orderId;
+        this.order = order;
+        this.crusts = crusts;
+        this.thick = thick;
+        this.delivery = delivery;
+        this.tier = tier;
+        this.arrival = arrival;
+        this.pizzasRemaining = crusts.length;
+    }
+
+    static KitchenTicket forOrder(Order order, long arrival) {
+        List<Pizza> pizzas = order.getPizzas();
+        String[] crusts = new String[pizzas.size()];
+        boolean[] thick = new boolean[crusts.length];
+        for (int i = 0; i < crusts.length; i++) {
+            Crust crust = pizzas.get(i).getCrust();
+            crusts[i] = crust.getName();
+            thick[i] = "thick".equals(crust.getThickness());
+        }
+        return new KitchenTicket(order.getOrderId(), order, crusts, thick, "DELIVERY".equals(order.getDeliveryType()),
+            order.getCustomer().getTier(), arrival);
+    }
+
+    static long epochMillis(Order order) {
+        return order.getOrderTime().atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    // True once the order was cancelled or completed outside the kitchen (e.g. by a manual status update)
+    boolean isAbandoned() {
+        if (order == null) {
+            return false;
+        }
+        String status = order.getStatus();
+        return status.equals(OrderStatus.CANCELLED.getLabel()) || status.equals(OrderStatus.DELIVERED.getLabel());
+    }
+}
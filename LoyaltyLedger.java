@@ -0,0 +1,249 @@
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/* This class is a customer's loyalty points ledger.
+   Every change is an append-only Transaction (accrual, hold, redemption, release, adjustment) stamped
+   with a per-customer version and the balance it left behind. The balance, the points held for
+   in-flight orders and the cached tier live in one immutable State swapped in with compare-and-set,
+   so any number of terminals can accrue and redeem for the same customer without taking a lock.
+   The tier is only looked up again when a change crosses one of its thresholds.
+   Transactions are journaled (OrderJournal.recordLoyalty); replay keeps the newest version, so records
+   written out of order by concurrent terminals still rebuild the right balance. Holds are not journaled:
+   an order that never completed has nothing to redeem after a restart.
+   The most recent pizza.loyalty.history transactions (default 100) are kept in memory for display, in a ring
+   indexed by version; versions are dense, so each transaction has its own slot until it is overwritten. */
+class LoyaltyLedger {
+    enum TransactionType { ACCRUE, HOLD, REDEEM, RELEASE, ADJUST }
+
+    private static final int HISTORY = Math.max(1, Integer.getInteger("pizza.loyalty.history", 100));
+
+    // One ledger entry; immutable
+    static final class Transaction {
+        private final TransactionType type;
+        private final String orderId; // null when not tied to an order
+        private final int points;
+        private final int balanceAfter;
+        private final long version;
+        private final long timeMillis;
+
+        Transaction(TransactionType type, String orderId, int points, int balanceAfter, long version, long timeMillis) {
+            this.type = type;
+            this.orderId = orderId;
+            this.points = points;
+            this.balanceAfter = balanceAfter;
+            this.version = version;
+            this.timeMillis = timeMillis;
+        }
+
+        public TransactionType getType() { return type; }
+        public String getOrderId() { return orderId; }
+        public int getPoints() { return points; }
+        public int getBalanceAfter() { return balanceAfter; }
+        public long getVersion() { return version; }
+        public long getTimeMillis() { return timeMillis; }
+    }
+
+    // Balance, held points and tier as of one version
+    private static final class State {
+        final int balance;
+        final int held; // Part of the balance reserved for in-flight orders
+        final long version;
+        final Customer.LoyaltyTier tier;
+
+        State(int balance, int held, long version, Customer.LoyaltyTier previous) {
+            this.balance = balance;
+            this.held = held;
+            this.version = version;
+            this.tier = previous != null && previous.covers(balance) ? previous : Customer.LoyaltyTier.getTierFromPoints(balance);
+        }
+    }
+
+    private final Customer customer;
+    private final AtomicReference<State> state = new AtomicReference<>(new State(0, 0, 0, null));
+    private final Map<String, Integer> holds = new ConcurrentHashMap<>(); // Points held, by order ID
+    private final AtomicReferenceArray<Transaction> recent = new AtomicReferenceArray<>(HISTORY); // Slot = version % HISTORY
+
+    LoyaltyLedger(Customer customer) {
+        this.customer = customer;
+    }
+
+    // Adds earned points; returns the new balance
+    public int accrue(String orderId, int points) {
+        if (points <= 0) {
+            return getBalance();
+        }
+        State current;
+        State next;
+        do {
+            current = state.get();
+            next = new State(Math.addExact(current.balance, points), current.held, current.version + 1, current.tier);
+        } while (!state.compareAndSet(current, next));
+        append(TransactionType.ACCRUE, orderId, points, next);
+        return next.balance;
+    }
+
+    // Reserves points for an order until it is paid or abandoned; false if not enough points are available
+    public boolean hold(String orderId, int points) {
+        if (points <= 0 || holds.putIfAbsent(orderId, points) != null) {
+            return false; // One hold per order
+        }
+        State current;
+        State next;
+        do {
+            current = state.get();
+            if (current.balance - current.held < points) {
+                holds.remove(orderId);
+                return false;
+            }
+            next = new State(current.balance, current.held + points, current.version + 1, current.tier);
+        } while (!state.compareAndSet(current, next));
+        append(TransactionType.HOLD, orderId, points, next);
+        return true;
+    }
+
+    // Redeems the points held for an order; returns the points redeemed, 0 if there was no hold
+    public int capture(String orderId) {
+        Integer points = holds.remove(orderId);
+        if (points == null) {
+            return 0;
+        }
+        State current;
+        State next;
+        do {
+            current = state.get();
+            next = new State(current.balance - points, current.held - points, current.version + 1, current.tier);
+        } while (!state.compareAndSet(current, next));
+        append(TransactionType.REDEEM, orderId, points, next);
+        return points;
+    }
+
+    // Gives back the points held for an order; returns the points released, 0 if there was no hold
+    public int release(String orderId) {
+        Integer points = holds.remove(orderId);
+        if (points == null) {
+            return 0;
+        }
+        State current;
+        State next;
+        do {
+            current = state.get();
+            next = new State(current.balance, current.held - points, current.version + 1, current.tier);
+        } while (!state.compareAndSet(current, next));
+        append(TransactionType.RELEASE, orderId, points, next);
+        return points;
+    }
+
+    // Redeems available points at once; false if not enough points are available
+    public boolean redeem(String orderId, int points) {
+        if (points <= 0) {
+            return false;
+        }
+        State current;
+        State next;
+        do {
+            current = state.get();
+            if (current.balance - current.held < points) {
+                return false;
+            }
+            next = new State(current.balance - points, current.held, current.version + 1, current.tier);
+        } while (!state.compareAndSet(current, next));
+        append(TransactionType.REDEEM, orderId, points, next);
+        return true;
+    }
+
+    // Undoes an order's redemption and accrual by adding points (negative to take them back); recorded as an adjustment
+    public void reverse(String orderId, int points) {
+        if (points == 0) {
+            return;
+        }
+        State current;
+        State next;
+        do {
+            current = state.get();
+            int balance = Math.max(0, Math.addExact(current.balance, points));
+            next = new State(balance, Math.min(current.held, balance), current.version + 1, current.tier);
+        } while (!state.compareAndSet(current, next));
+        append(TransactionType.ADJUST, orderId, next.balance - current.balance, next);
+    }
+
+    // Sets the balance, e.g. a manual correction; held points stay held
+    public void adjust(int balance) {
+        State current;
+        State next;
+        do {
+            current = state.get();
+            next = new State(balance, Math.min(current.held, balance), current.version + 1, current.tier);
+        } while (!state.compareAndSet(current, next));
+        append(TransactionType.ADJUST, null, balance - current.balance, next);
+    }
+
+    private void append(TransactionType type, String orderId, int points, State after) {
+        Transaction transaction = new Transaction(type, orderId, points, after.balance, after.version, System.currentTimeMillis());
+        remember(transaction);
+        OrderJournal.current().recordLoyalty(customer.getCustID(), transaction);
+    }
+
+    // Keeps a transaction unless its slot already holds a newer one
+    private void remember(Transaction transaction) {
+        int slot = (int) (transaction.getVersion() % HISTORY);
+        Transaction existing;
+        do {
+            existing = recent.get(slot);
+            if (existing != null && existing.getVersion() >= transaction.getVersion()) {
+                return;
+            }
+        } while (!recent.compareAndSet(slot, existing, transaction));
+    }
+
+    // ---- Recovery ----
+
+    // Replays a journaled transaction; the balance follows the newest version seen
+    void restore(Transaction transaction) {
+        remember(transaction);
+        State current;
+        do {
+            current = state.get();
+            if (transaction.getVersion() <= current.version) {
+                return;
+            }
+        } while (!state.compareAndSet(current, new State(transaction.getBalanceAfter(), 0, transaction.getVersion(), current.tier)));
+    }
+
+    // Sets the balance from a record without a version (customer records, older journals); ignored once versions are known
+    void restoreBalance(int balance) {
+        State current = state.get();
+        if (current.version == 0) {
+            state.compareAndSet(current, new State(balance, 0, 0, current.tier));
+        }
+    }
+
+    // ---- Queries ----
+
+    public int getBalance() { return state.get().balance; }
+    public int getHeld() { return state.get().held; }
+    public int getAvailable() {
+        State current = state.get();
+        return current.balance - current.held;
+    }
+    public Customer.LoyaltyTier getTier() { return state.get().tier; }
+    public long getVersion() { return state.get().version; }
+    public int getHeldFor(String orderId) { return holds.getOrDefault(orderId, 0); }
+
+    // The most recent transactions, oldest first
+    public List<Transaction> getRecentTransactions() {
+        List<Transaction> transactions = new ArrayList<>(HISTORY);
+        for (int i = 0; i < HISTORY; i++) {
+            Transaction transaction = recent.get(i);
+            if (transaction != null) {
+                transactions.add(transaction);
+            }
+        }
+        transactions.sort(Comparator.comparingLong(Transaction::getVersion));
+        return transactions;
+    }
+}
@@ -0,0 +1,348 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.UnaryOperator;
+
+/* This class is a read-only, versioned snapshot of the pizza options on the menu.
+   Crusts, sauces and toppings are flyweights: the Builder interns them by name within their category,
+   so every pizza with Ham references the one Ham topping, by its dense customization ID.
+   Each category is held as an array in menu order, for rendering the menu, and indexed by name in a
+   hash map, for lookups when building pizzas and replaying the journal.
+   Prices and availability belong to the snapshot, not to the options: they are arrays indexed by
+   customization ID, so changing the menu means building a new catalog from the current one (copy-on-write:
+   a Builder, withPrice or withAvailability) and installing it with one atomic swap. An order keeps the catalog
+   it was created under (see Order), so it is priced wholly by one menu version, never by a half-applied change.
+   Options a catalog does not price (ones never on an installed menu, or forgotten) cost the price they were created with
+   and are available. Options only journaled orders still use are adopted as retired (see withRetired).
+   A new version keeps a dropped option as retired only while its ID is in use (see Customization); others are
+   forgotten, so once older versions are collected the registry can reuse their IDs.
+   New menus are read from a text file by load(); see MenuReloader for reloading one while orders are taken. */
+class MenuCatalog {
+    enum Category { CRUST, SAUCE, TOPPING }
+
+    private static final AtomicLong versions = new AtomicLong(); // Every catalog built gets the next version
+    private static final AtomicReference<MenuCatalog> shared = new AtomicReference<>(new Builder().build()); // Empty until the system installs its menu
+
+    private final long version;
+    private final List<Crust> crusts; // Unmodifiable views over the category arrays
+    private final List<Sauce> sauces;
+    private final List<Topping> toppings;
+    private final List<Map<String, Customization>> byName; // One name index per category, by Category ordinal
+    private final long[] prices; // Cents by customization ID; -1 where this catalog does not price the option
+    private final boolean[] unavailable; // By customization ID; options beyond the array are available
+    private final Map<String, Customization> retired; // Options earlier versions listed, by category and name, so they keep their identity if relisted
+
+    // Collects the options of a new catalog; not thread-safe
+    static class Builder {
+        private final List<Crust> crusts = new ArrayList<>();
+        private final List<Sauce> sauces = new ArrayList<>();
+        private final List<Topping> toppings = new ArrayList<>();
+        private final List<Map<String, Customization>> byName = new ArrayList<>();
+        private final Map<String, Customization> known; // Options of the catalog this one replaces, current and retired
+        private long[] prices;
+        private boolean[] unavailable;
+
+        Builder() {
+            this(null);
+        }
+
+        /*Starts a catalog that replaces the given one: options listed under the same name keep their flyweight and ID,
+        and options no longer listed stay priced but become unavailable, so orders and saved pizzas holding them still resolve*/
+        Builder(MenuCatalog previous) {
+            for (int i = 0; i < Category.values().length; i++) {
+                byName.add(new HashMap<>());
+            }
+            if (previous == null) {
+                known = Collections.emptyMap();
+                prices = new long[0];
+                unavailable = new boolean[0];
+                return;
+            }
+            known = new HashMap<>(previous.retired);
+            for (Category category : Category.values()) {
+                for (Customization option : previous.byName.get(category.ordinal()).values()) {
+                    known.put(key(category, option.getName()), option);
+                }
+            }
+            prices = previous.prices.clone();
+            unavailable = Arrays.copyOf(previous.unavailable, prices.length);
+            for (Customization option : known.values()) {
+                unavailable[option.index()] = true; // Until listed again
+            }
+        }
+
+        // Adds a crust, or returns the crust already added under this name
+        public Crust crust(String name, long priceCents, String thickness) {
+            Customization existing = byName.get(Category.CRUST.ordinal()).get(name);
+            if (existing != null) {
+                return (Crust) existing;
+            }
+            Customization earlier = known.get(key(Category.CRUST, name));
+            Crust crust = earlier != null && Objects.equals(((Crust) earlier).getThickness(), thickness)
+                ? (Crust) earlier : Crust.create(name, priceCents, thickness);
+            return add(Category.CRUST, crusts, crust, priceCents);
+        }
+
+        // Adds a sauce, or returns the sauce already added under this name
+        public Sauce sauce(String name, long priceCents) {
+            Customization existing = byName.get(Category.SAUCE.ordinal()).get(name);
+            if (existing != null) {
+                return (Sauce) existing;
+            }
+            Customization earlier = known.get(key(Category.SAUCE, name));
+            return add(Category.SAUCE, sauces, earlier != null ? (Sauce) earlier : Sauce.create(name, priceCents), priceCents);
+        }
+
+        // Adds a topping, or returns the topping already added under this name
+        public Topping topping(String name, long priceCents) {
+            Customization existing = byName.get(Category.TOPPING.ordinal()).get(name);
+            if (existing != null) {
+                return (Topping) existing;
+            }
+            Customization earlier = known.get(key(Category.TOPPING, name));
+            return add(Category.TOPPING, toppings, earlier != null ? (Topping) earlier : Topping.create(name, priceCents), priceCents);
+        }
+
+        // Lists an added option but marks it unavailable, so it shows on the menu and cannot be ordered
+        public Builder unavailable(Customization option) {
+            unavailable[option.index()] = true;
+            return this;
+        }
+
+        private <T extends Customization> T add(Category category, List<T> list, T option, long priceCents) {
+            list.add(option);
+            byName.get(category.ordinal()).put(option.getName(), option);
+            int id = option.index();
+            if (id >= prices.length) {
+                int length = Math.max(id + 1, prices.length * 2);
+                int from = prices.length;
+                prices = Arrays.copyOf(prices, length);
+                Arrays.fill(prices, from, length, -1);
+                unavailable = Arrays.copyOf(unavailable, length);
+            }
+            prices[id] = priceCents;
+            unavailable[id] = false;
+            return option;
+        }
+
+        public MenuCatalog build() {
+            return new MenuCatalog(this);
+        }
+    }
+
+    private MenuCatalog(Builder builder) {
+        this.version = versions.incrementAndGet();
+        this.crusts = Collections.unmodifiableList(Arrays.asList(builder.crusts.toArray(new Crust[0])));
+        this.sauces = Collections.unmodifiableList(Arrays.asList(builder.sauces.toArray(new Sauce[0])));
+        this.toppings = Collections.unmodifiableList(Arrays.asList(builder.toppings.toArray(new Topping[0])));
+        List<Map<String, Customization>> indexes = new ArrayList<>();
+        for (Map<String, Customization> index : builder.byName) {
+            indexes.add(Collections.unmodifiableMap(new HashMap<>(index)));
+        }
+        this.byName = Collections.unmodifiableList(indexes);
+        this.prices = builder.prices.clone();
+        this.unavailable = builder.unavailable.clone();
+        Map<String, Customization> retired = new HashMap<>();
+        for (Map.Entry<String, Customization> entry : builder.known.entrySet()) {
+            Customization option = entry.getValue();
+            Customization listed = builder.byName.get(Category.valueOf(option.getCategory()).ordinal()).get(option.getName());
+            if (listed == option) {
+                continue;
+            }
+            if (option.isInUse()) {
+                if (listed == null) {
+                    retired.put(entry.getKey(), option);
+                }
+            } else {
+                // Nothing holds its ID: forget it, so it can be collected and the ID reused once older versions are gone
+                prices[option.index()] = -1;
+                unavailable[option.index()] = false;
+            }
+        }
+        this.retired = retired;
+    }
+
+    // A copy of base with other prices and availability, as a new version
+    private MenuCatalog(MenuCatalog base, long[] prices, boolean[] unavailable, Map<String, Customization> retired) {
+        this.version = versions.incrementAndGet();
+        this.crusts = base.crusts;
+        this.sauces = base.sauces;
+        this.toppings = base.toppings;
+        this.byName = base.byName;
+        this.retired = retired;
+        this.prices = prices;
+        this.unavailable = unavailable;
+    }
+
+    private static String key(Category category, String name) {
+        return category.ordinal() + ":" + name;
+    }
+
+    // The option's ID for this catalog's arrays; one it neither lists nor retired is kept registered, as the catalog does not hold it
+    private int idOf(Customization option) {
+        Category category = Category.valueOf(option.getCategory());
+        if (find(category, option.getName()) == option || findRetired(category, option.getName()) == option) {
+            return option.index();
+        }
+        return option.getId();
+    }
+
+    /*Reads a menu file into a catalog that replaces previous (null for the first menu). One option per line:
+        CRUST|<name>|<price>|<thickness>
+        SAUCE|<name>|<price>
+        TOPPING|<name>|<price>
+    Prices are in LKR; append |unavailable to list an option that cannot be ordered. Blank lines and lines
+    starting with # are ignored. Throws IOException, naming the line, if the file cannot be read or parsed*/
+    public static MenuCatalog load(Path file, MenuCatalog previous) throws IOException {
+        Builder builder = new Builder(previous);
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            int number = 0;
+            while ((line = reader.readLine()) != null) {
+                number++;
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\|");
+                try {
+                    Category category = Category.valueOf(fields[0].trim().toUpperCase());
+                    String name = fields[1].trim();
+                    long price = Money.parseRupees(Double.parseDouble(fields[2].trim()));
+                    int extra = 3;
+                    Customization option;
+                    switch (category) {
+                        case CRUST: option = builder.crust(name, price, fields[extra++].trim()); break;
+                        case SAUCE: option = builder.sauce(name, price); break;
+                        default: option = builder.topping(name, price); break;
+                    }
+                    if (fields.length > extra && fields[extra].trim().equalsIgnoreCase("unavailable")) {
+                        builder.unavailable(option);
+                    }
+                } catch (RuntimeException e) {
+                    throw new IOException(file + " line " + number + ": cannot read \"" + line + "\"");
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    // The catalog the system works from
+    public static MenuCatalog shared() {
+        return shared.get();
+    }
+
+    public static void install(MenuCatalog catalog) {
+        shared.set(catalog);
+    }
+
+    // Atomically installs the catalog the change derives from the installed one, retrying if another change wins; returns it
+    public static MenuCatalog update(UnaryOperator<MenuCatalog> change) {
+        return shared.updateAndGet(change);
+    }
+
+    // A new version of this catalog with the option at another price
+    public MenuCatalog withPrice(Customization option, long priceCents) {
+        int id = idOf(option);
+        long[] newPrices = Arrays.copyOf(prices, Math.max(prices.length, id + 1));
+        Arrays.fill(newPrices, prices.length, newPrices.length, -1);
+        newPrices[id] = priceCents;
+        return new MenuCatalog(this, newPrices, Arrays.copyOf(unavailable, newPrices.length), retired);
+    }
+
+    // A new version of this catalog with the option available or not
+    public MenuCatalog withAvailability(Customization option, boolean available) {
+        int id = idOf(option);
+        boolean[] newUnavailable = Arrays.copyOf(unavailable, Math.max(unavailable.length, id + 1));
+        newUnavailable[id] = !available;
+        long[] newPrices = Arrays.copyOf(prices, newUnavailable.length);
+        Arrays.fill(newPrices, prices.length, newPrices.length, -1);
+        return new MenuCatalog(this, newPrices, newUnavailable, retired);
+    }
+
+    /*A new version of this catalog that knows an option it does not list, such as one only journaled orders still use:
+    priced, unavailable and kept under its name, so a later menu that lists it again reuses the same flyweight
+    thickness only applies to crusts. Returns this catalog if it already lists or retired an option of that name*/
+    public MenuCatalog withRetired(Category category, String name, long priceCents, String thickness) {
+        if (find(category, name) != null || findRetired(category, name) != null) {
+            return this;
+        }
+        Customization option;
+        switch (category) {
+            case CRUST: option = Crust.create(name, priceCents, thickness); break;
+            case SAUCE: option = Sauce.create(name, priceCents); break;
+            default: option = Topping.create(name, priceCents); break;
+        }
+        int id = option.index();
+        long[] newPrices = Arrays.copyOf(prices, Math.max(prices.length, id + 1));
+        Arrays.fill(newPrices, prices.length, newPrices.length, -1);
+        newPrices[id] = priceCents;
+        boolean[] newUnavailable = Arrays.copyOf(unavailable, newPrices.length);
+        newUnavailable[id] = true;
+        Map<String, Customization> newRetired = new HashMap<>(retired);
+        newRetired.put(key(category, name), option);
+        return new MenuCatalog(this, newPrices, newUnavailable, newRetired);
+    }
+
+    // The option an earlier version listed under this name and this one does not, or null
+    public Customization findRetired(Category category, String name) {
+        return name == null ? null : retired.get(key(category, name));
+    }
+
+    // Installs the catalog only if expected is still the installed one; false if another menu was installed meanwhile
+    public static boolean replace(MenuCatalog expected, MenuCatalog catalog) {
+        return shared.compareAndSet(expected, catalog);
+    }
+
+    public long getVersion() { return version; }
+
+    // The option's price on this menu, in cents
+    public long priceCents(Customization option) {
+        int id = option.index();
+        if (id < prices.length && prices[id] >= 0) {
+            return prices[id];
+        }
+        return option.getListPriceCents();
+    }
+
+    // The price of the option with this customization ID on this menu, in cents
+    public long priceCents(int id) {
+        if (id < prices.length && prices[id] >= 0) {
+            return prices[id];
+        }
+        return Customization.byId(id).getListPriceCents();
+    }
+
+    // Whether the option with this customization ID can be ordered from this menu
+    public boolean isAvailable(int id) {
+        return id >= unavailable.length || !unavailable[id];
+    }
+
+    // Whether the option can be ordered from this menu
+    public boolean isAvailable(Customization option) {
+        return isAvailable(option.index());
+    }
+
+    // The option with this name in a category, or null if the menu has none
+    public Customization find(Category category, String name) {
+        return name == null ? null : byName.get(category.ordinal()).get(name);
+    }
+
+    public Crust crust(String name) { return (Crust) find(Category.CRUST, name); }
+    public Sauce sauce(String name) { return (Sauce) find(Category.SAUCE, name); }
+    public Topping topping(String name) { return (Topping) find(Category.TOPPING, name); }
+
+    // Every option of a category, in menu order
+    public List<Crust> crusts() { return crusts; }
+    public List<Sauce> sauces() { return sauces; }
+    public List<Topping> toppings() { return toppings; }
+
+    public int size() {
+        return crusts.size() + sauces.size() + toppings.size();
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*Reloads the menu file when it changes, on its own thread
+The file is read and parsed into a new catalog off the ordering threads, which keep pricing on the installed
+version until the new one is swapped in; a file that cannot be read or parsed leaves the installed menu as it is*/
+class MenuReloader {
+    private final Path file;
+    private final ScheduledExecutorService scheduler;
+    private long loadedModified; // Modification time of the file last loaded; only used on the scheduler thread
+
+    public MenuReloader(Path file) {
+        this.file = file;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "menu-reloader");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.loadedModified = modified();
+    }
+
+    // Checks the file for changes every intervalSeconds
+    public void start(long intervalSeconds) {
+        scheduler.scheduleWithFixedDelay(this::reloadIfChanged, intervalSeconds, intervalSeconds, TimeUnit.SECONDS);
+    }
+
+    // Loads and installs the file if it changed since it was last loaded; returns whether a new menu was installed
+    public boolean reloadIfChanged() {
+        long modified = modified();
+        if (modified == 0 || modified == loadedModified) {
+            return false;
+        }
+        MenuCatalog current = MenuCatalog.shared();
+        MenuCatalog loaded;
+        try {
+            loaded = MenuCatalog.load(file, current);
+        } catch (IOException e) {
+            EventLog.shared().warning("menu not reloaded, keeping version " + current.getVersion() + " (" + e.getMessage() + ")");
+            loadedModified = modified; // Not retried until the file changes again
+            return false;
+        }
+        if (!MenuCatalog.replace(current, loaded)) {
+            return false; // The menu changed while the file was read; the next check loads it on top of that change
+        }
+        loadedModified = modified;
+        EventLog.shared().log(EventLog.Type.MENU_RELOADED, null, null, loaded.getVersion(), file.toString());
+        return true;
+    }
+
+    private long modified() {
+        try {
+            return Files.getLastModifiedTime(file).toMillis();
+        } catch (IOException e) {
+            return 0; // Missing: keep the installed menu
+        }
+    }
+
+    public void stop() {
+        scheduler.shutdown();
+    }
+}
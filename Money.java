@@ -0,0 +1,66 @@
+/* This class provides the fixed-point money arithmetic used across the pricing path.
+   Amounts are plain long values in cents (1/100 LKR), so pricing never boxes or allocates
+   and sums are exact. Percentages are held as basis points (1/100 of a percent) and
+   discounts are rounded half-up to the cent.
+   Also provides a cached formatter that replaces String.format("%.2f") for display. */
+final class Money {
+    private static final int CACHED_RUPEES = 20000; // Whole-rupee amounts below this are formatted once and reused
+    private static final String[] formatCache = new String[CACHED_RUPEES];
+
+    private Money() { }
+
+    // Converts a whole-rupee amount to cents
+    public static long ofRupees(long rupees) {
+        return Math.multiplyExact(rupees, 100L);
+    }
+
+    // Converts a decimal rupee amount (e.g. from user input or a file) to cents, rounding half-up
+    public static long parseRupees(double rupees) {
+        return Math.round(rupees * 100.0);
+    }
+
+    // Whole rupees in an amount, truncated toward zero
+    public static long wholeRupees(long cents) {
+        return cents / 100;
+    }
+
+    // Converts a percentage such as 12.5 to basis points (1250)
+    public static long basisPoints(double percentage) {
+        return Math.round(percentage * 100.0);
+    }
+
+    // The given share of an amount, in cents, rounded half-up (half away from zero for negative amounts)
+    public static long percentOf(long cents, long basisPoints) {
+        long scaled = Math.multiplyExact(cents, basisPoints);
+        return scaled >= 0 ? (scaled + 5000) / 10000 : -((-scaled + 5000) / 10000);
+    }
+
+    // Formats an amount as "1234.50"; whole-rupee amounts below 20,000 LKR come from a cache
+    public static String format(long cents) {
+        if (cents >= 0 && cents % 100 == 0 && cents / 100 < CACHED_RUPEES) {
+            int rupees = (int) (cents / 100);
+            String cached = formatCache[rupees];
+            if (cached == null) {
+                cached = buildFormat(cents);
+                formatCache[rupees] = cached; // Benign race: every thread builds an identical immutable string
+            }
+            return cached;
+        }
+        return buildFormat(cents);
+    }
+
+    private static String buildFormat(long cents) {
+        boolean negative = cents < 0;
+        long abs = Math.abs(cents);
+        long fraction = abs % 100;
+        StringBuilder sb = new StringBuilder(24);
+        if (negative) {
+            sb.append('-');
+        }
+        sb.append(abs / 100).append('.');
+        if (fraction < 10) {
+            sb.append('0');
+        }
+        return sb.append(fraction).toString();
+    }
+}
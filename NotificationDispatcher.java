@@ -0,0 +1,259 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/* This class delivers order status notifications to observers asynchronously.
+   Each observer gets its own bounded queue, drained in batches by a shared pool of worker threads,
+   so a slow observer (an SMS or e-mail gateway) only delays its own notifications and never the
+   thread that changed the order status.
+   When a queue is full the backpressure policy decides what happens: drop the oldest notification,
+   coalesce to the latest status per order, or block the publisher until there is room.
+   Tracks queue depth, drops, coalescing and delivery latency for every observer.
+   A channel is evicted once its queue is drained, folding its counters into per-class totals, so observers
+   that are notified once (most customers) do not keep a queue for good. */
+class NotificationDispatcher {
+    // What publish() does when an observer's queue is full
+    enum BackpressurePolicy {
+        DROP_OLDEST, // Discard the oldest queued notification
+        COALESCE,    // When full, replace a queued notification for the same order with the newer status; else drop the oldest
+        BLOCK        // Wait until the observer's worker makes room
+    }
+
+    private static volatile NotificationDispatcher shared;
+
+    private final int queueCapacity;
+    private final int batchSize;
+    private final BackpressurePolicy policy;
+    private final ExecutorService workers;
+    private final Map<OrderObserver, Channel> channels = new ConcurrentHashMap<>();
+    private final Map<String, long[]> evictedTotals = new HashMap<>(); // Counters of evicted channels by observer class; guarded by itself
+
+    public NotificationDispatcher(int queueCapacity, int batchSize, BackpressurePolicy policy, int workerThreads) {
+        this.queueCapacity = queueCapacity;
+        this.batchSize = batchSize;
+        this.policy = policy;
+        this.workers = Executors.newFixedThreadPool(workerThreads, task -> {
+            Thread thread = new Thread(task, "order-notifications");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /*The dispatcher used by every OrderTracker; configured by the pizza.notify.* system properties
+    (queueCapacity, batchSize, policy, workers) the first time it is needed*/
+    public static NotificationDispatcher shared() {
+        NotificationDispatcher dispatcher = shared;
+        if (dispatcher == null) {
+            synchronized (NotificationDispatcher.class) {
+                dispatcher = shared;
+                if (dispatcher == null) {
+                    dispatcher = new NotificationDispatcher(
+                        Integer.getInteger("pizza.notify.queueCapacity", 1024),
+                        Integer.getInteger("pizza.notify.batchSize", 64),
+                        BackpressurePolicy.valueOf(System.getProperty("pizza.notify.policy", "COALESCE")),
+                        Integer.getInteger("pizza.notify.workers", 4));
+                    shared = dispatcher;
+                }
+            }
+        }
+        return dispatcher;
+    }
+
+    // Queues a status notification for the observer; returns immediately unless the policy is BLOCK and the queue is full
+    public void publish(OrderObserver observer, String status, String orderId) {
+        while (!channels.computeIfAbsent(observer, Channel::new).offer(status, orderId)) {
+            // The channel was evicted after draining; the next pass creates a fresh one
+        }
+    }
+
+    // Waits until every queue is empty and no batch is being delivered; returns false on timeout
+    public boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (System.currentTimeMillis() < deadline) {
+            boolean idle = true;
+            for (Channel channel : channels.values()) {
+                if (channel.scheduled.get() || channel.depth() > 0) {
+                    idle = false;
+                    break;
+                }
+            }
+            if (idle) {
+                return true;
+            }
+            Thread.sleep(1);
+        }
+        return false;
+    }
+
+    // Queue depth, drops, coalescing and delivery latency per observer class
+    public String metricsReport() {
+        Map<String, long[]> totals = new TreeMap<>(); // depth, maxDepth, delivered, dropped, coalesced, latencySum, maxLatency
+        synchronized (evictedTotals) {
+            for (Map.Entry<String, long[]> entry : evictedTotals.entrySet()) {
+                totals.put(entry.getKey(), entry.getValue().clone());
+            }
+        }
+        for (Channel channel : channels.values()) {
+            long[] t = totals.computeIfAbsent(channel.observer.getClass().getSimpleName(), k -> new long[7]);
+            t[0] += channel.depth();
+            t[1] = Math.max(t[1], channel.maxDepth.get());
+            t[2] += channel.delivered.get();
+            t[3] += channel.dropped.get();
+            t[4] += channel.coalesced.get();
+            t[5] += channel.latencyNanos.get();
+            t[6] = Math.max(t[6], channel.maxLatencyNanos.get());
+        }
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("%-20s | %-6s | %-9s | %-10s | %-8s | %-9s | %-12s | %-12s%n",
+            "Observer", "Depth", "Max depth", "Delivered", "Dropped", "Coalesced", "Mean lat ms", "Max lat ms"));
+        for (Map.Entry<String, long[]> entry : totals.entrySet()) {
+            long[] t = entry.getValue();
+            report.append(String.format("%-20s | %-6d | %-9d | %-10d | %-8d | %-9d | %-12.3f | %-12.3f%n",
+                entry.getKey(), t[0], t[1], t[2], t[3], t[4],
+                t[2] == 0 ? 0.0 : t[5] / 1e6 / t[2], t[6] / 1e6));
+        }
+        return report.toString();
+    }
+
+    // A queued notification; status may be overwritten while queued when coalescing
+    private static class Notification {
+        final String orderId;
+        String status;
+        long enqueuedNanos;
+
+        Notification(String orderId, String status) {
+            this.orderId = orderId;
+            this.status = status;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    // One observer's bounded queue; at most one worker drains it at a time, so delivery order is preserved
+    private class Channel {
+        final OrderObserver observer;
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition notFull = lock.newCondition();
+        final ArrayDeque<Notification> queue = new ArrayDeque<>();
+        final Map<String, Notification> pendingByOrder = new HashMap<>(); // Latest queued notification per order; used by COALESCE
+        boolean closed; // Evicted after draining; offers go to a new channel. Guarded by lock
+        final AtomicBoolean scheduled = new AtomicBoolean();
+        final AtomicLong maxDepth = new AtomicLong();
+        final AtomicLong delivered = new AtomicLong();
+        final AtomicLong dropped = new AtomicLong();
+        final AtomicLong coalesced = new AtomicLong();
+        final AtomicLong latencyNanos = new AtomicLong();
+        final AtomicLong maxLatencyNanos = new AtomicLong();
+
+        Channel(OrderObserver observer) {
+            this.observer = observer;
+        }
+
+        // Queues the notification; returns false, queuing nothing, if the channel has been evicted
+        boolean offer(String status, String orderId) {
+            lock.lock();
+            try {
+                if (closed) {
+                    return false;
+                }
+                if (policy == BackpressurePolicy.COALESCE && queue.size() >= queueCapacity) {
+                    Notification pending = pendingByOrder.get(orderId);
+                    if (pending != null) {
+                        pending.status = status; // A full queue only keeps the latest status of an order
+                        coalesced.incrementAndGet();
+                        return true;
+                    }
+                }
+                while (queue.size() >= queueCapacity) {
+                    if (policy == BackpressurePolicy.BLOCK) {
+                        notFull.awaitUninterruptibly();
+                    } else {
+                        Notification oldest = queue.poll();
+                        pendingByOrder.remove(oldest.orderId, oldest);
+                        dropped.incrementAndGet();
+                    }
+                }
+                Notification notification = new Notification(orderId, status);
+                queue.add(notification);
+                if (policy == BackpressurePolicy.COALESCE) {
+                    pendingByOrder.put(orderId, notification);
+                }
+                maxDepth.accumulateAndGet(queue.size(), Math::max);
+            } finally {
+                lock.unlock();
+            }
+            if (scheduled.compareAndSet(false, true)) {
+                workers.execute(this::drain);
+            }
+            return true;
+        }
+
+        int depth() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // Delivers up to one batch, then reschedules itself if more notifications arrived
+        private void drain() {
+            List<Notification> batch = new ArrayList<>(batchSize);
+            lock.lock();
+            try {
+                while (batch.size() < batchSize && !queue.isEmpty()) {
+                    Notification notification = queue.poll();
+                    pendingByOrder.remove(notification.orderId, notification);
+                    batch.add(notification);
+                }
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            for (Notification notification : batch) {
+                try {
+                    observer.update(notification.status, notification.orderId);
+                } catch (RuntimeException e) {
+                    EventLog.shared().log(EventLog.Type.WARNING, notification.orderId, null, 0,
+                        "notification to " + observer.getClass().getSimpleName() + " failed: " + e.getMessage());
+                }
+                long latency = System.nanoTime() - notification.enqueuedNanos;
+                latencyNanos.addAndGet(latency);
+                maxLatencyNanos.accumulateAndGet(latency, Math::max);
+                delivered.incrementAndGet();
+            }
+            lock.lock();
+            try {
+                closed = queue.isEmpty(); // Nothing arrived during delivery: evict, and later offers start a new channel
+            } finally {
+                lock.unlock();
+            }
+            if (closed) {
+                channels.remove(observer, this);
+                retire();
+                return;
+            }
+            scheduled.set(false);
+            if (depth() > 0 && scheduled.compareAndSet(false, true)) {
+                workers.execute(this::drain); // Yield the worker to other observers between batches
+            }
+        }
+
+        // Adds this evicted channel's counters to its observer class's totals
+        private void retire() {
+            synchronized (evictedTotals) {
+                long[] t = evictedTotals.computeIfAbsent(observer.getClass().getSimpleName(), k -> new long[7]);
+                t[1] = Math.max(t[1], maxDepth.get());
+                t[2] += delivered.get();
+                t[3] += dropped.get();
+                t[4] += coalesced.get();
+                t[5] += latencyNanos.get();
+                t[6] = Math.max(t[6], maxLatencyNanos.get());
+            }
+            scheduled.set(false);
+        }
+    }
+}
@@ -1,13 +1,17 @@
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 
 /* This class manages the order processing and tracking in the system.
    It handles order creation, payment processing, status tracking, and delivery management.
    Implements the State pattern for order status management and Observer pattern for status notifications.
-   Includes functionality for promotion application, feedback collection, and loyalty points calculation.
-   Maintains detailed order information including pizzas, pricing, delivery details, and payment status. */
+   Includes functionality for promotion application (through PromotionEngine), feedback collection, and loyalty points calculation.
+   Maintains detailed order information including pizzas, pricing, delivery details, and payment status.
+   All amounts are exact cents (see Money). Subtotal, discount and delivery components are maintained incrementally: adding a pizza costs O(1).
+   An order is priced on the MenuCatalog version installed when it was created, so a menu reload never reprices it halfway through.
+   Payments complete asynchronously and may be declined; payments and feedback are recorded as EventLog events; rendering belongs to ConsoleView. */
 class Order {
-    private static int orderCounter = 1000; // Static counter for generating unique order IDs
+    private static volatile OrderIdGenerator idGenerator = new AtomicOrderIdGenerator("ORD", 1000); // Generates unique order IDs
     // Basic order information
     private String orderId;
     private Customer customer;
@@ -15,139 +19,357 @@ class Order {
     private LocalDateTime orderTime;
     private String status;
     private String deliveryType;
-    private double totalAmount;
+    private long totalCents;
+    private long subtotalCents; // Sum of pizza prices
+    private long discountCents; // Discount from the applied promotion and redeemed loyalty points
+    private int toppingCount; // Toppings across all pizzas, kept as pizzas are added for promotion conditions
+    private long[] pizzaPrices = new long[4]; // Prices of the pizzas, ascending, kept as they are added for BOGO rewards
+    private int redeemedPoints; // Loyalty points held against this order until it is paid, 1 point = LKR 1
+    private MenuCatalog menu; // Menu version the order is priced on; replaced only by recovery
+    private boolean holdsIngredients; // Whether its pizzas' ingredients are reserved in the Inventory; guarded by this
     // Order processing related fields
     private PaymentStrategy paymentStrategy;
     private OrderTracker tracker;
     private Feedback feedback;
     private Promotion appliedPromotion;
-    private boolean isPaid;
+    private boolean bestDeal; // Priced with the best available deal instead of an entered promotion
+    private volatile boolean isPaid;
+    private PaymentResult lastPaymentResult; // Outcome of the most recent payment attempt
+    private CompletableFuture<PaymentResult> paymentInFlight; // Guarded by this
+    private int declinedPayments; // Declined checkouts so far; each one starts a new payment key. Guarded by this
+    private int earnedPoints; // Loyalty points accrued when the payment was approved, taken back if it is voided
     private OrderState state;
-    private double deliveryCharge;
+    private long deliveryChargeCents;
 
     /*Constructor initializes a new order with basic details
-    Generates unique order ID and sets initial state*/
-    public Order(String orderId, Customer customer, String deliveryType, double deliveryCharge) {
-        this.orderId = "ORD" + (++orderCounter);
+    Uses the given order ID, or generates a unique one when it is empty, and sets initial state*/
+    public Order(String orderId, Customer customer, String deliveryType, long deliveryChargeCents) {
+        this.orderId = (orderId == null || orderId.isEmpty()) ? idGenerator.nextId() : orderId;
         this.customer = customer;
         this.pizzas = new ArrayList<>();
         this.orderTime = LocalDateTime.now();
-        this.status = "PENDING_PAYMENT";
+        this.status = OrderStatus.PENDING_PAYMENT.getLabel();
         this.deliveryType = deliveryType;
-        this.deliveryCharge = deliveryCharge;
+        this.deliveryChargeCents = deliveryChargeCents;
         this.tracker = new OrderTracker(this, false);
         this.isPaid = false;
         this.state = new PlacedState();
+        this.menu = MenuCatalog.shared();
     }
 
-    /*Processes payment for the order using specified payment strategy
-    * Updates order status and awards loyalty points upon successful payment*/
-    public void processPayment(PaymentStrategy paymentStrategy) {
-        if (!isPaid) {
-            this.paymentStrategy = paymentStrategy;
-            paymentStrategy.pay(totalAmount);
+    /*Processes payment for the order using specified payment strategy and waits for the outcome
+    * Returns true if the payment was approved; see processPaymentAsync*/
+    public boolean processPayment(PaymentStrategy paymentStrategy) {
+        return processPaymentAsync(paymentStrategy).join().isApproved();
+    }
+
+    /*Starts the payment and completes with its outcome without blocking the caller
+    * Only an approved payment marks the order paid, updates its status and awards loyalty points.
+    * While a payment is in flight, further calls return the same payment instead of charging again*/
+    public synchronized CompletableFuture<PaymentResult> processPaymentAsync(PaymentStrategy paymentStrategy) {
+        if (isPaid) {
+            return CompletableFuture.completedFuture(lastPaymentResult != null ? lastPaymentResult : PaymentResult.approved(null));
+        }
+        if (paymentInFlight != null) {
+            return paymentInFlight;
+        }
+        this.paymentStrategy = paymentStrategy;
+        long started = OrderMetrics.ENABLED ? System.nanoTime() : 0;
+        CompletableFuture<PaymentResult> payment;
+        try {
+            payment = paymentStrategy.pay(orderId, paymentKey(), totalCents);
+        } catch (RuntimeException e) {
+            payment = CompletableFuture.completedFuture(PaymentResult.failed(e.getMessage()));
+        }
+        CompletableFuture<PaymentResult> outcome = payment.exceptionally(error -> PaymentResult.failed(String.valueOf(error.getMessage())))
+            .thenApply(result -> {
+                if (OrderMetrics.ENABLED) {
+                    OrderMetrics.paymentCompleted(paymentStrategy, System.nanoTime() - started);
+                }
+                paymentCompleted(paymentStrategy, result);
+                return result;
+            });
+        paymentInFlight = outcome.isDone() ? null : outcome; // Completed payments (cash, open circuit) are not in flight
+        return outcome;
+    }
+
+    /*The idempotency key of the next payment: the order ID, suffixed after each decline
+    A failed or timed-out payment may have charged, so its retry keeps the key and gets the original outcome*/
+    private String paymentKey() {
+        return declinedPayments == 0 ? orderId : orderId + "-" + declinedPayments;
+    }
+
+    // Applies the outcome of a payment; the order only becomes paid when it was approved
+    private void paymentCompleted(PaymentStrategy paymentStrategy, PaymentResult result) {
+        synchronized (this) {
+            lastPaymentResult = result;
+            paymentInFlight = null;
+            if (result.getOutcome() == PaymentResult.Outcome.DECLINED) {
+                declinedPayments++; // Nothing was charged, so the next checkout is a new payment
+            }
+            if (!result.isApproved()) {
+                return;
+            }
             this.isPaid = true;
-            this.status = "PREPARING";
-            tracker.updateStatus("Payment received - Order is being prepared");
-            
-            // Calculate loyalty points based on total amount
-            int pointsEarned = (int)(totalAmount / 100);
-            customer.addLoyaltyPoints(pointsEarned);
-            
-            // Display updated order summary with points earned
-            System.out.println("\nPayment successful! Here's your updated order summary:");
-            displayOrderSummary();
-        }
-    }
-    // Adds a pizza to the order and recalculates total
-    public void addPizza(Pizza pizza) {
-        pizzas.add(pizza);
+        }
+        OrderJournal.current().recordPayment(this);
+        SettlementService.shared().capture(this, paymentStrategy, result);
+        setStatus(OrderStatus.PREPARING.getLabel());
+        tracker.updateStatus(OrderStatus.PAYMENT_RECEIVED);
+
+        // Redeem the points held for this order, then award points on the amount paid (1 point per 100 LKR)
+        LoyaltyLedger loyalty = customer.getLoyaltyLedger();
+        loyalty.capture(orderId);
+        earnedPoints = (int)(Money.wholeRupees(totalCents) / 100);
+        loyalty.accrue(orderId, earnedPoints);
+        EventLog.shared().log(EventLog.Type.ORDER_PAID, orderId, customer.getCustID(), totalCents,
+            paymentStrategy.getClass().getSimpleName());
+    }
+    /*Undoes an approved payment for an order that will not be placed: the capture is voided, so the authorization
+    lapses uncaptured, the points earned on it are taken back and the points redeemed against it are returned*/
+    void voidPayment() {
+        PaymentStrategy strategy;
+        synchronized (this) {
+            if (!isPaid) {
+                return;
+            }
+            isPaid = false;
+            strategy = paymentStrategy;
+        }
+        SettlementService.shared().voidCapture(this, strategy);
+        synchronized (this) {
+            customer.getLoyaltyLedger().reverse(orderId, redeemedPoints - earnedPoints);
+            earnedPoints = 0;
+            redeemedPoints = 0;
+            calculateTotal();
+        }
+        EventLog.shared().log(EventLog.Type.PAYMENT, orderId, customer.getCustID(), totalCents, "voided, order not placed");
+    }
+    // Reserves the pizza's ingredients and adds it to the order, updating the subtotal and total; returns false, leaving the order as it was, if any is out of stock
+    public synchronized boolean addPizza(Pizza pizza) {
+        if (!reserveIngredients(pizza)) {
+            return false;
+        }
+        count(pizza);
         calculateTotal();
+        return true;
+    }
+    // Adds several pizzas at once, pricing the order a single time; returns the pizzas left out because their ingredients are out of stock
+    public synchronized List<Pizza> addPizzas(List<Pizza> added) {
+        List<Pizza> outOfStock = new ArrayList<>();
+        for (int i = 0; i < added.size(); i++) {
+            Pizza pizza = added.get(i);
+            if (reserveIngredients(pizza)) {
+                count(pizza);
+            } else {
+                outOfStock.add(pizza);
+            }
+        }
+        if (outOfStock.size() < added.size()) {
+            calculateTotal();
+        }
+        return outOfStock;
     }
-    // Calculates total order amount including pizzas, delivery charge, and promotions
+    // Adds a pizza to the list and to the running subtotal, topping count and sorted prices
+    private void count(Pizza pizza) {
+        long priceCents = pizza.calculateTotalCents(menu);
+        int count = pizzas.size();
+        if (count == pizzaPrices.length) {
+            pizzaPrices = Arrays.copyOf(pizzaPrices, count * 2);
+        }
+        int at = Arrays.binarySearch(pizzaPrices, 0, count, priceCents);
+        at = at < 0 ? -at - 1 : at;
+        System.arraycopy(pizzaPrices, at, pizzaPrices, at + 1, count - at);
+        pizzaPrices[at] = priceCents;
+        pizzas.add(pizza);
+        subtotalCents += priceCents;
+        toppingCount += pizza.getToppingCount();
+    }
+    private synchronized boolean reserveIngredients(Pizza pizza) {
+        if (!Inventory.shared().reserve(pizza)) {
+            return false;
+        }
+        holdsIngredients = true;
+        return true;
+    }
+    // Gives the ingredients of every pizza back to the Inventory; called once the order is cancelled or abandoned
+    synchronized void releaseIngredients() {
+        if (holdsIngredients) {
+            holdsIngredients = false;
+            for (int i = 0; i < pizzas.size(); i++) {
+                Inventory.shared().release(pizzas.get(i));
+            }
+        }
+    }
+    /*Calculates total order amount from the subtotal, delivery charge, and promotion components
+    The discount comes from the promotion engine (the entered promotion plus any auto-apply ones) and is
+    stored, so every summary shows the same discount the total was computed with*/
     private void calculateTotal() {
-        totalAmount = 0;
-        for (Pizza p : pizzas) {
-            totalAmount += p.calculateTotal();
-        }
-        totalAmount += deliveryCharge;
-        if (appliedPromotion != null) {
-            totalAmount = appliedPromotion.applyDiscount(totalAmount);
-        }
-    }
-    // Displays detailed order summary including pizzas, charges, and loyalty points
-    public void displayOrderSummary() {
-        System.out.println("\n================ ORDER SUMMARY ================");
-        System.out.println("Order ID: " + orderId);
-        System.out.println("Customer: " + customer.getName());
-        System.out.println("Delivery Type: " + deliveryType);
-        if (deliveryType.equals("DELIVERY")) {
-            System.out.println("Delivery Charge: LKR " + String.format("%.2f", deliveryCharge));
-        }
-        
-        System.out.println("\n-------------- PIZZAS ORDERED --------------");
-        double subtotal = 0;
-        for (Pizza pizza : pizzas) {
-            subtotal += pizza.calculateTotal();
-            pizza.displayPizzaDetails();
-        }
-
-        System.out.println("\n----------------- CHARGES -----------------");
-        System.out.println("Subtotal: LKR " + String.format("%.2f", subtotal));
-        
-        if (deliveryType.equals("DELIVERY")) {
-            System.out.println("Delivery Fee: LKR " + String.format("%.2f", deliveryCharge));
-        }
-        
-        if (appliedPromotion != null) {
-            double discountAmount = subtotal * (appliedPromotion.getDiscountPercentage() / 100.0);
-            System.out.println("\nPromotion Applied: " + appliedPromotion.getDescription());
-            System.out.println("Discount Amount: -LKR " + String.format("%.2f", discountAmount));
-        }
-        
-        System.out.println("\nTotal Amount: LKR " + String.format("%.2f", totalAmount));
-        System.out.println("Status: " + status);
-        
-        if (isPaid) {
-            System.out.println("\n-------------- LOYALTY POINTS --------------");
-            int pointsEarned = (int)(totalAmount / 100);
-            System.out.println("Points Earned: " + pointsEarned);
-            System.out.println("Total Points: " + customer.getLoyaltyPoints());
+        long beforeDiscount = subtotalCents + deliveryChargeCents;
+        PromotionEngine engine = PromotionEngine.shared();
+        discountCents = bestDeal ? engine.bestDeal(this, beforeDiscount) : engine.bestDiscount(this, appliedPromotion, beforeDiscount);
+        discountCents += Math.min(Money.ofRupees(redeemedPoints), beforeDiscount - discountCents);
+        totalCents = beforeDiscount - discountCents;
+    }
+    // What makes up the discount, for display
+    public List<String> getDiscountDescriptions() {
+        long beforeDiscount = subtotalCents + deliveryChargeCents;
+        PromotionEngine engine = PromotionEngine.shared();
+        List<String> descriptions;
+        if (bestDeal) {
+            descriptions = engine.bestDealDescriptions(this, beforeDiscount);
+        } else {
+            descriptions = new ArrayList<>();
+            for (Promotion promotion : engine.appliedTo(this, appliedPromotion, beforeDiscount)) {
+                descriptions.add(promotion.getDescription());
+            }
+        }
+        if (redeemedPoints > 0) {
+            descriptions.add(redeemedPoints + " loyalty points redeemed");
+        }
+        return descriptions;
+    }
+    /*Holds the customer's loyalty points against this order, replacing any earlier hold, and takes them off the total
+    The points are redeemed when the payment is approved and given back by releasePoints; returns false if
+    the order is already paid or the customer does not have that many points available*/
+    public synchronized boolean redeemPoints(int points) {
+        if (isPaid || paymentInFlight != null) {
+            return false;
+        }
+        LoyaltyLedger loyalty = customer.getLoyaltyLedger();
+        loyalty.release(orderId);
+        redeemedPoints = loyalty.hold(orderId, points) ? points : 0;
+        calculateTotal();
+        return redeemedPoints == points;
+    }
+    // Gives back the loyalty points held for an order that will not be paid
+    public synchronized void releasePoints() {
+        if (redeemedPoints > 0 && !isPaid) {
+            customer.getLoyaltyLedger().release(orderId);
+            redeemedPoints = 0;
+            calculateTotal();
         }
-        
-        System.out.println("============================================");
+    }
+    // Prices the order with the best combination of valid promotions and the loyalty tier discount, now and as it changes
+    public synchronized void applyBestDeal() {
+        this.bestDeal = true;
+        this.appliedPromotion = null;
+        calculateTotal();
     }
     // Applies a promotion to the order if valid
-    public void applyPromotion(Promotion promotion) {
+    public synchronized void applyPromotion(Promotion promotion) {
         if (promotion.isValid()) {
             this.appliedPromotion = promotion;
-            calculateTotal();
+            this.bestDeal = false;
+            calculateTotal(); // Only the discount component changes
         }
     }
     // Adds customer feedback to the order
     public void addFeedback(int rating, String comment) {
-        this.feedback = new Feedback(orderId, rating, comment);
+        Feedback feedback = new Feedback(orderId, rating, comment);
+        synchronized (this) {
+            this.feedback = feedback;
+        }
+        OrderJournal.current().recordFeedback(feedback);
+        EventLog.shared().log(EventLog.Type.FEEDBACK, orderId, customer.getCustID(), rating, null);
+    }
+    // Re-applies journaled feedback during recovery
+    synchronized void restoreFeedback(Feedback feedback) {
+        this.feedback = feedback;
+    }
+    // Restores a journaled order image during recovery; amounts are taken as recorded, not re-priced
+    void restore(LocalDateTime orderTime, List<Pizza> pizzas, long subtotalCents, long discountCents, long totalCents,
+                 Promotion appliedPromotion, boolean bestDeal, int redeemedPoints, boolean paid, String status) {
+        this.orderTime = orderTime;
+        for (Pizza pizza : pizzas) {
+            count(pizza);
+        }
+        this.subtotalCents = subtotalCents;
+        this.discountCents = discountCents;
+        this.totalCents = totalCents;
+        this.appliedPromotion = appliedPromotion;
+        this.bestDeal = bestDeal;
+        this.redeemedPoints = redeemedPoints;
+        this.isPaid = paid;
+        this.status = status;
+        this.holdsIngredients = !"CANCELLED".equals(status); // Its reservation is in the journaled stock counts (see Inventory)
+    }
+
+    // Binds a recovered order to the menu holding its journaled options; must precede restore, which prices its pizzas
+    void restoreMenu(MenuCatalog menu) {
+        this.menu = menu;
+    }
+
+    // Re-derives the state machine's state from the recovered status, without recording a status change
+    void restoreState() {
+        switch (OrderStatus.fromLabel(status)) {
+            case PREPARING:
+            case IN_OVEN:
+            case READY_FOR_DELIVERY:
+                state = new PreparingState();
+                break;
+            case OUT_FOR_DELIVERY:
+                state = new OutForDeliveryState();
+                break;
+            case DELIVERED:
+                state = new DeliveredState();
+                break;
+            case CANCELLED:
+                state = new CancelledState();
+                break;
+            default:
+                state = new PlacedState(); // Pending, placed or paid and waiting for the kitchen
+        }
+    }
+
+    // Replaces the generator used for new order IDs (e.g. a Snowflake generator on multi-node deployments)
+    public static void setIdGenerator(OrderIdGenerator generator) {
+        idGenerator = generator;
+    }
+
+    public static OrderIdGenerator getIdGenerator() {
+        return idGenerator;
     }
 
     public OrderTracker getTracker() {
         return tracker;
     }
 
+    // The menu version the order is priced on
+    public MenuCatalog getMenu() {
+        return menu;
+    }
+
      // Standard getters and setters
     public String getOrderId() { return orderId; }
     public Customer getCustomer() { return customer; }
     public List<Pizza> getPizzas() { return pizzas; }
     public LocalDateTime getOrderTime() { return orderTime; }
     public String getStatus() { return status; }
-    public void setStatus(String status) { this.status = status; }
+    public synchronized void setStatus(String status) { this.status = status; }
     public String getDeliveryType() { return deliveryType; }
-    public double getTotalAmount() { return totalAmount; }
+    public long getTotalCents() { return totalCents; }
+    public long getSubtotalCents() { return subtotalCents; }
+    public long getDiscountCents() { return discountCents; }
+    public int getRedeemedPoints() { return redeemedPoints; }
+    public int getToppingCount() { return toppingCount; }
+    // Buy one, get one free: the price of the cheaper half of the pizzas
+    public long getCheaperHalfCents() {
+        long free = 0;
+        for (int i = 0; i < pizzas.size() / 2; i++) {
+            free += pizzaPrices[i];
+        }
+        return free;
+    }
+    public long getDeliveryChargeCents() { return deliveryChargeCents; }
     public PaymentStrategy getPaymentStrategy() { return paymentStrategy; }
     public void setPaymentStrategy(PaymentStrategy strategy) { this.paymentStrategy = strategy; }
     public Feedback getFeedback() { return feedback; }
     public Promotion getAppliedPromotion() { return appliedPromotion; }
+    public boolean isBestDeal() { return bestDeal; }
     public boolean isPaid() { return isPaid; }
-    public void setPaid(boolean paid) { isPaid = paid; }
+    public PaymentResult getLastPaymentResult() { return lastPaymentResult; }
+    public synchronized void setPaid(boolean paid) { isPaid = paid; }
 
     // State management methods
     public void setState(OrderState state) {
@@ -155,6 +377,8 @@ class Order {
         tracker.updateStatus(state.getStatus());
     }
 
+    public OrderState getState() { return state; }
+
     public void nextState() {
         state.next(this);
     }
@@ -163,10 +387,10 @@ class Order {
         state.prev(this);
     }
     // Updates delivery type and recalculates total
-    public void setDeliveryType(String type, double charge) {
+    public synchronized void setDeliveryType(String type, long chargeCents) {
         this.deliveryType = type;
-        this.deliveryCharge = charge;
-        calculateTotal();  // Recalculate total with new delivery charge
+        this.deliveryChargeCents = chargeCents;
+        calculateTotal();  // Only the delivery component changes
     }
 
 
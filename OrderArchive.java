@@ -0,0 +1,330 @@
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.ZoneId;
+import java.util.*;
+
+/* This class implements the memory-mapped, column-oriented archive for completed orders.
+   Delivered and cancelled orders are reduced to one fixed-width row (order ID, customer ID,
+   timestamp, amount, delivery type, status, rating) and appended to segment files, each holding
+   a fixed number of rows with every column stored contiguously.
+   Reporting queries read the mapped columns in place, so a scan touches only the columns it needs
+   and copies nothing onto the heap. Only live orders stay in the OrderRepository as full objects. */
+class OrderArchive {
+    static final int ROWS_PER_SEGMENT = 65536;
+    private static final int MAGIC = 0x50494141; // "PIAA"
+    private static final int HEADER_BYTES = 16; // magic, version, row count, capacity
+    private static final int ID_BYTES = 24;
+    private static final int CUSTOMER_BYTES = 32;
+    // Column offsets within a segment
+    private static final int ORDER_ID_COL = HEADER_BYTES;
+    private static final int CUSTOMER_COL = ORDER_ID_COL + ID_BYTES * ROWS_PER_SEGMENT;
+    private static final int TIME_COL = CUSTOMER_COL + CUSTOMER_BYTES * ROWS_PER_SEGMENT;
+    private static final int AMOUNT_COL = TIME_COL + 8 * ROWS_PER_SEGMENT;
+    private static final int DELIVERY_COL = AMOUNT_COL + 8 * ROWS_PER_SEGMENT;
+    private static final int STATUS_COL = DELIVERY_COL + ROWS_PER_SEGMENT;
+    private static final int RATING_COL = STATUS_COL + ROWS_PER_SEGMENT;
+    private static final int SEGMENT_BYTES = RATING_COL + ROWS_PER_SEGMENT;
+
+    static final byte PICKUP = 0;
+    static final byte DELIVERY = 1;
+    static final byte DELIVERED = 1;
+    static final byte CANCELLED = 2;
+
+    private final Path directory;
+    private final List<MappedByteBuffer> segments = new ArrayList<>(); // Guarded by this
+    private volatile int totalRows;
+
+    /*A completed order as read back from the archive
+    Only materialized for point lookups; scans work on the columns directly*/
+    static class ArchivedOrder {
+        final String orderId;
+        final String customerId;
+        final long epochMillis;
+        final long amountCents;
+        final String deliveryType;
+        final String status;
+        final int rating; // 0 when no feedback was left
+
+        ArchivedOrder(String orderId, String customerId, long epochMillis, long amountCents,
+                      String deliveryType, String status, int rating) {
+            this.orderId = orderId;
+            this.customerId = customerId;
+            this.epochMillis = epochMillis;
+            this.amountCents = amountCents;
+            this.deliveryType = deliveryType;
+            this.status = status;
+            this.rating = rating;
+        }
+    }
+
+    public OrderArchive(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        for (int n = 0; Files.exists(segmentPath(n)); n++) {
+            MappedByteBuffer segment = map(n);
+            if (segment.getInt(0) != MAGIC) {
+                throw new IOException("Not an order archive segment: " + segmentPath(n));
+            }
+            segments.add(segment);
+            totalRows += segment.getInt(8);
+        }
+    }
+
+    // Appends completed orders as rows and forces them to disk
+    public synchronized void append(List<Order> orders) {
+        Set<MappedByteBuffer> touched = new HashSet<>();
+        for (Order order : orders) {
+            MappedByteBuffer segment = writableSegment();
+            int row = segment.getInt(8);
+            putString(segment, ORDER_ID_COL + row * ID_BYTES, ID_BYTES, order.getOrderId());
+            putString(segment, CUSTOMER_COL + row * CUSTOMER_BYTES, CUSTOMER_BYTES, order.getCustomer().getCustID());
+            segment.putLong(TIME_COL + 8 * row,
+                order.getOrderTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            segment.putLong(AMOUNT_COL + 8 * row, order.getTotalCents());
+            segment.put(DELIVERY_COL + row, "DELIVERY".equals(order.getDeliveryType()) ? DELIVERY : PICKUP);
+            segment.put(STATUS_COL + row, "DELIVERED".equals(order.getStatus()) ? DELIVERED : CANCELLED);
+            segment.put(RATING_COL + row, (byte) (order.getFeedback() == null ? 0 : order.getFeedback().getRating()));
+            segment.putInt(8, row + 1); // Row count last, so a crash never exposes a half-written row
+            touched.add(segment);
+            totalRows++;
+        }
+        for (MappedByteBuffer segment : touched) {
+            segment.force();
+        }
+    }
+
+    public int size() {
+        return totalRows;
+    }
+
+    // The IDs among the given ones that already have a row, found in one scan of the order ID column
+    public Set<String> archivedAmong(Collection<String> orderIds) {
+        Set<String> wanted = new HashSet<>(orderIds);
+        Set<String> found = new HashSet<>();
+        for (MappedByteBuffer segment : snapshot()) {
+            int rows = segment.getInt(8);
+            for (int row = 0; row < rows && found.size() < wanted.size(); row++) {
+                String orderId = getString(segment, ORDER_ID_COL + row * ID_BYTES, ID_BYTES);
+                if (wanted.contains(orderId)) {
+                    found.add(orderId);
+                }
+            }
+        }
+        return found;
+    }
+
+    // Records the rating of an archived order and forces it to disk; returns false if the order is not archived
+    public synchronized boolean rate(String orderId, int rating) {
+        byte[] key = orderId.getBytes(StandardCharsets.US_ASCII);
+        if (key.length > ID_BYTES) {
+            return false;
+        }
+        for (MappedByteBuffer segment : segments) {
+            int rows = segment.getInt(8);
+            for (int row = 0; row < rows; row++) {
+                if (matches(segment, ORDER_ID_COL + row * ID_BYTES, ID_BYTES, key)) {
+                    segment.put(RATING_COL + row, (byte) rating);
+                    segment.force();
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    // ---- Reporting scans (read the mapped columns in place) ----
+
+    // Revenue from delivered orders placed within [fromMillis, toMillis)
+    public long deliveredRevenueCents(long fromMillis, long toMillis) {
+        long revenue = 0;
+        for (MappedByteBuffer segment : snapshot()) {
+            int rows = segment.getInt(8);
+            for (int row = 0; row < rows; row++) {
+                if (segment.get(STATUS_COL + row) != DELIVERED) {
+                    continue;
+                }
+                long time = segment.getLong(TIME_COL + 8 * row);
+                if (time >= fromMillis && time < toMillis) {
+                    revenue += segment.getLong(AMOUNT_COL + 8 * row);
+                }
+            }
+        }
+        return revenue;
+    }
+
+    // Highest numeric order ID in the archive (e.g. 1042 for ORD1042), or 0 if empty
+    public long lastOrderNumber() {
+        long last = 0;
+        for (MappedByteBuffer segment : snapshot()) {
+            int rows = segment.getInt(8);
+            for (int row = 0; row < rows; row++) {
+                last = Math.max(last, orderNumber(getString(segment, ORDER_ID_COL + row * ID_BYTES, ID_BYTES)));
+            }
+        }
+        return last;
+    }
+
+    // The digits of an order ID as a number, or 0 if it has none (or too many to fit a long)
+    static long orderNumber(String orderId) {
+        String digits = orderId.replaceAll("\\D", "");
+        return digits.isEmpty() || digits.length() > 18 ? 0 : Long.parseLong(digits);
+    }
+
+    // Number of archived orders with the given status code
+    public int countByStatus(byte status) {
+        int count = 0;
+        for (MappedByteBuffer segment : snapshot()) {
+            int rows = segment.getInt(8);
+            for (int row = 0; row < rows; row++) {
+                if (segment.get(STATUS_COL + row) == status) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Number of archived orders with the given delivery type code
+    public int countByDeliveryType(byte deliveryType) {
+        int count = 0;
+        for (MappedByteBuffer segment : snapshot()) {
+            int rows = segment.getInt(8);
+            for (int row = 0; row < rows; row++) {
+                if (segment.get(DELIVERY_COL + row) == deliveryType) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // Mean rating over orders that received feedback, or 0 if none did
+    public double averageRating() {
+        long sum = 0;
+        long rated = 0;
+        for (MappedByteBuffer segment : snapshot()) {
+            int rows = segment.getInt(8);
+            for (int row = 0; row < rows; row++) {
+                int rating = segment.get(RATING_COL + row);
+                if (rating > 0) {
+                    sum += rating;
+                    rated++;
+                }
+            }
+        }
+        return rated == 0 ? 0 : (double) sum / rated;
+    }
+
+    // Finds an archived order by ID, or null if it was never archived
+    public ArchivedOrder find(String orderId) {
+        byte[] key = orderId.getBytes(StandardCharsets.US_ASCII);
+        if (key.length > ID_BYTES) {
+            return null;
+        }
+        for (MappedByteBuffer segment : snapshot()) {
+            int rows = segment.getInt(8);
+            for (int row = 0; row < rows; row++) {
+                if (matches(segment, ORDER_ID_COL + row * ID_BYTES, ID_BYTES, key)) {
+                    return readRow(segment, row);
+                }
+            }
+        }
+        return null;
+    }
+
+    // All archived orders of one customer, oldest first
+    public List<ArchivedOrder> findByCustomer(String customerId) {
+        byte[] key = customerId.getBytes(StandardCharsets.US_ASCII);
+        List<ArchivedOrder> result = new ArrayList<>();
+        if (key.length > CUSTOMER_BYTES) {
+            return result;
+        }
+        for (MappedByteBuffer segment : snapshot()) {
+            int rows = segment.getInt(8);
+            for (int row = 0; row < rows; row++) {
+                if (matches(segment, CUSTOMER_COL + row * CUSTOMER_BYTES, CUSTOMER_BYTES, key)) {
+                    result.add(readRow(segment, row));
+                }
+            }
+        }
+        return result;
+    }
+
+    private ArchivedOrder readRow(MappedByteBuffer segment, int row) {
+        return new ArchivedOrder(
+            getString(segment, ORDER_ID_COL + row * ID_BYTES, ID_BYTES),
+            getString(segment, CUSTOMER_COL + row * CUSTOMER_BYTES, CUSTOMER_BYTES),
+            segment.getLong(TIME_COL + 8 * row),
+            segment.getLong(AMOUNT_COL + 8 * row),
+            segment.get(DELIVERY_COL + row) == DELIVERY ? "DELIVERY" : "PICKUP",
+            segment.get(STATUS_COL + row) == DELIVERED ? "DELIVERED" : "CANCELLED",
+            segment.get(RATING_COL + row));
+    }
+
+    // ---- Segment management ----
+
+    private synchronized List<MappedByteBuffer> snapshot() {
+        return new ArrayList<>(segments);
+    }
+
+    private MappedByteBuffer writableSegment() {
+        if (!segments.isEmpty()) {
+            MappedByteBuffer last = segments.get(segments.size() - 1);
+            if (last.getInt(8) < ROWS_PER_SEGMENT) {
+                return last;
+            }
+        }
+        try {
+            MappedByteBuffer segment = map(segments.size());
+            segment.putInt(0, MAGIC);
+            segment.putInt(4, 1);
+            segment.putInt(8, 0);
+            segment.putInt(12, ROWS_PER_SEGMENT);
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new java.io.UncheckedIOException(e);
+        }
+    }
+
+    private MappedByteBuffer map(int n) throws IOException {
+        try (FileChannel channel = FileChannel.open(segmentPath(n),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES); // Mapping outlives the channel
+        }
+    }
+
+    private Path segmentPath(int n) {
+        return directory.resolve(String.format("orders-%05d.col", n));
+    }
+
+    // Fixed-width ASCII columns, zero padded; values longer than the column are truncated
+    private static void putString(MappedByteBuffer segment, int offset, int width, String value) {
+        int length = Math.min(value.length(), width);
+        for (int i = 0; i < width; i++) {
+            segment.put(offset + i, i < length ? (byte) value.charAt(i) : 0);
+        }
+    }
+
+    private static String getString(MappedByteBuffer segment, int offset, int width) {
+        byte[] bytes = new byte[width];
+        int length = 0;
+        while (length < width && segment.get(offset + length) != 0) {
+            bytes[length] = segment.get(offset + length);
+            length++;
+        }
+        return new String(bytes, 0, length, StandardCharsets.US_ASCII);
+    }
+
+    private static boolean matches(MappedByteBuffer segment, int offset, int width, byte[] key) {
+        for (int i = 0; i < key.length; i++) {
+            if (segment.get(offset + i) != key[i]) {
+                return false;
+            }
+        }
+        return key.length == width || segment.get(offset + key.length) == 0;
+    }
+}
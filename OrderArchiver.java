@@ -0,0 +1,70 @@
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/*Moves completed orders from the live OrderRepository into the OrderArchive on a schedule
+Orders stay live for a grace period after they complete, so customers can still rate and track them in full.
+Rows are forced to the archive before the full objects are dropped and the removal is journaled; orders a crash
+left in both places (archived, removal not journaled) are only removed on the next run, never archived twice*/
+class OrderArchiver {
+    private final OrderRepository orders;
+    private final OrderArchive archive;
+    private final long graceMillis; // How long a completed order stays live
+    private final ScheduledExecutorService scheduler;
+
+    public OrderArchiver(OrderRepository orders, OrderArchive archive, long graceMillis) {
+        this.orders = orders;
+        this.archive = archive;
+        this.graceMillis = graceMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "order-archiver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Archives completed orders every intervalMinutes
+    public void start(long intervalMinutes) {
+        scheduler.scheduleWithFixedDelay(this::archiveCompleted, intervalMinutes, intervalMinutes, TimeUnit.MINUTES);
+    }
+
+    // Archives every order delivered or cancelled longer than the grace period ago; returns how many were moved
+    public synchronized int archiveCompleted() {
+        long cutoff = System.currentTimeMillis() - graceMillis;
+        List<Order> completed = new ArrayList<>();
+        List<String> completedIds = new ArrayList<>();
+        for (String status : new String[] {"DELIVERED", "CANCELLED"}) {
+            for (Order order : orders.findByStatus(status)) {
+                long[] times = order.getTracker().getUpdateTimes();
+                if (times.length == 0 || times[times.length - 1] <= cutoff) {
+                    completed.add(order);
+                    completedIds.add(order.getOrderId());
+                }
+            }
+        }
+        if (completed.isEmpty()) {
+            return 0;
+        }
+        Set<String> alreadyArchived = archive.archivedAmong(completedIds);
+        List<Order> rows = new ArrayList<>(completed.size());
+        for (Order order : completed) {
+            if (!alreadyArchived.contains(order.getOrderId())) {
+                rows.add(order);
+            }
+        }
+        archive.append(rows);
+        for (Order order : completed) {
+            if (orders.remove(order)) {
+                OrderJournal.current().recordOrderRemoved(order.getOrderId());
+            }
+        }
+        return completed.size();
+    }
+
+    // Stops the schedule, letting a pass already running finish so its removals reach the journal
+    public void stop() throws InterruptedException {
+        scheduler.shutdown();
+        scheduler.awaitTermination(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,144 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/* This class holds one customer's order history as lightweight summaries.
+   Each placed order is recorded as an OrderSummary (ID, time, total, pizza count, delivery type);
+   the full Order is not kept, so once the archiver moves a completed order out of the order store
+   its pizzas, trackers and feedback can be collected. Full orders are loaded lazily from the store
+   installed with install(OrderRepository) and returned as null once only the archive has them.
+   The most recent pizza.history.recent orders (default 5) are also held as full objects, so
+   "reorder my last pizza" and the latest order's status never go to the store.
+   History is paged newest first: a page's cursor fetches the next older page, and stays valid as
+   new orders are recorded because summaries are only ever appended.
+   History outlives the order store: the journal writes the summaries of archived orders, and the full
+   images of the archived ones still in the recent cache, into every snapshot and restores them on restart,
+   so counts, paging and reorder do not lose orders that were archived before a restart. */
+class OrderHistory {
+    private static final int RECENT = Math.max(0, Integer.getInteger("pizza.history.recent", 5));
+    static final int FIRST_PAGE = Integer.MAX_VALUE; // Cursor for the newest page
+
+    private static volatile OrderRepository store = new OrderRepository(); // Empty until the system installs its store
+
+    private final List<OrderSummary> summaries = new ArrayList<>(); // Oldest first; guarded by this
+    private final Order[] recent = new Order[RECENT]; // Ring of the newest full orders; guarded by this
+    private int recentCount;
+
+    // One page of summaries, newest first
+    static class Page {
+        private final List<OrderSummary> summaries;
+        private final int nextCursor; // -1 when there are no older orders
+
+        Page(List<OrderSummary> summaries, int nextCursor) {
+            this.summaries = summaries;
+            this.nextCursor = nextCursor;
+        }
+
+        public List<OrderSummary> getSummaries() { return summaries; }
+        public int getNextCursor() { return nextCursor; }
+        public boolean hasMore() { return nextCursor >= 0; }
+    }
+
+    // Installs the store full orders are loaded from
+    public static void install(OrderRepository orders) {
+        store = orders;
+    }
+
+    // Records a placed order; orders recovered out of time order are slotted into place
+    public synchronized void record(Order order) {
+        OrderSummary summary = new OrderSummary(order);
+        int position = summaries.size();
+        while (position > 0 && summaries.get(position - 1).getEpochMillis() > summary.getEpochMillis()) {
+            position--;
+        }
+        summaries.add(position, summary);
+        if (RECENT > 0 && position == summaries.size() - 1) {
+            recent[recentCount++ % RECENT] = order;
+        }
+    }
+
+    /*Restores an archived order recovered from the journal, with its full image when there is one
+    Replay can meet an order twice (a snapshot racing the archiver), so a known order ID is skipped*/
+    synchronized void restore(OrderSummary summary, Order order) {
+        int position = summaries.size();
+        while (position > 0 && summaries.get(position - 1).getEpochMillis() > summary.getEpochMillis()) {
+            position--;
+        }
+        for (int i = position - 1; i >= 0 && summaries.get(i).getEpochMillis() == summary.getEpochMillis(); i--) {
+            if (summaries.get(i).getOrderId().equals(summary.getOrderId())) {
+                return;
+            }
+        }
+        summaries.add(position, summary);
+        if (order != null && RECENT > 0 && position == summaries.size() - 1) {
+            recent[recentCount++ % RECENT] = order;
+        }
+    }
+
+    // The full orders in the recent cache, oldest first
+    synchronized List<Order> recentOrders() {
+        List<Order> orders = new ArrayList<>(RECENT);
+        int count = Math.min(recentCount, RECENT);
+        for (int i = recentCount - count; i < recentCount; i++) {
+            orders.add(recent[i % RECENT]);
+        }
+        return orders;
+    }
+
+    // The full order with the given ID from the recent cache or the order store, else null
+    public Order find(String orderId) {
+        synchronized (this) {
+            for (int i = 0; i < Math.min(recentCount, RECENT); i++) {
+                if (recent[i].getOrderId().equals(orderId)) {
+                    return recent[i];
+                }
+            }
+        }
+        return store.findById(orderId);
+    }
+
+    public synchronized int size() {
+        return summaries.size();
+    }
+
+    // Up to size summaries older than the cursor, newest first; start with FIRST_PAGE
+    public synchronized Page page(int cursor, int size) {
+        int end = Math.min(cursor, summaries.size());
+        int start = Math.max(0, end - Math.max(1, size));
+        List<OrderSummary> page = new ArrayList<>(end - start);
+        for (int i = end - 1; i >= start; i--) {
+            page.add(summaries.get(i));
+        }
+        return new Page(page, start > 0 ? start : -1);
+    }
+
+    // The full order behind a summary, or null if it is no longer in the order store (archived)
+    public Order load(OrderSummary summary) {
+        return find(summary.getOrderId());
+    }
+
+    // The full orders of a page that can still be loaded, newest first
+    public List<Order> load(Page page) {
+        List<Order> orders = new ArrayList<>(page.getSummaries().size());
+        for (OrderSummary summary : page.getSummaries()) {
+            Order order = load(summary);
+            if (order != null) {
+                orders.add(order);
+            }
+        }
+        return orders;
+    }
+
+    // The customer's newest order, from the recent cache; null if they have none
+    public synchronized Order mostRecent() {
+        if (recentCount == 0 || RECENT == 0) {
+            return summaries.isEmpty() ? null : store.findById(summaries.get(summaries.size() - 1).getOrderId());
+        }
+        return recent[(recentCount - 1) % RECENT];
+    }
+
+    // Every summary, oldest first
+    public synchronized List<OrderSummary> summaries() {
+        return Collections.unmodifiableList(new ArrayList<>(summaries));
+    }
+}
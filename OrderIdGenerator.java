@@ -0,0 +1,9 @@
+/* This module provides pluggable order ID generation for the system.
+   Defines the generator contract used by Order. There are two lock-free implementations:
+   AtomicOrderIdGenerator, an in-process sequence for single-node deployments, and SnowflakeOrderIdGenerator,
+   a time + node + sequence generator that keeps IDs unique across multiple nodes. */
+
+interface OrderIdGenerator {
+    // Returns the next unique order ID
+    String nextId();
+}
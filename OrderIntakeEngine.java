@@ -0,0 +1,188 @@
+import java.lang.reflect.Method;
+import java.util.*;
+import java.util.concurrent.*;
+
+/* This class is the headless order-intake engine of the system.
+   Runs the same flow as the counter terminal (customer lookup, pizza selection, delivery zone,
+   promotion and payment through a PaymentStrategy) as a programmatic API, so any number of
+   clients - the console UI, web front ends, load generators - can place orders concurrently.
+   All stores it touches are thread-safe; each OrderSession is owned by one client at a time.
+   Asynchronous submissions run on virtual threads when the JVM provides them and never block on
+   the payment provider: the order is placed when its payment completes. */
+class OrderIntakeEngine {
+    private final Map<String, Customer> customers; // Shared customer store, keyed by customer ID
+    private final List<Pizza> menu; // Predefined pizzas, read-only after start-up
+    private final Map<String, Promotion> promotions; // Promotions keyed by code, read-only after start-up
+    private final OrderRepository orders; // Shared order store
+    private final ExecutorService executor; // Runs submitted order requests
+    private final OrderValidator unpaidValidator; // Checks an order before the customer is charged
+    private final OrderValidator validator; // Checks a paid order before it is placed
+    private volatile KitchenScheduler kitchen; // Receives placed orders for production; null when the kitchen is off
+
+    public OrderIntakeEngine(Map<String, Customer> customers, List<Pizza> menu,
+                             Map<String, Promotion> promotions, OrderRepository orders) {
+        this.customers = customers;
+        this.menu = Collections.unmodifiableList(menu);
+        this.promotions = Collections.unmodifiableMap(promotions);
+        this.orders = orders;
+        this.executor = newSessionExecutor();
+        this.unpaidValidator = new CustomerValidator();
+        this.validator = new CustomerValidator();
+        this.validator.setNext(new PaymentValidator());
+    }
+
+    // Registers a new customer; returns false if the customer ID is already taken
+    public boolean registerCustomer(Customer customer) {
+        if (customers.putIfAbsent(customer.getCustID(), customer) != null) {
+            return false;
+        }
+        OrderJournal.current().recordCustomer(customer);
+        return true;
+    }
+
+    public Customer findCustomer(String customerId) {
+        return customerId == null ? null : customers.get(customerId);
+    }
+
+    public Promotion findPromotion(String code) {
+        return code == null ? null : promotions.get(code);
+    }
+
+    public List<Pizza> getMenu() {
+        return menu;
+    }
+
+    // Opens an ordering session for a registered customer, or returns null if the customer is unknown
+    public OrderSession openSession(String customerId) {
+        Customer customer = findCustomer(customerId);
+        return customer == null ? null : new OrderSession(this, customer);
+    }
+
+    /*Runs a complete order request asynchronously; completes with the placed order, or null if it was rejected
+    No thread waits for the payment provider, so thousands of payments can be in flight at once.
+    A rejected request's session is cancelled, giving back the ingredients and points it held*/
+    public CompletableFuture<Order> submit(OrderRequest request) {
+        return CompletableFuture.supplyAsync(() -> prepareSession(request), executor)
+            .thenCompose(session -> session == null
+                ? CompletableFuture.completedFuture(null)
+                : session.checkoutAsync(request.getPaymentStrategy())
+                    .whenComplete((placed, error) -> {
+                        if (error != null || !placed) {
+                            session.cancel();
+                        }
+                    })
+                    .thenApply(placed -> placed ? session.getOrder() : null));
+    }
+
+    // Runs a complete order request on the calling thread; returns the placed order, or null if it was rejected (see submit)
+    public Order placeOrder(OrderRequest request) {
+        OrderSession session = prepareSession(request);
+        if (session == null) {
+            return null;
+        }
+        boolean placed = false;
+        try {
+            placed = session.checkout(request.getPaymentStrategy());
+        } finally {
+            if (!placed) {
+                session.cancel();
+            }
+        }
+        return placed ? session.getOrder() : null;
+    }
+
+    // Opens a session and fills it from the request, up to the point of payment; null if the customer is unknown
+    private OrderSession prepareSession(OrderRequest request) {
+        OrderSession session = openSession(request.getCustomerId());
+        if (session == null) {
+            return null;
+        }
+        for (int index : request.getMenuSelections()) {
+            session.addPredefinedPizza(index);
+        }
+        for (Pizza pizza : request.getCustomPizzas()) {
+            session.addPizza(pizza);
+        }
+        session.setDeliveryZone(request.getDeliveryZone());
+        if (OrderSession.BEST_DEAL.equalsIgnoreCase(request.getPromotionCode())) {
+            session.applyBestDeal();
+        } else if (request.getPromotionCode() != null && !request.getPromotionCode().isEmpty()) {
+            session.applyPromotion(request.getPromotionCode());
+        }
+        return session;
+    }
+
+    // Runs the checks that do not need a paid order, before the customer is charged
+    boolean validateUnpaid(Order order) {
+        return unpaidValidator.validate(order);
+    }
+
+    // Runs the full validation chain over a paid order that is about to be placed
+    boolean validate(Order order) {
+        return validator.validate(order);
+    }
+
+    // Adds a check to the end of the chain run on paid orders; an order it rejects has its payment voided
+    public synchronized void addValidator(OrderValidator check) {
+        OrderValidator last = validator;
+        while (last.nextValidator != null) {
+            last = last.nextValidator;
+        }
+        last.setNext(check);
+    }
+
+    // Runs the work that follows a payment, keeping the payment provider's threads free
+    Executor getExecutor() {
+        return executor;
+    }
+
+    // Routes placed orders to the kitchen scheduler; null stops kitchen scheduling
+    public void setKitchen(KitchenScheduler kitchen) {
+        this.kitchen = kitchen;
+    }
+
+    // Stores a paid order, records it in the customer's history and sends it to the kitchen
+    void commit(Order order) {
+        new PlaceOrderCommand(order, orders).execute();
+        order.getCustomer().addOrder(order);
+        if (OrderMetrics.ENABLED) {
+            OrderMetrics.orderPlaced();
+        }
+        KitchenScheduler scheduler = kitchen;
+        if (scheduler != null) {
+            scheduler.submit(order);
+        }
+    }
+
+    // Delivery charge for a zone: 0 = pickup, 1 = within 5km, 2 = 5-10km, 3 = beyond 10km
+    public static long deliveryChargeForZone(int zone) { // in cents, or -1 for an unknown zone
+        switch (zone) {
+            case 0: return 0;
+            case 1: return Money.ofRupees(200);
+            case 2: return Money.ofRupees(500);
+            case 3: return Money.ofRupees(800);
+            default: return -1;
+        }
+    }
+
+    // Stops accepting submissions and waits for in-flight requests to finish
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+    }
+
+    /*Uses a virtual-thread-per-task executor when the running JVM has one (Java 21+),
+    otherwise a fixed pool of platform threads sized by the intake.platformThreads property*/
+    private static ExecutorService newSessionExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(Integer.getInteger("intake.platformThreads", 64), task -> {
+                Thread thread = new Thread(task, "order-intake");
+                thread.setDaemon(true); // Like virtual threads, never keep the JVM alive on their own
+                return thread;
+            });
+        }
+    }
+}
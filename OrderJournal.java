@@ -0,0 +1,1079 @@
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/* This class implements the append-only write-ahead journal that makes the system's stores durable.
+   Every state-changing operation (customer registration, order placement, payment, status change,
+   feedback, loyalty transaction, payment capture, stock change) is encoded as a compact binary record and appended to the
+   current journal segment by a single writer thread that group-commits queued records.
+   Records are idempotent (orders are written as full images, loyalty transactions and stock changes carry the
+   balance or portions they left and a version, and replay keeps the newest),
+   so replaying a snapshot plus every later segment always rebuilds the same state.
+   Snapshot checkpoints rotate to a new segment and delete older ones to keep restart time bounded.
+   The writer only rotates; the snapshot is written by a separate checkpoint thread that encodes each order
+   under the order's lock, so an image never mixes two states of an order, and an appender holding that lock
+   while it waits for its batch to be synced cannot stall the writer.
+   A status change racing a checkpoint can be both in the snapshot and in the new segment, so replay skips
+   STATUS records the order's image already holds.
+   Orders only leave the repository when they are archived, so replay moves a removed order into its
+   customer's history, and snapshots carry the history of archived orders (see writeArchivedHistory).
+   If the writer thread dies (disk error or interrupt) the journal is failed: every queued record and every
+   later append is dropped rather than left waiting, and the callers carry on unjournaled. The first dropped
+   record is reported as an EventLog warning and getProblem says why, for the console to show.
+   Record framing: [int length][int crc32][byte type][payload]; a torn tail is truncated on recovery. */
+class OrderJournal {
+    // Controls when appended records are forced to disk
+    enum FsyncPolicy {
+        ALWAYS,   // Appenders wait until the batch holding their record has been fsynced
+        INTERVAL, // Appenders never wait; the writer fsyncs at most once per interval (the default)
+        NEVER     // Records are written but fsync is left to the operating system
+    }
+
+    private static final byte CUSTOMER = 1;
+    private static final byte ORDER = 2;
+    private static final byte ORDER_REMOVED = 3;
+    private static final byte STATUS = 4;
+    private static final byte PAYMENT = 5;
+    private static final byte FEEDBACK = 6;
+    private static final byte LOYALTY = 7;
+    private static final byte SNAPSHOT_HEADER = 8;
+    private static final byte LOYALTY_TXN = 9; // Supersedes LOYALTY, which is still replayed from older journals
+    private static final byte CAPTURE = 10; // An approved payment waiting for settlement
+    private static final byte CAPTURE_BATCH = 11; // Captures sent to the provider together under one batch ID
+    private static final byte CAPTURED = 12; // Captures that have been settled
+    private static final byte HISTORY = 13; // Summary of an archived order in its customer's history
+    private static final byte HISTORY_ORDER = 14; // Full image of an archived order still in its customer's recent history
+    private static final byte STOCK = 15; // An option's stock after a change, with its version and stocked level
+    private static final int MAX_BATCH = 1024;
+    private static final String SNAPSHOT_FILE = "snapshot.bin";
+
+    private static volatile OrderJournal current = new OrderJournal(); // Disabled until a journal is opened
+
+    private final boolean enabled;
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final long fsyncIntervalMillis;
+    private final long checkpointEvery; // Records per segment before an automatic checkpoint
+    private final Map<String, Customer> customers;
+    private final OrderRepository orders;
+    private final Map<String, PendingCapture> captures = new ConcurrentHashMap<>(); // Unsettled captures by order ID; rewritten into every snapshot
+    private final BlockingQueue<Entry> queue;
+    private final Thread writer;
+    private final ExecutorService snapshots; // Writes checkpoint snapshots off the writer thread, one at a time
+    private volatile boolean snapshotting; // A snapshot is being written; automatic checkpoints wait for it
+    private final AtomicLong droppedRecords = new AtomicLong(); // Appends lost because the journal had failed
+    private FileChannel channel; // Current segment; only touched by the writer thread
+    private long segment; // Number of the current segment
+    private long recordsInSegment;
+    private volatile boolean running;
+    private volatile Throwable failure; // Why the writer stopped, or null while it is healthy
+
+    // A journaled capture that has not been settled; batchId is set once it has been sent in a batch
+    static class PendingCapture {
+        final String orderId;
+        final String method;
+        final String transactionId;
+        final long amountCents;
+        volatile String batchId;
+
+        PendingCapture(String orderId, String method, String transactionId, long amountCents, String batchId) {
+            this.orderId = orderId;
+            this.method = method;
+            this.transactionId = transactionId;
+            this.amountCents = amountCents;
+            this.batchId = batchId;
+        }
+    }
+
+    // A queued record; checkpoint requests carry no bytes
+    private static class Entry {
+        final byte[] bytes;
+        final CompletableFuture<Void> done;
+
+        Entry(byte[] bytes, CompletableFuture<Void> done) {
+            this.bytes = bytes;
+            this.done = done;
+        }
+    }
+
+    // Creates the disabled journal that is active until open() is called
+    private OrderJournal() {
+        this.enabled = false;
+        this.directory = null;
+        this.policy = FsyncPolicy.NEVER;
+        this.fsyncIntervalMillis = 0;
+        this.checkpointEvery = 0;
+        this.customers = null;
+        this.orders = null;
+        this.queue = null;
+        this.writer = null;
+        this.snapshots = null;
+    }
+
+    private OrderJournal(Path directory, FsyncPolicy policy, long fsyncIntervalMillis, long checkpointEvery,
+                         Map<String, Customer> customers, OrderRepository orders) {
+        this.enabled = true;
+        this.directory = directory;
+        this.policy = policy;
+        this.fsyncIntervalMillis = fsyncIntervalMillis;
+        this.checkpointEvery = checkpointEvery;
+        this.customers = customers;
+        this.orders = orders;
+        this.queue = new LinkedBlockingQueue<>();
+        this.writer = new Thread(this::writeLoop, "order-journal");
+        this.writer.setDaemon(true);
+        this.snapshots = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "order-journal-checkpoint");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // The journal domain classes append to; a disabled no-op journal until one is opened
+    public static OrderJournal current() {
+        return current;
+    }
+
+    /*Recovers the stores from the journal directory (latest snapshot plus later segments),
+    then starts a new segment and installs the journal as current*/
+    public static OrderJournal open(Path directory, FsyncPolicy policy, long fsyncIntervalMillis, long checkpointEvery,
+                                    Map<String, Customer> customers, OrderRepository orders,
+                                    MenuCatalog menu, Map<String, Promotion> promotions) throws IOException {
+        Files.createDirectories(directory);
+        OrderJournal journal = new OrderJournal(directory, policy, fsyncIntervalMillis, checkpointEvery, customers, orders);
+        Recovery recovery = new Recovery(customers, menu, promotions);
+        long nextSegment = recovery.run(directory);
+        if (recovery.menu() != menu) {
+            MenuCatalog.replace(menu, recovery.menu()); // Adopts options only journaled orders still use
+        }
+        for (Order order : recovery.orders()) {
+            order.restoreState();
+            orders.save(order);
+            order.getCustomer().restoreOrder(order);
+        }
+        for (PendingCapture capture : recovery.captures()) {
+            journal.captures.put(capture.orderId, capture);
+            Order order = orders.findById(capture.orderId);
+            if (order != null) {
+                SettlementService.shared().restoreCapture(order, capture.method, capture.transactionId,
+                    capture.amountCents, capture.batchId);
+            } else {
+                EventLog.shared().log(EventLog.Type.WARNING, capture.orderId, null, capture.amountCents,
+                    "capture not resumed, order no longer in the repository");
+            }
+        }
+        journal.segment = nextSegment;
+        journal.channel = openSegment(directory, nextSegment);
+        journal.running = true;
+        journal.writer.start();
+        current = journal;
+        for (Inventory.Level level : recovery.stock()) {
+            Inventory.shared().restore(level); // After installing the journal, which records levels the stock file changed
+        }
+        return journal;
+    }
+
+    // ---- Recording (called by the domain classes) ----
+
+    public void recordCustomer(Customer customer) {
+        if (enabled) {
+            append(CUSTOMER, out -> writeCustomer(out, customer));
+        }
+    }
+
+    public void recordOrder(Order order) {
+        if (enabled) {
+            append(ORDER, out -> writeOrder(out, order));
+        }
+    }
+
+    public void recordOrderRemoved(String orderId) {
+        if (enabled) {
+            append(ORDER_REMOVED, out -> out.writeUTF(orderId));
+        }
+    }
+
+    public void recordStatus(String orderId, String status, long epochMillis) {
+        if (enabled) {
+            append(STATUS, out -> {
+                out.writeUTF(orderId);
+                out.writeUTF(status);
+                out.writeLong(epochMillis);
+            });
+        }
+    }
+
+    public void recordPayment(Order order) {
+        if (enabled) {
+            append(PAYMENT, out -> {
+                out.writeUTF(order.getOrderId());
+                out.writeLong(order.getTotalCents());
+                writeNullable(out, order.getPaymentStrategy() == null ? null
+                    : order.getPaymentStrategy().getClass().getSimpleName());
+            });
+        }
+    }
+
+    public void recordFeedback(Feedback feedback) {
+        if (enabled) {
+            append(FEEDBACK, out -> writeFeedback(out, feedback));
+        }
+    }
+
+    /*Loyalty transactions carry the balance they left and the ledger version, so replay is idempotent
+    and still ends on the right balance when concurrent terminals' records reach the journal out of order*/
+    public void recordLoyalty(String customerId, LoyaltyLedger.Transaction transaction) {
+        if (enabled) {
+            append(LOYALTY_TXN, out -> writeLoyalty(out, customerId, transaction));
+        }
+    }
+
+    /*Stock changes carry the portions they left and the option's counter version, so replay is idempotent and ends
+    on the right count when concurrent reservations reach the journal out of order (see Inventory)*/
+    public void recordStock(int optionId, long portions, int version, long stocked) {
+        if (enabled) {
+            append(STOCK, out -> writeStock(out, new Inventory.Level(Customization.byId(optionId), portions, version, stocked)));
+        }
+    }
+
+    /*Settlement records: a capture is journaled when it is queued, again with its batch ID before the batch is
+    sent, and as captured once settled, so a restart resumes every unsettled capture under the same batch ID*/
+    public void recordCapture(String orderId, String method, String transactionId, long amountCents) {
+        if (enabled) {
+            PendingCapture capture = new PendingCapture(orderId, method, transactionId, amountCents, null);
+            captures.put(orderId, capture);
+            append(CAPTURE, out -> writeCapture(out, capture));
+        }
+    }
+
+    public void recordCaptureBatch(String batchId, List<String> orderIds) {
+        if (enabled) {
+            for (String orderId : orderIds) {
+                PendingCapture capture = captures.get(orderId);
+                if (capture != null) {
+                    capture.batchId = batchId;
+                }
+            }
+            append(CAPTURE_BATCH, out -> {
+                out.writeUTF(batchId);
+                writeOrderIds(out, orderIds);
+            });
+        }
+    }
+
+    public void recordCaptured(List<String> orderIds) {
+        if (enabled) {
+            for (String orderId : orderIds) {
+                captures.remove(orderId);
+            }
+            append(CAPTURED, out -> writeOrderIds(out, orderIds));
+        }
+    }
+
+    // Requests a snapshot checkpoint; completes once the snapshot is durable and old segments are deleted
+    public CompletableFuture<Void> checkpoint() {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (!enabled) {
+            done.complete(null);
+        } else if (failure != null) {
+            done.completeExceptionally(failure);
+        } else {
+            queue.add(new Entry(null, done));
+            if (failure != null) {
+                failPending();
+            }
+        }
+        return done;
+    }
+
+    // Flushes and fsyncs everything queued so far, then stops the writer thread once any snapshot in progress is written
+    public void close() throws InterruptedException {
+        if (!enabled || !running) {
+            return;
+        }
+        running = false;
+        queue.add(new Entry(new byte[0], null)); // Wakes the writer
+        writer.join();
+        snapshots.shutdown();
+        snapshots.awaitTermination(1, TimeUnit.MINUTES);
+        if (current == this) {
+            current = new OrderJournal();
+        }
+    }
+
+    private interface RecordWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    // Why the journal stopped saving changes, or null while it is healthy
+    public String getProblem() {
+        Throwable cause = failure;
+        return cause == null ? null : "order journal stopped, " + droppedRecords.get()
+            + " change(s) not saved (" + describe(cause) + ")";
+    }
+
+    // Queues a record; once the journal has failed, or if the record's batch could not be synced, the record is dropped
+    private void append(byte type, RecordWriter payload) {
+        if (failure != null) {
+            dropped();
+            return;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            out.writeInt(0); // Length, patched below
+            out.writeInt(0); // CRC, patched below
+            out.writeByte(type);
+            payload.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // In-memory stream; cannot happen
+        }
+        byte[] bytes = buffer.toByteArray();
+        frame(bytes);
+        CompletableFuture<Void> done = policy == FsyncPolicy.ALWAYS ? new CompletableFuture<>() : null;
+        queue.add(new Entry(bytes, done));
+        if (failure != null) {
+            failPending(); // The writer died after the check above; nothing else would complete this record
+        }
+        if (done != null) {
+            try {
+                done.join(); // Group commit: released when the writer fsyncs the batch holding this record
+            } catch (CompletionException e) {
+                dropped();
+            }
+        }
+    }
+
+    // Counts a record the failed journal could not save; the first one is reported
+    private void dropped() {
+        if (droppedRecords.getAndIncrement() == 0) {
+            EventLog.shared().warning("order journal failed, changes are no longer saved (" + describe(failure) + ")");
+        }
+    }
+
+    private static String describe(Throwable cause) {
+        return cause.getMessage() != null ? cause.getMessage() : cause.getClass().getSimpleName();
+    }
+
+    // Completes every queued entry exceptionally; called once the journal has failed
+    private void failPending() {
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            if (entry.done != null) {
+                entry.done.completeExceptionally(failure);
+            }
+        }
+    }
+
+    // Fills in the length and CRC of a record whose body starts at offset 8
+    private static void frame(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 8, bytes.length - 8);
+        ByteBuffer.wrap(bytes).putInt(bytes.length - 8).putInt((int) crc.getValue());
+    }
+
+    // ---- Writer thread ----
+
+    private void writeLoop() {
+        List<Entry> batch = new ArrayList<>(MAX_BATCH);
+        List<CompletableFuture<Void>> waiting = new ArrayList<>();
+        long lastSync = System.currentTimeMillis();
+        try {
+            while (running || !queue.isEmpty()) {
+                Entry first = queue.poll(policy == FsyncPolicy.INTERVAL ? fsyncIntervalMillis : 1000, TimeUnit.MILLISECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch, MAX_BATCH - 1);
+                }
+                boolean wrote = false;
+                for (Entry entry : batch) {
+                    if (entry.bytes == null) { // Checkpoint request: everything before it is already written
+                        sync(waiting);
+                        checkpointNow(entry.done);
+                        continue;
+                    }
+                    if (entry.bytes.length > 0) {
+                        writeFully(entry.bytes);
+                        recordsInSegment++;
+                        wrote = true;
+                    }
+                    if (entry.done != null) {
+                        waiting.add(entry.done);
+                    }
+                }
+                batch.clear();
+                long now = System.currentTimeMillis();
+                if (policy == FsyncPolicy.ALWAYS
+                        || (policy == FsyncPolicy.INTERVAL && wrote && now - lastSync >= fsyncIntervalMillis)) {
+                    sync(waiting);
+                    lastSync = now;
+                }
+                if (checkpointEvery > 0 && recordsInSegment >= checkpointEvery && !snapshotting) {
+                    sync(waiting);
+                    checkpointNow(null);
+                }
+            }
+            sync(waiting);
+            channel.close();
+        } catch (IOException | InterruptedException e) {
+            EventLog.shared().warning("journal writer stopped: " + describe(e));
+            failure = e;
+            running = false;
+            for (CompletableFuture<Void> done : waiting) {
+                done.completeExceptionally(e);
+            }
+            for (Entry entry : batch) {
+                if (entry.done != null) {
+                    entry.done.completeExceptionally(e);
+                }
+            }
+            failPending();
+        }
+    }
+
+    private void writeFully(byte[] bytes) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void sync(List<CompletableFuture<Void>> waiting) throws IOException {
+        if (policy != FsyncPolicy.NEVER) {
+            channel.force(false);
+        }
+        for (CompletableFuture<Void> done : waiting) {
+            done.complete(null);
+        }
+        waiting.clear();
+    }
+
+    /*Rotates to a new segment first, then has the checkpoint thread capture the stores: any mutation journaled
+    in an older segment happened before the capture, so the snapshot plus the new segments is complete.
+    A snapshot that cannot be written is reported and leaves the older segments in place*/
+    private void checkpointNow(CompletableFuture<Void> done) throws IOException {
+        channel.force(false);
+        channel.close();
+        long firstKept = segment + 1;
+        segment = firstKept;
+        channel = openSegment(directory, segment);
+        recordsInSegment = 0;
+        snapshotting = true;
+        snapshots.execute(() -> {
+            try {
+                writeSnapshot(firstKept);
+                if (done != null) {
+                    done.complete(null);
+                }
+            } catch (IOException | RuntimeException e) {
+                EventLog.shared().warning("journal checkpoint failed, older segments kept (" + describe(e) + ")");
+                if (done != null) {
+                    done.completeExceptionally(e);
+                }
+            } finally {
+                snapshotting = false;
+            }
+        });
+    }
+
+    // Writes the snapshot of the stores that replaces every segment before firstKept, then deletes those segments
+    private void writeSnapshot(long firstKept) throws IOException {
+        Path temp = directory.resolve(SNAPSHOT_FILE + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeSnapshotRecord(out, SNAPSHOT_HEADER, o -> o.writeLong(firstKept));
+            for (Customer customer : customers.values()) {
+                writeSnapshotRecord(out, CUSTOMER, o -> writeCustomer(o, customer));
+                for (LoyaltyLedger.Transaction transaction : customer.getLoyaltyLedger().getRecentTransactions()) {
+                    writeSnapshotRecord(out, LOYALTY_TXN, o -> writeLoyalty(o, customer.getCustID(), transaction));
+                }
+            }
+            for (Order order : orders.findAll()) {
+                writeSnapshotRecord(out, ORDER, o -> writeOrder(o, order));
+            }
+            for (Customer customer : customers.values()) {
+                writeArchivedHistory(out, customer);
+            }
+            for (PendingCapture capture : captures.values()) {
+                writeSnapshotRecord(out, CAPTURE, o -> writeCapture(o, capture));
+            }
+            for (Inventory.Level level : Inventory.shared().levels()) {
+                writeSnapshotRecord(out, STOCK, o -> writeStock(o, level));
+            }
+            out.force(true);
+        }
+        Files.move(temp, directory.resolve(SNAPSHOT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        for (long old : listSegments(directory)) {
+            if (old < firstKept) {
+                Files.deleteIfExists(segmentPath(directory, old));
+            }
+        }
+    }
+
+    /*The customer's history entries whose orders have been archived: full images for those in the recent cache,
+    so reorder still works after a restart, and summaries for the rest*/
+    private void writeArchivedHistory(FileChannel out, Customer customer) throws IOException {
+        OrderHistory history = customer.getOrderHistory();
+        Map<String, Order> recent = new HashMap<>();
+        for (Order order : history.recentOrders()) {
+            recent.put(order.getOrderId(), order);
+        }
+        for (OrderSummary summary : history.summaries()) {
+            if (orders.findById(summary.getOrderId()) != null) {
+                continue; // Live orders are in the snapshot already
+            }
+            Order order = recent.get(summary.getOrderId());
+            if (order != null) {
+                writeSnapshotRecord(out, HISTORY_ORDER, o -> writeOrder(o, order));
+            } else {
+                writeSnapshotRecord(out, HISTORY, o -> {
+                    o.writeUTF(customer.getCustID());
+                    o.writeUTF(summary.getOrderId());
+                    o.writeLong(summary.getEpochMillis());
+                    o.writeLong(summary.getTotalCents());
+                    o.writeInt(summary.getPizzaCount());
+                    o.writeBoolean("DELIVERY".equals(summary.getDeliveryType()));
+                });
+            }
+        }
+    }
+
+    private static void writeSnapshotRecord(FileChannel out, byte type, RecordWriter payload) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(256);
+        DataOutputStream data = new DataOutputStream(buffer);
+        data.writeInt(0);
+        data.writeInt(0);
+        data.writeByte(type);
+        payload.write(data);
+        byte[] bytes = buffer.toByteArray();
+        frame(bytes);
+        ByteBuffer wrapped = ByteBuffer.wrap(bytes);
+        while (wrapped.hasRemaining()) {
+            out.write(wrapped);
+        }
+    }
+
+    // ---- Encoding ----
+
+    private static void writeCustomer(DataOutputStream out, Customer customer) throws IOException {
+        out.writeUTF(customer.getCustID());
+        writeNullable(out, customer.getName());
+        writeNullable(out, customer.getAddress());
+        writeNullable(out, customer.getPhone());
+        writeNullable(out, customer.getEmail());
+        out.writeInt(customer.getLoyaltyPoints());
+    }
+
+    /*Full order image: identity, pricing, payment, pizzas, feedback, tracking history, then how it was priced
+    Encoded under the order's lock, which its mutators hold, so the image is one consistent state*/
+    private static void writeOrder(DataOutputStream out, Order order) throws IOException {
+        synchronized (order) {
+            writeOrderImage(out, order);
+        }
+    }
+
+    private static void writeOrderImage(DataOutputStream out, Order order) throws IOException {
+        out.writeUTF(order.getOrderId());
+        out.writeUTF(order.getCustomer().getCustID());
+        writeTime(out, order.getOrderTime());
+        out.writeUTF(order.getDeliveryType());
+        out.writeLong(order.getDeliveryChargeCents());
+        out.writeLong(order.getSubtotalCents());
+        out.writeLong(order.getDiscountCents());
+        out.writeLong(order.getTotalCents());
+        writeNullable(out, order.getAppliedPromotion() == null ? null : order.getAppliedPromotion().getCode());
+        out.writeBoolean(order.isPaid());
+        out.writeUTF(order.getStatus());
+        List<Pizza> pizzas = order.getPizzas();
+        out.writeInt(pizzas.size());
+        for (Pizza pizza : pizzas) {
+            out.writeUTF(pizza.getName());
+            out.writeLong(pizza.getBasePriceCents());
+            out.writeBoolean(pizza.isCustom());
+            writeCustomization(out, pizza.getCrust(), order.getMenu());
+            writeCustomization(out, pizza.getSauce(), order.getMenu());
+            int[] toppingIds = pizza.getToppingIds();
+            out.writeShort(toppingIds.length);
+            for (int id : toppingIds) {
+                writeCustomization(out, Customization.byId(id), order.getMenu());
+            }
+        }
+        Feedback feedback = order.getFeedback();
+        out.writeBoolean(feedback != null);
+        if (feedback != null) {
+            writeFeedback(out, feedback);
+        }
+        long[] times = order.getTracker().getUpdateTimes();
+        byte[] codes = order.getTracker().getUpdateCodes();
+        out.writeInt(times.length);
+        for (int i = 0; i < times.length; i++) {
+            out.writeLong(times[i]);
+            out.writeByte(codes[i]);
+        }
+        out.writeBoolean(order.isBestDeal());
+        out.writeInt(order.getRedeemedPoints());
+        for (Pizza pizza : pizzas) {
+            writeNullable(out, pizza.getCrust().getThickness()); // So recovery can adopt a crust the menu dropped as it was
+        }
+    }
+
+    // Writes an option with its price on the menu version the order was priced on
+    private static void writeCustomization(DataOutputStream out, Customization customization, MenuCatalog menu) throws IOException {
+        out.writeUTF(customization.getName());
+        out.writeLong(menu.priceCents(customization));
+    }
+
+    private static void writeStock(DataOutputStream out, Inventory.Level level) throws IOException {
+        out.writeUTF(level.option.getCategory());
+        out.writeUTF(level.option.getName());
+        out.writeLong(level.portions);
+        out.writeInt(level.version);
+        out.writeLong(level.stocked);
+    }
+
+    private static void writeFeedback(DataOutputStream out, Feedback feedback) throws IOException {
+        out.writeUTF(feedback.getOrderId());
+        out.writeByte(feedback.getRating());
+        out.writeUTF(feedback.getComment());
+        writeTime(out, feedback.getFeedbackTime());
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        return LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC);
+    }
+
+    private static void writeLoyalty(DataOutputStream out, String customerId, LoyaltyLedger.Transaction transaction)
+            throws IOException {
+        out.writeUTF(customerId);
+        out.writeByte(transaction.getType().ordinal());
+        writeNullable(out, transaction.getOrderId());
+        out.writeInt(transaction.getPoints());
+        out.writeInt(transaction.getBalanceAfter());
+        out.writeLong(transaction.getVersion());
+        out.writeLong(transaction.getTimeMillis());
+    }
+
+    private static LoyaltyLedger.Transaction readLoyalty(DataInputStream in) throws IOException {
+        LoyaltyLedger.TransactionType type = LoyaltyLedger.TransactionType.values()[in.readByte()];
+        return new LoyaltyLedger.Transaction(type, readNullable(in), in.readInt(), in.readInt(), in.readLong(), in.readLong());
+    }
+
+    private static void writeCapture(DataOutputStream out, PendingCapture capture) throws IOException {
+        out.writeUTF(capture.orderId);
+        out.writeUTF(capture.method);
+        writeNullable(out, capture.transactionId);
+        out.writeLong(capture.amountCents);
+        writeNullable(out, capture.batchId);
+    }
+
+    private static PendingCapture readCapture(DataInputStream in) throws IOException {
+        return new PendingCapture(in.readUTF(), in.readUTF(), readNullable(in), in.readLong(), readNullable(in));
+    }
+
+    private static void writeOrderIds(DataOutputStream out, List<String> orderIds) throws IOException {
+        out.writeInt(orderIds.size());
+        for (String orderId : orderIds) {
+            out.writeUTF(orderId);
+        }
+    }
+
+    private static List<String> readOrderIds(DataInputStream in) throws IOException {
+        int count = in.readInt();
+        List<String> orderIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            orderIds.add(in.readUTF());
+        }
+        return orderIds;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    // ---- Segment files ----
+
+    private static Path segmentPath(Path directory, long segment) {
+        return directory.resolve(String.format("journal-%08d.log", segment));
+    }
+
+    private static FileChannel openSegment(Path directory, long segment) throws IOException {
+        return FileChannel.open(segmentPath(directory, segment),
+            StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+    }
+
+    private static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "journal-*.log")) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(8, name.length() - 4)));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    // ---- Recovery ----
+
+    /*Rebuilds customers and orders from the snapshot and the segments written after it
+    Orders are collected here and only saved to the repository once replay is complete*/
+    private static class Recovery {
+        private final Map<String, Customer> customers;
+        private MenuCatalog menu; // Grows a new version for each journaled option it has to adopt
+        private final Map<String, Promotion> promotions;
+        private final Map<String, Order> orders = new LinkedHashMap<>();
+        private final Map<String, Long> imageTimes = new HashMap<>(); // Latest status time in each order's replayed image
+        private final Map<String, PendingCapture> captures = new LinkedHashMap<>(); // Unsettled captures, in journal order
+        private final Map<Customization, Inventory.Level> stock = new LinkedHashMap<>(); // Newest journaled level per option
+        private long firstSegment = 1;
+
+        Recovery(Map<String, Customer> customers, MenuCatalog menu, Map<String, Promotion> promotions) {
+            this.customers = customers;
+            this.menu = menu;
+            this.promotions = promotions;
+        }
+
+        // Replays everything and returns the number of the next segment to write
+        long run(Path directory) throws IOException {
+            Path snapshot = directory.resolve(SNAPSHOT_FILE);
+            if (Files.exists(snapshot)) {
+                replayFile(snapshot, false);
+            }
+            long next = firstSegment;
+            for (long segment : listSegments(directory)) {
+                if (segment >= firstSegment) {
+                    replayFile(segmentPath(directory, segment), true);
+                    next = segment + 1;
+                }
+            }
+            return next;
+        }
+
+        MenuCatalog menu() {
+            return menu;
+        }
+
+        Collection<PendingCapture> captures() {
+            return captures.values();
+        }
+
+        Collection<Inventory.Level> stock() {
+            return stock.values();
+        }
+
+        List<Order> orders() {
+            List<Order> result = new ArrayList<>(orders.values());
+            result.sort(Comparator.comparing(Order::getOrderTime));
+            return result;
+        }
+
+        // Applies every intact record; a torn or corrupt tail of a segment is truncated
+        private void replayFile(Path file, boolean truncateTornTail) throws IOException {
+            long goodLength = 0;
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                while (true) {
+                    int length;
+                    try {
+                        length = in.readInt();
+                    } catch (EOFException e) {
+                        break;
+                    }
+                    try {
+                        int expectedCrc = in.readInt();
+                        if (length <= 0) {
+                            break;
+                        }
+                        byte[] body = new byte[length];
+                        in.readFully(body);
+                        CRC32 crc = new CRC32();
+                        crc.update(body);
+                        if ((int) crc.getValue() != expectedCrc) {
+                            break;
+                        }
+                        apply(new DataInputStream(new ByteArrayInputStream(body)));
+                        goodLength += 8 + length;
+                    } catch (EOFException e) {
+                        break;
+                    }
+                }
+            }
+            if (truncateTornTail && goodLength < Files.size(file)) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                    channel.truncate(goodLength);
+                }
+            }
+        }
+
+        private void apply(DataInputStream in) throws IOException {
+            byte type = in.readByte();
+            switch (type) {
+                case SNAPSHOT_HEADER:
+                    firstSegment = in.readLong();
+                    break;
+                case CUSTOMER:
+                    readCustomer(in);
+                    break;
+                case ORDER: {
+                    Order order = readOrder(in);
+                    if (order != null) {
+                        orders.put(order.getOrderId(), order);
+                        long[] times = order.getTracker().getUpdateTimes();
+                        imageTimes.put(order.getOrderId(), times.length == 0 ? Long.MIN_VALUE : times[times.length - 1]);
+                    }
+                    break;
+                }
+                case ORDER_REMOVED: {
+                    Order removed = orders.remove(in.readUTF());
+                    if (removed != null && removed.getCustomer() != null) {
+                        removed.getCustomer().getOrderHistory().restore(new OrderSummary(removed), removed); // Archived, not forgotten
+                    }
+                    break;
+                }
+                case STATUS: {
+                    String orderId = in.readUTF();
+                    Order order = orders.get(orderId);
+                    String status = in.readUTF();
+                    long millis = in.readLong();
+                    if (order != null && !inImage(orderId, order, status, millis)) {
+                        order.getTracker().restoreStatus(status, millis);
+                    }
+                    break;
+                }
+                case PAYMENT: {
+                    Order order = orders.get(in.readUTF());
+                    if (order != null) {
+                        order.setPaid(true);
+                    }
+                    break;
+                }
+                case FEEDBACK: {
+                    Feedback feedback = readFeedback(in);
+                    Order order = orders.get(feedback.getOrderId());
+                    if (order != null) {
+                        order.restoreFeedback(feedback);
+                    }
+                    break;
+                }
+                case LOYALTY: {
+                    Customer customer = customers.get(in.readUTF());
+                    int balance = in.readInt();
+                    if (customer != null) {
+                        customer.restoreLoyaltyPoints(balance);
+                    }
+                    break;
+                }
+                case LOYALTY_TXN: {
+                    Customer customer = customers.get(in.readUTF());
+                    LoyaltyLedger.Transaction transaction = readLoyalty(in);
+                    if (customer != null) {
+                        customer.getLoyaltyLedger().restore(transaction);
+                    }
+                    break;
+                }
+                case HISTORY: {
+                    Customer customer = customers.get(in.readUTF());
+                    OrderSummary summary = new OrderSummary(in.readUTF(), in.readLong(), in.readLong(), in.readInt(), in.readBoolean());
+                    if (customer != null) {
+                        customer.getOrderHistory().restore(summary, null);
+                    }
+                    break;
+                }
+                case HISTORY_ORDER: {
+                    Order order = readOrder(in);
+                    if (order != null && order.getCustomer() != null) {
+                        order.getCustomer().getOrderHistory().restore(new OrderSummary(order), order);
+                    }
+                    break;
+                }
+                case CAPTURE: {
+                    PendingCapture capture = readCapture(in);
+                    captures.put(capture.orderId, capture);
+                    break;
+                }
+                case CAPTURE_BATCH: {
+                    String batchId = in.readUTF();
+                    for (String orderId : readOrderIds(in)) {
+                        PendingCapture capture = captures.get(orderId);
+                        if (capture != null) {
+                            capture.batchId = batchId;
+                        }
+                    }
+                    break;
+                }
+                case CAPTURED:
+                    captures.keySet().removeAll(readOrderIds(in));
+                    break;
+                case STOCK:
+                    readStock(in);
+                    break;
+                default:
+                    throw new IOException("Unknown journal record type " + type);
+            }
+        }
+
+        /*Whether the order's replayed image already holds this status change: it is at or before the image's
+        latest status time, and a change at that very millisecond only counts if the image has that status then*/
+        private boolean inImage(String orderId, Order order, String status, long millis) {
+            Long imageTime = imageTimes.get(orderId);
+            if (imageTime == null || millis > imageTime) {
+                return false;
+            }
+            return millis < imageTime || order.getTracker().hasUpdate(millis, OrderStatus.fromLabel(status));
+        }
+
+        private void readCustomer(DataInputStream in) throws IOException {
+            String id = in.readUTF();
+            Customer customer = new Customer(id, readNullable(in), readNullable(in), readNullable(in), readNullable(in));
+            customer.restoreLoyaltyPoints(in.readInt());
+            Customer existing = customers.putIfAbsent(id, customer);
+            if (existing != null) {
+                existing.restoreLoyaltyPoints(customer.getLoyaltyPoints());
+            }
+        }
+
+        private Order readOrder(DataInputStream in) throws IOException {
+            String orderId = in.readUTF();
+            Customer customer = customers.get(in.readUTF());
+            LocalDateTime orderTime = readTime(in);
+            String deliveryType = in.readUTF();
+            long deliveryCharge = in.readLong();
+            long subtotal = in.readLong();
+            long discount = in.readLong();
+            long total = in.readLong();
+            String promotionCode = readNullable(in);
+            boolean paid = in.readBoolean();
+            String status = in.readUTF();
+            int pizzaCount = in.readInt();
+            String[] names = new String[pizzaCount];
+            long[] basePrices = new long[pizzaCount];
+            boolean[] custom = new boolean[pizzaCount];
+            String[] crustNames = new String[pizzaCount]; // Crusts are resolved last, once their thickness is read
+            long[] crustPrices = new long[pizzaCount];
+            Sauce[] sauces = new Sauce[pizzaCount];
+            List<List<Topping>> toppings = new ArrayList<>(pizzaCount);
+            for (int i = 0; i < pizzaCount; i++) {
+                names[i] = in.readUTF();
+                basePrices[i] = in.readLong();
+                custom[i] = in.readBoolean();
+                crustNames[i] = in.readUTF();
+                crustPrices[i] = in.readLong();
+                sauces[i] = (Sauce) lookup(in, MenuCatalog.Category.SAUCE);
+                int toppingCount = in.readShort();
+                List<Topping> pizzaToppings = new ArrayList<>(toppingCount);
+                for (int t = 0; t < toppingCount; t++) {
+                    pizzaToppings.add((Topping) lookup(in, MenuCatalog.Category.TOPPING));
+                }
+                toppings.add(pizzaToppings);
+            }
+            Feedback feedback = in.readBoolean() ? readFeedback(in) : null;
+            int historySize = in.readInt();
+            long[] times = new long[historySize];
+            byte[] codes = new byte[historySize];
+            for (int i = 0; i < historySize; i++) {
+                times[i] = in.readLong();
+                codes[i] = in.readByte();
+            }
+            boolean bestDeal = false;
+            int redeemedPoints = 0;
+            if (in.available() > 0) { // Images journaled before these were added end here
+                bestDeal = in.readBoolean();
+                redeemedPoints = in.readInt();
+            }
+            String[] thicknesses = new String[pizzaCount];
+            Arrays.fill(thicknesses, "regular"); // Images journaled before crust thickness was kept end here
+            if (in.available() > 0) {
+                for (int i = 0; i < pizzaCount; i++) {
+                    thicknesses[i] = readNullable(in);
+                }
+            }
+            List<Pizza> pizzas = new ArrayList<>(pizzaCount);
+            for (int i = 0; i < pizzaCount; i++) {
+                Crust crust = (Crust) resolve(MenuCatalog.Category.CRUST, crustNames[i], crustPrices[i], thicknesses[i]);
+                Pizza pizza = new Pizza(names[i], crust, sauces[i], basePrices[i]);
+                for (Topping topping : toppings.get(i)) {
+                    pizza.restoreTopping(topping);
+                }
+                pizza.setCustom(custom[i]);
+                pizzas.add(pizza);
+            }
+            if (customer == null) {
+                return null; // Customer record lost; nothing to attach the order to
+            }
+            Order order = new Order(orderId, customer, deliveryType, deliveryCharge);
+            order.restoreMenu(menu); // Holds every option the image uses, at its journaled price
+            order.restore(orderTime, pizzas, subtotal, discount, total,
+                promotionCode == null ? null : promotions.get(promotionCode), bestDeal, redeemedPoints, paid, status);
+            order.getTracker().restoreHistory(times, codes);
+            if (feedback != null) {
+                order.restoreFeedback(feedback);
+            }
+            return order;
+        }
+
+        /*Resolves a journaled customization by name against the menu, listed or retired. One the menu has never
+        seen is adopted as retired at its journaled price (see MenuCatalog.withRetired), so every recovered pizza
+        that used it shares one flyweight and a menu that lists it again keeps it. The order's own totals are journaled*/
+        private Customization lookup(DataInputStream in, MenuCatalog.Category category) throws IOException {
+            String name = in.readUTF();
+            return resolve(category, name, in.readLong(), null);
+        }
+
+        // Resolves an option by name, adopting it at the journaled price (and, for a crust, thickness) if the menu has none
+        private Customization resolve(MenuCatalog.Category category, String name, long price, String thickness) {
+            Customization c = menu.find(category, name);
+            if (c == null) {
+                c = menu.findRetired(category, name);
+            }
+            if (c == null) {
+                menu = menu.withRetired(category, name, price, thickness);
+                c = menu.findRetired(category, name);
+            }
+            return c;
+        }
+
+        // Keeps a journaled stock level if it is the newest seen for its option; options no menu knows are skipped
+        private void readStock(DataInputStream in) throws IOException {
+            MenuCatalog.Category category = MenuCatalog.Category.valueOf(in.readUTF());
+            String name = in.readUTF();
+            long portions = in.readLong();
+            int version = in.readInt();
+            long stocked = in.readLong();
+            Customization option = menu.find(category, name);
+            if (option == null) {
+                option = menu.findRetired(category, name);
+            }
+            if (option == null) {
+                return;
+            }
+            Inventory.Level known = stock.get(option);
+            if (known == null || Inventory.newer(version, known.version)) {
+                stock.put(option, new Inventory.Level(option, portions, version, stocked));
+            }
+        }
+
+        private static Feedback readFeedback(DataInputStream in) throws IOException {
+            String orderId = in.readUTF();
+            int rating = in.readByte();
+            String comment = in.readUTF();
+            return new Feedback(orderId, rating, comment, readTime(in));
+        }
+    }
+}
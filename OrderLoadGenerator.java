@@ -0,0 +1,87 @@
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/* This module drives synthetic load through the OrderIntakeEngine.
+   Pushes N concurrent order sessions (random pizzas, delivery zones, promotions and payment methods)
+   through the same engine the console uses, then verifies the order store and reports throughput.
+   Run with: java OrderLoadGenerator [sessions] [customers]   (defaults: 10000 sessions, 100 customers) */
+
+public class OrderLoadGenerator {
+    private static final String[] PROMOTION_CODES = {null, null, "WELCOME", "SPECIAL", "EXPIRED"};
+
+    public static void main(String[] args) throws Exception {
+        if (System.getProperty("pizza.journal.dir") == null) {
+            System.setProperty("pizza.journal.dir", "off"); // Synthetic load is not journaled unless asked for
+        }
+        if (System.getProperty("pizza.archive.dir") == null) {
+            System.setProperty("pizza.archive.dir", "off"); // ...nor archived
+        }
+        if (System.getProperty("pizza.kitchen.mode") == null) {
+            System.setProperty("pizza.kitchen.mode", "off"); // ...nor scheduled in the kitchen
+        }
+        if (System.getProperty("pizza.log.file") == null) {
+            System.setProperty("pizza.log.file", "off"); // ...nor logged
+        }
+        if (System.getProperty("pizza.payments.poolSize") == null) {
+            System.setProperty("pizza.payments.poolSize", "2048"); // Enough provider connections to keep every session's payment in flight
+        }
+        int sessions = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int customerCount = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+
+        PizzaOr_sys system = new PizzaOr_sys();
+        OrderIntakeEngine engine = system.getIntakeEngine();
+        for (int i = 0; i < customerCount; i++) {
+            engine.registerCustomer(new Customer("LOAD" + i, "Load Customer " + i, "Colombo", "0770000000", "load@example.com"));
+        }
+
+        AtomicLong totalLatencyNanos = new AtomicLong();
+        List<CompletableFuture<Order>> results = new ArrayList<>(sessions);
+        long start = System.nanoTime();
+        for (int i = 0; i < sessions; i++) {
+            OrderRequest request = randomRequest("LOAD" + (i % customerCount), engine.getMenu().size());
+            long submitted = System.nanoTime();
+            results.add(engine.submit(request).whenComplete((order, error) ->
+                totalLatencyNanos.addAndGet(System.nanoTime() - submitted)));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0])).join();
+        long elapsed = System.nanoTime() - start;
+        NotificationDispatcher.shared().awaitIdle(10_000); // Let queued customer notifications reach the event log
+
+        long placed = results.stream().filter(f -> f.join() != null).count();
+        System.out.println("Sessions submitted : " + sessions);
+        System.out.println("Orders placed      : " + placed);
+        System.out.println("Orders in store    : " + system.getOrders().size());
+        System.out.printf("Elapsed            : %.1f ms%n", elapsed / 1e6);
+        System.out.printf("Throughput         : %.0f orders/s%n", placed / (elapsed / 1e9));
+        System.out.printf("Mean latency       : %.3f ms%n", totalLatencyNanos.get() / 1e6 / sessions);
+        System.out.print(NotificationDispatcher.shared().metricsReport());
+        System.out.print(PaymentProcessor.creditCard().statsReport());
+        System.out.print(PaymentProcessor.payPal().statsReport());
+        if (placed != system.getOrders().size()) {
+            System.out.println("ERROR: order store does not match placed orders");
+            System.exit(1);
+        }
+        system.shutdown();
+    }
+
+    // Builds a random order: 1-4 menu pizzas, any delivery zone, an occasional promotion code and a random payment method
+    private static OrderRequest randomRequest(String customerId, int menuSize) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Integer> selections = new ArrayList<>();
+        int pizzaCount = 1 + random.nextInt(4);
+        for (int p = 0; p < pizzaCount; p++) {
+            selections.add(random.nextInt(menuSize));
+        }
+        int zone = random.nextInt(4);
+        PaymentStrategy payment;
+        switch (random.nextInt(3)) {
+            case 0: payment = new CreditCardPayment("4111111111111111"); break;
+            case 1: payment = new PayPalPayment("load@example.com", "secret"); break;
+            default: payment = new CashPayment(zone == 0 ? "ON_PICKUP" : "ON_DELIVERY");
+        }
+        String promo = PROMOTION_CODES[random.nextInt(PROMOTION_CODES.length)];
+        return new OrderRequest(customerId, selections, Collections.emptyList(), zone, promo, payment);
+    }
+}
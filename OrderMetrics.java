@@ -0,0 +1,196 @@
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/* This class is the metrics surface of the order lifecycle.
+   Counts orders placed, promotion hits and misses and validator rejections with LongAdder counters,
+   and records payment latency per PaymentStrategy and time spent in each order status with
+   LatencyHistograms. Everything is exported in the Prometheus text format, either written to a file
+   on a schedule (pizza.metrics.file, pizza.metrics.intervalSeconds) or served over HTTP at
+   /metrics (pizza.metrics.port).
+   Metrics are switched on with -Dpizza.metrics=true. ENABLED is a static final constant, so when it is
+   false the JIT removes every recording call and the hot paths pay nothing. */
+final class OrderMetrics {
+    static final boolean ENABLED = Boolean.getBoolean("pizza.metrics");
+
+    private static final LongAdder ordersPlaced = new LongAdder();
+    private static final LongAdder promotionHits = new LongAdder();
+    private static final LongAdder promotionMisses = new LongAdder();
+    private static final Map<String, LongAdder> validatorRejections = new ConcurrentHashMap<>();
+    private static final Map<String, LatencyHistogram> paymentLatency = new ConcurrentHashMap<>();
+    private static final LatencyHistogram[] timeInStatus = new LatencyHistogram[OrderStatus.values().length];
+    static {
+        for (int i = 0; i < timeInStatus.length; i++) {
+            timeInStatus[i] = new LatencyHistogram();
+        }
+    }
+    private static long lastRateNanos = System.nanoTime(); // Guarded by OrderMetrics.class
+    private static long lastRateOrders; // Guarded by OrderMetrics.class
+    private static ScheduledExecutorService fileWriter;
+    private static HttpServer server;
+
+    private OrderMetrics() { }
+
+    // ---- Recording (callers check ENABLED first so disabled metrics cost nothing) ----
+
+    public static void orderPlaced() {
+        ordersPlaced.increment();
+    }
+
+    public static void paymentCompleted(PaymentStrategy strategy, long nanos) {
+        paymentLatency.computeIfAbsent(strategy.getClass().getSimpleName(), k -> new LatencyHistogram()).record(nanos);
+    }
+
+    // Time an order spent in a status before moving on
+    public static void statusExited(OrderStatus status, long millis) {
+        timeInStatus[status.ordinal()].record(TimeUnit.MILLISECONDS.toNanos(millis));
+    }
+
+    public static void promotionAttempt(boolean applied) {
+        (applied ? promotionHits : promotionMisses).increment();
+    }
+
+    public static void validatorRejected(OrderValidator validator) {
+        validatorRejections.computeIfAbsent(validator.getClass().getSimpleName(), k -> new LongAdder()).increment();
+    }
+
+    // ---- Export ----
+
+    // Starts the file and/or HTTP exporters configured by the pizza.metrics.* properties
+    public static synchronized void start() {
+        if (!ENABLED) {
+            return;
+        }
+        String file = System.getProperty("pizza.metrics.file");
+        if (file != null && fileWriter == null) {
+            Path path = Paths.get(file);
+            long interval = Long.getLong("pizza.metrics.intervalSeconds", 15);
+            fileWriter = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "metrics-writer");
+                thread.setDaemon(true);
+                return thread;
+            });
+            fileWriter.scheduleAtFixedRate(() -> writeTo(path), interval, interval, TimeUnit.SECONDS);
+        }
+        Integer port = Integer.getInteger("pizza.metrics.port");
+        if (port != null && server == null) {
+            try {
+                server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+            } catch (IOException e) {
+                EventLog.shared().warning("metrics endpoint unavailable (" + e.getMessage() + ")");
+                return;
+            }
+            server.createContext("/metrics", exchange -> {
+                byte[] body = prometheusText().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            server.setExecutor(null); // Served on the server's own dispatcher thread
+            server.start();
+        }
+    }
+
+    // Writes a final dump and stops the exporters
+    public static synchronized void stop() {
+        if (fileWriter != null) {
+            fileWriter.shutdownNow();
+            writeTo(Paths.get(System.getProperty("pizza.metrics.file")));
+            fileWriter = null;
+        }
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    // Replaces the file atomically so scrapers never read a half-written dump
+    public static void writeTo(Path path) {
+        try {
+            Path parent = path.toAbsolutePath().getParent();
+            Path temp = Files.createTempFile(parent, "metrics", ".tmp");
+            Files.write(temp, prometheusText().getBytes(StandardCharsets.UTF_8));
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            EventLog.shared().warning("could not write metrics to " + path + " (" + e.getMessage() + ")");
+        }
+    }
+
+    // All metrics in the Prometheus text exposition format
+    public static String prometheusText() {
+        StringBuilder out = new StringBuilder(4096);
+        long orders = ordersPlaced.sum();
+        counter(out, "pizza_orders_placed_total", "Orders paid and placed", orders);
+        gauge(out, "pizza_orders_placed_per_second", "Orders placed per second since the previous export", ordersPerSecond(orders));
+
+        out.append("# HELP pizza_promotion_attempts_total Promotion codes entered, by whether they applied\n");
+        out.append("# TYPE pizza_promotion_attempts_total counter\n");
+        long hits = promotionHits.sum();
+        long misses = promotionMisses.sum();
+        out.append("pizza_promotion_attempts_total{result=\"hit\"} ").append(hits).append('\n');
+        out.append("pizza_promotion_attempts_total{result=\"miss\"} ").append(misses).append('\n');
+        gauge(out, "pizza_promotion_hit_ratio", "Share of entered promotion codes that applied",
+            hits + misses == 0 ? 0.0 : hits / (double) (hits + misses));
+
+        out.append("# HELP pizza_validator_rejections_total Orders rejected, by validator\n");
+        out.append("# TYPE pizza_validator_rejections_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : new TreeMap<>(validatorRejections).entrySet()) {
+            out.append("pizza_validator_rejections_total{validator=\"").append(entry.getKey()).append("\"} ")
+                .append(entry.getValue().sum()).append('\n');
+        }
+
+        out.append("# HELP pizza_payment_seconds Payment latency, by payment strategy\n");
+        out.append("# TYPE pizza_payment_seconds summary\n");
+        for (Map.Entry<String, LatencyHistogram> entry : new TreeMap<>(paymentLatency).entrySet()) {
+            summary(out, "pizza_payment_seconds", "strategy=\"" + entry.getKey() + "\"", entry.getValue());
+        }
+
+        out.append("# HELP pizza_order_status_seconds Time orders spent in a status before the next transition\n");
+        out.append("# TYPE pizza_order_status_seconds summary\n");
+        for (OrderStatus status : OrderStatus.values()) {
+            LatencyHistogram histogram = timeInStatus[status.ordinal()];
+            if (histogram.getCount() > 0) {
+                summary(out, "pizza_order_status_seconds", "status=\"" + status.name() + "\"", histogram);
+            }
+        }
+        return out.toString();
+    }
+
+    private static synchronized double ordersPerSecond(long orders) {
+        long now = System.nanoTime();
+        double rate = now == lastRateNanos ? 0.0 : (orders - lastRateOrders) / ((now - lastRateNanos) / 1e9);
+        lastRateNanos = now;
+        lastRateOrders = orders;
+        return rate;
+    }
+
+    private static void counter(StringBuilder out, String name, String help, long value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" counter\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder out, String name, String help, double value) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(" gauge\n");
+        out.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder out, String name, String labels, LatencyHistogram histogram) {
+        for (double quantile : new double[] {0.5, 0.9, 0.99, 0.999}) {
+            out.append(name).append('{').append(labels).append(",quantile=\"").append(quantile).append("\"} ")
+                .append(histogram.valueAt(quantile) / 1e9).append('\n');
+        }
+        out.append(name).append("_sum{").append(labels).append("} ").append(histogram.getSum() / 1e9).append('\n');
+        out.append(name).append("_count{").append(labels).append("} ").append(histogram.getCount()).append('\n');
+    }
+}
@@ -0,0 +1,165 @@
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+/* This class provides the in-memory order store for the system.
+   Keeps a concurrent hash index on order ID so tracking lookups and status updates are O(1).
+   Maintains secondary indexes on customer ID and order status, and a sorted index on order time
+   for range queries. Registers itself as the status listener of each stored order's tracker so the
+   status index follows every transition synchronously.
+   Each order's move between status buckets happens inside one compute on its entry in indexedStatus, so
+   concurrent transitions of the same order are applied one at a time. Time buckets are immutable sets
+   replaced through compute, so removing the last order of a bucket can never drop one saved meanwhile. */
+class OrderRepository implements OrderObserver {
+    private final Map<String, Order> byId; // Primary index: order ID -> order
+    private final Map<String, Set<Order>> byCustomer; // Secondary index: customer ID -> orders
+    private final Map<String, Set<Order>> byStatus; // Secondary index: status -> orders
+    private final Map<String, String> indexedStatus; // Status each order is currently indexed under
+    private final ConcurrentNavigableMap<LocalDateTime, Set<Order>> byOrderTime; // Sorted index on order time; buckets are immutable
+
+    public OrderRepository() {
+        this.byId = new ConcurrentHashMap<>();
+        this.byCustomer = new ConcurrentHashMap<>();
+        this.byStatus = new ConcurrentHashMap<>();
+        this.indexedStatus = new ConcurrentHashMap<>();
+        this.byOrderTime = new ConcurrentSkipListMap<>();
+    }
+
+    // Stores an order and indexes it; returns false if an order with the same ID already exists
+    public boolean save(Order order) {
+        if (byId.putIfAbsent(order.getOrderId(), order) != null) {
+            return false;
+        }
+        bucket(byCustomer, order.getCustomer().getCustID()).add(order);
+        byOrderTime.compute(order.getOrderTime(), (time, orders) -> with(orders, order));
+        reindexStatus(order, order.getStatus());
+        order.getTracker().setStatusListener(this); // Keep the status index in step with the tracker
+        return true;
+    }
+
+    // Removes an order from all indexes; returns false if it was not stored
+    public boolean remove(Order order) {
+        if (!byId.remove(order.getOrderId(), order)) {
+            return false;
+        }
+        removeFrom(byCustomer, order.getCustomer().getCustID(), order);
+        indexedStatus.computeIfPresent(order.getOrderId(), (id, status) -> {
+            removeFrom(byStatus, status, order);
+            return null;
+        });
+        byOrderTime.computeIfPresent(order.getOrderTime(), (time, orders) -> without(orders, order));
+        if (order.getTracker().getStatusListener() == this) {
+            order.getTracker().setStatusListener(null);
+        }
+        return true;
+    }
+
+    // Finds an order by its ID, or null if not stored
+    public Order findById(String orderId) {
+        return orderId == null ? null : byId.get(orderId);
+    }
+
+    // Returns all orders placed by the given customer
+    public List<Order> findByCustomer(String customerId) {
+        Set<Order> orders = byCustomer.get(customerId);
+        return orders == null ? new ArrayList<>() : sortedByTime(orders);
+    }
+
+    // Returns all orders currently in the given status
+    public List<Order> findByStatus(String status) {
+        Set<Order> orders = byStatus.get(status);
+        return orders == null ? new ArrayList<>() : sortedByTime(orders);
+    }
+
+    // Returns all orders placed within [from, to], oldest first
+    public List<Order> findByOrderTime(LocalDateTime from, LocalDateTime to) {
+        List<Order> result = new ArrayList<>();
+        if (from.isAfter(to)) {
+            return result;
+        }
+        for (Set<Order> orders : byOrderTime.subMap(from, true, to, true).values()) {
+            result.addAll(orders);
+        }
+        return result;
+    }
+
+    // Returns every stored order, oldest first
+    public List<Order> findAll() {
+        List<Order> result = new ArrayList<>(byId.size());
+        for (Set<Order> orders : byOrderTime.values()) {
+            result.addAll(orders);
+        }
+        return result;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    // Called by the OrderTracker on every status change to move the order between status buckets
+    @Override
+    public void update(String status, String orderId) {
+        Order order = byId.get(orderId);
+        if (order != null) {
+            reindexStatus(order, status);
+        }
+    }
+
+    // Moves the order to the status bucket in one step per order; does nothing once the order has been removed
+    private void reindexStatus(Order order, String status) {
+        indexedStatus.compute(order.getOrderId(), (id, previous) -> {
+            if (byId.get(id) != order) {
+                return previous;
+            }
+            if (!status.equals(previous)) {
+                if (previous != null) {
+                    removeFrom(byStatus, previous, order);
+                }
+                bucket(byStatus, status).add(order);
+            }
+            return status;
+        });
+    }
+
+    /*A copy of a time bucket with the order added, or without it (null once empty)
+    Pure, as ConcurrentSkipListMap may apply a compute function more than once*/
+    private static Set<Order> with(Set<Order> orders, Order order) {
+        if (orders == null) {
+            return Collections.singleton(order);
+        }
+        Set<Order> copy = new HashSet<>(orders);
+        copy.add(order);
+        return Collections.unmodifiableSet(copy);
+    }
+
+    private static Set<Order> without(Set<Order> orders, Order order) {
+        if (!orders.contains(order)) {
+            return orders;
+        }
+        if (orders.size() == 1) {
+            return null;
+        }
+        Set<Order> copy = new HashSet<>(orders);
+        copy.remove(order);
+        return Collections.unmodifiableSet(copy);
+    }
+
+    private static Set<Order> bucket(Map<String, Set<Order>> index, String key) {
+        return index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet());
+    }
+
+    private static void removeFrom(Map<String, Set<Order>> index, String key, Order order) {
+        Set<Order> orders = index.get(key);
+        if (orders != null) {
+            orders.remove(order);
+        }
+    }
+
+    private static List<Order> sortedByTime(Set<Order> orders) {
+        List<Order> result = new ArrayList<>(orders);
+        result.sort(Comparator.comparing(Order::getOrderTime).thenComparing(Order::getOrderId));
+        return result;
+    }
+}
@@ -0,0 +1,28 @@
+import java.util.*;
+
+/*Everything needed to place an order in one call, for headless clients and load generators*/
+class OrderRequest {
+    private final String customerId;
+    private final List<Integer> menuSelections; // 0-based positions in the predefined pizza menu
+    private final List<Pizza> customPizzas;
+    private final int deliveryZone; // 0 = pickup, 1-3 = delivery zones
+    private final String promotionCode; // May be null; OrderSession.BEST_DEAL picks the best available deal
+    private final PaymentStrategy paymentStrategy;
+
+    public OrderRequest(String customerId, List<Integer> menuSelections, List<Pizza> customPizzas,
+                        int deliveryZone, String promotionCode, PaymentStrategy paymentStrategy) {
+        this.customerId = customerId;
+        this.menuSelections = menuSelections;
+        this.customPizzas = customPizzas;
+        this.deliveryZone = deliveryZone;
+        this.promotionCode = promotionCode;
+        this.paymentStrategy = paymentStrategy;
+    }
+
+    public String getCustomerId() { return customerId; }
+    public List<Integer> getMenuSelections() { return menuSelections; }
+    public List<Pizza> getCustomPizzas() { return customPizzas; }
+    public int getDeliveryZone() { return deliveryZone; }
+    public String getPromotionCode() { return promotionCode; }
+    public PaymentStrategy getPaymentStrategy() { return paymentStrategy; }
+}
@@ -0,0 +1,170 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/*A single customer's in-progress order
+Mirrors the steps of the console flow; not safe for use by more than one thread at a time*/
+class OrderSession {
+    static final String BEST_DEAL = "BEST"; // Promotion code that asks for the best available deal
+    private final OrderIntakeEngine engine;
+    private final Order order;
+    private volatile boolean closed; // Placed or cancelled; volatile as checkoutAsync places the order on another thread
+    private volatile boolean placed;
+
+    OrderSession(OrderIntakeEngine engine, Customer customer) {
+        this.engine = engine;
+        this.order = new Order("", customer, "PICKUP", 0);
+    }
+
+    // Adds the predefined pizza at the given menu position (0-based); returns false if there is none or it is out of stock
+    public boolean addPredefinedPizza(int menuIndex) {
+        List<Pizza> menu = engine.getMenu();
+        if (closed || menuIndex < 0 || menuIndex >= menu.size()) {
+            return false;
+        }
+        return order.addPizza(menu.get(menuIndex));
+    }
+
+    /*Adds the predefined pizza at the given menu position with extra toppings: a copy of the template holding the extras
+    Returns false, adding nothing, if there is no such pizza or a topping or ingredient is unavailable*/
+    public boolean addPredefinedPizza(int menuIndex, List<Topping> extras) {
+        if (extras.isEmpty()) {
+            return addPredefinedPizza(menuIndex);
+        }
+        List<Pizza> menu = engine.getMenu();
+        if (closed || menuIndex < 0 || menuIndex >= menu.size()) {
+            return false;
+        }
+        Pizza pizza = new Pizza(menu.get(menuIndex));
+        for (Topping topping : extras) {
+            if (!pizza.addTopping(topping)) {
+                return false;
+            }
+        }
+        return order.addPizza(pizza);
+    }
+
+    // Adds a pizza, reserving its ingredients; returns false if the session is closed or they are out of stock
+    public boolean addPizza(Pizza pizza) {
+        return !closed && order.addPizza(pizza);
+    }
+
+    /*Adds a copy of every pizza (the template itself for predefined ones) of one of the customer's earlier orders and takes its delivery type and charge
+    Pizzas are priced at today's customization prices, all in one pass; a pizza with a crust, sauce or topping
+    that is no longer available or out of stock is left out. Returns the pizzas left out, or null if the order
+    is not the customer's or the session is closed*/
+    public List<Pizza> reorder(Order past) {
+        if (closed || past == null || !past.getCustomer().getCustID().equals(order.getCustomer().getCustID())) {
+            return null;
+        }
+        List<Pizza> pastPizzas = past.getPizzas();
+        List<Pizza> copies = new ArrayList<>(pastPizzas.size());
+        List<Pizza> unavailable = new ArrayList<>();
+        for (int i = 0; i < pastPizzas.size(); i++) {
+            Pizza pizza = pastPizzas.get(i);
+            if (pizza.isAvailable()) {
+                copies.add(pizza.isTemplate() ? pizza : new Pizza(pizza)); // templates are shared, not copied
+            } else {
+                unavailable.add(pizza);
+            }
+        }
+        unavailable.addAll(order.addPizzas(copies));
+        order.setDeliveryType(past.getDeliveryType(), past.getDeliveryChargeCents());
+        return unavailable;
+    }
+
+    // Reorders the customer's most recent order (see reorder); null if they have none
+    public List<Pizza> reorderLast() {
+        return reorder(order.getCustomer().getOrderHistory().mostRecent());
+    }
+
+    // Selects pickup (zone 0) or a delivery zone (1-3); returns false for an unknown zone
+    public boolean setDeliveryZone(int zone) {
+        long charge = OrderIntakeEngine.deliveryChargeForZone(zone);
+        if (closed || charge < 0) {
+            return false;
+        }
+        order.setDeliveryType(zone == 0 ? "PICKUP" : "DELIVERY", charge);
+        return true;
+    }
+
+    // Applies the promotion with the given code; returns false if it is unknown or expired
+    public boolean applyPromotion(String code) {
+        Promotion promo = engine.findPromotion(code);
+        if (closed || promo == null || !promo.isValid()) {
+            if (OrderMetrics.ENABLED && !closed) {
+                OrderMetrics.promotionAttempt(false);
+            }
+            return false;
+        }
+        if (OrderMetrics.ENABLED) {
+            OrderMetrics.promotionAttempt(true);
+        }
+        order.applyPromotion(promo);
+        return true;
+    }
+
+    // Gives the order the best available deal instead of a promotion code; returns false once the session is closed
+    public boolean applyBestDeal() {
+        if (closed) {
+            return false;
+        }
+        order.applyBestDeal();
+        return true;
+    }
+
+    // Redeems loyalty points against the order (1 point = LKR 1); they stay held until the order is paid or cancelled
+    public boolean redeemPoints(int points) {
+        return !closed && order.redeemPoints(points);
+    }
+
+    /*Pays for the order and places it once the payment is approved; returns true if the order was placed
+    The order is validated before the customer is charged; a paid order rejected by a later check has its payment voided*/
+    public boolean checkout(PaymentStrategy paymentStrategy) {
+        if (closed || paymentStrategy == null || order.getPizzas().isEmpty() || !engine.validateUnpaid(order)) {
+            return false;
+        }
+        if (!order.processPayment(paymentStrategy)) {
+            return false; // Declined or failed: not a validation rejection, so the validators never see it
+        }
+        return place();
+    }
+
+    /*Pays for the order without blocking and places it once the payment is approved
+    Completes with true if the order was placed; a declined or failed payment leaves the session open for another try*/
+    public CompletableFuture<Boolean> checkoutAsync(PaymentStrategy paymentStrategy) {
+        if (closed || paymentStrategy == null || order.getPizzas().isEmpty() || !engine.validateUnpaid(order)) {
+            return CompletableFuture.completedFuture(false);
+        }
+        return order.processPaymentAsync(paymentStrategy)
+            .thenApplyAsync(result -> result.isApproved() && place(), engine.getExecutor());
+    }
+
+    /*Validates the paid order and hands it to the engine
+    A paid order that is not placed (rejected, or the session was cancelled meanwhile) has its payment voided*/
+    private boolean place() {
+        if (placed) {
+            return false;
+        }
+        if (closed || !engine.validate(order)) {
+            order.voidPayment();
+            return false;
+        }
+        engine.commit(order);
+        closed = true;
+        placed = true;
+        return true;
+    }
+
+    /*Abandons the order and gives back any loyalty points and ingredients held for it
+    The order was never placed, so it gets no CANCELLED status: nothing is journaled and no one is notified*/
+    public void cancel() {
+        if (!closed) {
+            order.releasePoints();
+            order.releaseIngredients();
+            closed = true;
+        }
+    }
+
+    public Order getOrder() { return order; }
+    public Customer getCustomer() { return order.getCustomer(); }
+}
@@ -0,0 +1,55 @@
+import java.util.HashMap;
+import java.util.Map;
+
+/* This enum defines every status an order can be in, interned once for the whole system.
+   Each status has a stable one-byte code for compact storage in tracking history and journals,
+   and the label that is shown to users and kept in Order.status.
+   Statuses also map to the kitchen stage they belong to, so stage timings can treat
+   "Payment received" as the start of preparation. */
+enum OrderStatus {
+    PENDING_PAYMENT("PENDING_PAYMENT"),
+    ORDER_PLACED("Order placed"),
+    PAYMENT_RECEIVED("Payment received - Order is being prepared"),
+    PLACED("PLACED"),
+    PREPARING("PREPARING"),
+    IN_OVEN("IN_OVEN"),
+    READY_FOR_DELIVERY("READY_FOR_DELIVERY"),
+    OUT_FOR_DELIVERY("OUT_FOR_DELIVERY"),
+    DELIVERED("DELIVERED"),
+    CANCELLED("CANCELLED");
+
+    private static final OrderStatus[] BY_CODE = values();
+    private static final Map<String, OrderStatus> BY_LABEL = new HashMap<>();
+    static {
+        for (OrderStatus status : BY_CODE) {
+            BY_LABEL.put(status.label, status);
+        }
+    }
+
+    private final String label;
+
+    OrderStatus(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() { return label; }
+    public byte getCode() { return (byte) ordinal(); }
+
+    // The kitchen stage this status belongs to (payment received starts preparation)
+    public OrderStatus getStage() {
+        return this == PAYMENT_RECEIVED ? PREPARING : this;
+    }
+
+    public static OrderStatus fromCode(byte code) {
+        return BY_CODE[code];
+    }
+
+    // Resolves a status label (or enum name); throws IllegalArgumentException for unknown statuses
+    public static OrderStatus fromLabel(String label) {
+        OrderStatus status = BY_LABEL.get(label);
+        if (status == null) {
+            status = valueOf(label);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,33 @@
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/*What a customer's history keeps of a placed order; immutable
+Status is not kept, as it changes after placement: load the order, or look it up in the archive*/
+final class OrderSummary {
+    private final String orderId;
+    private final long epochMillis; // Order time, as the archive stores it
+    private final long totalCents;
+    private final int pizzaCount;
+    private final boolean delivery;
+
+    OrderSummary(Order order) {
+        this(order.getOrderId(), order.getOrderTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+            order.getTotalCents(), order.getPizzas().size(), "DELIVERY".equals(order.getDeliveryType()));
+    }
+
+    OrderSummary(String orderId, long epochMillis, long totalCents, int pizzaCount, boolean delivery) {
+        this.orderId = orderId;
+        this.epochMillis = epochMillis;
+        this.totalCents = totalCents;
+        this.pizzaCount = pizzaCount;
+        this.delivery = delivery;
+    }
+
+    public String getOrderId() { return orderId; }
+    public long getEpochMillis() { return epochMillis; }
+    public LocalDateTime getOrderTime() { return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault()); }
+    public long getTotalCents() { return totalCents; }
+    public int getPizzaCount() { return pizzaCount; }
+    public String getDeliveryType() { return delivery ? "DELIVERY" : "PICKUP"; }
+}
@@ -1,62 +1,160 @@
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /* This class manages the tracking and status updates for orders.
    Implements the Observer pattern to notify customers of order status changes.
-   Maintains a chronological log of status updates with timestamps.
-   Handles estimated delivery time calculations and status display formatting. */
+   The customer is always notified, without being stored per order; notifications are delivered
+   asynchronously through the shared NotificationDispatcher so slow observers never stall status updates.
+   A single synchronous status listener (the order store's status index) is called inline.
+   Keeps the status history as parallel primitive arrays of (epoch millis, status code) pairs;
+   timestamps are only formatted when the tracking is displayed (see ConsoleView).
+   Provides per-stage durations for kitchen SLAs, and estimated delivery time handling. */
 class OrderTracker {
     private Order order; // The order being tracked
-    private List<String> statusUpdates; // List to store status updates with timestamps
-    private List<OrderObserver> observers; // List of observers to notify of status changes
+    private long[] updateTimes; // Epoch millis of each status update, oldest first
+    private byte[] updateCodes; // OrderStatus code of each status update
+    private int updateCount; // Number of recorded status updates
+    private List<OrderObserver> observers; // Additional observers to notify, created on first use
+    private volatile OrderObserver statusListener; // Synchronous listener, e.g. the repository's status index
     private LocalDateTime estimatedDeliveryTime; // The estimated delivery time of the order
 
     public OrderTracker(Order order, boolean notifyImmediately) {
         this.order = order;
-        this.statusUpdates = new ArrayList<>();
-        this.observers = new ArrayList<>();
-        addObserver(order.getCustomer()); // Add the customer as an observe
+        this.updateTimes = new long[4];
+        this.updateCodes = new byte[4];
         if (notifyImmediately) {
-            updateStatus("Order placed"); // Notify observers immediately if specified
-
+            updateStatus(OrderStatus.ORDER_PLACED); // Notify observers immediately if specified
         }
     }
-    // Method to add an observer to the observer list
-    public void addObserver(OrderObserver observer) {
+    // Method to add an observer to the observer list (the customer is always notified and need not be added)
+    public synchronized void addObserver(OrderObserver observer) {
+        if (observers == null) {
+            observers = new CopyOnWriteArrayList<>();
+        }
         observers.add(observer);
     }
-    // Method to update the order status and notify observers
+    // Method to remove an observer from the observer list
+    public synchronized void removeObserver(OrderObserver observer) {
+        if (observers != null) {
+            observers.remove(observer);
+        }
+    }
+    // Sets the listener called inline on every status change, before observers are notified; null clears it
+    public void setStatusListener(OrderObserver listener) {
+        this.statusListener = listener;
+    }
+    public OrderObserver getStatusListener() {
+        return statusListener;
+    }
+    // Updates the order status from its label (e.g. "IN_OVEN"); throws IllegalArgumentException for unknown statuses
     public void updateStatus(String status) {
-        // Create a timestamp for the status update
-        String timestamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("HH:mm:ss"));
-        // Add the status update to the list with the timestamp
-        statusUpdates.add(timestamp + " - " + status);
-        order.setStatus(status); // Update the order status
+        updateStatus(OrderStatus.fromLabel(status));
+    }
+    // Method to update the order status and notify observers
+    public void updateStatus(OrderStatus status) {
+        long now = System.currentTimeMillis();
+        String label = status.getLabel();
+        synchronized (order) { // History and status change together, as the journal's image of the order sees them
+            record(now, status, OrderMetrics.ENABLED);
+            order.setStatus(label); // Update the order status
+        }
+        if (status == OrderStatus.CANCELLED) {
+            order.releaseIngredients(); // Cancelled orders give their reserved stock back
+        }
+        OrderJournal.current().recordStatus(order.getOrderId(), label, now);
+
+        OrderObserver listener = statusListener;
+        if (listener != null) {
+            listener.update(label, order.getOrderId());
+        }
+        // Queue notifications for the customer and any other observers
+        NotificationDispatcher dispatcher = NotificationDispatcher.shared();
+        dispatcher.publish(order.getCustomer(), label, order.getOrderId());
+        List<OrderObserver> extra = observers;
+        if (extra != null) {
+            for (OrderObserver observer : extra) {
+                dispatcher.publish(observer, label, order.getOrderId());
+            }
+        }
+    }
+    // Appends one (time, status) pair, growing the arrays when full; optionally reports time in the previous status
+    private synchronized void record(long epochMillis, OrderStatus status, boolean measure) {
+        if (measure && updateCount > 0) {
+            OrderMetrics.statusExited(OrderStatus.fromCode(updateCodes[updateCount - 1]),
+                epochMillis - updateTimes[updateCount - 1]);
+        }
+        if (updateCount == updateTimes.length) {
+            updateTimes = Arrays.copyOf(updateTimes, updateCount * 2);
+            updateCodes = Arrays.copyOf(updateCodes, updateCount * 2);
+        }
+        updateTimes[updateCount] = epochMillis;
+        updateCodes[updateCount] = status.getCode();
+        updateCount++;
+    }
+    // Re-applies a journaled status change during recovery, without notifying observers
+    void restoreStatus(String status, long epochMillis) {
+        OrderStatus resolved = OrderStatus.fromLabel(status);
+        record(epochMillis, resolved, false);
+        order.setStatus(resolved.getLabel());
+    }
+    // Replaces the status history with a journaled one during recovery
+    synchronized void restoreHistory(long[] times, byte[] codes) {
+        updateTimes = Arrays.copyOf(times, Math.max(4, times.length));
+        updateCodes = Arrays.copyOf(codes, Math.max(4, codes.length));
+        updateCount = times.length;
+    }
+    // Whether the history holds this status at exactly this time
+    synchronized boolean hasUpdate(long epochMillis, OrderStatus status) {
+        for (int i = updateCount - 1; i >= 0 && updateTimes[i] >= epochMillis; i--) {
+            if (updateTimes[i] == epochMillis && updateCodes[i] == status.getCode()) {
+                return true;
+            }
+        }
+        return false;
+    }
+    // Returns copies of the history as parallel arrays: [0] epoch millis, oldest first
+    public synchronized long[] getUpdateTimes() {
+        return Arrays.copyOf(updateTimes, updateCount);
+    }
+    // Status codes matching getUpdateTimes()
+    public synchronized byte[] getUpdateCodes() {
+        return Arrays.copyOf(updateCodes, updateCount);
+    }
+
+    /*Milliseconds from the first time the order entered the "from" stage to the first later time it
+    entered the "to" stage, e.g. PREPARING -> IN_OVEN; -1 if either stage has not been reached*/
+    public synchronized long stageDurationMillis(OrderStatus from, OrderStatus to) {
+        int start = -1;
+        for (int i = 0; i < updateCount; i++) {
+            OrderStatus stage = OrderStatus.fromCode(updateCodes[i]).getStage();
+            if (start < 0 && stage == from.getStage()) {
+                start = i;
+            } else if (start >= 0 && stage == to.getStage()) {
+                return updateTimes[i] - updateTimes[start];
+            }
+        }
+        return -1;
+    }
 
-        // Notify all observers of the status update
-        for (OrderObserver observer : observers) {
-            observer.update(status, order.getOrderId());
+    // Total milliseconds spent in a stage until the next transition (up to now if it is the current stage)
+    public synchronized long timeInStageMillis(OrderStatus stage) {
+        long total = 0;
+        for (int i = 0; i < updateCount; i++) {
+            if (OrderStatus.fromCode(updateCodes[i]).getStage() == stage.getStage()) {
+                long end = i + 1 < updateCount ? updateTimes[i + 1] : System.currentTimeMillis();
+                total += end - updateTimes[i];
+            }
         }
+        return total;
     }
+
     // Method to set the estimated delivery time
     public void setEstimatedDeliveryTime(LocalDateTime time) {
         this.estimatedDeliveryTime = time;
     }
-    // Method to display the tracking information
-    public void displayTracking() {
-        System.out.println("\nOrder Tracking - Order ID: " + order.getOrderId());
-        System.out.println("Current Status: " + order.getStatus());
-        // Display the estimated delivery time if available
-        if (estimatedDeliveryTime != null) {
-            System.out.println("Estimated Delivery: " + 
-                estimatedDeliveryTime.format(DateTimeFormatter.ofPattern("HH:mm")));
-        }
-        // Display all status updates with timestamps
-        System.out.println("\nStatus Updates:");
-        for (String update : statusUpdates) {
-            System.out.println(update);
-        }
+    public LocalDateTime getEstimatedDeliveryTime() {
+        return estimatedDeliveryTime;
     }
-} 
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+/*Order state while a delivery order is on its way to the customer*/
+class OutForDeliveryState implements OrderState {
+    // Transition to the Out for Delivering state
+    public void next(Order order) {
+        order.setState(new DeliveredState());
+    }
+    public void prev(Order order) {
+        order.setState(new PreparingState());
+    }
+    public String getStatus() { return "OUT_FOR_DELIVERY"; }
+}
@@ -1,7 +1,9 @@
+import java.util.concurrent.CompletableFuture;
+
 /* This class implements the PaymentStrategy interface for PayPal payments.
-   Manages PayPal account authentication and payment processing.
+   Charges the PayPal account asynchronously through the shared PayPal PaymentProcessor.
    Handles secure storage of PayPal credentials.
-   Provides formatted payment confirmation for order processing. */
+   Records each payment as an event; ConsoleView formats the confirmation. */
 class PayPalPayment implements PaymentStrategy {
     private String email; // Stores the PayPal account email
     private String password; // Stores the PayPal account password
@@ -12,9 +14,13 @@ class PayPalPayment implements PaymentStrategy {
         this.password = password;
     }
 
+    public String getEmail() { return email; }
+
     @Override
-    public void pay(double amount) {
-        // Print out the payment confirmation with the PayPal account email
-        System.out.println("Paid LKR " + String.format("%.2f", amount) + " using PayPal account: " + email);
+    public CompletableFuture<PaymentResult> pay(String orderId, String paymentKey, long amountCents) {
+        // Charge through the PayPal processor and record the outcome
+        return PaymentProcessor.payPal().charge(paymentKey, amountCents, email).whenComplete((result, error) ->
+            EventLog.shared().log(EventLog.Type.PAYMENT, orderId, null, amountCents,
+                result != null && result.isApproved() ? "PayPal approved" : "PayPal not approved"));
     }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+import java.util.List;
+import java.util.concurrent.*;
+
+/* This module defines the asynchronous payment gateway abstraction.
+   A PaymentGateway authorizes an amount against an account and completes later with a PaymentResult;
+   the money moves when authorized transactions are captured, which SettlementService does in batches.
+   Gateways must be idempotent on the request key: repeating a key returns the original outcome
+   instead of charging again, which is what makes retries after timeouts safe.
+   SimulatedPaymentGateway stands in for the card and PayPal providers, with configurable latency,
+   transient failure, decline and no-response rates, so the payment flow can be load-tested locally. */
+
+interface PaymentGateway {
+    // Authorizes the amount on the account; the key identifies the payment across retries
+    CompletableFuture<PaymentResult> charge(String idempotencyKey, long amountCents, String account);
+    // Captures authorized transactions totalling amountCents in one request; repeating a batch ID does not capture twice
+    CompletableFuture<PaymentResult> capture(String batchId, List<String> transactionIds, long amountCents);
+    String getName();
+}
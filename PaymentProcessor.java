@@ -0,0 +1,225 @@
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/* This class is the client side of one payment provider.
+   Requests go through a bounded connection pool (at most poolSize in flight; the rest wait in FIFO
+   order without holding a thread), each attempt is cut off after timeoutMillis, and transient
+   failures are retried up to maxAttempts times with exponential backoff under the same
+   idempotency key, so a retry never charges twice.
+   A circuit breaker stops sending requests after failureThreshold consecutive failures and lets
+   a single trial request through once openMillis has passed; while open, payments fail fast.
+   The shared creditCard() and payPal() processors are configured by pizza.payments.* properties. */
+class PaymentProcessor {
+    enum BreakerState { CLOSED, OPEN, HALF_OPEN }
+
+    private static volatile PaymentProcessor creditCard;
+    private static volatile PaymentProcessor payPal;
+
+    private final PaymentGateway gateway;
+    private final int poolSize;
+    private final long timeoutMillis;
+    private final int maxAttempts;
+    private final long backoffMillis;
+    private final int failureThreshold;
+    private final long openMillis;
+
+    // Connection pool; guarded by waiting
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    private int inFlight;
+
+    // Circuit breaker; guarded by this
+    private BreakerState breakerState = BreakerState.CLOSED;
+    private int consecutiveFailures;
+    private long openedAt;
+    private boolean trialInFlight;
+
+    private final AtomicLong attempts = new AtomicLong();
+    private final AtomicLong retries = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong rejectedByBreaker = new AtomicLong();
+    private final AtomicInteger breakerOpenings = new AtomicInteger();
+
+    public PaymentProcessor(PaymentGateway gateway, int poolSize, long timeoutMillis, int maxAttempts,
+                            long backoffMillis, int failureThreshold, long openMillis) {
+        this.gateway = gateway;
+        this.poolSize = poolSize;
+        this.timeoutMillis = timeoutMillis;
+        this.maxAttempts = maxAttempts;
+        this.backoffMillis = backoffMillis;
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+    }
+
+    // The processor CreditCardPayment charges through
+    public static PaymentProcessor creditCard() {
+        if (creditCard == null) {
+            synchronized (PaymentProcessor.class) {
+                if (creditCard == null) {
+                    creditCard = fromProperties(SimulatedPaymentGateway.fromProperties("card", 150));
+                }
+            }
+        }
+        return creditCard;
+    }
+
+    // The processor PayPalPayment charges through
+    public static PaymentProcessor payPal() {
+        if (payPal == null) {
+            synchronized (PaymentProcessor.class) {
+                if (payPal == null) {
+                    payPal = fromProperties(SimulatedPaymentGateway.fromProperties("paypal", 250));
+                }
+            }
+        }
+        return payPal;
+    }
+
+    // Replaces the shared processors, e.g. to point them at a real gateway or a test double
+    public static synchronized void install(PaymentProcessor card, PaymentProcessor paypal) {
+        creditCard = card;
+        payPal = paypal;
+    }
+
+    /*Wraps a gateway with the pool, timeout, retry and breaker settings from the pizza.payments.* properties
+    (poolSize, timeoutMillis, maxAttempts, backoffMillis, failureThreshold, openMillis)*/
+    public static PaymentProcessor fromProperties(PaymentGateway gateway) {
+        return new PaymentProcessor(gateway,
+            Integer.getInteger("pizza.payments.poolSize", 64),
+            Long.getLong("pizza.payments.timeoutMillis", 2000),
+            Integer.getInteger("pizza.payments.maxAttempts", 3),
+            Long.getLong("pizza.payments.backoffMillis", 50),
+            Integer.getInteger("pizza.payments.failureThreshold", 20),
+            Long.getLong("pizza.payments.openMillis", 5000));
+    }
+
+    // Charges the amount with retries under the payment key, so each payment is charged at most once
+    public CompletableFuture<PaymentResult> charge(String paymentKey, long amountCents, String account) {
+        CompletableFuture<PaymentResult> result = new CompletableFuture<>();
+        attempt(() -> gateway.charge(paymentKey, amountCents, account), 1, result);
+        return result;
+    }
+
+    // Captures a batch of authorized transactions in one round trip; the batch ID makes retries safe
+    public CompletableFuture<PaymentResult> capture(String batchId, List<String> transactionIds, long amountCents) {
+        CompletableFuture<PaymentResult> result = new CompletableFuture<>();
+        attempt(() -> gateway.capture(batchId, transactionIds, amountCents), 1, result);
+        return result;
+    }
+
+    private void attempt(Supplier<CompletableFuture<PaymentResult>> request, int attempt, CompletableFuture<PaymentResult> result) {
+        if (!allowRequest()) {
+            rejectedByBreaker.incrementAndGet();
+            result.complete(PaymentResult.failed(gateway.getName() + " circuit open").withAttempts(attempt));
+            return;
+        }
+        acquire(() -> {
+            attempts.incrementAndGet();
+            CompletableFuture<PaymentResult> response;
+            try {
+                response = request.get();
+            } catch (RuntimeException e) {
+                response = CompletableFuture.completedFuture(PaymentResult.failed(e.getMessage()));
+            }
+            response.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((outcome, error) -> {
+                release();
+                PaymentResult current = outcome;
+                if (error != null) {
+                    boolean timedOut = error instanceof TimeoutException || error.getCause() instanceof TimeoutException;
+                    if (timedOut) {
+                        timeouts.incrementAndGet();
+                    }
+                    current = PaymentResult.failed(timedOut ? gateway.getName() + " timed out" : String.valueOf(error.getMessage()));
+                }
+                recordOutcome(current);
+                if (current.isRetryable() && attempt < maxAttempts) {
+                    retries.incrementAndGet();
+                    long backoff = backoffMillis << (attempt - 1);
+                    CompletableFuture.delayedExecutor(backoff, TimeUnit.MILLISECONDS)
+                        .execute(() -> attempt(request, attempt + 1, result));
+                } else {
+                    result.complete(current.withAttempts(attempt));
+                }
+            });
+        });
+    }
+
+    // ---- Connection pool ----
+
+    private void acquire(Runnable request) {
+        synchronized (waiting) {
+            if (inFlight >= poolSize) {
+                waiting.add(request);
+                return;
+            }
+            inFlight++;
+        }
+        request.run();
+    }
+
+    private void release() {
+        Runnable next;
+        synchronized (waiting) {
+            next = waiting.poll();
+            if (next == null) {
+                inFlight--;
+                return;
+            }
+        }
+        // Hand the connection to the next waiting request on another thread; run inline, a request that
+        // completes at once would release into the next one and recurse through the whole queue
+        ForkJoinPool.commonPool().execute(next);
+    }
+
+    // ---- Circuit breaker ----
+
+    private synchronized boolean allowRequest() {
+        if (breakerState == BreakerState.OPEN && System.currentTimeMillis() - openedAt >= openMillis) {
+            breakerState = BreakerState.HALF_OPEN;
+            trialInFlight = false;
+        }
+        if (breakerState == BreakerState.HALF_OPEN) {
+            if (trialInFlight) {
+                return false;
+            }
+            trialInFlight = true; // Only one trial request while half-open
+            return true;
+        }
+        return breakerState == BreakerState.CLOSED;
+    }
+
+    // Declines count as healthy responses; only gateway errors and timeouts trip the breaker
+    private synchronized void recordOutcome(PaymentResult result) {
+        if (!result.isRetryable()) {
+            consecutiveFailures = 0;
+            if (breakerState == BreakerState.HALF_OPEN) {
+                breakerState = BreakerState.CLOSED; // The trial succeeded
+            }
+            return;
+        }
+        consecutiveFailures++;
+        if (breakerState == BreakerState.HALF_OPEN || consecutiveFailures >= failureThreshold) {
+            if (breakerState != BreakerState.OPEN) {
+                breakerOpenings.incrementAndGet();
+            }
+            breakerState = BreakerState.OPEN;
+            openedAt = System.currentTimeMillis();
+        }
+    }
+
+    public synchronized BreakerState getBreakerState() { return breakerState; }
+    public PaymentGateway getGateway() { return gateway; }
+    public long getRetries() { return retries.get(); }
+    public long getTimeouts() { return timeouts.get(); }
+    public int getBreakerOpenings() { return breakerOpenings.get(); }
+
+    // Attempts, retries, timeouts and breaker activity so far
+    public String statsReport() {
+        return String.format("%-8s | attempts %-8d | retries %-7d | timeouts %-7d | breaker opened %-4d | fast-failed %-7d | %s%n",
+            gateway.getName(), attempts.get(), retries.get(), timeouts.get(), breakerOpenings.get(),
+            rejectedByBreaker.get(), getBreakerState());
+    }
+}
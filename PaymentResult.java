@@ -0,0 +1,41 @@
+/*The outcome of a payment attempt
+Declined payments are final; transient failures (gateway errors, timeouts, open circuit) may succeed on a later try*/
+class PaymentResult {
+    enum Outcome { APPROVED, DECLINED, FAILED }
+
+    private final Outcome outcome;
+    private final String transactionId; // Set when approved
+    private final String reason; // Set when declined or failed
+    private final int attempts;
+
+    private PaymentResult(Outcome outcome, String transactionId, String reason, int attempts) {
+        this.outcome = outcome;
+        this.transactionId = transactionId;
+        this.reason = reason;
+        this.attempts = attempts;
+    }
+
+    public static PaymentResult approved(String transactionId) {
+        return new PaymentResult(Outcome.APPROVED, transactionId, null, 1);
+    }
+
+    public static PaymentResult declined(String reason) {
+        return new PaymentResult(Outcome.DECLINED, null, reason, 1);
+    }
+
+    public static PaymentResult failed(String reason) {
+        return new PaymentResult(Outcome.FAILED, null, reason, 1);
+    }
+
+    // The same outcome, recording how many attempts it took
+    PaymentResult withAttempts(int attempts) {
+        return new PaymentResult(outcome, transactionId, reason, attempts);
+    }
+
+    public boolean isApproved() { return outcome == Outcome.APPROVED; }
+    public boolean isRetryable() { return outcome == Outcome.FAILED; }
+    public Outcome getOutcome() { return outcome; }
+    public String getTransactionId() { return transactionId; }
+    public String getReason() { return reason; }
+    public int getAttempts() { return attempts; }
+}
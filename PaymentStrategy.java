@@ -1,8 +1,14 @@
+import java.util.concurrent.CompletableFuture;
+
 /* This module implements the Strategy Design Pattern for payment processing.
    Provides different payment methods (Credit Card, PayPal, Cash) with consistent interface.
    Allows flexible addition of new payment methods without modifying existing code.
-   Handles payment processing and confirmation for different payment types. */
+   Payments are asynchronous and can fail: pay() completes with a PaymentResult once the provider
+   has answered. The payment key is the idempotency key for retries: it stays the same for every try
+   that may already have charged, and changes after a decline so a corrected card is not answered
+   with the earlier decline (see Order.paymentKey).
+   Amounts are passed in cents (see Money). */
 
 interface PaymentStrategy {
-    void pay(double amount);
-} 
\ No newline at end of file
+    CompletableFuture<PaymentResult> pay(String orderId, String paymentKey, long amountCents);
+}
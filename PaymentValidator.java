@@ -0,0 +1,17 @@
+/*Concrete validator in the order validation chain (see OrderValidator)
+Rejects orders whose payment has not completed*/
+class PaymentValidator extends OrderValidator {
+    @Override
+    public boolean validate(Order order) {
+        // Check if the order is paid
+        if (!order.isPaid()) {
+            EventLog.shared().log(EventLog.Type.REJECTED, order.getOrderId(), order.getCustomer().getCustID(), 0, "payment not completed");
+            if (OrderMetrics.ENABLED) {
+                OrderMetrics.validatorRejected(this);
+            }
+            return false;
+        }
+        // Pass the validation to the next validator in the chain if it exists
+        return nextValidator != null ? nextValidator.validate(order) : true;
+    }
+}
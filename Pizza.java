@@ -3,93 +3,322 @@ import java.util.*;
 /* This class represents a Pizza entity in the system.
    It manages the composition of pizzas including crust, sauce, toppings, and pricing.
    Supports both predefined pizzas and custom pizza creation with dynamic pricing calculation.
-   Includes methods for pizza customization, price calculation, and detailed display of pizza information.
-   Implements cloning functionality to support pizza customization from templates. */
+   Includes methods for pizza customization and price calculation (ConsoleView renders pizza details).
+   Implements cloning functionality to support pizza customization from templates.
+   The crust, sauce and toppings are held as customization IDs (see Customization.byId), not references,
+   so a pizza is a few ints however many orders share the same menu options.
+   Toppings are a bitset keyed by customization ID: bit n of toppingMask is the option with ID n, IDs from 64 up
+   go in highToppings, and a topping added more than once keeps its extra portions in extraToppings.
+   Toppings are therefore listed in menu order, and comparing or grouping pizzas (see PizzaSignature) compares
+   a few words instead of walking lists.
+   Prices are exact cents (see Money) and come from a MenuCatalog version: the installed one, or the one an order was created under.
+   The computed price is cached and only recomputed after the pizza changes or it is priced on another menu version.
+   Predefined pizzas are frozen templates (see freeze): immutable, so every order line for one shares the same
+   instance. Copying a template gives a mutable pizza that remembers it (getTemplate), so a customized line is the
+   template plus a small delta of toppings (getAddedToppings) and its topping arrays are shared until changed. */
 class Pizza {
     private String name;
-    private Crust crust;
-    private Sauce sauce;
-    private double basePrice;
-    private List<Topping> toppings;
+    private int crustId;
+    private int sauceId;
+    private long basePriceCents;
+    private long toppingMask; // Bit n set: the topping with ID n is on the pizza (IDs below 64)
+    private long[] highToppings; // Word w holds IDs 64 * (w + 1) and up; null if none; replaced, never modified, so copies share it
+    private int[] extraToppings; // One ID per extra portion, sorted; null if none; replaced, never modified
+    private int toppingCount; // Including extra portions
     private boolean isCustom;
+    private boolean frozen; // A shared template: every mutator throws
+    private final Pizza template; // The template this pizza was copied from, or null
+    private volatile PriceCache priceCache; // Last computed price and its menu version; null once the pizza changes
 
-    public Pizza(String name, Crust crust, Sauce sauce, double basePrice) { // constructor for creating a new pizza
+    /*Immutable and published as one reference, so a thread pricing the pizza on one menu version never pairs
+    that version with a total another thread computed on a different one*/
+    private static final class PriceCache {
+        final long version;
+        final long totalCents;
+
+        PriceCache(long version, long totalCents) {
+            this.version = version;
+            this.totalCents = totalCents;
+        }
+    }
+
+    public Pizza(String name, Crust crust, Sauce sauce, long basePriceCents) { // constructor for creating a new pizza
+        this(name, crust.getId(), sauce.getId(), basePriceCents);
+    }
+
+    Pizza(String name, int crustId, int sauceId, long basePriceCents) { // constructor taking customization IDs
         this.name = name;
-        this.crust = crust;
-        this.sauce = sauce;
-        this.basePrice = basePrice;
-        this.toppings = new ArrayList<>();
+        this.crustId = crustId;
+        this.sauceId = sauceId;
+        this.basePriceCents = basePriceCents;
         this.isCustom = false;
+        this.template = null;
+    }
+
+    /*Constructor used by PizzaBuilder: toppings come from the first toppingCount entries of toppingIds
+    Availability is the builder's to check; nothing is checked here*/
+    Pizza(String name, int crustId, int sauceId, long basePriceCents, int[] toppingIds, int toppingCount, boolean isCustom) {
+        this(name, crustId, sauceId, basePriceCents);
+        for (int i = 0; i < toppingCount; i++) {
+            appendTopping(toppingIds[i]);
+        }
+        this.isCustom = isCustom;
     }
 
-    public Pizza(Pizza other) { // copy constructor for cloning pizzas for saved custom pizzas
+    public Pizza(Pizza other) { // copy constructor for cloning pizzas for saved custom pizzas, and for customizing a template
         this.name = other.name;
-        this.crust = other.crust;
-        this.sauce = other.sauce;
-        this.basePrice = other.basePrice;
-        this.toppings = new ArrayList<>(other.toppings);
+        this.crustId = other.crustId;
+        this.sauceId = other.sauceId;
+        this.basePriceCents = other.basePriceCents;
+        this.toppingMask = other.toppingMask;
+        this.highToppings = other.highToppings;
+        this.extraToppings = other.extraToppings;
+        this.toppingCount = other.toppingCount;
         this.isCustom = other.isCustom;
+        this.template = other.frozen ? other : other.template;
+    }
+
+    // Makes this pizza an immutable template that orders can share; returns it
+    public Pizza freeze() {
+        frozen = true;
+        return this;
+    }
+
+    public boolean isTemplate() { return frozen; }
+
+    // The template this pizza was copied from, or null if it was made from scratch
+    public Pizza getTemplate() { return template; }
+
+    // The toppings this pizza has beyond its template's, in menu order; all of its toppings if it has no template
+    public List<Topping> getAddedToppings() {
+        int[] ids = getToppingIds();
+        int[] base = template == null ? new int[0] : template.getToppingIds();
+        List<Topping> added = new ArrayList<>();
+        int j = 0;
+        for (int id : ids) { // both ascending: skip the template's portions as they are matched
+            while (j < base.length && base[j] < id) {
+                j++;
+            }
+            if (j < base.length && base[j] == id) {
+                j++;
+            } else {
+                added.add((Topping) Customization.byId(id));
+            }
+        }
+        return Collections.unmodifiableList(added);
     }
 
-    public void addTopping(Topping topping) { // this function adds a topping to the pizza
-        if (topping.isAvailable()) {
-            toppings.add(topping);
-            isCustom = true; // mark as custom pizza when toppings are added
+    private void checkMutable() {
+        if (frozen) {
+            throw new IllegalStateException(name + " is a shared template; copy it to customize it");
         }
     }
 
+    public boolean addTopping(Topping topping) { // this function adds a topping to the pizza; returns false, adding nothing, if it is unavailable or out of stock
+        checkMutable();
+        if (!topping.isAvailable()) {
+            return false;
+        }
+        appendTopping(topping.getId());
+        isCustom = true; // mark as custom pizza when toppings are added
+        return true;
+    }
+
+    boolean addTopping(int toppingId) { // adds a topping by customization ID, like addTopping(Topping)
+        Customization topping = Customization.byId(toppingId);
+        if (!(topping instanceof Topping)) {
+            throw new IllegalArgumentException("Not a topping: " + toppingId);
+        }
+        return addTopping((Topping) topping);
+    }
+
+    void restoreTopping(Topping topping) { // re-adds a journaled topping during recovery, even if no longer available
+        checkMutable();
+        appendTopping(topping.getId());
+    }
+
+    private void appendTopping(int toppingId) {
+        if (hasTopping(toppingId)) {
+            int[] extras = extraToppings == null ? new int[1] : Arrays.copyOf(extraToppings, extraToppings.length + 1);
+            extras[extras.length - 1] = toppingId;
+            Arrays.sort(extras);
+            extraToppings = extras;
+        } else if (toppingId < 64) {
+            toppingMask |= 1L << toppingId;
+        } else {
+            int word = (toppingId >>> 6) - 1;
+            long[] high = highToppings == null ? new long[word + 1]
+                    : Arrays.copyOf(highToppings, Math.max(highToppings.length, word + 1));
+            high[word] |= 1L << toppingId; // Shifts use the low 6 bits of the ID
+            highToppings = high;
+        }
+        toppingCount++;
+        priceCache = null;
+    }
+
+    // Whether the topping with this ID is on the pizza at least once
+    public boolean hasTopping(int toppingId) {
+        if (toppingId < 64) {
+            return (toppingMask & (1L << toppingId)) != 0;
+        }
+        int word = (toppingId >>> 6) - 1;
+        return highToppings != null && word < highToppings.length && (highToppings[word] & (1L << toppingId)) != 0;
+    }
+
     public void setCrust(Crust crust) { // this function changes the pizza's crust type
+        checkMutable();
         if (crust.isAvailable()) {
-            this.crust = crust;
+            this.crustId = crust.getId();
             isCustom = true; // mark as custom when crust is changed
+            priceCache = null;
         }
     }
 
     public void setSauce(Sauce sauce) { // this function changes the pizza's sauce type
+        checkMutable();
         if (sauce.isAvailable()) {
-            this.sauce = sauce;
+            this.sauceId = sauce.getId();
             isCustom = true; // mark as custom when sauce is changed
+            priceCache = null;
         }
     }
 
-    public double calculateTotal() { // this function calculates the total cost of the pizza
-        double total = basePrice;
-        total += crust.getPrice(); // add crust price
-        total += sauce.getPrice(); // add sauce price
-        for (Topping t : toppings) {
-            total += t.getPrice(); // add each topping's price
+    public long calculateTotalCents() { // this function returns the total cost of the pizza in cents on the installed menu
+        return calculateTotalCents(MenuCatalog.shared());
+    }
+
+    // The total cost of the pizza in cents on the given menu version, using the cached price when it was computed on that version
+    public long calculateTotalCents(MenuCatalog menu) {
+        long version = menu.getVersion();
+        PriceCache cache = priceCache;
+        if (cache == null || cache.version != version) {
+            cache = new PriceCache(version, totalCents(menu));
+            priceCache = cache;
         }
-        return total;
+        return cache.totalCents;
     }
 
-    public void displayPizzaDetails() { // this function displays the pizza's complete information
-        if (isCustom) {
-            // Only show "Custom" for actual custom pizzas
-            System.out.println("\n=== Custom Pizza: " + name + " ===");
-            System.out.println(crust.getDescription());
-            System.out.println(sauce.getDescription());
-            System.out.println("Toppings:");
-            for (Topping t : toppings) {
-                System.out.println("- " + t.getDescription());
+    private long totalCents(MenuCatalog menu) {
+        long total = basePriceCents;
+        total += menu.priceCents(crustId); // add crust price
+        total += menu.priceCents(sauceId); // add sauce price
+        for (long bits = toppingMask; bits != 0; bits &= bits - 1) {
+            total += menu.priceCents(Long.numberOfTrailingZeros(bits)); // add each topping's price
+        }
+        if (highToppings != null) {
+            for (int w = 0; w < highToppings.length; w++) {
+                for (long bits = highToppings[w]; bits != 0; bits &= bits - 1) {
+                    total += menu.priceCents(((w + 1) << 6) + Long.numberOfTrailingZeros(bits));
+                }
+            }
+        }
+        if (extraToppings != null) {
+            for (int id : extraToppings) {
+                total += menu.priceCents(id);
             }
-            System.out.println("Price: LKR " + String.format("%.2f", calculateTotal()));
-            System.out.println("============================");
-        } else {
-            // Simplified display for predefined pizzas
-            System.out.println("\n=== " + name + " ===");
-            System.out.println("Price: LKR " + String.format("%.2f", calculateTotal()));
-            System.out.println("==================");
         }
+        return total;
     }
 
     // Getters and Setters
     public String getName() { return name; }
-    public List<Topping> getToppings() { return toppings; }
-    public Crust getCrust() { return crust; }
-    public Sauce getSauce() { return sauce; }
-    public double getBasePrice() { return basePrice; }
-    public void setBasePrice(double basePrice) { this.basePrice = basePrice; }
+    // Whether the crust, sauce and every topping can still be ordered from the installed menu and are in stock
+    public boolean isAvailable() {
+        return isAvailable(MenuCatalog.shared());
+    }
+
+    public boolean isAvailable(MenuCatalog menu) {
+        Inventory stock = Inventory.shared();
+        if (!available(menu, stock, crustId) || !available(menu, stock, sauceId)) {
+            return false;
+        }
+        for (long bits = toppingMask; bits != 0; bits &= bits - 1) {
+            if (!available(menu, stock, Long.numberOfTrailingZeros(bits))) {
+                return false;
+            }
+        }
+        if (highToppings != null) {
+            for (int w = 0; w < highToppings.length; w++) {
+                for (long bits = highToppings[w]; bits != 0; bits &= bits - 1) {
+                    if (!available(menu, stock, ((w + 1) << 6) + Long.numberOfTrailingZeros(bits))) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true; // extra portions repeat toppings already checked
+    }
+
+    private static boolean available(MenuCatalog menu, Inventory stock, int id) {
+        return menu.isAvailable(id) && stock.inStock(id);
+    }
+
+    // The topping IDs in ascending order, each repeated once per portion
+    public int[] getToppingIds() {
+        int[] ids = new int[toppingCount];
+        int n = 0;
+        for (long bits = toppingMask; bits != 0; bits &= bits - 1) {
+            ids[n++] = Long.numberOfTrailingZeros(bits);
+        }
+        if (highToppings != null) {
+            for (int w = 0; w < highToppings.length; w++) {
+                for (long bits = highToppings[w]; bits != 0; bits &= bits - 1) {
+                    ids[n++] = ((w + 1) << 6) + Long.numberOfTrailingZeros(bits);
+                }
+            }
+        }
+        if (extraToppings != null) {
+            System.arraycopy(extraToppings, 0, ids, n, extraToppings.length);
+            Arrays.sort(ids);
+        }
+        return ids;
+    }
+
+    // The toppings, resolved from their IDs, in menu order
+    public List<Topping> getToppings() {
+        int[] ids = getToppingIds();
+        List<Topping> toppings = new ArrayList<>(ids.length);
+        for (int id : ids) {
+            toppings.add((Topping) Customization.byId(id));
+        }
+        return Collections.unmodifiableList(toppings);
+    }
+    public int getToppingCount() { return toppingCount; }
+    // Bits of the toppings with IDs below 64 (see the class comment)
+    public long getToppingMask() { return toppingMask; }
+    long[] highToppings() { return highToppings; }
+    int[] extraToppings() { return extraToppings; }
+
+    // Whether the other pizza has the same crust, sauce and toppings; does not allocate
+    public boolean sameRecipe(Pizza other) {
+        return crustId == other.crustId && sauceId == other.sauceId && toppingMask == other.toppingMask
+                && toppingCount == other.toppingCount
+                && Arrays.equals(highToppings, other.highToppings)
+                && Arrays.equals(extraToppings, other.extraToppings);
+    }
+
+    // The packed crust, sauce and toppings, for hashing and grouping pizzas
+    public PizzaSignature signature() {
+        return new PizzaSignature(crustId, sauceId, toppingMask, highToppings, extraToppings);
+    }
+
+    public Crust getCrust() { return (Crust) Customization.byId(crustId); }
+    public int getCrustId() { return crustId; }
+    public Sauce getSauce() { return (Sauce) Customization.byId(sauceId); }
+    public int getSauceId() { return sauceId; }
+    public long getBasePriceCents() { return basePriceCents; }
+    public void setBasePriceCents(long basePriceCents) {
+        checkMutable();
+        this.basePriceCents = basePriceCents;
+        priceCache = null;
+    }
     public boolean isCustom() { return isCustom; }
-    public void setName(String name) { this.name = name; }
-    public void setCustom(boolean custom) { isCustom = custom; }
-} 
\ No newline at end of file
+    public void setName(String name) {
+        checkMutable();
+        this.name = name;
+    }
+    public void setCustom(boolean custom) {
+        checkMutable();
+        isCustom = custom;
+    }
+}
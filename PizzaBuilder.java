@@ -1,36 +1,63 @@
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /* This class implements the Builder Design Pattern for pizza creation.
    Provides a fluent interface for step-by-step pizza construction.
    Handles the complex process of assembling different pizza components.
    Supports both predefined and custom pizza creation with consistent building process.
-   Ensures proper initialization of all pizza attributes before object creation. */
+   Options are recorded by their customization IDs, as Pizza holds them (see MenuCatalog).
+   Ensures proper initialization of all pizza attributes before object creation.
+   A builder can be reset and reused: its topping buffer is kept, so building a pizza allocates only the pizza.
+   Availability is checked once per build, against one menu version, rather than as each topping is added. */
 class PizzaBuilder {
     private String name;
-    private Crust crust;
-    private Sauce sauce;
-    private double basePrice;
-    private List<Topping> toppings = new ArrayList<>();
+    private int crustId = -1;
+    private int sauceId = -1;
+    private long basePriceCents;
+    private int[] toppingIds = new int[4];
+    private int toppingCount;
     private boolean isCustom;
     // Constructor initializes a new pizza builder with a name and default base price
     public PizzaBuilder(String name) {
+        reset(name);
+    }
+    // Clears every selection to start another pizza with this builder, keeping its buffers; returns the builder for method chaining
+    public PizzaBuilder reset(String name) {
         this.name = name;
-        this.basePrice = 1000.0; // Default base price
+        this.crustId = -1;
+        this.sauceId = -1;
+        this.basePriceCents = Money.ofRupees(1000); // Default base price
+        this.toppingCount = 0;
+        this.isCustom = false;
+        return this;
+    }
+    // Sets the base price and returns builder for method chaining
+    public PizzaBuilder setBasePriceCents(long basePriceCents) {
+        this.basePriceCents = basePriceCents;
+        return this;
     }
     // Sets the crust type and returns builder for method chaining
     public PizzaBuilder setCrust(Crust crust) {
-        this.crust = crust;
+        this.crustId = crust.getId();
         return this;
     }
     // Sets the sauce type and returns builder for method chaining
     public PizzaBuilder setSauce(Sauce sauce) {
-        this.sauce = sauce;
+        this.sauceId = sauce.getId();
         return this;
     }
     // Adds a topping to the pizza and returns builder for method chaining
     public PizzaBuilder addTopping(Topping topping) {
-        this.toppings.add(topping);
+        return addTopping(topping.getId());
+    }
+    // Adds a topping by its customization ID and returns builder for method chaining
+    public PizzaBuilder addTopping(int toppingId) {
+        if (!(Customization.byId(toppingId) instanceof Topping)) {
+            throw new IllegalArgumentException("Not a topping: " + toppingId);
+        }
+        if (toppingCount == toppingIds.length) {
+            toppingIds = Arrays.copyOf(toppingIds, toppingCount * 2);
+        }
+        toppingIds[toppingCount++] = toppingId;
         return this;
     }
     //Sets whether this is a custom pizza and returns builder for method chaining
@@ -40,13 +67,20 @@ class PizzaBuilder {
     }
 
      /* Constructs and returns the final Pizza object with all selected components
-     * Creates a new Pizza instance with basic properties and adds all toppings*/
+     * Creates a new Pizza instance with basic properties and all toppings, then checks in one pass that
+     * every option is on the installed menu and in stock; throws IllegalStateException if not*/
     public Pizza build() {
-        Pizza pizza = new Pizza(name, crust, sauce, basePrice);
-        pizza.setCustom(isCustom);
-        for (Topping topping : toppings) {
-            pizza.addTopping(topping);
+        if (crustId < 0 || sauceId < 0) {
+            throw new IllegalStateException("A pizza needs a crust and a sauce");
+        }
+        Pizza pizza = new Pizza(name, crustId, sauceId, basePriceCents, toppingIds, toppingCount, isCustom);
+        if (!pizza.isAvailable(MenuCatalog.shared())) {
+            throw new IllegalStateException(name + " uses an option that is unavailable or out of stock");
         }
         return pizza;
     }
-} 
\ No newline at end of file
+    // Builds the pizza (see build) as a frozen template that orders can share
+    public Pizza buildTemplate() {
+        return build().freeze();
+    }
+}
@@ -1,96 +1,247 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.time.*;
 import java.util.*;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /* This module serves as the main control class for the Pizza Ordering System.
    It coordinates all pizza ordering functions, customer management, and order processing.
-   This module stores customers, pizzas, orders, customizations, and promotions in ArrayList data structures.
+   This module keeps customers and promotions in hash maps keyed by ID/code, orders in an indexed OrderRepository,
+   pizzas in an ArrayList and customizations in a read-only MenuCatalog.
+   The menu is read from pizza.menu.file (default menu.txt; the built-in menu is used if it is missing) and reloaded
+   when the file changes, checked every pizza.menu.reloadSeconds (pizza.menu.file=off keeps the built-in menu).
+   Ingredient stock is read from pizza.inventory.file (default inventory.txt; see Inventory); without it stock is not tracked.
+   Order placement runs through the OrderIntakeEngine; the console menu is one client of it.
+   All state changes are written to an OrderJournal and replayed on start-up. The journal directory,
+   fsync policy and checkpoint interval come from the pizza.journal.* system properties
+   (pizza.journal.dir=off disables it).
+   Delivered and cancelled orders are moved on a schedule into a memory-mapped OrderArchive
+   (pizza.archive.dir, pizza.archive.intervalMinutes), which backs the archive reports.
+   Paid orders are produced by a KitchenScheduler that advances their status automatically
+   (pizza.kitchen.* properties; pizza.kitchen.mode=off leaves status changes to staff).
+   With -Dpizza.metrics=true, lifecycle metrics are exported in Prometheus format (see OrderMetrics).
+   Domain events go to an asynchronous EventLog (pizza.log.file); console output is rendered by ConsoleView.
    A menu-driven interface allows users to access various system functions including order placement,
    customer management, feedback handling, and order tracking. The system also includes a loyalty
    points program and promotional discount features. */
 
 public class PizzaOr_sys {
     /*These are the core data structures for the system
-    5 containers created for customers, pizzas, orders, customizations, and promotions*/
-    private ArrayList<Customer> customers;
+    5 containers created for customers, pizzas, orders, customizations (the menu catalog), and promotions*/
+    private Map<String, Customer> customers;
     private ArrayList<Pizza> pizzas;
-    private ArrayList<Order> orders;
-    private ArrayList<Customization> customizations;
-    private ArrayList<Promotion> promotions;
+    private OrderRepository orders;
+    private MenuReloader menuReloader;
+    private Map<String, Promotion> promotions;
+    private OrderIntakeEngine intakeEngine;
+    private OrderJournal journal;
+    private OrderArchive archive;
+    private OrderArchiver archiver;
+    private KitchenScheduler kitchen;
     private Scanner scanner;
 
     public PizzaOr_sys() {
-        customers = new ArrayList<>();
+        customers = new ConcurrentHashMap<>();
         pizzas = new ArrayList<>();
-        orders = new ArrayList<>();
-        customizations = new ArrayList<>();
-        promotions = new ArrayList<>();
+        orders = new OrderRepository();
+        OrderHistory.install(orders); // Customer histories load full orders from here
+        promotions = new LinkedHashMap<>();
         scanner = new Scanner(System.in);
+        if (EventLog.shared().getProblem() != null) {
+            System.out.println("Warning: " + EventLog.shared().getProblem());
+        }
         initializeCustomizations();
+        initializeInventory();
         initializePizzas();
         initializePromotions();
+        openJournal();
+        openArchive();
+        advanceOrderIds();
+        intakeEngine = new OrderIntakeEngine(customers, pizzas, promotions, orders);
+        openKitchen();
+        OrderMetrics.start();
     }
-    // Initializes system components and loads initial data
+    // Installs the menu from the menu file, or the built-in menu, and starts watching the file for changes
     private void initializeCustomizations() {
+        String file = System.getProperty("pizza.menu.file", "menu.txt");
+        if (file.equals("off") || !Files.exists(Paths.get(file))) {
+            installDefaultMenu();
+        } else {
+            try {
+                MenuCatalog.install(MenuCatalog.load(Paths.get(file), null));
+            } catch (IOException e) {
+                System.out.println("Warning: menu file unreadable, using the built-in menu (" + e.getMessage() + ")");
+                installDefaultMenu();
+            }
+        }
+        if (!file.equals("off")) {
+            menuReloader = new MenuReloader(Paths.get(file));
+            menuReloader.start(Long.getLong("pizza.menu.reloadSeconds", 5));
+        }
+    }
+    // Loads ingredient stock from the inventory file; without one, nothing is tracked and stock never runs out
+    private void initializeInventory() {
+        String file = System.getProperty("pizza.inventory.file", "inventory.txt");
+        if (file.equals("off") || !Files.exists(Paths.get(file))) {
+            return;
+        }
+        try {
+            Inventory.install(Inventory.load(Paths.get(file), MenuCatalog.shared()));
+        } catch (IOException e) {
+            System.out.println("Warning: inventory file unreadable, stock is not tracked (" + e.getMessage() + ")");
+        }
+    }
+    // Installs the built-in menu
+    private void installDefaultMenu() {
+        MenuCatalog.Builder menu = new MenuCatalog.Builder();
         // Initialize default Crusts
-        customizations.add(new Crust("Thin Italian", 0.0, "thin"));
-        customizations.add(new Crust("Deep Pan", 50.0, "thick"));
-        customizations.add(new Crust("Stuffed Crust", 100.0, "thick"));
+        menu.crust("Thin Italian", 0, "thin");
+        menu.crust("Deep Pan", Money.ofRupees(50), "thick");
+        menu.crust("Stuffed Crust", Money.ofRupees(100), "thick");
 
         // Initialize default Sauces
-        customizations.add(new Sauce("Tomato", 0.0));
-        customizations.add(new Sauce("BBQ", 30.0));
-        customizations.add(new Sauce("Spicy", 30.0));
+        menu.sauce("Tomato", 0);
+        menu.sauce("BBQ", Money.ofRupees(30));
+        menu.sauce("Spicy", Money.ofRupees(30));
 
         // Initialize all possible toppings
-        customizations.add(new Topping("Pepperoni", 200.0));
-        customizations.add(new Topping("Mushrooms", 150.0));
-        customizations.add(new Topping("Extra Cheese", 180.0));
-        customizations.add(new Topping("Bell Peppers", 120.0));
-        customizations.add(new Topping("Ham", 200.0));
-        customizations.add(new Topping("Pineapple", 150.0));
+        menu.topping("Pepperoni", Money.ofRupees(200));
+        menu.topping("Mushrooms", Money.ofRupees(150));
+        menu.topping("Extra Cheese", Money.ofRupees(180));
+        menu.topping("Bell Peppers", Money.ofRupees(120));
+        menu.topping("Ham", Money.ofRupees(200));
+        menu.topping("Pineapple", Money.ofRupees(150));
+        MenuCatalog.install(menu.build());
     }
      // Initialize Pre-defiend Pizza options
-    private void initializePizzas() {
-        Crust defaultCrust = (Crust) findCustomization("Thin Italian", "CRUST");
-        Sauce defaultSauce = (Sauce) findCustomization("Tomato", "SAUCE");
+    private void initializePizzas() { // predefined pizzas are frozen templates shared by every order line for them
+        MenuCatalog menu = MenuCatalog.shared();
+        Crust defaultCrust = menu.crust("Thin Italian") != null ? menu.crust("Thin Italian") : menu.crusts().get(0);
+        Sauce defaultSauce = menu.sauce("Tomato") != null ? menu.sauce("Tomato") : menu.sauces().get(0);
         
         // Cheese Blast - Simple cheese pizza
-        Pizza cheeseblast = new Pizza("Cheese Blast", defaultCrust, defaultSauce, 1200.0);
+        Pizza cheeseblast = new Pizza("Cheese Blast", defaultCrust, defaultSauce, Money.ofRupees(1200)).freeze();
         pizzas.add(cheeseblast);
         
         // Pepperoni Supreme
-        Pizza pepperoni = new Pizza("Pepperoni Supreme", defaultCrust, defaultSauce, 1500.0);
+        Pizza pepperoni = new Pizza("Pepperoni Supreme", defaultCrust, defaultSauce, Money.ofRupees(1500)).freeze();
         pizzas.add(pepperoni);
         
         // Hawaiian
-        Pizza hawaiian = new Pizza("Hawaiian (Ham & Pineapple)", defaultCrust, defaultSauce, 1400.0);
+        Pizza hawaiian = new Pizza("Hawaiian (Ham & Pineapple)", defaultCrust, defaultSauce, Money.ofRupees(1400)).freeze();
         pizzas.add(hawaiian);
 
         // Veggie Feast
-        Pizza veggieFeast = new Pizza("Veggie Feast (Mushrooms, Peppers, Onions)", defaultCrust, defaultSauce, 1300.0);
+        Pizza veggieFeast = new Pizza("Veggie Feast (Mushrooms, Peppers, Onions)", defaultCrust, defaultSauce, Money.ofRupees(1300)).freeze();
         pizzas.add(veggieFeast);
 
         // Meat Lovers
-        Pizza meatLovers = new Pizza("Meat Lovers (Pepperoni, Ham, Bacon)", defaultCrust, defaultSauce, 1600.0);
+        Pizza meatLovers = new Pizza("Meat Lovers (Pepperoni, Ham, Bacon)", defaultCrust, defaultSauce, Money.ofRupees(1600)).freeze();
         pizzas.add(meatLovers);
     }
     // Sets up initial promotional offers
     private void initializePromotions() {
         LocalDate now = LocalDate.now();
-        promotions.add(new Promotion("WELCOME", "Welcome Discount", 10.0, 
+        addPromotion(new Promotion("WELCOME", "Welcome Discount", 10.0, 
             now, now.plusMonths(1)));
-        promotions.add(new Promotion("SPECIAL", "Weekend Special", 15.0, 
+        addPromotion(new Promotion("SPECIAL", "Weekend Special", 15.0, 
             now, now.plusWeeks(1)));
+        addPromotion(Promotion.bogo("2FOR1", "Buy One Get One Free", now, now.plusWeeks(2)));
+        Promotion loaded = new Promotion("LOADED", "Loaded Pizza Delivery Deal", 20.0, now, now.plusMonths(1));
+        loaded.setMinToppings(5);
+        loaded.setDeliveryType("DELIVERY");
+        addPromotion(loaded);
+        Promotion gold = new Promotion("GOLDCLUB", "Gold Club Extra 5%", 5.0, now, now.plusMonths(3));
+        gold.setMinTier(Customer.LoyaltyTier.GOLD);
+        gold.setStackable(true);
+        gold.setAutoApply(true); // Gold members get it without a code, on top of any other promotion
+        addPromotion(gold);
+        PromotionEngine.install(new PromotionEngine(promotions.values()));
     }
-    // Finds customization option by name and category
-    private Customization findCustomization(String name, String category) {
-        for (Customization c : customizations) {
-            if (c.getName().equals(name) && c.getCategory().equals(category)) {
-                return c;
-            }
+    // Registers a promotion under its code
+    private void addPromotion(Promotion promotion) {
+        promotions.put(promotion.getCode(), promotion);
+    }
+    // Recovers customers and orders from the journal directory and starts journaling new changes
+    private void openJournal() {
+        String directory = System.getProperty("pizza.journal.dir", "journal");
+        if (directory.equals("off")) {
+            return;
+        }
+        try {
+            journal = OrderJournal.open(Paths.get(directory),
+                OrderJournal.FsyncPolicy.valueOf(System.getProperty("pizza.journal.fsync", "INTERVAL")),
+                Long.getLong("pizza.journal.fsyncMillis", 50),
+                Long.getLong("pizza.journal.checkpointEvery", 10000),
+                customers, orders, MenuCatalog.shared(), promotions);
+        } catch (IOException e) {
+            System.out.println("Warning: order journal unavailable, changes will not be saved (" + e.getMessage() + ")");
+        }
+    }
+
+    // Never reissue the ID of a recovered or archived order
+    private void advanceOrderIds() {
+        if (!(Order.getIdGenerator() instanceof AtomicOrderIdGenerator)) {
+            return;
+        }
+        long lastIssued = archive == null ? 0 : archive.lastOrderNumber();
+        for (Order order : orders.findAll()) {
+            lastIssued = Math.max(lastIssued, OrderArchive.orderNumber(order.getOrderId()));
+        }
+        ((AtomicOrderIdGenerator) Order.getIdGenerator()).advanceTo(lastIssued);
+    }
+
+    // Opens the order archive and schedules the archiving of completed orders
+    private void openArchive() {
+        String directory = System.getProperty("pizza.archive.dir", "archive");
+        if (directory.equals("off")) {
+            return;
+        }
+        try {
+            archive = new OrderArchive(Paths.get(directory));
+        } catch (IOException e) {
+            System.out.println("Warning: order archive unavailable, completed orders stay in memory (" + e.getMessage() + ")");
+            return;
+        }
+        archiver = new OrderArchiver(orders, archive, TimeUnit.MINUTES.toMillis(Long.getLong("pizza.archive.graceMinutes", 60)));
+        archiver.start(Long.getLong("pizza.archive.intervalMinutes", 5));
+    }
+
+    // Starts the kitchen scheduler and hands it the recovered orders that are still in production
+    private void openKitchen() {
+        if (System.getProperty("pizza.kitchen.mode", "live").equals("off")) {
+            return;
+        }
+        kitchen = KitchenScheduler.fromProperties();
+        for (Order order : orders.findAll()) {
+            kitchen.resume(order); // Recovered paid orders continue from the stage they reached
         }
-        return null;
+        intakeEngine.setKitchen(kitchen);
     }
+
+    // Writes a checkpoint and flushes the journal before the system exits
+    private void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.checkpoint().join();
+        } catch (CompletionException e) {
+            // Reported by the journal; the segments written so far are still replayed on the next start
+        }
+        try {
+            journal.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (journal.getProblem() != null) {
+            System.out.println("Warning: " + journal.getProblem());
+        }
+    }
+
     // Main system menu and control loop
     public void run() {
         while (true) {
@@ -103,7 +254,10 @@ public class PizzaOr_sys {
             System.out.println("6. View Promotions");
             System.out.println("7. View All Orders");
             System.out.println("8. View Order Details");
-            System.out.println("9. Exit");
+            System.out.println("9. Archive Reports");
+            System.out.println("10. Kitchen Report");
+            System.out.println("11. Settlement");
+            System.out.println("12. Exit");
             System.out.print("Enter your choice: ");
 
             int choice = scanner.nextInt();
@@ -118,7 +272,15 @@ public class PizzaOr_sys {
                 case 6: viewPromotions(); break;
                 case 7: viewAllOrders(); break;
                 case 8: viewOrderDetails(); break;
-                case 9:
+                case 9: viewArchiveReports(); break;
+                case 10: viewKitchenReport(); break;
+                case 11: manageSettlement(); break;
+                case 12:
+                    try {
+                        shutdown();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
                     System.out.println("Thank you for using Pizza Ordering System!");
                     return;
                 default:
@@ -127,23 +289,26 @@ public class PizzaOr_sys {
         }
     }
 
+    /*Console client of the order-intake engine
+    Collects the customer's choices interactively and feeds them into an OrderSession*/
     private void placeOrder() {
         System.out.print("Enter customer ID: "); // Prompt user for customer ID
         String customerId = scanner.nextLine();
-        Customer customer = findCustomer(customerId);
+        OrderSession session = intakeEngine.openSession(customerId);
         
-        if (customer == null) { // Check if the customer exists
+        if (session == null) { // Check if the customer exists
             System.out.println("Customer not found. Please register first.");
             return;
         }
 
         // Add pizzas to order
-        Order order = new Order("", customer, "PICKUP", 0.0); // Temporary delivery type
+        Order order = session.getOrder();
             
             while (true) { // Display pizza selection menu
             System.out.println("\n1. Add Pre-defined Pizza");
             System.out.println("2. Create Custom Pizza");
             System.out.println("3. Review and Checkout");
+            System.out.println("4. Reorder a Previous Order");
             System.out.print("Choice: ");
             
             int choice = scanner.nextInt();
@@ -152,9 +317,11 @@ public class PizzaOr_sys {
             if (choice == 3) break; // Exit loop for checkout
             
             if (choice == 1) {
-                addPredefinedPizza(order); // Add predefined pizza to order
+                addPredefinedPizza(session); // Add predefined pizza to order
             } else if (choice == 2) {
-                createCustomPizza(order); // Create custom pizza and add to order
+                createCustomPizza(session); // Create custom pizza and add to order
+            } else if (choice == 4) {
+                reorderPrevious(session); // Copy the pizzas of an earlier order
             }
         }
 
@@ -177,44 +344,59 @@ public class PizzaOr_sys {
             int zoneChoice = scanner.nextInt();
             scanner.nextLine();
 
-            double deliveryCharge;
-            switch (zoneChoice) {
-                case 1: deliveryCharge = 200.0; break;
-                case 2: deliveryCharge = 500.0; break;
-                case 3: deliveryCharge = 800.0; break;
-                default: 
-                    System.out.println("Invalid zone. Defaulting to within 5km.");
-                    deliveryCharge = 200.0;
+            if (!session.setDeliveryZone(zoneChoice)) { // Set delivery type and charge
+                System.out.println("Invalid zone. Defaulting to within 5km.");
+                session.setDeliveryZone(1);
             }
-            order.setDeliveryType("DELIVERY", deliveryCharge); // Set delivery type and charge
         }
 
         // Display order summary
-        order.displayOrderSummary();
+        ConsoleView.orderSummary(order);
 
         // Confirm order
         System.out.print("\nWould you like to confirm this order? (Y/N): ");
         String confirm = scanner.nextLine().toUpperCase();
         if (!confirm.equals("Y")) {
-            order.setState(new CancelledState());
+            session.cancel();
             System.out.println("Order cancelled.");
             return;
         }
 
         // Apply promotion if available
-        System.out.print("\nEnter promotion code (or press enter to skip): ");
+        System.out.print("\nEnter promotion code, " + OrderSession.BEST_DEAL + " for the best available deal (or press enter to skip): ");
         String promoCode = scanner.nextLine();
-        if (!promoCode.isEmpty()) {
-            Promotion promo = findPromotion(promoCode);
-            if (promo != null && promo.isValid()) {
-                order.applyPromotion(promo);
+        if (promoCode.equalsIgnoreCase(OrderSession.BEST_DEAL)) {
+            session.applyBestDeal();
+            System.out.println("Best available deal applied!");
+            ConsoleView.orderSummary(order);
+        } else if (!promoCode.isEmpty()) {
+            if (session.applyPromotion(promoCode)) {
                 System.out.println("Promotion applied successfully!");
-                order.displayOrderSummary();  // Display order summary after applying promotion
+                ConsoleView.orderSummary(order);  // Display order summary after applying promotion
             } else {
                 System.out.println("Invalid or expired promotion code.");
             }
         }
 
+        // Redeem loyalty points if the customer has any available
+        int availablePoints = session.getCustomer().getLoyaltyLedger().getAvailable();
+        if (availablePoints > 0) {
+            System.out.print("\nRedeem loyalty points (" + availablePoints + " available, 1 point = LKR 1; press enter to skip): ");
+            String pointsInput = scanner.nextLine().trim();
+            if (!pointsInput.isEmpty()) {
+                try {
+                    if (session.redeemPoints(Integer.parseInt(pointsInput))) {
+                        System.out.println("Points redeemed!");
+                        ConsoleView.orderSummary(order);
+                    } else {
+                        System.out.println("Not enough points available.");
+                    }
+                } catch (NumberFormatException e) {
+                    System.out.println("Invalid number of points.");
+                }
+            }
+        }
+
         // Process payment - Payment option list
         System.out.println("\nSelect payment method:");
         System.out.println("1. Credit Card");
@@ -245,20 +427,27 @@ public class PizzaOr_sys {
                 break;
             default:
                 System.out.println("Invalid payment method.");
+                session.cancel();
                 return;
         }
 
         // Process payment and confirm order
-        order.processPayment(paymentStrategy);
-        
-        if (order.isPaid()) {
-            orders.add(order);
-            customer.addOrder(order);
+        order.getTracker().addObserver(ConsoleView.NOTIFICATIONS); // Show this order's status changes at the terminal
+        if (session.checkout(paymentStrategy)) {
+            ConsoleView.paymentConfirmation(order);
             System.out.println("\nOrder placed successfully!");
             System.out.println("Your order ID is: " + order.getOrderId());
             System.out.println("You can use this ID to track your order status.");
         } else {
-            System.out.println("Payment failed. Order not placed.");
+            PaymentResult result = order.getLastPaymentResult();
+            if (result == null) {
+                System.out.println("Order details incomplete. Order not placed."); // Rejected before payment
+            } else if (result.isApproved()) {
+                System.out.println("Order could not be placed. The payment was voided; you have not been charged.");
+            } else {
+                System.out.println("Payment failed" + (result != null && result.getReason() != null ? " (" + result.getReason() + ")" : "") + ". Order not placed.");
+            }
+            session.cancel(); // Gives back any points held for the order
         }
     }
 
@@ -304,8 +493,11 @@ public class PizzaOr_sys {
         String email = scanner.nextLine();
 
         Customer customer = new Customer(id, name, address, phone, email);
-        customers.add(customer);
-        System.out.println("Customer added successfully!");
+        if (intakeEngine.registerCustomer(customer)) {
+            System.out.println("Customer added successfully!");
+        } else {
+            System.out.println("Error: A customer with ID " + id + " already exists!");
+        }
     }
 
     private void viewCustomerDetails() { // Prompt for customer ID and retrieve details
@@ -313,7 +505,7 @@ public class PizzaOr_sys {
         String id = scanner.nextLine();
         Customer customer = findCustomer(id);
         if (customer != null) {
-            customer.showDetails(); // Display customer details
+            ConsoleView.customerDetails(customer); // Display customer details
         } else {
             System.out.println("Customer not found."); // Handle customer not found
         }
@@ -324,22 +516,20 @@ public class PizzaOr_sys {
         String id = scanner.nextLine();
         Customer customer = findCustomer(id);
         if (customer != null) {
-            int points = customer.getLoyaltyPoints();
+            LoyaltyLedger loyalty = customer.getLoyaltyLedger();
+            int points = loyalty.getBalance();
             Customer.LoyaltyTier currentTier = Customer.LoyaltyTier.getTierFromPoints(points);
             
             System.out.println("\n--------------- LOYALTY STATUS ---------------");
             System.out.println("Current Points: " + points);
+            if (loyalty.getHeld() > 0) {
+                System.out.println("Held for orders in progress: " + loyalty.getHeld());
+            }
             System.out.println("Current Tier: " + currentTier.getName());
             System.out.println("Tier Discount: " + currentTier.getDiscountPercentage() + "%");
             
             // Show progress to next tier
-            Customer.LoyaltyTier nextTier = null;
-            for (Customer.LoyaltyTier tier : Customer.LoyaltyTier.values()) {
-                if (tier.getMinPoints() > points) {
-                    nextTier = tier;
-                    break;
-                }
-            }
+            Customer.LoyaltyTier nextTier = currentTier.next();
             
             if (nextTier != null) {
                 int pointsNeeded = nextTier.getMinPoints() - points;
@@ -354,7 +544,7 @@ public class PizzaOr_sys {
         }
     }
 
-    private void addPredefinedPizza(Order order) {
+    private void addPredefinedPizza(OrderSession session) {
         System.out.println("\nAvailable Pizzas:"); // Display the list of available pizzas
         for (int i = 0; i < pizzas.size(); i++) {
             System.out.println((i + 1) + ". " + pizzas.get(i).getName());
@@ -363,40 +553,60 @@ public class PizzaOr_sys {
         int choice = scanner.nextInt() - 1;
         scanner.nextLine(); // User selects a pizza
         // Add the selected pizza to the order
-        if (choice >= 0 && choice < pizzas.size()) {
-            Pizza selectedPizza = pizzas.get(choice);
-            order.addPizza(selectedPizza);
+        if (choice < 0 || choice >= pizzas.size()) {
+            System.out.println("Invalid choice! Please select a number between 1 and " + pizzas.size());
+        } else if (session.addPredefinedPizza(choice)) {
             System.out.println("Pizza added to order!");
         } else {
-            System.out.println("Invalid choice! Please select a number between 1 and " + pizzas.size());
+            System.out.println("Sorry, " + pizzas.get(choice).getName() + " is out of stock.");
         }
     }
 
-    private void createCustomPizza(Order order) {
+    private void reorderPrevious(OrderSession session) {
+        System.out.print("Enter order ID (or press enter for your last order): ");
+        String orderId = scanner.nextLine().trim();
+        int before = session.getOrder().getPizzas().size();
+        List<Pizza> unavailable = orderId.isEmpty() ? session.reorderLast()
+            : session.reorder(session.getOrder().getCustomer().getOrderHistory().find(orderId)); // Archived orders too
+        if (unavailable == null) {
+            System.out.println("No such order to reorder.");
+            return;
+        }
+        for (Pizza pizza : unavailable) {
+            System.out.println("Not available any more or out of stock: " + pizza.getName());
+        }
+        System.out.println("Pizzas added to order: " + (session.getOrder().getPizzas().size() - before));
+    }
+
+    private void createCustomPizza(OrderSession session) {
         System.out.print("Enter name for your custom pizza: "); // Prompt user for custom pizza name
         String name = scanner.nextLine();
 
         // First check if customer has any saved pizzas with this name
-        Customer customer = order.getCustomer();
-        Pizza savedPizza = customer.getSavedPizzas().stream() // Check if customer has any saved pizzas with this name
-                .filter(p -> p.getName().equals(name))
-                .findFirst()
-                .orElse(null);
+        Customer customer = session.getCustomer();
+        Pizza savedPizza = customer.findSavedPizza(name); // Check if customer has any saved pizzas with this name
 
         if (savedPizza != null) { // If saved pizza found, prompt for reordering
             System.out.println("Found a saved pizza with this name!");
             System.out.println("Would you like to reorder it? (Y/N): ");
             if (scanner.nextLine().toUpperCase().equals("Y")) {
-                order.addPizza(new Pizza(savedPizza)); // Create a copy of the saved pizza
+                if (!savedPizza.isAvailable()) {
+                    System.out.println("Sorry, part of this pizza is no longer on the menu.");
+                    return;
+                }
+                if (!session.addPizza(new Pizza(savedPizza))) { // Create a copy of the saved pizza
+                    System.out.println("Sorry, part of this pizza is out of stock.");
+                }
                 return;
             }
         }
 
-        // Select crust for the custom pizza
+        // Select crust for the custom pizza; the whole pizza is built from one menu version
+        MenuCatalog menu = MenuCatalog.shared();
         System.out.println("\nAvailable Crusts:");
-        List<Crust> crusts = getCustomizationsOfType("CRUST");
+        List<Crust> crusts = menu.crusts();
         for (int i = 0; i < crusts.size(); i++) {
-            System.out.println((i + 1) + ". " + crusts.get(i).getDescription());
+            System.out.println((i + 1) + ". " + describe(menu, crusts.get(i)));
         }
         System.out.print("Select crust: ");
         Crust selectedCrust = crusts.get(scanner.nextInt() - 1);
@@ -404,22 +614,27 @@ public class PizzaOr_sys {
 
         // Select sauce for the custom pizza
         System.out.println("\nAvailable Sauces:");
-        List<Sauce> sauces = getCustomizationsOfType("SAUCE");
+        List<Sauce> sauces = menu.sauces();
         for (int i = 0; i < sauces.size(); i++) {
-            System.out.println((i + 1) + ". " + sauces.get(i).getDescription());
+            System.out.println((i + 1) + ". " + describe(menu, sauces.get(i)));
         }
         System.out.print("Select sauce: ");
         Sauce selectedSauce = sauces.get(scanner.nextInt() - 1);
         scanner.nextLine();
+        if (!menu.isAvailable(selectedCrust.getId()) || !menu.isAvailable(selectedSauce.getId())
+                || !selectedCrust.isAvailable() || !selectedSauce.isAvailable()) {
+            System.out.println("Sorry, that crust or sauce is unavailable.");
+            return;
+        }
         // Create a new custom pizza with the selected crust and sauce
-        Pizza customPizza = new Pizza(name, selectedCrust, selectedSauce, 1000.0); // Base price for custom pizza
+        Pizza customPizza = new Pizza(name, selectedCrust, selectedSauce, Money.ofRupees(1000)); // Base price for custom pizza
 
         // Add toppings to the custom pizza
         while (true) {
             System.out.println("\nAvailable Toppings:");
-            List<Topping> toppings = getCustomizationsOfType("TOPPING");
+            List<Topping> toppings = menu.toppings();
             for (int i = 0; i < toppings.size(); i++) {
-                System.out.println((i + 1) + ". " + toppings.get(i).getDescription());
+                System.out.println((i + 1) + ". " + describe(menu, toppings.get(i)));
             }
             System.out.println("0. Finish adding toppings");
             System.out.print("Select topping (0 to finish): ");
@@ -429,19 +644,40 @@ public class PizzaOr_sys {
             
             if (choice == 0) break;
             if (choice > 0 && choice <= toppings.size()) {
-                customPizza.addTopping(toppings.get(choice - 1));
+                Topping topping = toppings.get(choice - 1);
+                if (!menu.isAvailable(topping.getId()) || !customPizza.addTopping(topping)) {
+                    System.out.println("Sorry, " + topping.getName() + " is unavailable.");
+                    continue;
+                }
                 System.out.println("Topping added!");
             }
         }
         // Prompt user to save the custom pizza for future orders
-        System.out.print("Would you like to save this pizza for future orders? (Y/N): ");
-        if (scanner.nextLine().toUpperCase().equals("Y")) {
-            customer.saveCustomPizza(customPizza);
-            System.out.println("Pizza saved to your favorites!");
+        Pizza alreadySaved = customer.findSavedRecipe(customPizza);
+        if (alreadySaved != null) {
+            System.out.println("This pizza is already in your favorites as " + alreadySaved.getName() + ".");
+        } else {
+            System.out.print("Would you like to save this pizza for future orders? (Y/N): ");
+            if (scanner.nextLine().toUpperCase().equals("Y")) {
+                customer.saveCustomPizza(customPizza);
+                System.out.println("Pizza saved to your favorites!");
+            }
         }
         // Add the custom pizza to the order
-        order.addPizza(customPizza);
-        System.out.println("Custom pizza added to order!");
+        if (session.addPizza(customPizza)) {
+            System.out.println("Custom pizza added to order!");
+        } else {
+            System.out.println("Sorry, the ingredients for this pizza just ran out.");
+        }
+    }
+
+    // An option as listed on the given menu version
+    private static String describe(MenuCatalog menu, Customization option) {
+        String description = option.getDescription(menu.priceCents(option));
+        if (!menu.isAvailable(option)) {
+            return description + " - unavailable";
+        }
+        return Inventory.shared().getStock(option) != 0 ? description : description + " - out of stock";
     }
 
     private void trackOrder() {
@@ -450,8 +686,8 @@ public class PizzaOr_sys {
         Order order = findOrder(orderId);
         
         if (order != null) { // Check if the order exists and display tracking
-            order.getTracker().displayTracking();
-        } else {
+            ConsoleView.tracking(order);
+        } else if (!displayArchivedOrder(orderId)) {
             System.out.println("Order not found.");
         }
     }
@@ -484,8 +720,9 @@ public class PizzaOr_sys {
         System.out.print("Enter order ID: "); // Prompt user for order ID
         String orderId = scanner.nextLine();
         Order order = findOrder(orderId);
+        OrderArchive.ArchivedOrder archived = order == null && archive != null ? archive.find(orderId) : null;
         
-        if (order == null) { // Check if the order exists
+        if (order == null && archived == null) { // Check if the order exists, live or archived
             System.out.println("Order not found.");
             return;
         }
@@ -496,8 +733,13 @@ public class PizzaOr_sys {
         
         System.out.print("Enter comment: ");
         String comment = scanner.nextLine();
-        // Add feedback to the order
-        order.addFeedback(rating, comment);
+        // Add feedback to the order; an archived order keeps only the rating, in its archive row
+        if (order != null) {
+            order.addFeedback(rating, comment);
+        } else {
+            archive.rate(orderId, rating);
+            EventLog.shared().log(EventLog.Type.FEEDBACK, orderId, archived.customerId, rating, null);
+        }
         System.out.println("Thank you for your feedback!");
         
         // Return to feedback management menu
@@ -510,10 +752,10 @@ public class PizzaOr_sys {
         System.out.println("=================================================================");
         
         boolean found = false; // Iterate through orders to display feedback
-        for (Order order : orders) {
+        for (Order order : orders.findAll()) {
             Feedback feedback = order.getFeedback();
             if (feedback != null) {
-                feedback.displayInTable();
+                ConsoleView.feedbackRow(feedback);
                 found = true;
             }
         }
@@ -526,11 +768,24 @@ public class PizzaOr_sys {
 
     private void viewPromotions() { // Display current promotions
         System.out.println("\nCurrent Promotions:");
-        for (Promotion promo : promotions) {
+        for (Promotion promo : promotions.values()) {
             if (promo.isValid()) {
                 System.out.println("Code: " + promo.getCode());
                 System.out.println("Description: " + promo.getDescription());
-                System.out.println("Discount: " + promo.getDiscountPercentage() + "%");
+                System.out.println("Discount: " + (promo.getReward() == Promotion.Reward.BOGO
+                    ? "Buy one, get one free" : promo.getDiscountPercentage() + "%"));
+                if (promo.getMinToppings() > 0) {
+                    System.out.println("Requires: at least " + promo.getMinToppings() + " toppings");
+                }
+                if (promo.getDeliveryType() != null) {
+                    System.out.println("Requires: " + promo.getDeliveryType().toLowerCase() + " orders");
+                }
+                if (promo.getMinTier() != null) {
+                    System.out.println("Requires: " + promo.getMinTier().getName() + " tier or above");
+                }
+                if (promo.isAutoApply()) {
+                    System.out.println("Applied automatically" + (promo.isStackable() ? ", on top of other promotions" : ""));
+                }
                 System.out.println("Valid until: " + promo.getEndDate());
                 System.out.println("--------------------");
             }
@@ -544,7 +799,7 @@ public class PizzaOr_sys {
         System.out.println("============================================================================================");
         
         boolean found = false; // Iterate through orders to display each order's details
-        for (Order order : orders) {
+        for (Order order : orders.findAll()) {
             // Create order items string
             StringBuilder orderItems = new StringBuilder();
             for (Pizza pizza : order.getPizzas()) {
@@ -558,11 +813,11 @@ public class PizzaOr_sys {
                 items = items.substring(0, 17) + "...";
             }
             // Display order details
-            System.out.printf("%-10s | %-10s | %-20s | LKR %-8.2f | %-12s | %-15s%n",
+            System.out.printf("%-10s | %-10s | %-20s | LKR %-8s | %-12s | %-15s%n",
                 order.getOrderId(),
                 order.getCustomer().getCustID(),
                 items,
-                order.getTotalAmount(),
+                Money.format(order.getTotalCents()),
                 order.getDeliveryType(),
                 order.getStatus());
             
@@ -572,65 +827,125 @@ public class PizzaOr_sys {
         if (!found) {
             System.out.println("No orders found.");
         }
+        if (archive != null) {
+            System.out.println("Completed orders in archive: " + archive.size() + " (see Archive Reports)");
+        }
         System.out.println("============================================================================================");
     }
 
+    private void manageSettlement() { // Payment reconciliation and end of shift
+        System.out.println("\n--------------- SETTLEMENT ---------------");
+        System.out.print(SettlementService.shared().reconciliationReport());
+        System.out.println("1. Record Cash Collected");
+        System.out.println("2. Close Shift");
+        System.out.println("3. Back");
+        System.out.print("Choice: ");
+        int choice = scanner.nextInt();
+        scanner.nextLine();
+        switch (choice) {
+            case 1:
+                System.out.print("Enter order ID: ");
+                String orderId = scanner.nextLine();
+                System.out.print("Enter amount collected (LKR): ");
+                long collected = Money.parseRupees(scanner.nextDouble());
+                scanner.nextLine();
+                if (SettlementService.shared().recordCashCollected(orderId, collected)) {
+                    System.out.println("Cash collection recorded.");
+                } else {
+                    System.out.println("No unsettled cash payment found for that order.");
+                }
+                break;
+            case 2:
+                System.out.println("\n--------------- SHIFT RECONCILIATION ---------------");
+                System.out.print(SettlementService.shared().closeShift(10_000));
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void viewKitchenReport() { // Production throughput and waits since start-up
+        if (kitchen == null) {
+            System.out.println("Kitchen scheduling is not enabled.");
+            return;
+        }
+        System.out.println("\n--------------- KITCHEN REPORT ---------------");
+        System.out.print(kitchen.report());
+    }
+
+    private void viewArchiveReports() { // Summaries computed by scanning the archive columns
+        if (archive == null) {
+            System.out.println("Order archive is not enabled.");
+            return;
+        }
+        int moved = archiver.archiveCompleted(); // Include orders completed since the last scheduled run
+        long now = System.currentTimeMillis();
+        long today = LocalDate.now().atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        System.out.println("\n--------------- ARCHIVE REPORTS ---------------");
+        System.out.println("Orders archived just now: " + moved);
+        System.out.println("Archived orders: " + archive.size());
+        System.out.println("Delivered: " + archive.countByStatus(OrderArchive.DELIVERED)
+            + " | Cancelled: " + archive.countByStatus(OrderArchive.CANCELLED));
+        System.out.println("Pickup: " + archive.countByDeliveryType(OrderArchive.PICKUP)
+            + " | Delivery: " + archive.countByDeliveryType(OrderArchive.DELIVERY));
+        System.out.println("Delivered revenue today: LKR " + Money.format(archive.deliveredRevenueCents(today, now + 1)));
+        System.out.println("Delivered revenue (all time): LKR " + Money.format(archive.deliveredRevenueCents(Long.MIN_VALUE, Long.MAX_VALUE)));
+        System.out.printf("Average rating: %.2f%n", archive.averageRating());
+        System.out.println("----------------------------------------------");
+    }
+
+    // Prints the archived summary of a completed order; returns false if the order is not archived either
+    private boolean displayArchivedOrder(String orderId) {
+        OrderArchive.ArchivedOrder archived = archive == null ? null : archive.find(orderId);
+        if (archived == null) {
+            return false;
+        }
+        System.out.println("\nOrder " + archived.orderId + " (archived)");
+        System.out.println("Customer ID: " + archived.customerId);
+        System.out.println("Placed: " + LocalDateTime.ofInstant(Instant.ofEpochMilli(archived.epochMillis), ZoneId.systemDefault()));
+        System.out.println("Total Amount: LKR " + Money.format(archived.amountCents));
+        System.out.println("Delivery Type: " + archived.deliveryType);
+        System.out.println("Status: " + archived.status);
+        if (archived.rating > 0) {
+            System.out.println("Rating: " + "*".repeat(archived.rating) + " (" + archived.rating + "/5)");
+        }
+        return true;
+    }
+
     private void viewOrderDetails() {
         System.out.print("Enter order ID: "); // Prompt user to enter order ID
         String orderId = scanner.nextLine();
         Order order = findOrder(orderId);
         
-        if (order == null) { // Check if the order exists
-            System.out.println("Order not found.");
+        if (order == null) { // Check if the order exists, falling back to the archive
+            if (!displayArchivedOrder(orderId)) {
+                System.out.println("Order not found.");
+            }
             return;
         }
 
         // Display full order details
-        order.displayOrderSummary();
+        ConsoleView.orderSummary(order);
         
         // Display tracking information
-        order.getTracker().displayTracking();
+        ConsoleView.tracking(order);
         
         // Display feedback if exists
         Feedback feedback = order.getFeedback();
         if (feedback != null) {
             System.out.println("\n--------------- FEEDBACK ---------------");
-            feedback.display();
+            ConsoleView.feedback(feedback);
         }
     }
 
-    private Customer findCustomer(String id) { // Find and return customer by ID from the list
-        return customers.stream()
-            .filter(c -> c.getCustID().equals(id))
-            .findFirst()
-            .orElse(null);
+    private Customer findCustomer(String id) { // Find and return customer by ID from the customer map
+        return intakeEngine.findCustomer(id);
     }
 
-    private Order findOrder(String orderId) { // Find and return order by order ID from the list
-        return orders.stream()
-            .filter(o -> o.getOrderId().equals(orderId))
-            .findFirst()
-            .orElse(null);
+    private Order findOrder(String orderId) { // Find and return order by order ID from the order repository
+        return orders.findById(orderId);
     }
 
-    private Promotion findPromotion(String code) { // Find and return promotion by code from the list
-        return promotions.stream()
-            .filter(p -> p.getCode().equals(code))
-            .findFirst()
-            .orElse(null);
-    }
-
-    @SuppressWarnings("unchecked")
-    private <T extends Customization> List<T> getCustomizationsOfType(String category) {
-    // Get all customizations of a specific category
-        List<T> result = new ArrayList<>();
-        for (Customization c : customizations) {
-            if (c.getCategory().equals(category)) {
-                result.add((T) c);
-            }
-        }
-        return result;
-    }
 
     private void updateOrderStatus() {
         System.out.print("Enter order ID: "); // Prompt user to enter order ID
@@ -655,14 +970,14 @@ public class PizzaOr_sys {
         int choice = scanner.nextInt();
         scanner.nextLine();
         // Update order status based on user choice
-        String newStatus;
+        OrderStatus newStatus;
         switch (choice) {
-            case 1: newStatus = "PREPARING"; break;
-            case 2: newStatus = "IN_OVEN"; break;
-            case 3: newStatus = "READY_FOR_DELIVERY"; break;
-            case 4: newStatus = "OUT_FOR_DELIVERY"; break;
-            case 5: newStatus = "DELIVERED"; break;
-            case 6: newStatus = "CANCELLED"; break;
+            case 1: newStatus = OrderStatus.PREPARING; break;
+            case 2: newStatus = OrderStatus.IN_OVEN; break;
+            case 3: newStatus = OrderStatus.READY_FOR_DELIVERY; break;
+            case 4: newStatus = OrderStatus.OUT_FOR_DELIVERY; break;
+            case 5: newStatus = OrderStatus.DELIVERED; break;
+            case 6: newStatus = OrderStatus.CANCELLED; break;
             default:
                 System.out.println("Invalid choice.");
                 return;
@@ -672,6 +987,40 @@ public class PizzaOr_sys {
         System.out.println("Order status updated successfully!");
     }
 
+    /*Stops the system, each part after everything that feeds it: intake (and menu reloads), settlement of the
+    captured payments, the kitchen, queued notifications, the archiver, then the journal, which records what
+    they did last, and finally metrics and the event log. Used by the Exit menu option and by headless clients*/
+    public void shutdown() throws InterruptedException {
+        intakeEngine.shutdown();
+        if (menuReloader != null) {
+            menuReloader.stop();
+        }
+        SettlementService.shared().shutdown();
+        if (kitchen != null) {
+            kitchen.shutdown();
+        }
+        if (!NotificationDispatcher.shared().awaitIdle(5_000)) {
+            EventLog.shared().warning("notifications still queued at shutdown");
+        }
+        if (archiver != null) {
+            archiver.stop();
+        }
+        closeJournal();
+        OrderMetrics.stop();
+        EventLog.shared().close();
+        if (EventLog.shared().getProblem() != null) {
+            System.out.println("Warning: " + EventLog.shared().getProblem());
+        }
+    }
+
+    public OrderIntakeEngine getIntakeEngine() {
+        return intakeEngine;
+    }
+
+    public OrderRepository getOrders() {
+        return orders;
+    }
+
     public static void main(String[] args) { // Create an instance of the system and run it
         PizzaOr_sys system = new PizzaOr_sys();
         system.run();
@@ -0,0 +1,83 @@
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/* This class is the packed recipe of a pizza: its crust, sauce and toppings, without name or price.
+   The crust and sauce IDs share one long and the toppings are the pizza's bitset (see Pizza), so two
+   signatures are equal exactly when the pizzas would be made the same way, whatever order the toppings
+   were picked in, and hashing one reads a few words. Use it as a map key to deduplicate or group pizzas;
+   Pizza.sameRecipe compares two pizzas the same way without creating signatures.
+   Immutable; the topping arrays are shared with the pizza, which replaces rather than modifies them. */
+final class PizzaSignature {
+    private final long crustAndSauce; // Crust ID in the high 32 bits, sauce ID in the low 32
+    private final long toppingMask;
+    private final long[] highToppings; // May be null
+    private final int[] extraToppings; // May be null
+    private final int hash;
+
+    PizzaSignature(int crustId, int sauceId, long toppingMask, long[] highToppings, int[] extraToppings) {
+        this.crustAndSauce = ((long) crustId << 32) | (sauceId & 0xFFFFFFFFL);
+        this.toppingMask = toppingMask;
+        this.highToppings = highToppings;
+        this.extraToppings = extraToppings;
+        long h = crustAndSauce * 0x9E3779B97F4A7C15L ^ toppingMask;
+        h = h * 0x9E3779B97F4A7C15L ^ Arrays.hashCode(highToppings) ^ Arrays.hashCode(extraToppings);
+        this.hash = (int) (h ^ (h >>> 32));
+    }
+
+    // Counts pizzas by recipe, in the order each recipe is first seen
+    public static Map<PizzaSignature, Integer> group(Collection<Pizza> pizzas) {
+        Map<PizzaSignature, Integer> counts = new LinkedHashMap<>();
+        for (Pizza pizza : pizzas) {
+            counts.merge(pizza.signature(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    // How many of the pizzas carry each topping, indexed by customization ID; extra portions are not counted
+    public static int[] toppingPopularity(List<Pizza> pizzas) {
+        int[] counts = new int[64];
+        for (Pizza pizza : pizzas) {
+            for (long bits = pizza.getToppingMask(); bits != 0; bits &= bits - 1) {
+                counts[Long.numberOfTrailingZeros(bits)]++;
+            }
+            long[] high = pizza.highToppings();
+            if (high != null) {
+                if (counts.length < (high.length + 1) << 6) {
+                    counts = Arrays.copyOf(counts, (high.length + 1) << 6);
+                }
+                for (int w = 0; w < high.length; w++) {
+                    for (long bits = high[w]; bits != 0; bits &= bits - 1) {
+                        counts[((w + 1) << 6) + Long.numberOfTrailingZeros(bits)]++;
+                    }
+                }
+            }
+        }
+        return counts;
+    }
+
+    public int getCrustId() { return (int) (crustAndSauce >>> 32); }
+    public int getSauceId() { return (int) crustAndSauce; }
+    public long getToppingMask() { return toppingMask; }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PizzaSignature)) {
+            return false;
+        }
+        PizzaSignature other = (PizzaSignature) o;
+        return hash == other.hash && crustAndSauce == other.crustAndSauce && toppingMask == other.toppingMask
+                && Arrays.equals(highToppings, other.highToppings)
+                && Arrays.equals(extraToppings, other.extraToppings);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+}
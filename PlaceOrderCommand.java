@@ -0,0 +1,25 @@
+/*Concrete implementation of OrderCommand for placing new orders
+Handles adding and removing orders from the order repository*/
+class PlaceOrderCommand implements OrderCommand {
+    private Order order; // The order to be placed
+    private OrderRepository orders; // Reference to the main order store of the system
+    // Creates the command for the given order and target repository
+    public PlaceOrderCommand(Order order, OrderRepository orders) {
+        this.order = order;
+        this.orders = orders;
+    }
+    // Executes the place order command by saving the order to the repository
+    @Override
+    public void execute() {
+        if (orders.save(order)) {
+            OrderJournal.current().recordOrder(order);
+        }
+    }
+    // Undoes the place order command by removing the order from the repository
+    @Override
+    public void undo() {
+        if (orders.remove(order)) {
+            OrderJournal.current().recordOrderRemoved(order.getOrderId());
+        }
+    }
+}
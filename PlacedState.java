@@ -0,0 +1,9 @@
+/*Order state right after placement; the first step of the OrderState machine*/
+class PlacedState implements OrderState {
+    // Transition to the Preparing state
+    public void next(Order order) {
+        order.setState(new PreparingState());
+    }
+    public void prev(Order order) { /* Cannot go back */ }
+    public String getStatus() { return "PLACED"; }
+}
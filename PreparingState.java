@@ -0,0 +1,11 @@
+/*Order state while the kitchen prepares and bakes the pizzas*/
+class PreparingState implements OrderState {
+    // Transition to the Out for Delivery state
+    public void next(Order order) {
+        order.setState(new OutForDeliveryState());
+    }
+    public void prev(Order order) {
+        order.setState(new PlacedState());
+    }
+    public String getStatus() { return "PREPARING"; }
+}
@@ -1,37 +1,89 @@
 import java.time.LocalDate;
+import java.util.concurrent.atomic.AtomicLong;
 
 /* This class manages promotional discounts in the system.
-   Handles discount calculations, validity periods, and promotion status.
-   Provides methods for applying discounts to order totals.
-   Supports time-based promotion validation and discount percentage management. */
+   Describes a promotion: its reward (a percentage off or buy-one-get-one-free), the conditions an order must
+   meet (minimum amount, minimum toppings, delivery type, loyalty tier), its validity period and whether it stacks with others.
+   Auto-apply promotions are given to every order that qualifies; the others need their code entered.
+   The description is compiled once into a PromotionRule that PromotionEngine evaluates; any setter
+   discards the compiled rule and bumps a shared change count, so the next evaluation (and PromotionEngine's
+   index of the promotions valid today) picks up the change.
+   The percentage is also held in basis points so discounts are computed exactly in cents. */
 class Promotion {
+    // What a qualifying order gets
+    enum Reward {
+        PERCENT_OFF, // discountPercentage off the order amount, delivery included
+        BOGO         // For every two pizzas, the cheaper one is free
+    }
+
     private String code;
     private String description;
+    private Reward reward;
     private double discountPercentage;
+    private long discountBasisPoints; // discountPercentage in 1/100 of a percent
     private LocalDate startDate;
     private LocalDate endDate;
+    private long startDay; // startDate as an epoch day
+    private long endDay; // endDate as an epoch day
     private boolean isActive;
+    // Conditions; a zero or null value means "any"
+    private long minAmountCents; // Order amount (delivery included) before discounts
+    private int minToppings; // Toppings across all pizzas in the order
+    private String deliveryType; // "PICKUP" or "DELIVERY"
+    private Customer.LoyaltyTier minTier;
+    private boolean stackable; // Adds to the best non-stackable promotion instead of competing with it
+    private boolean autoApply; // Applies without the code being entered
+    private volatile PromotionRule compiled; // null until compiled or after a change
+    private static final AtomicLong changes = new AtomicLong(); // Edits to any promotion's rule so far
+
     // Creates new promotion with specified parameters
-    public Promotion(String code, String description, double discountPercentage, 
+    public Promotion(String code, String description, double discountPercentage,
                     LocalDate startDate, LocalDate endDate) {
         this.code = code;
         this.description = description;
-        this.discountPercentage = discountPercentage;
-        this.startDate = startDate;
-        this.endDate = endDate;
+        this.reward = Reward.PERCENT_OFF;
+        setDiscountPercentage(discountPercentage);
+        setStartDate(startDate);
+        setEndDate(endDate);
         this.isActive = true;
     }
-    // Applies discount if promotion is valid
-    public double applyDiscount(double amount) {
-        if (isValid()) {
-            return amount * (1 - discountPercentage / 100);
-        }
-        return amount;
+
+    // Creates a buy-one-get-one-free promotion
+    public static Promotion bogo(String code, String description, LocalDate startDate, LocalDate endDate) {
+        Promotion promotion = new Promotion(code, description, 0, startDate, endDate);
+        promotion.setReward(Reward.BOGO);
+        return promotion;
+    }
+
+    // The discount this promotion's percentage gives on an amount in cents, rounded half-up, regardless of validity
+    public long discountOn(long amountCents) {
+        return Money.percentOf(amountCents, discountBasisPoints);
     }
     // Checks if promotion is currently valid based on dates and active status
     public boolean isValid() {
-        LocalDate now = LocalDate.now();
-        return isActive && !now.isBefore(startDate) && !now.isAfter(endDate);
+        long today = PromotionClock.today();
+        return isActive && today >= startDay && today <= endDay;
+    }
+
+    // The compiled evaluation tree; built on first use and after every change
+    PromotionRule compiled() {
+        PromotionRule rule = compiled;
+        if (rule == null) {
+            rule = PromotionRule.compile(this);
+            compiled = rule;
+        }
+        return rule;
+    }
+
+    // Discards the compiled rule after an edit
+    private void changed() {
+        compiled = null;
+        changes.incrementAndGet();
+    }
+
+    // Number of rule edits across all promotions; indexes built from the compiled rules are stale once it moves
+    static long changes() {
+        return changes.get();
     }
 
     // Getters and setters
@@ -39,14 +91,41 @@ class Promotion {
     public void setCode(String code) { this.code = code; }
     public String getDescription() { return description; }
     public void setDescription(String description) { this.description = description; }
+    public Reward getReward() { return reward; }
+    public void setReward(Reward reward) { this.reward = reward; changed(); }
     public double getDiscountPercentage() { return discountPercentage; }
-    public void setDiscountPercentage(double discountPercentage) { 
-        this.discountPercentage = discountPercentage; 
+    public void setDiscountPercentage(double discountPercentage) {
+        this.discountPercentage = discountPercentage;
+        this.discountBasisPoints = Money.basisPoints(discountPercentage);
+        changed();
     }
     public LocalDate getStartDate() { return startDate; }
-    public void setStartDate(LocalDate startDate) { this.startDate = startDate; }
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+        this.startDay = startDate.toEpochDay();
+        changed();
+    }
     public LocalDate getEndDate() { return endDate; }
-    public void setEndDate(LocalDate endDate) { this.endDate = endDate; }
+    public void setEndDate(LocalDate endDate) {
+        this.endDate = endDate;
+        this.endDay = endDate.toEpochDay();
+        changed();
+    }
+    long getStartDay() { return startDay; }
+    long getEndDay() { return endDay; }
     public boolean isActive() { return isActive; }
-    public void setActive(boolean active) { isActive = active; }
-} 
\ No newline at end of file
+    public void setActive(boolean active) { isActive = active; changed(); }
+    long getDiscountBasisPoints() { return discountBasisPoints; }
+    public long getMinAmountCents() { return minAmountCents; }
+    public void setMinAmountCents(long minAmountCents) { this.minAmountCents = minAmountCents; changed(); }
+    public int getMinToppings() { return minToppings; }
+    public void setMinToppings(int minToppings) { this.minToppings = minToppings; changed(); }
+    public String getDeliveryType() { return deliveryType; }
+    public void setDeliveryType(String deliveryType) { this.deliveryType = deliveryType; changed(); }
+    public Customer.LoyaltyTier getMinTier() { return minTier; }
+    public void setMinTier(Customer.LoyaltyTier minTier) { this.minTier = minTier; changed(); }
+    public boolean isStackable() { return stackable; }
+    public void setStackable(boolean stackable) { this.stackable = stackable; changed(); }
+    public boolean isAutoApply() { return autoApply; }
+    public void setAutoApply(boolean autoApply) { this.autoApply = autoApply; changed(); }
+}
@@ -0,0 +1,31 @@
+import java.time.LocalDate;
+import java.time.ZoneId;
+
+/*Today's date as an epoch day, cached until the next local midnight
+Promotions check validity on every evaluation; this keeps LocalDate.now() off that path*/
+final class PromotionClock {
+    private static volatile long today;
+    private static volatile long dayStartMillis = Long.MAX_VALUE; // Forces a refresh on first use
+    private static volatile long nextDayStartMillis;
+
+    private PromotionClock() { }
+
+    static long today() {
+        long now = System.currentTimeMillis();
+        if (now >= nextDayStartMillis || now < dayStartMillis) {
+            refresh(now);
+        }
+        return today;
+    }
+
+    private static synchronized void refresh(long now) {
+        if (now < nextDayStartMillis && now >= dayStartMillis) {
+            return; // Another thread got here first
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        LocalDate date = LocalDate.now(zone);
+        today = date.toEpochDay();
+        nextDayStartMillis = date.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        dayStartMillis = date.atStartOfDay(zone).toInstant().toEpochMilli();
+    }
+}
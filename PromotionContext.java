@@ -0,0 +1,35 @@
+/*The facts about one order that promotion rules look at, gathered once per evaluation
+Reused by its thread; loading an order reads the counts the order keeps and allocates nothing*/
+final class PromotionContext {
+    long today;
+    long amountCents; // Order amount the discount applies to
+    String deliveryType;
+    Customer.LoyaltyTier tier; // As cached by the customer's loyalty ledger
+    int toppingCount;
+    private Order order;
+    private long cheaperHalfCents = -1; // Asked of the order on first use
+
+    void load(Order order, long amountCents) {
+        this.order = order;
+        this.today = PromotionClock.today();
+        this.amountCents = amountCents;
+        this.deliveryType = order.getDeliveryType();
+        this.tier = order.getCustomer().getTier();
+        this.toppingCount = order.getToppingCount();
+        this.cheaperHalfCents = -1;
+    }
+
+    // Drops the order so a thread's context does not keep it alive
+    void clear() {
+        order = null;
+        deliveryType = null;
+    }
+
+    // Buy one, get one free: the cheaper half of the pizzas, summed once per evaluation however many BOGO rules ask
+    long cheaperHalfCents() {
+        if (cheaperHalfCents < 0) {
+            cheaperHalfCents = order.getCheaperHalfCents();
+        }
+        return cheaperHalfCents;
+    }
+}
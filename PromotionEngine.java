@@ -0,0 +1,287 @@
+import java.util.*;
+
+/* This module is the promotion rule engine.
+   PromotionEngine works out the discount an order gets: the promotion whose code was entered plus every
+   auto-apply promotion the order qualifies for. Non-stackable promotions compete and only the largest
+   discount counts; stackable ones are added on top; the total never exceeds the order amount.
+   Each Promotion is compiled once into a PromotionRule, a small tree of condition and reward nodes,
+   and evaluated against a per-thread PromotionContext that holds the order facts the rules need,
+   so evaluating thousands of promotions does not allocate. The facts come from counts the order keeps
+   as pizzas are added, so loading one does not walk its pizzas.
+   Validity is checked against PromotionClock, which caches today's date until midnight.
+   Both searches go through an index: a date bucket holding only the promotions valid today (rebuilt when the
+   day changes or any promotion is edited). Auto-apply promotions are kept apart, percentages highest first,
+   so pricing an order stops at the first one that qualifies instead of trying every promotion.
+   Best-deal search considers every valid promotion, code or not, and the customer's loyalty tier
+   discount; its promotions are split into bands by minimum order amount with the percentages in each band
+   highest first, so a search stops at the first qualifying promotion of each band. */
+class PromotionEngine {
+    private static volatile PromotionEngine shared = new PromotionEngine(Collections.emptyList());
+    private static final ThreadLocal<PromotionContext> contexts = ThreadLocal.withInitial(PromotionContext::new);
+
+    private final Promotion[] promotions;
+    private volatile DayIndex dayIndex; // Date bucket for the day promotions were last evaluated on
+
+    // The promotions valid on one day, arranged for best-deal search
+    private static final class DayIndex {
+        final long day;
+        final long changes; // Promotion.changes() when built
+        final long[] bandMinAmounts; // Distinct minimum amounts of the non-stackable percentage promotions, ascending
+        final PromotionRule[][] bands; // The promotions of each band, highest percentage first
+        final long[] bogoMinAmounts;
+        final PromotionRule[] bogo; // Non-stackable BOGO promotions by minimum amount; they all give the same discount
+        final long[] stackableMinAmounts;
+        final PromotionRule[] stackable; // By minimum amount
+        // The auto-apply subset, for pricing orders
+        final PromotionRule[] autoPercent; // Non-stackable percentage promotions, highest percentage first
+        final PromotionRule[] autoBogo; // Non-stackable BOGO promotions
+        final long[] autoStackableMinAmounts;
+        final PromotionRule[] autoStackable; // By minimum amount
+
+        DayIndex(long day, long changes, Promotion[] promotions) {
+            this.day = day;
+            this.changes = changes;
+            List<PromotionRule> percent = new ArrayList<>();
+            List<PromotionRule> bogoRules = new ArrayList<>();
+            List<PromotionRule> stackableRules = new ArrayList<>();
+            List<PromotionRule> autoPercentRules = new ArrayList<>();
+            List<PromotionRule> autoBogoRules = new ArrayList<>();
+            List<PromotionRule> autoStackableRules = new ArrayList<>();
+            for (Promotion promotion : promotions) {
+                PromotionRule rule = promotion.compiled();
+                if (rule.isValidOn(day)) {
+                    (rule.isStackable() ? stackableRules : rule.isBogo() ? bogoRules : percent).add(rule);
+                    if (rule.isAutoApply()) {
+                        (rule.isStackable() ? autoStackableRules : rule.isBogo() ? autoBogoRules : autoPercentRules).add(rule);
+                    }
+                }
+            }
+            Comparator<PromotionRule> byMinAmount = Comparator.comparingLong(PromotionRule::getMinAmountCents);
+            autoPercentRules.sort(Comparator.comparingLong(PromotionRule::getBasisPoints).reversed());
+            autoStackableRules.sort(byMinAmount);
+            this.autoPercent = autoPercentRules.toArray(new PromotionRule[0]);
+            this.autoBogo = autoBogoRules.toArray(new PromotionRule[0]);
+            this.autoStackable = autoStackableRules.toArray(new PromotionRule[0]);
+            this.autoStackableMinAmounts = autoStackableRules.stream().mapToLong(PromotionRule::getMinAmountCents).toArray();
+            percent.sort(byMinAmount.thenComparing(Comparator.comparingLong(PromotionRule::getBasisPoints).reversed()));
+            List<PromotionRule[]> bandList = new ArrayList<>();
+            List<Long> bandMins = new ArrayList<>();
+            for (int start = 0; start < percent.size(); ) {
+                int end = start;
+                while (end < percent.size() && percent.get(end).getMinAmountCents() == percent.get(start).getMinAmountCents()) {
+                    end++;
+                }
+                bandList.add(percent.subList(start, end).toArray(new PromotionRule[0]));
+                bandMins.add(percent.get(start).getMinAmountCents());
+                start = end;
+            }
+            this.bands = bandList.toArray(new PromotionRule[0][]);
+            this.bandMinAmounts = bandMins.stream().mapToLong(Long::longValue).toArray();
+            bogoRules.sort(byMinAmount);
+            stackableRules.sort(byMinAmount);
+            this.bogo = bogoRules.toArray(new PromotionRule[0]);
+            this.bogoMinAmounts = bogoRules.stream().mapToLong(PromotionRule::getMinAmountCents).toArray();
+            this.stackable = stackableRules.toArray(new PromotionRule[0]);
+            this.stackableMinAmounts = stackableRules.stream().mapToLong(PromotionRule::getMinAmountCents).toArray();
+        }
+    }
+
+    public PromotionEngine(Collection<Promotion> promotions) {
+        this.promotions = promotions.toArray(new Promotion[0]);
+    }
+
+    // The engine orders are priced with
+    public static PromotionEngine shared() {
+        return shared;
+    }
+
+    // Replaces the shared engine, e.g. after the promotions have been loaded
+    public static void install(PromotionEngine engine) {
+        shared = engine;
+    }
+
+    // The discount in cents an order gets on amountCents, given the promotion entered for it (may be null)
+    public long bestDiscount(Order order, Promotion entered, long amountCents) {
+        PromotionContext context = contexts.get();
+        context.load(order, amountCents);
+        long discount = searchDiscount(context, entered, null);
+        context.clear();
+        return discount;
+    }
+
+    // The promotions behind bestDiscount, for display: the winning non-stackable one first, then the stackable ones
+    public List<Promotion> appliedTo(Order order, Promotion entered, long amountCents) {
+        PromotionContext context = contexts.get();
+        context.load(order, amountCents);
+        List<Promotion> applied = new ArrayList<>();
+        searchDiscount(context, entered, applied);
+        context.clear();
+        return applied;
+    }
+
+    /*The entered promotion and the auto-apply ones valid today: the largest non-stackable discount plus every stackable one
+    Records the promotions that count when applied is not null; allocates nothing otherwise*/
+    private long searchDiscount(PromotionContext context, Promotion entered, List<Promotion> applied) {
+        long amount = context.amountCents;
+        DayIndex index = indexFor(context.today);
+        Promotion winner = null;
+        long bestExclusive = 0;
+        long stacked = 0;
+        if (entered != null) {
+            long discount = entered.compiled().discount(context);
+            if (entered.isStackable()) {
+                stacked += discount;
+                if (applied != null && discount > 0) {
+                    applied.add(entered);
+                }
+            } else if (discount > 0) {
+                bestExclusive = discount;
+                winner = entered;
+            }
+        }
+        for (PromotionRule rule : index.autoPercent) {
+            if (Money.percentOf(amount, rule.getBasisPoints()) <= bestExclusive) {
+                break; // Nothing further down can beat the best so far
+            }
+            if (rule.getPromotion() == entered) {
+                continue;
+            }
+            long discount = rule.qualifiedDiscount(context);
+            if (discount > bestExclusive) {
+                bestExclusive = discount;
+                winner = rule.getPromotion();
+                break; // The first qualifying percentage is the highest
+            }
+        }
+        if (index.autoBogo.length > 0 && Math.min(context.cheaperHalfCents(), amount) > bestExclusive) {
+            for (PromotionRule rule : index.autoBogo) {
+                if (rule.getPromotion() == entered) {
+                    continue;
+                }
+                long discount = rule.qualifiedDiscount(context);
+                if (discount > bestExclusive) {
+                    bestExclusive = discount;
+                    winner = rule.getPromotion();
+                    break; // They all give the same discount
+                }
+            }
+        }
+        if (applied != null && winner != null) {
+            applied.add(0, winner);
+        }
+        int stackableCount = eligible(index.autoStackableMinAmounts, amount);
+        for (int i = 0; i < stackableCount; i++) {
+            PromotionRule rule = index.autoStackable[i];
+            if (rule.getPromotion() == entered) {
+                continue;
+            }
+            long discount = rule.qualifiedDiscount(context);
+            stacked += discount;
+            if (applied != null && discount > 0) {
+                applied.add(rule.getPromotion());
+            }
+        }
+        return Math.min(amount, bestExclusive + stacked);
+    }
+
+    // The index for a day, rebuilt when the day changes or a promotion has been edited since it was built
+    private DayIndex indexFor(long day) {
+        long changes = Promotion.changes();
+        DayIndex index = dayIndex;
+        if (index == null || index.day != day || index.changes != changes) {
+            index = new DayIndex(day, changes, promotions);
+            dayIndex = index;
+        }
+        return index;
+    }
+
+    // The best discount the order can get from any valid promotions plus the customer's loyalty tier discount
+    public long bestDeal(Order order, long amountCents) {
+        PromotionContext context = contexts.get();
+        context.load(order, amountCents);
+        long discount = searchBestDeal(context, null);
+        context.clear();
+        return discount;
+    }
+
+    // Descriptions of what makes up bestDeal, for display
+    public List<String> bestDealDescriptions(Order order, long amountCents) {
+        PromotionContext context = contexts.get();
+        context.load(order, amountCents);
+        List<String> descriptions = new ArrayList<>();
+        searchBestDeal(context, descriptions);
+        context.clear();
+        return descriptions;
+    }
+
+    /*One non-stackable discount (the best promotion or the tier discount) plus every qualifying stackable promotion
+    Records what was chosen when descriptions is not null; allocates nothing otherwise*/
+    private long searchBestDeal(PromotionContext context, List<String> descriptions) {
+        long amount = context.amountCents;
+        DayIndex index = indexFor(context.today);
+        Customer.LoyaltyTier tier = context.tier;
+        long best = Money.percentOf(amount, tier.getDiscountPercentage() * 100L);
+        PromotionRule winner = null;
+        int bands = eligible(index.bandMinAmounts, amount);
+        for (int b = 0; b < bands; b++) {
+            for (PromotionRule rule : index.bands[b]) {
+                if (Money.percentOf(amount, rule.getBasisPoints()) <= best) {
+                    break; // Nothing further down this band can beat the best so far
+                }
+                long discount = rule.qualifiedDiscount(context);
+                if (discount > best) {
+                    best = discount;
+                    winner = rule;
+                    break; // The first qualifying promotion is the band's best
+                }
+            }
+        }
+        int bogoCount = eligible(index.bogoMinAmounts, amount);
+        if (bogoCount > 0 && Math.min(context.cheaperHalfCents(), amount) > best) {
+            for (int i = 0; i < bogoCount; i++) {
+                long discount = index.bogo[i].qualifiedDiscount(context);
+                if (discount > best) {
+                    best = discount;
+                    winner = index.bogo[i];
+                    break;
+                }
+            }
+        }
+        if (descriptions != null) {
+            if (winner != null) {
+                descriptions.add(winner.getPromotion().getDescription());
+            } else if (best > 0) {
+                descriptions.add(tier.getName() + " member discount (" + tier.getDiscountPercentage() + "%)");
+            }
+        }
+        long stacked = 0;
+        int stackableCount = eligible(index.stackableMinAmounts, amount);
+        for (int i = 0; i < stackableCount; i++) {
+            long discount = index.stackable[i].qualifiedDiscount(context);
+            stacked += discount;
+            if (descriptions != null && discount > 0) {
+                descriptions.add(index.stackable[i].getPromotion().getDescription());
+            }
+        }
+        return Math.min(amount, best + stacked);
+    }
+
+    // Number of leading entries of an ascending array that are at most amount
+    private static int eligible(long[] minAmounts, long amount) {
+        int low = 0;
+        int high = minAmounts.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (minAmounts[mid] <= amount) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public int size() {
+        return promotions.length;
+    }
+}
@@ -0,0 +1,102 @@
+import java.util.*;
+
+/*A promotion compiled into an evaluation tree: a validity window, one condition node (nodes that are not
+needed are left out) and a reward node. Immutable; Promotion compiles a new one whenever it changes*/
+final class PromotionRule {
+    interface Condition { boolean test(PromotionContext context); }
+    interface Reward { long discount(PromotionContext context); }
+
+    private static final Condition ALWAYS = context -> true;
+
+    private final Promotion promotion;
+    private final boolean active;
+    private final long startDay;
+    private final long endDay;
+    private final long minAmountCents;
+    private final long basisPoints;
+    private final boolean bogo;
+    private final Condition condition;
+    private final Reward reward;
+    private final boolean stackable;
+    private final boolean autoApply;
+
+    private PromotionRule(Promotion promotion, Condition condition, Reward reward) {
+        this.promotion = promotion;
+        this.active = promotion.isActive();
+        this.startDay = promotion.getStartDay();
+        this.endDay = promotion.getEndDay();
+        this.minAmountCents = promotion.getMinAmountCents();
+        this.basisPoints = promotion.getDiscountBasisPoints();
+        this.bogo = promotion.getReward() == Promotion.Reward.BOGO;
+        this.condition = condition;
+        this.reward = reward;
+        this.stackable = promotion.isStackable();
+        this.autoApply = promotion.isAutoApply();
+    }
+
+    static PromotionRule compile(Promotion promotion) {
+        List<Condition> conditions = new ArrayList<>();
+        int minToppings = promotion.getMinToppings();
+        if (minToppings > 0) {
+            conditions.add(context -> context.toppingCount >= minToppings);
+        }
+        String deliveryType = promotion.getDeliveryType();
+        if (deliveryType != null) {
+            conditions.add(context -> deliveryType.equals(context.deliveryType));
+        }
+        if (promotion.getMinTier() != null) {
+            int minTier = promotion.getMinTier().ordinal(); // Tiers are declared lowest first
+            conditions.add(context -> context.tier.ordinal() >= minTier);
+        }
+        Condition condition;
+        if (conditions.isEmpty()) {
+            condition = ALWAYS;
+        } else if (conditions.size() == 1) {
+            condition = conditions.get(0);
+        } else {
+            Condition[] all = conditions.toArray(new Condition[0]);
+            condition = context -> {
+                for (Condition each : all) {
+                    if (!each.test(context)) {
+                        return false;
+                    }
+                }
+                return true;
+            };
+        }
+        Reward reward;
+        switch (promotion.getReward()) {
+            case BOGO:
+                reward = PromotionContext::cheaperHalfCents;
+                break;
+            default:
+                long basisPoints = promotion.getDiscountBasisPoints();
+                reward = context -> Money.percentOf(context.amountCents, basisPoints);
+        }
+        return new PromotionRule(promotion, condition, reward);
+    }
+
+    // The discount this rule gives in the context, or 0 if it is not valid today or the order does not qualify
+    long discount(PromotionContext context) {
+        if (!active || context.today < startDay || context.today > endDay) {
+            return 0;
+        }
+        return qualifiedDiscount(context);
+    }
+
+    // The discount for an order already known to fall in the validity window
+    long qualifiedDiscount(PromotionContext context) {
+        if (context.amountCents < minAmountCents || !condition.test(context)) {
+            return 0;
+        }
+        return Math.min(reward.discount(context), context.amountCents);
+    }
+
+    boolean isValidOn(long day) { return active && day >= startDay && day <= endDay; }
+    Promotion getPromotion() { return promotion; }
+    long getMinAmountCents() { return minAmountCents; }
+    long getBasisPoints() { return basisPoints; }
+    boolean isBogo() { return bogo; }
+    boolean isStackable() { return stackable; }
+    boolean isAutoApply() { return autoApply; }
+}
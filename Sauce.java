@@ -3,23 +3,26 @@
    Handles sauce-specific attributes including spiciness levels.
    Supports dynamic pricing and description formatting for different sauce options. */
 class Sauce extends Customization {
-    private String spiciness; // mild, medium, hot
-    //Basic constructor for creating a sauce without specified spiciness
-    public Sauce(String name, double price) {
-        super(name, price, "SAUCE");
-    }
-    //Extended constructor that includes spiciness level
-    public Sauce(String name, double price, String spiciness) {
-        super(name, price, "SAUCE");
+    private final String spiciness; // mild, medium, hot
+    //Constructor that includes spiciness level (null if not specified)
+    private Sauce(String name, long priceCents, String spiciness) {
+        super(name, priceCents, "SAUCE");
         this.spiciness = spiciness;
     }
+    //Creates and registers a sauce without specified spiciness
+    static Sauce create(String name, long priceCents) {
+        return create(name, priceCents, null);
+    }
+    //Creates and registers a sauce with a spiciness level, giving it its customization ID
+    static Sauce create(String name, long priceCents, String spiciness) {
+        return register(new Sauce(name, priceCents, spiciness));
+    }
     /* Provides a formatted description of the sauce option
     * Including name and additional cost in LKR */
     @Override
-    public String getDescription() {
-        return "Sauce: " + getName() + " (+LKR " + String.format("%.2f", getPrice()) + ")";
+    public String getDescription(long priceCents) {
+        return "Sauce: " + getName() + " (+LKR " + Money.format(priceCents) + ")";
     }
 
     public String getSpiciness() { return spiciness; }
-    public void setSpiciness(String spiciness) { this.spiciness = spiciness; }
 }
\ No newline at end of file
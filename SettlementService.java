@@ -0,0 +1,359 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+/* This class settles approved payments after the fact, one channel per PaymentStrategy type.
+   Card and PayPal payments are only authorized at checkout; their captures accumulate here and are
+   sent to the provider in batches, when a channel reaches batchSize captures or every batchSeconds,
+   so one gateway round trip settles many orders. Batch IDs are random UUIDs, so they never repeat across
+   restarts, and a failed batch is resent with the next flush under the same ID with the same captures, so
+   the provider's batch idempotency holds across retries.
+   Every capture is journaled when it is queued, batched and settled (see OrderJournal.recordCapture), and a
+   restart resumes the unsettled ones, so a crash never loses an authorization that was not captured.
+   Cash payments are collected by the driver or at the counter and settled when the shift is closed;
+   a shortfall is recorded with recordCashCollected.
+   The reconciliation report matches each order's current total against what was captured and collected.
+   Configured by pizza.settlement.mode (batch, immediate = one round trip per order, or off),
+   pizza.settlement.batchSize and pizza.settlement.batchSeconds. */
+class SettlementService {
+    enum Mode { BATCH, IMMEDIATE, OFF }
+
+    private static volatile SettlementService shared;
+
+    private final Mode mode;
+    private final int batchSize;
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>(); // Keyed by PaymentStrategy class name
+    private final Map<String, PaymentProcessor> processors; // Provider of each gateway-settled channel
+    private final ScheduledExecutorService timer;
+
+    // One approved payment waiting for, or done with, settlement
+    static class Capture {
+        final Order order;
+        final String transactionId;
+        final long amountCents; // Amount approved at checkout
+        volatile long collectedCents = -1; // Amount actually captured or collected; -1 until settled
+        volatile long declaredCents = -1; // Cash counted for this order, when it differs from the amount due
+        Capture(Order order, String transactionId, long amountCents) {
+            this.order = order;
+            this.transactionId = transactionId;
+            this.amountCents = amountCents;
+        }
+    }
+
+    // Captures sent to the provider together; a retry resends the same ID with the same captures
+    static class Batch {
+        final String id;
+        final List<Capture> captures;
+
+        Batch(String id, List<Capture> captures) {
+            this.id = id;
+            this.captures = captures;
+        }
+
+        List<String> orderIds() {
+            List<String> orderIds = new ArrayList<>(captures.size());
+            for (Capture capture : captures) {
+                orderIds.add(capture.order.getOrderId());
+            }
+            return orderIds;
+        }
+    }
+
+    // The captures of one payment type; guarded by itself
+    private class Channel {
+        final String method;
+        final PaymentProcessor processor; // null for payments settled locally (cash)
+        final ArrayDeque<Capture> pending = new ArrayDeque<>();
+        final ArrayDeque<Batch> failed = new ArrayDeque<>(); // Batches to resend as they were
+        final List<Capture> settled = new ArrayList<>();
+        int inFlight; // Captures in batches the provider has not answered yet
+        long batches;
+        long failedBatches;
+
+        Channel(String method, PaymentProcessor processor) {
+            this.method = method;
+            this.processor = processor;
+        }
+
+        /*Resends every failed batch and sends everything pending as one new batch; completes once the provider
+        has answered them all. The new batch is journaled before it is sent, so a restart resends it under its ID*/
+        CompletableFuture<Void> flush() {
+            List<Batch> sending;
+            synchronized (this) {
+                if (processor == null) {
+                    return CompletableFuture.completedFuture(null);
+                }
+                sending = new ArrayList<>(failed);
+                if (!pending.isEmpty()) {
+                    Batch batch = new Batch(method + "-" + UUID.randomUUID(), new ArrayList<>(pending));
+                    OrderJournal.current().recordCaptureBatch(batch.id, batch.orderIds());
+                    pending.clear();
+                    batches++;
+                    sending.add(batch);
+                }
+                failed.clear();
+                for (Batch batch : sending) {
+                    inFlight += batch.captures.size();
+                }
+            }
+            List<CompletableFuture<Void>> answers = new ArrayList<>(sending.size());
+            for (Batch batch : sending) {
+                answers.add(send(batch));
+            }
+            return CompletableFuture.allOf(answers.toArray(new CompletableFuture<?>[0]));
+        }
+
+        private CompletableFuture<Void> send(Batch batch) {
+            List<String> transactionIds = new ArrayList<>(batch.captures.size());
+            long amountCents = 0;
+            for (Capture capture : batch.captures) {
+                transactionIds.add(capture.transactionId);
+                amountCents += capture.amountCents;
+            }
+            return processor.capture(batch.id, transactionIds, amountCents).thenAccept(result -> {
+                synchronized (this) {
+                    inFlight -= batch.captures.size();
+                    if (result.isApproved()) {
+                        for (Capture capture : batch.captures) {
+                            capture.collectedCents = capture.amountCents;
+                        }
+                        settled.addAll(batch.captures);
+                    } else {
+                        failedBatches++;
+                        failed.add(batch); // Resent unchanged with the next flush
+                        return;
+                    }
+                }
+                OrderJournal.current().recordCaptured(batch.orderIds());
+            });
+        }
+
+        // Captures not settled yet: pending, waiting to be resent, or in flight
+        int outstanding() {
+            int count = pending.size() + inFlight;
+            for (Batch batch : failed) {
+                count += batch.captures.size();
+            }
+            return count;
+        }
+    }
+
+    public SettlementService(Mode mode, int batchSize, long batchMillis, PaymentProcessor creditCard, PaymentProcessor payPal) {
+        this.mode = mode;
+        this.batchSize = Math.max(1, batchSize);
+        this.processors = new HashMap<>();
+        processors.put(CreditCardPayment.class.getSimpleName(), creditCard);
+        processors.put(PayPalPayment.class.getSimpleName(), payPal);
+        if (mode == Mode.BATCH && batchMillis > 0) {
+            this.timer = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "settlement");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.scheduleAtFixedRate(this::flushAll, batchMillis, batchMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.timer = null;
+        }
+    }
+
+    // The service Order hands approved payments to; configured by the pizza.settlement.* properties
+    public static SettlementService shared() {
+        if (shared == null) {
+            synchronized (SettlementService.class) {
+                if (shared == null) {
+                    String mode = System.getProperty("pizza.settlement.mode", "batch");
+                    shared = new SettlementService(mode.equals("off") ? Mode.OFF : Mode.valueOf(mode.toUpperCase()),
+                        Integer.getInteger("pizza.settlement.batchSize", 100),
+                        Long.getLong("pizza.settlement.batchSeconds", 60) * 1000,
+                        PaymentProcessor.creditCard(), PaymentProcessor.payPal());
+                }
+            }
+        }
+        return shared;
+    }
+
+    // Queues the capture of an approved payment
+    public void capture(Order order, PaymentStrategy strategy, PaymentResult result) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        String method = strategy.getClass().getSimpleName();
+        Channel channel = channels.computeIfAbsent(method, m -> new Channel(m, processors.get(m)));
+        Capture capture = new Capture(order, result.getTransactionId(), order.getTotalCents());
+        OrderJournal.current().recordCapture(order.getOrderId(), method, capture.transactionId, capture.amountCents);
+        boolean full;
+        synchronized (channel) {
+            channel.pending.add(capture);
+            full = channel.pending.size() >= (mode == Mode.IMMEDIATE ? 1 : batchSize);
+        }
+        if (full) {
+            channel.flush();
+        }
+    }
+
+    // Sends every pending card and PayPal capture now; completes once the providers have answered
+    public CompletableFuture<Void> flushAll() {
+        List<CompletableFuture<Void>> flushes = new ArrayList<>();
+        for (Channel channel : channels.values()) {
+            flushes.add(channel.flush());
+        }
+        return CompletableFuture.allOf(flushes.toArray(new CompletableFuture<?>[0]));
+    }
+
+    /*Withdraws the capture of a payment whose order was rejected after it was approved, so it is never captured
+    Returns false, logging a warning, if it has already been sent to the provider and needs a refund instead*/
+    public boolean voidCapture(Order order, PaymentStrategy strategy) {
+        if (mode == Mode.OFF || strategy == null) {
+            return true;
+        }
+        Channel channel = channels.get(strategy.getClass().getSimpleName());
+        boolean removed = false;
+        if (channel != null) {
+            synchronized (channel) {
+                removed = channel.pending.removeIf(capture -> capture.order == order);
+            }
+        }
+        if (removed) {
+            OrderJournal.current().recordCaptured(Collections.singletonList(order.getOrderId())); // Leaves the journal like a settled one
+        } else {
+            EventLog.shared().log(EventLog.Type.WARNING, order.getOrderId(), null, order.getTotalCents(),
+                "payment of a rejected order already sent for capture, refund it");
+        }
+        return removed;
+    }
+
+    /*Queues a capture recovered from the journal without journaling it again
+    One that was already sent in a batch rejoins that batch, so it is resent under the same batch ID*/
+    public void restoreCapture(Order order, String method, String transactionId, long amountCents, String batchId) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        Channel channel = channels.computeIfAbsent(method, m -> new Channel(m, processors.get(m)));
+        Capture capture = new Capture(order, transactionId, amountCents);
+        synchronized (channel) {
+            if (batchId == null || channel.processor == null) {
+                channel.pending.add(capture);
+                return;
+            }
+            for (Batch batch : channel.failed) {
+                if (batch.id.equals(batchId)) {
+                    batch.captures.add(capture);
+                    return;
+                }
+            }
+            List<Capture> captures = new ArrayList<>();
+            captures.add(capture);
+            channel.failed.add(new Batch(batchId, captures));
+        }
+    }
+
+    // Records the cash actually received for an order paid in cash; returns false if no such cash payment is pending
+    public boolean recordCashCollected(String orderId, long collectedCents) {
+        Channel cash = channels.get(CashPayment.class.getSimpleName());
+        if (cash == null) {
+            return false;
+        }
+        synchronized (cash) {
+            for (Capture capture : cash.pending) {
+                if (capture.order.getOrderId().equals(orderId)) {
+                    capture.declaredCents = collectedCents;
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /*Ends the shift: settles every pending capture, returns the reconciliation report and starts a new shift
+    Cash payments count as collected in full unless a different amount was recorded*/
+    public String closeShift(long timeoutMillis) {
+        try {
+            flushAll().get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            EventLog.shared().warning("some captures were not settled before the shift closed (" + e + ")");
+        }
+        for (Channel channel : channels.values()) {
+            if (channel.processor == null) {
+                List<String> collected = new ArrayList<>();
+                synchronized (channel) {
+                    for (Capture capture : channel.pending) {
+                        capture.collectedCents = capture.declaredCents >= 0 ? capture.declaredCents : capture.amountCents;
+                        channel.settled.add(capture);
+                        collected.add(capture.order.getOrderId());
+                    }
+                    channel.pending.clear();
+                }
+                if (!collected.isEmpty()) {
+                    OrderJournal.current().recordCaptured(collected);
+                }
+            }
+        }
+        String report = reconciliationReport();
+        for (Channel channel : channels.values()) {
+            synchronized (channel) {
+                channel.settled.clear();
+            }
+        }
+        return report;
+    }
+
+    /*Per payment type: captures settled and outstanding, the totals of the settled orders, what was
+    collected and the difference, followed by every order whose total does not match what was collected.
+    A cancelled order is due nothing, so anything collected for it shows up as a refund to make*/
+    public String reconciliationReport() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format("%-18s | %-7s | %-7s | %-14s | %-14s | %-12s | %-7s | %-6s%n",
+            "Payment type", "Settled", "Pending", "Due (LKR)", "Collected", "Difference", "Batches", "Failed"));
+        List<String> discrepancies = new ArrayList<>();
+        for (Channel channel : new TreeMap<>(channels).values()) {
+            long due = 0;
+            long collected = 0;
+            int settledCount;
+            int pendingCount;
+            synchronized (channel) {
+                settledCount = channel.settled.size();
+                pendingCount = channel.outstanding();
+                for (Capture capture : channel.settled) {
+                    long orderDue = amountDue(capture.order);
+                    due += orderDue;
+                    collected += capture.collectedCents;
+                    if (orderDue != capture.collectedCents) {
+                        discrepancies.add(String.format("%-10s | %-18s | due %-12s | collected %-12s | %s",
+                            capture.order.getOrderId(), channel.method, Money.format(orderDue),
+                            Money.format(capture.collectedCents), capture.order.getStatus()));
+                    }
+                }
+                out.append(String.format("%-18s | %-7d | %-7d | %-14s | %-14s | %-12s | %-7d | %-6d%n",
+                    channel.method, settledCount, pendingCount, Money.format(due), Money.format(collected),
+                    Money.format(collected - due), channel.processor == null ? 0 : channel.batches, channel.failedBatches));
+            }
+        }
+        out.append(discrepancies.isEmpty() ? "All settled orders reconcile.\n" : "Orders that do not reconcile:\n");
+        for (String line : discrepancies) {
+            out.append(line).append('\n');
+        }
+        return out.toString();
+    }
+
+    // What the customer owes for an order now: its total, or nothing once it has been cancelled
+    private static long amountDue(Order order) {
+        return OrderStatus.CANCELLED.getLabel().equals(order.getStatus()) ? 0 : order.getTotalCents();
+    }
+
+    // Stops the batch timer and sends the card and PayPal captures still pending; cash waits for the shift to close
+    public void shutdown() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+        try {
+            flushAll().get(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            EventLog.shared().warning("some captures were not settled at shutdown (" + e + ")");
+        }
+    }
+
+    public Mode getMode() { return mode; }
+}
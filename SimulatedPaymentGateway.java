@@ -0,0 +1,111 @@
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*A local stand-in for a remote payment provider
+Responds after latencyMillis +/- jitter on a timer thread, so thousands of requests can be in flight at once*/
+class SimulatedPaymentGateway implements PaymentGateway {
+    private static final ScheduledExecutorService timer = Executors.newScheduledThreadPool(2, task -> {
+        Thread thread = new Thread(task, "simulated-gateway");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String name;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final double failureRate; // Transient gateway errors
+    private final double declineRate; // Permanent declines
+    private final double noResponseRate; // Requests that never get an answer (exercise timeouts)
+    private final Map<String, CompletableFuture<PaymentResult>> processed = new ConcurrentHashMap<>(); // Idempotency store
+    private final AtomicLong charges = new AtomicLong(); // Accounts actually charged
+    private final AtomicLong requests = new AtomicLong();
+    private final Map<String, CompletableFuture<PaymentResult>> capturedBatches = new ConcurrentHashMap<>();
+    private final AtomicLong captureRequests = new AtomicLong();
+    private final AtomicLong capturedTransactions = new AtomicLong();
+    private final AtomicLong capturedCents = new AtomicLong();
+
+    public SimulatedPaymentGateway(String name, long latencyMillis, long jitterMillis,
+                                   double failureRate, double declineRate, double noResponseRate) {
+        this.name = name;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.failureRate = failureRate;
+        this.declineRate = declineRate;
+        this.noResponseRate = noResponseRate;
+    }
+
+    /*Builds a gateway from the pizza.payments.<provider>.* properties
+    (latencyMillis, jitterMillis, failureRate, declineRate, noResponseRate)*/
+    public static SimulatedPaymentGateway fromProperties(String provider, long defaultLatencyMillis) {
+        String prefix = "pizza.payments." + provider + ".";
+        return new SimulatedPaymentGateway(provider,
+            Long.getLong(prefix + "latencyMillis", defaultLatencyMillis),
+            Long.getLong(prefix + "jitterMillis", defaultLatencyMillis / 4),
+            Double.parseDouble(System.getProperty(prefix + "failureRate", "0")),
+            Double.parseDouble(System.getProperty(prefix + "declineRate", "0")),
+            Double.parseDouble(System.getProperty(prefix + "noResponseRate", "0")));
+    }
+
+    @Override
+    public CompletableFuture<PaymentResult> charge(String idempotencyKey, long amountCents, String account) {
+        requests.incrementAndGet();
+        CompletableFuture<PaymentResult> response = new CompletableFuture<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = Math.max(0, latencyMillis + (jitterMillis == 0 ? 0 : random.nextLong(-jitterMillis, jitterMillis + 1)));
+        double roll = random.nextDouble();
+        if (roll < noResponseRate) {
+            return response; // Lost request; the client's timeout decides what happens
+        }
+        if (roll < noResponseRate + failureRate) {
+            timer.schedule(() -> response.complete(PaymentResult.failed(name + " unavailable")), delay, TimeUnit.MILLISECONDS);
+            return response; // Transient errors are not remembered, so a retry can succeed
+        }
+        CompletableFuture<PaymentResult> earlier = processed.putIfAbsent(idempotencyKey, response);
+        if (earlier != null) {
+            return earlier; // Replayed key: report the original outcome without charging again
+        }
+        boolean declined = roll < noResponseRate + failureRate + declineRate;
+        timer.schedule(() -> {
+            if (declined) {
+                response.complete(PaymentResult.declined("Declined by " + name));
+            } else {
+                charges.incrementAndGet();
+                response.complete(PaymentResult.approved(name + "-" + idempotencyKey));
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    @Override
+    public CompletableFuture<PaymentResult> capture(String batchId, List<String> transactionIds, long amountCents) {
+        captureRequests.incrementAndGet();
+        CompletableFuture<PaymentResult> response = new CompletableFuture<>();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = Math.max(0, latencyMillis + (jitterMillis == 0 ? 0 : random.nextLong(-jitterMillis, jitterMillis + 1)));
+        if (random.nextDouble() < failureRate) {
+            timer.schedule(() -> response.complete(PaymentResult.failed(name + " unavailable")), delay, TimeUnit.MILLISECONDS);
+            return response;
+        }
+        CompletableFuture<PaymentResult> earlier = capturedBatches.putIfAbsent(batchId, response);
+        if (earlier != null) {
+            return earlier;
+        }
+        int count = transactionIds.size();
+        timer.schedule(() -> {
+            capturedTransactions.addAndGet(count);
+            capturedCents.addAndGet(amountCents);
+            response.complete(PaymentResult.approved(batchId));
+        }, delay, TimeUnit.MILLISECONDS);
+        return response;
+    }
+
+    @Override
+    public String getName() { return name; }
+    public long getCharges() { return charges.get(); }
+    public long getRequests() { return requests.get(); }
+    public long getCaptureRequests() { return captureRequests.get(); }
+    public long getCapturedTransactions() { return capturedTransactions.get(); }
+    public long getCapturedCents() { return capturedCents.get(); }
+}
@@ -0,0 +1,49 @@
+import java.util.concurrent.atomic.AtomicLong;
+
+/*Snowflake-style generator for multi-node deployments
+Packs 41 bits of milliseconds since a custom epoch, 10 bits of node ID and a 12-bit per-millisecond sequence.
+Timestamp and sequence share one AtomicLong so a CAS loop replaces locking; when the sequence
+is exhausted within a millisecond the generator borrows the next millisecond instead of spinning*/
+class SnowflakeOrderIdGenerator implements OrderIdGenerator {
+    static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    private final String prefix;
+    private final long nodeId;
+    private final AtomicLong state = new AtomicLong(); // (millis since epoch << SEQUENCE_BITS) | sequence
+
+    public SnowflakeOrderIdGenerator(String prefix, long nodeId) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("Node ID must be between 0 and " + MAX_NODE_ID);
+        }
+        this.prefix = prefix;
+        this.nodeId = nodeId;
+    }
+
+    @Override
+    public String nextId() {
+        return prefix + nextLong();
+    }
+
+    // Returns the next raw 63-bit ID
+    public long nextLong() {
+        while (true) {
+            long current = state.get();
+            long now = System.currentTimeMillis() - EPOCH_MILLIS;
+            long lastMillis = current >>> SEQUENCE_BITS;
+            long next;
+            if (now > lastMillis) {
+                next = now << SEQUENCE_BITS; // New millisecond, sequence restarts at zero
+            } else {
+                next = current + 1; // Same (or borrowed) millisecond; overflow carries into the timestamp
+            }
+            if (state.compareAndSet(current, next)) {
+                long millis = next >>> SEQUENCE_BITS;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | (next & SEQUENCE_MASK);
+            }
+        }
+    }
+}
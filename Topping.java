@@ -4,14 +4,19 @@
    Supports the system's topping management and pizza customization features. */
 
 class Topping extends Customization {
-    public Topping(String name, double price) {
-        super(name, price, "TOPPING"); // Sets category as "TOPPING
+    private Topping(String name, long priceCents) {
+        super(name, priceCents, "TOPPING"); // Sets category as "TOPPING
+    }
+
+    // Creates a topping option and registers it, giving it its customization ID
+    static Topping create(String name, long priceCents) {
+        return register(new Topping(name, priceCents));
     }
 
     /* Provides a formatted description of the topping
     * Including name and additional cost in LKR */
     @Override
-    public String getDescription() {
-        return "Topping: " + getName() + " (+LKR " + String.format("%.2f", getPrice()) + ")";
+    public String getDescription(long priceCents) {
+        return "Topping: " + getName() + " (+LKR " + Money.format(priceCents) + ")";
     }
 }
\ No newline at end of file
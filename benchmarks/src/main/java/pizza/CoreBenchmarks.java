@@ -0,0 +1,147 @@
+package pizza;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/* JMH version of the "core" scenario of Benchmarks: pizza pricing, order totals, order lookup by ID
+   (what PizzaOr_sys.findOrder delegates to), status updates and loyalty tier lookup.
+   Run with -prof gc for bytes allocated and collections per operation, and with -t N to contend the
+   lookup and status update benchmarks from N threads (only meaningful with at least N cores). */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CoreBenchmarks {
+    // One sample pizza; repricing sets the crust again, which invalidates its cached price
+    @State(Scope.Thread)
+    public static class PricedPizza {
+        @Param({"0", "3", "6"})
+        public int toppings;
+        Pizza pizza;
+        Crust crust;
+
+        @Setup
+        public void setUp() {
+            pizza = Benchmarks.samplePizzas(1, toppings)[0];
+            crust = pizza.getCrust();
+        }
+    }
+
+    // The pizzas of one order, plus the customer and promotion it is priced with
+    @State(Scope.Thread)
+    public static class OrderContents {
+        @Param({"1", "5", "20"})
+        public int pizzas;
+        @Param({"0", "3", "6"})
+        public int toppings;
+        Pizza[] contents;
+        Customer customer;
+        Promotion promotion;
+
+        @Setup
+        public void setUp() {
+            contents = Benchmarks.samplePizzas(pizzas, toppings);
+            customer = new Customer("BENCH", "Bench", "Colombo", "0770000000", "bench@example.com");
+            promotion = new Promotion("BENCH", "Bench", 10.0, LocalDate.now(), LocalDate.now());
+        }
+    }
+
+    // A repository of orders shared by every benchmark thread
+    @State(Scope.Benchmark)
+    public static class Store {
+        @Param({"1000", "100000"})
+        public int orders;
+        OrderRepository repository;
+        Order[] saved;
+        String[] ids;
+        private PrintStream console;
+
+        @Setup
+        public void setUp() {
+            console = System.out;
+            System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Customers print their notifications
+            repository = new OrderRepository();
+            saved = new Order[orders];
+            ids = new String[orders];
+            Customer[] customers = new Customer[64];
+            for (int i = 0; i < customers.length; i++) {
+                customers[i] = new Customer("BENCH" + i, "Bench", "Colombo", "0770000000", "bench@example.com");
+            }
+            for (int i = 0; i < orders; i++) {
+                saved[i] = new Order("ORD" + (1000 + i), customers[i % customers.length], "PICKUP", 0);
+                ids[i] = saved[i].getOrderId();
+                repository.save(saved[i]);
+            }
+        }
+
+        @TearDown
+        public void tearDown() throws InterruptedException {
+            NotificationDispatcher.shared().awaitIdle(60_000);
+            System.setOut(console);
+        }
+    }
+
+    // Loyalty balances to look tiers up for
+    @State(Scope.Thread)
+    public static class Balances {
+        int[] points = new int[1024];
+        int cursor;
+
+        @Setup
+        public void setUp() {
+            Random random = new Random(42);
+            for (int i = 0; i < points.length; i++) {
+                points[i] = random.nextInt(2000);
+            }
+        }
+    }
+
+    private static final OrderStatus[] STATUSES =
+        {OrderStatus.PREPARING, OrderStatus.IN_OVEN, OrderStatus.READY_FOR_DELIVERY, OrderStatus.OUT_FOR_DELIVERY};
+
+    @Benchmark
+    public long pizzaPriceCached(PricedPizza state) {
+        return state.pizza.calculateTotalCents();
+    }
+
+    @Benchmark
+    public long pizzaPriceRepriced(PricedPizza state) {
+        state.pizza.setCrust(state.crust);
+        return state.pizza.calculateTotalCents();
+    }
+
+    // Build, deliver and discount one order
+    @Benchmark
+    public long orderTotal(OrderContents state) {
+        Order order = new Order("BENCH", state.customer, "PICKUP", 0);
+        for (Pizza pizza : state.contents) {
+            order.addPizza(pizza);
+        }
+        order.setDeliveryType("DELIVERY", Money.ofRupees(200));
+        order.applyPromotion(state.promotion);
+        return order.getTotalCents();
+    }
+
+    @Benchmark
+    public long orderLookup(Store store) {
+        return store.repository.findById(store.ids[ThreadLocalRandom.current().nextInt(store.orders)]).getTotalCents();
+    }
+
+    // Store reindex, journal (disabled here) and a queued notification
+    @Benchmark
+    public void statusUpdate(Store store) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        store.saved[random.nextInt(store.orders)].getTracker().updateStatus(STATUSES[random.nextInt(STATUSES.length)]);
+    }
+
+    @Benchmark
+    public Customer.LoyaltyTier loyaltyTier(Balances state) {
+        return Customer.LoyaltyTier.getTierFromPoints(state.points[state.cursor++ & 1023]);
+    }
+}